@@ -26,6 +26,7 @@ import engine.world.collision.DefaultCollisionManager;
 import engine.world.hit.BlockHitResult;
 import engine.world.hit.EntityHitResult;
 import engine.world.hit.HitResult;
+import engine.world.light.LightEngine;
 import org.joml.*;
 
 import javax.annotation.Nonnull;
@@ -35,6 +36,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static engine.world.chunk.ChunkConstants.*;
@@ -48,6 +50,7 @@ public class WorldClient implements World, Runnable {
     private final DefaultEntityManager entityManager;
     private final CollisionManager collisionManager;
     private final ComponentAgent componentAgent = new ComponentAgent();
+    private final LightEngine lightEngine;
     private long gameTick;
 
     public WorldClient(Game game, WorldProvider provider, String name) {
@@ -57,6 +60,7 @@ public class WorldClient implements World, Runnable {
         this.chunkManager = new WorldClientChunkManager(this);
         this.collisionManager = new DefaultCollisionManager(this);
         this.entityManager = new DefaultEntityManager(this);
+        this.lightEngine = new LightEngine(this, null);
     }
 
     @Override
@@ -67,16 +71,18 @@ public class WorldClient implements World, Runnable {
     public void tick() {
         tickEntityMotion();
         chunkManager.tick();
+        lightEngine.tick();
         entityManager.tick();
         gameTick++;
     }
 
     protected void tickEntityMotion() {
-        for (Entity entity : this.getEntities()) {
+        entityManager.forEachEntity(entity -> {
             Vector3d position = entity.getPosition();
             Vector3f motion = entity.getMotion();
             position.add(motion);
-        }
+            entityManager.updateEntityIndex(entity);
+        });
     }
 
     @Override
@@ -149,6 +155,11 @@ public class WorldClient implements World, Runnable {
         return collisionManager.raycastBlock(from, dir, distance, ignore);
     }
 
+    @Override
+    public BlockHitResult[] raycastBlocks(Rayf[] segments) {
+        return collisionManager.raycastBlocks(segments);
+    }
+
     @Override
     public HitResult raycast(Vector3fc from, Vector3fc dir, float distance) {
         BlockHitResult blockHitResult = raycastBlock(from, dir, distance);
@@ -199,6 +210,21 @@ public class WorldClient implements World, Runnable {
         return entityManager.getEntitiesWithSphere(centerX, centerY, centerZ, radius);
     }
 
+    @Override
+    public void forEachEntity(Consumer<Entity> consumer) {
+        entityManager.forEachEntity(consumer);
+    }
+
+    @Override
+    public void forEachEntityWithBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Consumer<Entity> consumer) {
+        entityManager.forEachEntityWithBoundingBox(minX, minY, minZ, maxX, maxY, maxZ, consumer);
+    }
+
+    @Override
+    public void forEachEntityWithSphere(double centerX, double centerY, double centerZ, double radius, Consumer<Entity> consumer) {
+        entityManager.forEachEntityWithSphere(centerX, centerY, centerZ, radius, consumer);
+    }
+
     @Override
     public EntityHitResult raycastEntity(Vector3fc from, Vector3fc dir, float distance) {
         return entityManager.raycastEntity(from, dir, distance);
@@ -206,7 +232,8 @@ public class WorldClient implements World, Runnable {
 
     @Override
     public Chunk getChunk(int chunkX, int chunkY, int chunkZ, boolean shouldLoadWhenNonexist) {
-        return shouldLoadWhenNonexist ? chunkManager.getOrLoadChunk(chunkX, chunkY, chunkZ) : chunkManager.getChunk(chunkX, chunkY, chunkZ).orElse(null);
+        // Chunks are not loaded from entities ticked in parallel.
+        return shouldLoadWhenNonexist && !entityManager.isParallelTicking() ? chunkManager.getOrLoadChunk(chunkX, chunkY, chunkZ) : chunkManager.getChunk(chunkX, chunkY, chunkZ).orElse(null);
     }
 
     @Override
@@ -245,6 +272,10 @@ public class WorldClient implements World, Runnable {
     @Nonnull
     @Override
     public BlockState setBlock(@Nonnull BlockPos pos, @Nonnull BlockState block, @Nonnull BlockChangeCause cause, boolean shouldNotify) {
+        if (entityManager.isParallelTicking()) {
+            entityManager.runAfterTick(() -> setBlock(pos, block, cause, shouldNotify));
+            return getBlock(pos);
+        }
         BlockState oldBlock = getBlock(pos);
         BlockChangeEvent pre, post;
         if (block.getPrototype() == AirBlock.AIR) {
@@ -260,6 +291,7 @@ public class WorldClient implements World, Runnable {
         if (!getGame().getEventBus().post(pre)) {
             getChunk(pos.x() >> CHUNK_X_BITS, pos.y() >> CHUNK_Y_BITS, pos.z() >> CHUNK_Z_BITS, true)
                     .setBlock(pos, block, cause);
+            lightEngine.onBlockChanged(pos, oldBlock, block);
 
             oldBlock.getPrototype().getComponent(DestroyBehavior.class).ifPresent(destroyBehavior -> destroyBehavior.onDestroyed(this, pos, oldBlock, cause));
             block.getPrototype().getComponent(PlaceBehavior.class).ifPresent(placeBehavior -> placeBehavior.onPlaced(this, pos, block, cause));
@@ -315,6 +347,11 @@ public class WorldClient implements World, Runnable {
         return componentAgent.getComponents();
     }
 
+    public LightEngine getLightEngine() {
+        return lightEngine;
+    }
+
+    @Override
     public WorldClientChunkManager getChunkManager() {
         return chunkManager;
     }
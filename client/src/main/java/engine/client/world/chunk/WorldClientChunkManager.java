@@ -24,11 +24,13 @@ public class WorldClientChunkManager implements ChunkManager {
 
     private final WorldClient world;
     private final LongObjectMap<Chunk> chunkMap;
+    private final LongObjectMap<ChunkColumn> chunkColumnMap;
     private final Chunk blank;
 
     public WorldClientChunkManager(WorldClient world) {
         this.world = world;
         this.chunkMap = new LongObjectHashMap<>();
+        this.chunkColumnMap = new LongObjectHashMap<>();
         blank = new AirChunk(world, 0, 0, 0);
     }
 
@@ -38,6 +40,10 @@ public class WorldClientChunkManager implements ChunkManager {
         return Optional.ofNullable(chunkMap.get(chunkIndex));
     }
 
+    public ChunkColumn getChunkColumn(int x, int z) {
+        return chunkColumnMap.get(getChunkIndex(x, 0, z));
+    }
+
     @Override
     public Chunk getOrLoadChunk(int x, int y, int z) {
         long index = getChunkIndex(x, y, z);
@@ -60,11 +66,30 @@ public class WorldClientChunkManager implements ChunkManager {
         } catch (IOException e) {
 
         }
-        chunkMap.put(index, chunk);
+        var oldChunk = chunkMap.put(index, chunk);
+        if (oldChunk != null) {
+            detachFromColumn(oldChunk);
+        }
+        attachToColumn(chunk);
+        world.getLightEngine().onChunkLoad(chunk);
         world.getGame().getEventBus().post(new ChunkLoadEvent(chunk));
         return chunk;
     }
 
+    private void attachToColumn(Chunk chunk) {
+        if (!(chunk instanceof CubicChunk)) return;
+        chunkColumnMap.computeIfAbsent(getChunkIndex(chunk.getX(), 0, chunk.getZ()), key -> new ChunkColumn(world, chunk.getX(), chunk.getZ())).onChunkLoad(chunk);
+    }
+
+    private void detachFromColumn(Chunk chunk) {
+        if (!(chunk instanceof CubicChunk)) return;
+        long columnIndex = getChunkIndex(chunk.getX(), 0, chunk.getZ());
+        var column = chunkColumnMap.get(columnIndex);
+        if (column != null && column.onChunkUnload(chunk)) {
+            chunkColumnMap.remove(columnIndex);
+        }
+    }
+
     @Override
     public ChunkGenerator getChunkGenerator() {
         throw new UnsupportedOperationException("Client-side have no generator");
@@ -81,6 +106,7 @@ public class WorldClientChunkManager implements ChunkManager {
 
     private synchronized void unloadChunk(long index, Chunk chunk) {
         Validate.notNull(chunk);
+        detachFromColumn(chunk);
         world.getGame().getEventBus().post(new ChunkUnloadEvent(chunk));
     }
 
@@ -88,6 +114,7 @@ public class WorldClientChunkManager implements ChunkManager {
     public void unloadAll() {
         chunkMap.forEach(this::unloadChunk);
         chunkMap.clear();
+        chunkColumnMap.clear();
     }
 
     @Override
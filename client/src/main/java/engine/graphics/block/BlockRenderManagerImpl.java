@@ -5,32 +5,58 @@ import engine.block.Block;
 import engine.block.state.BlockState;
 import engine.client.asset.Asset;
 import engine.client.asset.AssetTypes;
+import engine.client.asset.AssetURL;
+import engine.client.asset.reloading.AssetReloadHandler;
+import engine.graphics.model.AmbientOcclusion;
 import engine.graphics.model.BakedModel;
 import engine.graphics.queue.RenderType;
 import engine.graphics.vertex.VertexDataBuf;
 import engine.math.BlockPos;
 import engine.registry.Registries;
+import engine.registry.game.BlockRegistry;
 import engine.util.Direction;
 import engine.world.BlockGetter;
+import engine.world.util.ChunkSnapshot;
+
+import javax.annotation.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
+
+import static engine.world.chunk.ChunkConstants.*;
 
 public final class BlockRenderManagerImpl implements BlockRenderManager {
 
+    /**
+     * Shades the vertexes of chunk meshes by the opaque cubes around them, see {@link AmbientOcclusion}.
+     */
+    private static final boolean AMBIENT_OCCLUSION = Boolean.parseBoolean(System.getProperty("engine.chunk.ambientOcclusion", "true"));
+
     private final Map<BlockState, Asset<BakedModel>> blockModelMap = new HashMap<>();
     private final Map<Block, RenderType> blockRenderTypeMap = new HashMap<>();
 
+    private volatile RenderTable renderTable;
+    /**
+     * Incremented after the models are baked, a table built from an older generation, or from an older version of the
+     * state ids, is rebuilt on next use.
+     */
+    private volatile int generation;
+
     public void init() {
-        Registries.getBlockRegistry().getValues().forEach(this::registerBlockRenderer);
+        var assetManager = Platform.getEngineClient().getAssetManager();
+        Registries.getBlockRegistry().getValues().forEach(block ->
+                registerBlockRenderer(block, url -> assetManager.create(AssetTypes.VOXEL_MODEL, url)));
+        assetManager.getReloadManager().addHandler(
+                AssetReloadHandler.builder().name("BlockRenderTable").after("BakeVoxelModel").runnable(() -> generation++).build());
     }
 
-    private void registerBlockRenderer(Block block) {
+    void registerBlockRenderer(Block block, Function<AssetURL, Asset<BakedModel>> modelFactory) {
         block.getComponent(BlockDisplay.class).ifPresent(blockDisplay -> {
             blockRenderTypeMap.put(block, blockDisplay.getRenderType());
             if (blockDisplay.isVisible()) {
                 for (BlockState state : block.getStateManager().getStates()) {
-                    blockModelMap.put(state, Platform.getEngineClient().getAssetManager().create(AssetTypes.VOXEL_MODEL, blockDisplay.getVariantModelUrls().getOrDefault(state, blockDisplay.getModelUrl())));
+                    blockModelMap.put(state, modelFactory.apply(blockDisplay.getVariantModelUrls().getOrDefault(state, blockDisplay.getModelUrl())));
                 }
             }
         });
@@ -84,6 +110,130 @@ public final class BlockRenderManagerImpl implements BlockRenderManager {
         model.get().putVertexes(buffer, 0);
     }
 
+    /**
+     * Generates the mesh of a block with the render properties looked up by state id, without resolving the block
+     * states of the block and its neighbors. The mesh is translated to the position of the block in its chunk, and
+     * shaded by ambient occlusion if any face is visible.
+     *
+     * @param stateId state id of the block at the position, see {@link ChunkSnapshot#getBlockId(int, int, int)}
+     */
+    public void generateMesh(ChunkSnapshot world, int x, int y, int z, int stateId, VertexDataBuf buffer) {
+        RenderTable table = getRenderTable();
+        BakedModel model = table.models[stateId];
+        if (model == null) {
+            return;
+        }
+
+        buffer.setTranslation(x & CHUNK_MAX_X, y & CHUNK_MAX_Y, z & CHUNK_MAX_Z);
+        int coveredFace = 0;
+        RenderType renderType = table.renderTypes[stateId];
+        if (renderType != RenderType.TRANSPARENT && renderType != RenderType.TRANSLUCENT) {
+            for (var direction : Direction.values()) {
+                int neighborId = world.getBlockId(x + direction.offsetX, y + direction.offsetY, z + direction.offsetZ);
+                RenderType neighborRenderType = table.renderTypes[neighborId];
+                if (neighborRenderType != RenderType.TRANSPARENT && neighborRenderType != RenderType.TRANSLUCENT
+                        && (table.fullFaces[neighborId] & 1 << direction.opposite().index) != 0) {
+                    coveredFace |= 1 << direction.index;
+                }
+            }
+        }
+
+        if (coveredFace == 0b111111) {
+            model.putVertexes(buffer, coveredFace);
+        } else {
+            model.putVertexes(buffer, coveredFace, getOccluders(world, x, y, z));
+        }
+    }
+
+    /**
+     * @return bit set of the opaque cubes around the block, see {@link AmbientOcclusion#getNeighborBit(int, int, int)},
+     * or 0 if ambient occlusion is disabled
+     */
+    public int getOccluders(ChunkSnapshot world, int x, int y, int z) {
+        if (!AMBIENT_OCCLUSION) return 0;
+        RenderTable table = getRenderTable();
+        int occluders = 0;
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    int neighborId = world.getBlockId(x + dx, y + dy, z + dz);
+                    if (table.renderTypes[neighborId] == RenderType.OPAQUE && table.fullFaces[neighborId] == 0b111111) {
+                        occluders |= AmbientOcclusion.getNeighborBit(dx, dy, dz);
+                    }
+                }
+            }
+        }
+        return occluders;
+    }
+
+    /**
+     * @return render type of the block state, or null if the block has no display
+     */
+    @Nullable
+    public RenderType getRenderType(int stateId) {
+        return getRenderTable().renderTypes[stateId];
+    }
+
+    /**
+     * @return true if the block is an opaque full cube whose faces can be merged by {@link engine.graphics.voxel.chunk.GreedyMesher}
+     */
+    public boolean isGreedyMeshable(int stateId) {
+        return getRenderTable().greedyMeshable[stateId];
+    }
+
+    /**
+     * @return texture region of the face if the block is drawn by {@link engine.graphics.voxel.chunk.ChunkLodMesher}
+     * at lower levels of detail, the opaque full cubes which could be greedy meshed, otherwise null
+     * @see engine.graphics.voxel.chunk.ChunkLodMesher.FaceSource
+     */
+    @Nullable
+    public float[] getLodFace(int stateId, Direction direction) {
+        RenderTable table = getRenderTable();
+        return table.greedyMeshable[stateId] ? table.models[stateId].getCubeFaceUv(direction) : null;
+    }
+
+    /**
+     * @return true if the block is opaque and has full faces in all directions, so that nothing can be seen through it
+     */
+    public boolean isOpaqueCube(int stateId) {
+        RenderTable table = getRenderTable();
+        return table.renderTypes[stateId] == RenderType.OPAQUE && table.fullFaces[stateId] == 0b111111;
+    }
+
+    /**
+     * @return true if the block is an opaque full cube whose faces can be merged by {@link engine.graphics.voxel.chunk.GreedyMesher}
+     */
+    public boolean isGreedyMeshable(BlockState block) {
+        if (blockRenderTypeMap.get(block.getPrototype()) != RenderType.OPAQUE) return false;
+        Asset<BakedModel> model = blockModelMap.get(block);
+        if (model == null) return false;
+        for (var direction : Direction.values()) {
+            if (model.get().getCubeFaceUv(direction) == null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @see engine.graphics.voxel.chunk.GreedyMesher.FaceSource
+     */
+    public float[] getGreedyFace(BlockGetter world, BlockPos pos, BlockState block, Direction direction) {
+        if (!isGreedyMeshable(block) || !canRenderFace(world, pos, block, direction)) {
+            return null;
+        }
+        return blockModelMap.get(block).get().getCubeFaceUv(direction);
+    }
+
+    private RenderTable getRenderTable() {
+        var table = renderTable;
+        var registry = Registries.getBlockRegistry();
+        int generation = this.generation;
+        if (table == null || table.generation != generation
+                || table.registry != registry || table.stateIdVersion != registry.getStateIdVersion()) {
+            table = renderTable = new RenderTable(registry, generation);
+        }
+        return table;
+    }
+
     public void dispose() {
         blockModelMap.values().forEach(Asset::dispose);
     }
@@ -91,4 +241,46 @@ public final class BlockRenderManagerImpl implements BlockRenderManager {
     public Map<Block, RenderType> getBlockRenderTypeMap() {
         return blockRenderTypeMap;
     }
+
+    /**
+     * Render properties of all block states, indexed by state id.
+     */
+    private final class RenderTable {
+        private final BlockRegistry registry;
+        private final int stateIdVersion;
+        private final int generation;
+        private final RenderType[] renderTypes;
+        /**
+         * Bit set of the directions in which the model has a full face, see {@link BakedModel#isFullFace(Direction)}.
+         */
+        private final byte[] fullFaces;
+        private final BakedModel[] models;
+        private final boolean[] greedyMeshable;
+
+        private RenderTable(BlockRegistry registry, int generation) {
+            this.registry = registry;
+            this.stateIdVersion = registry.getStateIdVersion();
+            this.generation = generation;
+            int count = 0;
+            while (registry.getStateFromId(count) != null) count++;
+            renderTypes = new RenderType[count];
+            fullFaces = new byte[count];
+            models = new BakedModel[count];
+            greedyMeshable = new boolean[count];
+            for (int id = 0; id < count; id++) {
+                BlockState state = registry.getStateFromId(id);
+                renderTypes[id] = blockRenderTypeMap.get(state.getPrototype());
+                Asset<BakedModel> asset = blockModelMap.get(state);
+                if (asset == null) continue;
+                BakedModel model = asset.get();
+                models[id] = model;
+                for (var direction : Direction.values()) {
+                    if (model.isFullFace(direction)) {
+                        fullFaces[id] |= 1 << direction.index;
+                    }
+                }
+                greedyMeshable[id] = isGreedyMeshable(state);
+            }
+        }
+    }
 }
@@ -3,12 +3,14 @@ package engine.graphics.model.voxel.block;
 import engine.client.asset.AssetURL;
 import engine.graphics.math.RenderingMath;
 import engine.graphics.math.Transform;
+import engine.graphics.model.AmbientOcclusion;
 import engine.graphics.model.DisplayType;
 import engine.graphics.model.ModelUtils;
 import engine.graphics.model.voxel.Model;
 import engine.graphics.texture.TextureAtlasRegion;
 import engine.graphics.vertex.VertexDataBuf;
 import engine.util.Direction;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
 import org.joml.Vector2f;
 import org.joml.Vector2fc;
 import org.joml.Vector3fc;
@@ -17,6 +19,7 @@ import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static engine.graphics.model.AmbientOcclusion.MAX_LEVEL;
 import static engine.graphics.model.voxel.ModelLoadUtils.fillTransformationArray;
 
 public final class BlockModel implements Model {
@@ -32,10 +35,36 @@ public final class BlockModel implements Model {
 
     @Override
     public engine.graphics.model.BakedModel bake(Function<AssetURL, TextureAtlasRegion> textureGetter) {
-        Map<Integer, List<float[]>> vertexes = new HashMap<>();
+        SortedMap<Integer, FloatArrayList> vertexes = new TreeMap<>();
         bakeModel(this, vertexes, textureGetter);
         fillTransformationArray(transforms);
-        return new BakedModel(Map.copyOf(vertexes), fullFaces, transforms);
+        return new BakedModel(vertexes, fullFaces, transforms, bakeCubeFaceUvs(textureGetter));
+    }
+
+    /**
+     * @return texture region of each face if the model is a single unit cube whose faces are culled by their own side,
+     * otherwise null
+     */
+    private float[][] bakeCubeFaceUvs(Function<AssetURL, TextureAtlasRegion> textureGetter) {
+        Cube cube = null;
+        for (var model = this; model != null; model = model.resolvedParent) {
+            for (var modelCube : model.cubes) {
+                if (cube != null) return null;
+                cube = modelCube;
+            }
+        }
+        if (cube == null || !cube.from.equals(0, 0, 0) || !cube.to.equals(1, 1, 1)) {
+            return null;
+        }
+        var uvs = new float[6][];
+        for (Direction direction : Direction.values()) {
+            var face = cube.faces[direction.index];
+            if (face == null || face.cullFaces != ModelUtils.toDirectionInt(direction)) {
+                return null;
+            }
+            uvs[direction.index] = getFaceUv(this, face, textureGetter);
+        }
+        return uvs;
     }
 
     @Override
@@ -43,7 +72,7 @@ public final class BlockModel implements Model {
         return requestTextures.stream().filter(BlockModelLoader::isResolvedTexture).collect(Collectors.toList());
     }
 
-    private void bakeModel(BlockModel data, Map<Integer, List<float[]>> vertexes, Function<AssetURL, TextureAtlasRegion> textureGetter) {
+    private void bakeModel(BlockModel data, Map<Integer, FloatArrayList> vertexes, Function<AssetURL, TextureAtlasRegion> textureGetter) {
         if (data.resolvedParent != null) {
             bakeParentModel(data, data.resolvedParent, vertexes, textureGetter);
         }
@@ -55,12 +84,12 @@ public final class BlockModel implements Model {
                 if (face == null)
                     continue;
 
-                bakeFace(data, cube, face, direction, vertexes.computeIfAbsent(face.cullFaces, key -> new ArrayList<>()), textureGetter);
+                bakeFace(data, cube, face, direction, vertexes.computeIfAbsent(face.cullFaces, key -> new FloatArrayList()), textureGetter);
             }
         }
     }
 
-    private void bakeParentModel(BlockModel bakingModel, BlockModel parent, Map<Integer, List<float[]>> vertexes, Function<AssetURL, TextureAtlasRegion> textureGetter) {
+    private void bakeParentModel(BlockModel bakingModel, BlockModel parent, Map<Integer, FloatArrayList> vertexes, Function<AssetURL, TextureAtlasRegion> textureGetter) {
         if (parent.resolvedParent != null) {
             bakeParentModel(bakingModel, parent.resolvedParent, vertexes, textureGetter);
         }
@@ -72,67 +101,157 @@ public final class BlockModel implements Model {
                 if (face == null)
                     continue;
 
-                bakeFace(bakingModel, cube, face, direction, vertexes.computeIfAbsent(face.cullFaces, key -> new ArrayList<>()), textureGetter);
+                bakeFace(bakingModel, cube, face, direction, vertexes.computeIfAbsent(face.cullFaces, key -> new FloatArrayList()), textureGetter);
             }
         }
     }
 
-    private void bakeFace(BlockModel bakingModel, Cube cube, Face face, Direction direction, List<float[]> mesh, Function<AssetURL, TextureAtlasRegion> textureGetter) {
+    private void bakeFace(BlockModel bakingModel, Cube cube, Face face, Direction direction, FloatArrayList mesh, Function<AssetURL, TextureAtlasRegion> textureGetter) {
+        var uv = getFaceUv(bakingModel, face, textureGetter);
+        var positions = cube.getFacePositions(direction);
+        bakeQuad(mesh, positions[0], positions[1], positions[2], positions[3], new Vector2f(uv[0], uv[1]), new Vector2f(uv[2], uv[3]));
+    }
+
+    private float[] getFaceUv(BlockModel bakingModel, Face face, Function<AssetURL, TextureAtlasRegion> textureGetter) {
         var textureAtlasPart = textureGetter.apply(BlockModelLoader.resolveTexture(face.texture.name, bakingModel.textures));
         var uv = face.texture.uv;
         var width = textureAtlasPart.getMaxU() - textureAtlasPart.getMinU();
         var height = textureAtlasPart.getMaxV() - textureAtlasPart.getMinV();
-        var minU = textureAtlasPart.getMinU() + width * uv.x();
-        var maxU = textureAtlasPart.getMinU() + width * uv.z();
-        var minV = textureAtlasPart.getMinV() + height * uv.y();
-        var maxV = textureAtlasPart.getMinV() + height * uv.w();
-        var positions = cube.getFacePositions(direction);
-        bakeQuad(mesh, positions[0], positions[1], positions[2], positions[3], new Vector2f(minU, minV), new Vector2f(maxU, maxV));
+        return new float[]{
+                textureAtlasPart.getMinU() + width * uv.x(),
+                textureAtlasPart.getMinV() + height * uv.y(),
+                textureAtlasPart.getMinU() + width * uv.z(),
+                textureAtlasPart.getMinV() + height * uv.w()};
     }
 
-    private void bakeQuad(List<float[]> vertexes, Vector3fc v1, Vector3fc v2, Vector3fc v3, Vector3fc v4, Vector2fc minUv, Vector2fc maxUv) {
+    /**
+     * Adds the four corners of the quad, which is drawn as the triangles (1, 2, 3) and (1, 3, 4).
+     */
+    private void bakeQuad(FloatArrayList vertexes, Vector3fc v1, Vector3fc v2, Vector3fc v3, Vector3fc v4, Vector2fc minUv, Vector2fc maxUv) {
         var normal = RenderingMath.calcNormalByVertices(v1, v2, v3);
         var normal1 = RenderingMath.calcNormalByVertices(v1, v3, v4);
 
-        vertexes.add(new float[]{v1.x(), v1.y(), v1.z(), minUv.x(), maxUv.y(), normal.x(), normal.y(), normal.z()}); // 1
-        vertexes.add(new float[]{v2.x(), v2.y(), v2.z(), maxUv.x(), maxUv.y(), normal.x(), normal.y(), normal.z()}); // 2
-        vertexes.add(new float[]{v3.x(), v3.y(), v3.z(), maxUv.x(), minUv.y(), normal.x(), normal.y(), normal.z()}); // 3
-
-        vertexes.add(new float[]{v1.x(), v1.y(), v1.z(), minUv.x(), maxUv.y(), normal.x(), normal.y(), normal.z()}); // 1
-        vertexes.add(new float[]{v3.x(), v3.y(), v3.z(), maxUv.x(), minUv.y(), normal.x(), normal.y(), normal.z()}); // 3
-        vertexes.add(new float[]{v4.x(), v4.y(), v4.z(), minUv.x(), minUv.y(), normal1.x(), normal1.y(), normal1.z()}); // 4
+        vertexes.addElements(vertexes.size(), new float[]{
+                v1.x(), v1.y(), v1.z(), minUv.x(), maxUv.y(), normal.x(), normal.y(), normal.z(), // 1
+                v2.x(), v2.y(), v2.z(), maxUv.x(), maxUv.y(), normal.x(), normal.y(), normal.z(), // 2
+                v3.x(), v3.y(), v3.z(), maxUv.x(), minUv.y(), normal.x(), normal.y(), normal.z(), // 3
+                v4.x(), v4.y(), v4.z(), minUv.x(), minUv.y(), normal1.x(), normal1.y(), normal1.z()}); // 4
     }
 
+    /**
+     * Baked geometry in one array, the quads of each cull face are contiguous.
+     */
     private static final class BakedModel implements engine.graphics.model.BakedModel {
 
-        private final Map<Integer, List<float[]>> vertexes;
+        /**
+         * Floats of a vertex: position, texture coordinates and normal.
+         */
+        private static final int VERTEX_SIZE = 8;
+        private static final int QUAD_SIZE = 4 * VERTEX_SIZE;
+
+        private final float[] vertexes;
+        /**
+         * Cull faces of the quad groups, see {@link ModelUtils#checkCullFace(int, int)}.
+         */
+        private final int[] cullFaces;
+        /**
+         * Start of each quad group in the vertexes, followed by the end of the last group.
+         */
+        private final int[] offsets;
         private final boolean[] fullFaces;
         private final Transform[] transforms;
+        private final float[][] cubeFaceUvs;
 
-        BakedModel(Map<Integer, List<float[]>> vertexes, boolean[] fullFaces, Transform[] transforms) {
-            this.vertexes = vertexes;
+        BakedModel(SortedMap<Integer, FloatArrayList> vertexes, boolean[] fullFaces, Transform[] transforms, float[][] cubeFaceUvs) {
+            this.cullFaces = new int[vertexes.size()];
+            this.offsets = new int[vertexes.size() + 1];
+            int group = 0, size = 0;
+            for (var entry : vertexes.entrySet()) {
+                cullFaces[group] = entry.getKey();
+                offsets[group++] = size;
+                size += entry.getValue().size();
+            }
+            offsets[group] = size;
+            this.vertexes = new float[size];
+            group = 0;
+            for (var quads : vertexes.values()) {
+                quads.getElements(0, this.vertexes, offsets[group++], quads.size());
+            }
             this.fullFaces = fullFaces;
             this.transforms = transforms;
+            this.cubeFaceUvs = cubeFaceUvs;
         }
 
         @Override
         public void putVertexes(VertexDataBuf buffer, int coveredFace) {
-            for (var vertexes : this.vertexes.entrySet()) {
-                if (ModelUtils.checkCullFace(coveredFace, vertexes.getKey())) {
+            for (int group = 0; group < cullFaces.length; group++) {
+                if (ModelUtils.checkCullFace(coveredFace, cullFaces[group])) {
                     continue;
                 }
 
-                for (var vertex : vertexes.getValue()) {
-                    buffer.pos(vertex, 0).rgba(1, 1, 1, 1).tex(vertex, 3).normal(vertex, 5).endVertex();
+                for (int quad = offsets[group], end = offsets[group + 1]; quad < end; quad += QUAD_SIZE) {
+                    putVertex(buffer, quad, MAX_LEVEL);
+                    putVertex(buffer, quad + VERTEX_SIZE, MAX_LEVEL);
+                    putVertex(buffer, quad + 2 * VERTEX_SIZE, MAX_LEVEL);
+                    putVertex(buffer, quad, MAX_LEVEL);
+                    putVertex(buffer, quad + 2 * VERTEX_SIZE, MAX_LEVEL);
+                    putVertex(buffer, quad + 3 * VERTEX_SIZE, MAX_LEVEL);
                 }
             }
         }
 
+        @Override
+        public void putVertexes(VertexDataBuf buffer, int coveredFace, int occluders) {
+            for (int group = 0; group < cullFaces.length; group++) {
+                if (ModelUtils.checkCullFace(coveredFace, cullFaces[group])) {
+                    continue;
+                }
+
+                for (int quad = offsets[group], end = offsets[group + 1]; quad < end; quad += QUAD_SIZE) {
+                    int v1 = quad, v2 = quad + VERTEX_SIZE, v3 = quad + 2 * VERTEX_SIZE, v4 = quad + 3 * VERTEX_SIZE;
+                    Direction facing = AmbientOcclusion.getFacing(vertexes[v1 + 5], vertexes[v1 + 6], vertexes[v1 + 7]);
+                    int level1 = getLevel(occluders, v1, facing);
+                    int level2 = getLevel(occluders, v2, facing);
+                    int level3 = getLevel(occluders, v3, facing);
+                    int level4 = getLevel(occluders, v4, facing);
+                    if (AmbientOcclusion.isFlipped(level1, level2, level3, level4)) {
+                        putVertex(buffer, v2, level2);
+                        putVertex(buffer, v3, level3);
+                        putVertex(buffer, v4, level4);
+                        putVertex(buffer, v2, level2);
+                        putVertex(buffer, v4, level4);
+                        putVertex(buffer, v1, level1);
+                    } else {
+                        putVertex(buffer, v1, level1);
+                        putVertex(buffer, v2, level2);
+                        putVertex(buffer, v3, level3);
+                        putVertex(buffer, v1, level1);
+                        putVertex(buffer, v3, level3);
+                        putVertex(buffer, v4, level4);
+                    }
+                }
+            }
+        }
+
+        private int getLevel(int occluders, int vertex, Direction facing) {
+            return AmbientOcclusion.getVertexLevel(occluders, vertexes[vertex], vertexes[vertex + 1], vertexes[vertex + 2], facing);
+        }
+
+        private void putVertex(VertexDataBuf buffer, int vertex, int level) {
+            float shade = AmbientOcclusion.getShade(level);
+            buffer.pos(vertexes, vertex).rgba(shade, shade, shade, 1).tex(vertexes, vertex + 3).normal(vertexes, vertex + 5).texRegion(0, 0, 0, 0).endVertex();
+        }
+
         @Override
         public boolean isFullFace(Direction direction) {
             return fullFaces[direction.index];
         }
 
+        @Override
+        public float[] getCubeFaceUv(Direction direction) {
+            return cubeFaceUvs == null ? null : cubeFaceUvs[direction.index];
+        }
+
         @Override
         public Transform getTransformation(DisplayType type) {
             return transforms[type.ordinal()];
@@ -7,6 +7,12 @@ import java.util.Map;
 
 public class TextureAtlasImpl implements TextureAtlas {
 
+    /**
+     * Padding around each texture, which allows 3 mipmap levels without bleeding.
+     */
+    private static final int PADDING = 4;
+    private static final int MIPMAP_LEVELS = 3;
+
     private final Map<AssetURL, TextureAtlasRegionImpl> textures = new HashMap<>();
 
     private Texture2D texture;
@@ -28,9 +34,13 @@ public class TextureAtlasImpl implements TextureAtlas {
 
     @Override
     public void reload() {
-        var textureMap = new TextureAtlasBuilder();
+        // Decodes the textures in parallel, the builder packs them in a deterministic order afterwards.
+        textures.values().parallelStream().forEach(TextureAtlasRegionImpl::reload);
+        // Padded textures aren't power of two sized, MaxRects packs them tighter than the quadtree.
+        var textureMap = new TextureAtlasBuilder(new MaxRectsPacker(512));
+        textureMap.setPadding(PADDING);
+        textureMap.setMaxMipmapLevels(MIPMAP_LEVELS);
         for (var part : textures.values()) {
-            part.reload();
             part.setUv(textureMap.add(part.getData()));
         }
 
@@ -38,7 +48,14 @@ public class TextureAtlasImpl implements TextureAtlas {
         if (texture != null) {
             texture.dispose();
         }
-        texture = Texture2D.builder().build(textureMap.getResult());
+        int levels = textureMap.getMipmapLevels();
+        texture = Texture2D.builder()
+                .mipmapLevels(levels)
+                .minFilter(levels > 1 ? FilterMode.NEAREST_MIPMAP_LINEAR : FilterMode.NEAREST)
+                .build(textureMap.getResult());
+        for (int level = 1; level < levels; level++) {
+            texture.upload(level, textureMap.getMipmap(level));
+        }
         textureMap.dispose();
     }
 
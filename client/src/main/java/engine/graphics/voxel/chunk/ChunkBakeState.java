@@ -0,0 +1,60 @@
+package engine.graphics.voxel.chunk;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Versions the changes of a chunk against its bakes, so that at most one bake of the chunk is running and at most one
+ * more is pending, however often the chunk changes.
+ * <p>
+ * Every change increments the version. A bake takes the current version, and its result is stale if the version
+ * changed meanwhile, in which case the chunk is still dirty and is baked again after it.
+ */
+final class ChunkBakeState {
+
+    public static final int NONE = -1;
+
+    private final AtomicInteger version = new AtomicInteger();
+    private final AtomicBoolean baking = new AtomicBoolean();
+    /**
+     * Version of the last started bake.
+     */
+    private volatile int bakeVersion = NONE;
+
+    public void markDirty() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return true if the chunk changed since the last started bake
+     */
+    public boolean isDirty() {
+        return version.get() != bakeVersion;
+    }
+
+    public boolean isBaking() {
+        return baking.get();
+    }
+
+    /**
+     * Starts a bake if the chunk is dirty and no bake is running.
+     *
+     * @return version of the chunk to bake, or {@link #NONE} if no bake is started
+     */
+    public int tryStart() {
+        if (!isDirty() || !baking.compareAndSet(false, true)) return NONE;
+        int version = this.version.get();
+        bakeVersion = version;
+        return version;
+    }
+
+    /**
+     * Ends the running bake, the caller should try to start another one if the chunk is still dirty.
+     *
+     * @return true if the result of the bake is current, false if the chunk changed during the bake
+     */
+    public boolean finish(int version) {
+        baking.set(false);
+        return this.version.get() == version;
+    }
+}
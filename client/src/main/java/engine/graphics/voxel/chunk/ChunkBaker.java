@@ -1,6 +1,6 @@
 package engine.graphics.voxel.chunk;
 
-import engine.block.state.BlockState;
+import engine.Platform;
 import engine.graphics.GraphicsEngine;
 import engine.graphics.block.BlockRenderManager;
 import engine.graphics.block.BlockRenderManagerImpl;
@@ -8,12 +8,8 @@ import engine.graphics.queue.RenderType;
 import engine.graphics.vertex.VertexDataBuf;
 import engine.graphics.vertex.VertexDataBufPool;
 import engine.graphics.vertex.VertexFormat;
-import engine.math.BlockPos;
-import engine.world.BlockGetter;
-import engine.world.World;
-import engine.world.chunk.Chunk;
-import engine.world.util.BlockPosIterator;
-import engine.world.util.ChunkCache;
+import engine.world.util.ChunkSnapshot;
+import org.joml.Vector3ic;
 
 import java.util.HashMap;
 import java.util.concurrent.PriorityBlockingQueue;
@@ -22,8 +18,33 @@ import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static engine.world.chunk.ChunkConstants.*;
+
 public final class ChunkBaker {
 
+    /**
+     * Merges the faces of opaque full cubes into larger quads, see {@link GreedyMesher}.
+     */
+    private static final boolean GREEDY_MESHING = Boolean.parseBoolean(System.getProperty("engine.chunk.greedyMeshing", "false"));
+    /**
+     * Writes opaque geometry in {@link VertexFormat#POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_PACKED}. Greedy meshing takes
+     * precedence, since merged quads have texture coordinates beyond [0, 1].
+     */
+    private static final boolean PACKED_VERTICES = Boolean.parseBoolean(System.getProperty("engine.chunk.packedVertices", "false"));
+
+    /**
+     * Distance in chunks beyond which chunks are baked at half resolution, and at a quarter beyond twice the distance,
+     * see {@link ChunkLodMesher}. 0 disables the levels of detail.
+     */
+    private static final int LOD_DISTANCE = Integer.getInteger("engine.chunk.lodDistance", 0);
+
+    /**
+     * Maximum direct memory in bytes held by the vertex buffers of the bakers.
+     */
+    private static final long BUFFER_POOL_BUDGET = Long.getLong("engine.chunk.bufferPoolBudget", 256L << 20);
+
+    private static final ThreadLocal<ChunkVisibility> chunkVisibility = ThreadLocal.withInitial(ChunkVisibility::new);
+
     private static ThreadPoolExecutor executor;
     private static VertexDataBufPool dataBufPool;
 
@@ -39,7 +60,7 @@ public final class ChunkBaker {
                 return new Thread(r, "Chunk Baker " + poolNumber.getAndIncrement());
             }
         });
-        dataBufPool = VertexDataBufPool.create(0x200000, threadCount * 8);
+        dataBufPool = VertexDataBufPool.create(0x200000, threadCount * 8, BUFFER_POOL_BUDGET);
     }
 
     public static void stop() {
@@ -50,61 +71,150 @@ public final class ChunkBaker {
         executor.execute(task);
     }
 
+    public static boolean isLodEnabled() {
+        return LOD_DISTANCE > 0;
+    }
+
+    /**
+     * @param sqDistance squared distance from the camera to the center of the chunk
+     * @return blocks of a cell of the level of detail on each axis, 1 for full detail
+     */
+    public static int getLodScale(double sqDistance) {
+        if (LOD_DISTANCE <= 0) return 1;
+        double distance = LOD_DISTANCE * CHUNK_X_SIZE;
+        if (sqDistance > 4 * distance * distance) return 4;
+        if (sqDistance > distance * distance) return 2;
+        return 1;
+    }
+
     private ChunkBaker() {
     }
 
     public static final class Task implements Runnable, Comparable<Task> {
 
         private final DrawableChunk drawableChunk;
+        private final ChunkSnapshot snapshot;
+        private final int version;
         private final double sqDistance;
+        private final int lodScale;
 
-        public Task(DrawableChunk drawableChunk, double sqDistance) {
+        /**
+         * @param snapshot blocks of the chunk to bake, or null if the chunk is air
+         * @param version  version of the chunk in the snapshot, see {@link ChunkBakeState}
+         */
+        public Task(DrawableChunk drawableChunk, ChunkSnapshot snapshot, int version, double sqDistance) {
             this.drawableChunk = drawableChunk;
+            this.snapshot = snapshot;
+            this.version = version;
             this.sqDistance = sqDistance;
+            this.lodScale = getLodScale(sqDistance);
         }
 
+        /**
+         * Ends the bake and returns the buffers to the pool if it fails, so that the chunk can be baked again. The
+         * chunk is baked once more right away if it changed during the bake.
+         */
         @Override
         public void run() {
+            VertexDataBuf opaqueBuf = null, translucentBuf = null;
+            boolean ended = false;
             try {
-                drawableChunk.clearDirty();
-                Chunk chunk = drawableChunk.getChunk();
-                if (chunk == null || chunk.isAirChunk()) {
-                    drawableChunk.terminateBake();
+                if (snapshot == null || drawableChunk.getChunk() == null) {
+                    GraphicsEngine.getGraphicsBackend().submitTask(() -> {
+                        drawableChunk.setVisibility(ChunkVisibility.ALL);
+                        terminateBake();
+                    });
+                    ended = true;
                     return;
                 }
-                BlockRenderManager blockRenderManager = BlockRenderManager.instance();
+                var blockRenderManager = (BlockRenderManagerImpl) BlockRenderManager.instance();
                 var bufs = new HashMap<RenderType, VertexDataBuf>();
-                bufs.put(RenderType.OPAQUE, dataBufPool.get());
-                bufs.put(RenderType.TRANSLUCENT, dataBufPool.get());
+                opaqueBuf = dataBufPool.get();
+                translucentBuf = dataBufPool.get();
+                bufs.put(RenderType.OPAQUE, opaqueBuf);
+                bufs.put(RenderType.TRANSLUCENT, translucentBuf);
 //                bufs.put(RenderType.TRANSPARENT, dataBufPool.get()); //TODO: when transparent and translucent handles differently, use it
-                bufs.forEach((type, buf) -> buf.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL));
-                BlockGetter blockCache = createChunkCache(chunk.getWorld(), chunk);
-                BlockPosIterator blockPosIterator = BlockPosIterator.createFromChunk(chunk);
-                while (blockPosIterator.hasNext()) {
-                    BlockPos pos = blockPosIterator.next();
-                    BlockState block = blockCache.getBlock(pos);
-                    var renderType = ((BlockRenderManagerImpl) blockRenderManager).getBlockRenderTypeMap().get(block.getPrototype());
-                    if (renderType == RenderType.TRANSPARENT)
-                        renderType = RenderType.TRANSLUCENT; //TODO: when transparent and translucent handles differently, remove it
-                    if (!bufs.containsKey(renderType)) continue;
-                    blockRenderManager.generateMesh(block, blockCache, pos, bufs.get(renderType));
+                opaqueBuf.begin(getOpaqueVertexFormat());
+                translucentBuf.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL);
+                ChunkVisibility visibility = chunkVisibility.get();
+                visibility.clear();
+                Vector3ic min = snapshot.getMin();
+                int maxX = min.x() + CHUNK_X_SIZE, maxY = min.y() + CHUNK_Y_SIZE, maxZ = min.z() + CHUNK_Z_SIZE;
+                for (int z = min.z(); z < maxZ; z++) {
+                    for (int y = min.y(); y < maxY; y++) {
+                        for (int x = min.x(); x < maxX; x++) {
+                            int stateId = snapshot.getBlockId(x, y, z);
+                            var renderType = blockRenderManager.getRenderType(stateId);
+                            if (blockRenderManager.isOpaqueCube(stateId)) visibility.setOpaque(x, y, z);
+                            if (lodScale > 1) continue;
+                            VertexDataBuf buf;
+                            if (renderType == RenderType.OPAQUE) {
+                                if (GREEDY_MESHING && blockRenderManager.isGreedyMeshable(stateId)) continue;
+                                buf = opaqueBuf;
+                            } else if (renderType == RenderType.TRANSLUCENT || renderType == RenderType.TRANSPARENT) { //TODO: when transparent and translucent handles differently, split it
+                                buf = translucentBuf;
+                            } else {
+                                continue;
+                            }
+                            blockRenderManager.generateMesh(snapshot, x, y, z, stateId, buf);
+                        }
+                    }
+                }
+                if (lodScale > 1) {
+                    opaqueBuf.setTranslation(0, 0, 0);
+                    new ChunkLodMesher().mesh(snapshot::getBlockId, min.x(), min.y(), min.z(), lodScale,
+                            blockRenderManager::getLodFace, opaqueBuf);
+                } else if (GREEDY_MESHING) {
+                    opaqueBuf.setTranslation(0, 0, 0);
+                    new GreedyMesher().mesh(snapshot, min.x(), min.y(), min.z(), blockRenderManager::getGreedyFace,
+                            (x, y, z) -> blockRenderManager.getOccluders(snapshot, x, y, z), opaqueBuf);
                 }
                 bufs.values().forEach(VertexDataBuf::finish);
+                long faceVisibility = visibility.compute();
 
                 GraphicsEngine.getGraphicsBackend().submitTask(() -> {
-                    drawableChunk.finishBake(bufs);
-                    bufs.values().forEach(buf -> dataBufPool.free(buf));
+                    try {
+                        drawableChunk.setVisibility(faceVisibility);
+                        drawableChunk.finishBake(bufs, version, lodScale);
+                    } finally {
+                        bufs.values().forEach(buf -> dataBufPool.free(buf));
+                    }
                     if (drawableChunk.isDisposed()) return;
                     if (drawableChunk.isDirty()) drawableChunk.executeBake();
                 });
+                ended = true;
             } catch (InterruptedException ignored) {
+            } catch (RuntimeException e) {
+                if (snapshot == null) Platform.getLogger().error("Cannot bake air chunk", e);
+                else Platform.getLogger().error("Cannot bake chunk at {}", snapshot.getMin(), e);
+            } finally {
+                if (!ended) {
+                    release(opaqueBuf);
+                    release(translucentBuf);
+                    GraphicsEngine.getGraphicsBackend().submitTask(this::terminateBake);
+                }
             }
         }
 
-        private ChunkCache createChunkCache(World world, Chunk chunk) {
-            return ChunkCache.create(world,
-                    chunk.getX() - 1, chunk.getY() - 1, chunk.getZ() - 1,
-                    chunk.getX() + 1, chunk.getY() + 1, chunk.getZ() + 1);
+        /**
+         * Ends the bake on the game thread, where the chunk is snapshotted for the next bake if it changed meanwhile.
+         */
+        private void terminateBake() {
+            drawableChunk.terminateBake(version);
+            if (drawableChunk.isDisposed()) return;
+            if (drawableChunk.isDirty()) drawableChunk.executeBake();
+        }
+
+        private static void release(VertexDataBuf buf) {
+            if (buf == null) return;
+            if (!buf.isReady()) buf.discard();
+            dataBufPool.free(buf);
+        }
+
+        private VertexFormat getOpaqueVertexFormat() {
+            if (GREEDY_MESHING || lodScale > 1) return VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION;
+            if (PACKED_VERTICES) return VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_PACKED;
+            return VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL;
         }
 
         @Override
@@ -0,0 +1,121 @@
+package engine.graphics.voxel.chunk;
+
+import engine.graphics.vertex.VertexDataBuf;
+import engine.util.Direction;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+import static engine.world.chunk.ChunkConstants.CHUNK_X_SIZE;
+
+/**
+ * Builds a low detail mesh of a chunk, in which each cell of scale × scale × scale blocks is drawn as one cube.
+ * <p>
+ * A cell is solid if most of its blocks are solid, and takes the faces of its highest solid block so that the terrain
+ * keeps its surface material. Faces between solid cells are skipped, while the faces of solid cells on the chunk
+ * border are always drawn. They act as skirts which hide the cracks against neighbors at another level of detail, and
+ * keep the mesh closed.
+ * <p>
+ * Quads use texture coordinates in blocks together with the texture region like {@link GreedyMesher}, so the buffer
+ * must use a vertex format with texture region.
+ */
+public final class ChunkLodMesher {
+
+    private static final int EMPTY = -1;
+
+    private final float[] positions = new float[12];
+
+    @FunctionalInterface
+    public interface BlockSource {
+        int getBlockId(int x, int y, int z);
+    }
+
+    /**
+     * Source of the faces of solid blocks.
+     */
+    @FunctionalInterface
+    public interface FaceSource {
+        /**
+         * @return texture region (min u, min v, max u, max v) of the face, or null if the block isn't solid
+         */
+        @Nullable
+        float[] getFace(int stateId, Direction direction);
+    }
+
+    /**
+     * Positions are written relative to the origin, on top of the translation of the buffer.
+     *
+     * @param scale blocks of a cell on each axis, a power of two up to the chunk size
+     * @return number of quads written to the buffer
+     */
+    public int mesh(BlockSource blocks, int originX, int originY, int originZ, int scale, FaceSource faces, VertexDataBuf buffer) {
+        if (scale <= 0 || (scale & scale - 1) != 0 || scale > CHUNK_X_SIZE) {
+            throw new IllegalArgumentException("Scale must be a power of two up to " + CHUNK_X_SIZE + ": " + scale);
+        }
+        int size = CHUNK_X_SIZE / scale;
+        int[] cells = sample(blocks, originX, originY, originZ, scale, size, faces);
+        int quadCount = 0;
+        for (int z = 0; z < size; z++) {
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    int stateId = cells[x + (y + z * size) * size];
+                    if (stateId == EMPTY) continue;
+                    for (Direction direction : Direction.values()) {
+                        int neighborX = x + direction.offsetX, neighborY = y + direction.offsetY, neighborZ = z + direction.offsetZ;
+                        boolean border = neighborX < 0 || neighborX >= size || neighborY < 0 || neighborY >= size || neighborZ < 0 || neighborZ >= size;
+                        if (!border && cells[neighborX + (neighborY + neighborZ * size) * size] != EMPTY) continue;
+                        putQuad(direction, x * scale, y * scale, z * scale, scale, faces.getFace(stateId, direction), buffer);
+                        quadCount++;
+                    }
+                }
+            }
+        }
+        return quadCount;
+    }
+
+    /**
+     * @return state id of the highest solid block of each cell, or {@link #EMPTY} if most blocks of the cell aren't solid
+     */
+    private static int[] sample(BlockSource blocks, int originX, int originY, int originZ, int scale, int size, FaceSource faces) {
+        int[] cells = new int[size * size * size];
+        Arrays.fill(cells, EMPTY);
+        int majority = scale * scale * scale / 2 + 1;
+        for (int cellZ = 0; cellZ < size; cellZ++) {
+            for (int cellY = 0; cellY < size; cellY++) {
+                for (int cellX = 0; cellX < size; cellX++) {
+                    int solidCount = 0, top = EMPTY;
+                    for (int y = scale - 1; y >= 0; y--) {
+                        for (int z = 0; z < scale; z++) {
+                            for (int x = 0; x < scale; x++) {
+                                int stateId = blocks.getBlockId(originX + cellX * scale + x, originY + cellY * scale + y, originZ + cellZ * scale + z);
+                                if (faces.getFace(stateId, Direction.UP) == null) continue;
+                                solidCount++;
+                                if (top == EMPTY) top = stateId;
+                            }
+                        }
+                    }
+                    if (solidCount >= majority) {
+                        cells[cellX + (cellY + cellZ * size) * size] = top;
+                    }
+                }
+            }
+        }
+        return cells;
+    }
+
+    private void putQuad(Direction direction, int x, int y, int z, int scale, float[] face, VertexDataBuf buffer) {
+        GreedyMesher.setCorners(positions, direction, x, y, z, x + scale, y + scale, z + scale);
+        putVertex(buffer, 0, 0, scale, direction, face);
+        putVertex(buffer, 1, scale, scale, direction, face);
+        putVertex(buffer, 2, scale, 0, direction, face);
+        putVertex(buffer, 0, 0, scale, direction, face);
+        putVertex(buffer, 2, scale, 0, direction, face);
+        putVertex(buffer, 3, 0, 0, direction, face);
+    }
+
+    private void putVertex(VertexDataBuf buffer, int corner, float u, float v, Direction direction, float[] face) {
+        buffer.pos(positions, corner * 3).rgba(1, 1, 1, 1).tex(u, v)
+                .normal(direction.offsetX, direction.offsetY, direction.offsetZ)
+                .texRegion(face[0], face[1], face[2] - face[0], face[3] - face[1]).endVertex();
+    }
+}
@@ -0,0 +1,85 @@
+package engine.graphics.voxel.chunk;
+
+import engine.util.Direction;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.Arrays;
+
+import static engine.world.chunk.ChunkConstants.getChunkIndex;
+
+/**
+ * Finds the chunks which may be visible from the camera chunk, by a breadth first traversal over the faces of the
+ * chunks which can be seen from each other, see {@link ChunkVisibility}.
+ * <p>
+ * A chunk is entered through a face and left through any face visible from it, except in a direction opposite to one
+ * taken before, so that the traversal never turns back around an occluder. The traversal stops at unloaded chunks.
+ * <p>
+ * Not thread-safe, the result and the queue are reused.
+ */
+public final class ChunkOcclusionCuller {
+
+    public static final long UNLOADED = -1;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int ENTRY_SIZE = 5;
+
+    private final LongSet reachable = new LongOpenHashSet();
+    private int[] queue = new int[ENTRY_SIZE * 256];
+
+    @FunctionalInterface
+    public interface VisibilityGetter {
+        /**
+         * @return visibility of the chunk, or {@link #UNLOADED} if the chunk isn't loaded
+         */
+        long getVisibility(int chunkX, int chunkY, int chunkZ);
+    }
+
+    /**
+     * @return indexes of the reachable chunks, see {@link engine.world.chunk.ChunkConstants#getChunkIndex(int, int, int)},
+     * valid until the next traversal
+     */
+    public LongSet traverse(int chunkX, int chunkY, int chunkZ, VisibilityGetter chunks) {
+        reachable.clear();
+        reachable.add(getChunkIndex(chunkX, chunkY, chunkZ));
+        int head = 0, tail = 0;
+        // The camera chunk is left in any direction.
+        for (Direction direction : DIRECTIONS) {
+            tail = offer(chunkX + direction.offsetX, chunkY + direction.offsetY, chunkZ + direction.offsetZ,
+                    direction, 1 << direction.index, tail, chunks);
+        }
+        while (head < tail) {
+            int x = queue[head], y = queue[head + 1], z = queue[head + 2];
+            Direction entry = DIRECTIONS[queue[head + 3]];
+            int travelled = queue[head + 4];
+            long visibility = chunks.getVisibility(x, y, z);
+            head += ENTRY_SIZE;
+            for (Direction direction : DIRECTIONS) {
+                if ((travelled & 1 << direction.opposite) != 0) continue;
+                if (!ChunkVisibility.isVisible(visibility, entry, direction)) continue;
+                tail = offer(x + direction.offsetX, y + direction.offsetY, z + direction.offsetZ,
+                        direction, travelled | 1 << direction.index, tail, chunks);
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Queues the chunk if it is loaded and not reached yet.
+     *
+     * @param direction direction travelled into the chunk
+     * @return new tail of the queue
+     */
+    private int offer(int x, int y, int z, Direction direction, int travelled, int tail, VisibilityGetter chunks) {
+        if (chunks.getVisibility(x, y, z) == UNLOADED || !reachable.add(getChunkIndex(x, y, z))) return tail;
+        if (tail + ENTRY_SIZE > queue.length) {
+            queue = Arrays.copyOf(queue, queue.length * 2);
+        }
+        queue[tail] = x;
+        queue[tail + 1] = y;
+        queue[tail + 2] = z;
+        queue[tail + 3] = direction.opposite;
+        queue[tail + 4] = travelled;
+        return tail + ENTRY_SIZE;
+    }
+}
@@ -8,6 +8,7 @@ import engine.event.world.chunk.ChunkLoadEvent;
 import engine.event.world.chunk.ChunkUnloadEvent;
 import engine.graphics.GraphicsEngine;
 import engine.graphics.GraphicsManager;
+import engine.graphics.Node3D;
 import engine.graphics.Scene3D;
 import engine.graphics.viewport.Viewport;
 import engine.math.BlockPos;
@@ -15,6 +16,8 @@ import engine.world.World;
 import engine.world.chunk.Chunk;
 import io.netty.util.collection.LongObjectHashMap;
 import io.netty.util.collection.LongObjectMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.joml.Vector3fc;
 
 import java.util.LinkedList;
 import java.util.List;
@@ -24,9 +27,26 @@ import static engine.world.chunk.ChunkConstants.*;
 
 public final class ChunkRenderer {
 
+    /**
+     * Hides the chunks which can't be seen from the camera chunk, see {@link ChunkOcclusionCuller}.
+     */
+    private static final boolean OCCLUSION_CULLING = Boolean.parseBoolean(System.getProperty("engine.chunk.occlusionCulling", "true"));
+
     private final LongObjectMap<DrawableChunk> chunks = new LongObjectHashMap<>();
     private final Queue<DrawableChunk> recycleChunks = new LinkedList<>();
 
+    private final ChunkOcclusionCuller occlusionCuller = new ChunkOcclusionCuller();
+    /**
+     * Chunks marked dirty by block changes since the last frame.
+     */
+    private final DirtyChunkSet dirtyChunks = new DirtyChunkSet();
+    /**
+     * Flushes the dirty chunks, and updates the occlusion and the levels of detail of the chunks as the camera moves.
+     */
+    private final Node3D updateNode = new Node3D();
+    private volatile boolean occlusionDirty = true;
+    private long cameraChunkIndex;
+
     private final Scene3D scene;
     private final Viewport viewport;
     private final World world;
@@ -38,6 +58,8 @@ public final class ChunkRenderer {
         this.viewport = manager.getViewport();
         this.world = world;
         ChunkBaker.start();
+        updateNode.setController((node, tpf) -> update());
+        scene.addNode(updateNode);
         world.getLoadedChunks().forEach(this::addChunk);
         Platform.getEngine().getEventBus().register(this);
     }
@@ -74,6 +96,7 @@ public final class ChunkRenderer {
         chunks.put(index, drawableChunk);
         scene.addNode(drawableChunk);
         drawableChunk.markDirty();
+        markOcclusionDirty();
     }
 
     @Listener(order = Order.LAST)
@@ -91,6 +114,7 @@ public final class ChunkRenderer {
         removed.reset();
         scene.removeNode(removed);
         recycleChunks.add(removed);
+        markOcclusionDirty();
     }
 
     private void removeChunk(DrawableChunk chunk) {
@@ -107,44 +131,55 @@ public final class ChunkRenderer {
         ChunkBaker.stop();
         Platform.getEngine().getEventBus().unregister(this);
         List.copyOf(chunks.values()).forEach(this::removeChunk);
+        scene.removeNode(updateNode);
     }
 
-    @Listener(order = Order.LAST)
-    public void onBlockChange(BlockChangeEvent.Post event) {
-        BlockPos pos = event.getPos().toUnmodifiable();
-        int chunkX = pos.x() >> CHUNK_X_BITS,
-                chunkY = pos.y() >> CHUNK_Y_BITS,
-                chunkZ = pos.z() >> CHUNK_Z_BITS;
-        markChunkDirty(getChunkIndex(event.getPos()));
-
-        // Mark neighbor chunk dirty.
-        int chunkW = pos.x() + 1 >> CHUNK_X_BITS;
-        if (chunkW != chunkX) {
-            markChunkDirty(getChunkIndex(chunkW, chunkY, chunkZ));
-        }
-        chunkW = pos.x() - 1 >> CHUNK_X_BITS;
-        if (chunkW != chunkX) {
-            markChunkDirty(getChunkIndex(chunkW, chunkY, chunkZ));
-        }
-        chunkW = pos.y() + 1 >> CHUNK_Y_BITS;
-        if (chunkW != chunkY) {
-            markChunkDirty(getChunkIndex(chunkX, chunkW, chunkZ));
-        }
-        chunkW = pos.y() - 1 >> CHUNK_Y_BITS;
-        if (chunkW != chunkY) {
-            markChunkDirty(getChunkIndex(chunkX, chunkW, chunkZ));
+    /**
+     * Requests a new occlusion traversal, after a chunk is added, removed or its visibility has changed.
+     */
+    public void markOcclusionDirty() {
+        occlusionDirty = true;
+    }
+
+    private void update() {
+        if (disposed) return;
+        dirtyChunks.flush(this::markChunkDirty);
+        Vector3fc position = viewport.getCamera().getPosition();
+        int chunkX = (int) Math.floor(position.x()) >> CHUNK_X_BITS;
+        int chunkY = (int) Math.floor(position.y()) >> CHUNK_Y_BITS;
+        int chunkZ = (int) Math.floor(position.z()) >> CHUNK_Z_BITS;
+        long index = getChunkIndex(chunkX, chunkY, chunkZ);
+        boolean cameraMoved = index != cameraChunkIndex;
+        cameraChunkIndex = index;
+        if (cameraMoved && ChunkBaker.isLodEnabled()) {
+            chunks.values().forEach(DrawableChunk::updateLod);
         }
-        chunkW = pos.z() + 1 >> CHUNK_Z_BITS;
-        if (chunkW != chunkZ) {
-            markChunkDirty(getChunkIndex(chunkX, chunkY, chunkW));
+        if (OCCLUSION_CULLING && (cameraMoved || occlusionDirty)) {
+            updateOcclusion(chunkX, chunkY, chunkZ);
         }
-        chunkW = pos.z() - 1 >> CHUNK_Z_BITS;
-        if (chunkW != chunkZ) {
-            markChunkDirty(getChunkIndex(chunkX, chunkY, chunkW));
+    }
+
+    private void updateOcclusion(int chunkX, int chunkY, int chunkZ) {
+        occlusionDirty = false;
+        LongSet reachable = occlusionCuller.traverse(chunkX, chunkY, chunkZ, this::getVisibility);
+        for (LongObjectMap.PrimitiveEntry<DrawableChunk> entry : chunks.entries()) {
+            entry.value().setOccluded(!reachable.contains(entry.key()));
         }
     }
 
+    private long getVisibility(int chunkX, int chunkY, int chunkZ) {
+        DrawableChunk chunk = chunks.get(getChunkIndex(chunkX, chunkY, chunkZ));
+        return chunk == null ? ChunkOcclusionCuller.UNLOADED : chunk.getVisibility();
+    }
+
+    @Listener(order = Order.LAST)
+    public void onBlockChange(BlockChangeEvent.Post event) {
+        BlockPos pos = event.getPos();
+        dirtyChunks.addBlock(pos.x(), pos.y(), pos.z());
+    }
+
     private void markChunkDirty(long index) {
-        chunks.get(index).markDirty();
+        DrawableChunk chunk = chunks.get(index);
+        if (chunk != null) chunk.markDirty();
     }
 }
@@ -0,0 +1,124 @@
+package engine.graphics.voxel.chunk;
+
+import engine.util.Direction;
+
+import java.util.Arrays;
+
+import static engine.world.chunk.ChunkConstants.*;
+
+/**
+ * Face to face visibility of a chunk, which faces of the chunk can be seen from each other through the blocks which
+ * are not opaque.
+ * <p>
+ * A visibility is a set of face pairs encoded in a long, with bit {@code from * 6 + to} set if the face {@code to} can
+ * be seen through the face {@code from}, see {@link #isVisible(long, Direction, Direction)}. It is computed by flood
+ * filling the connected regions of cells which are not opaque, every region connects all the faces it touches.
+ * <p>
+ * Not thread-safe, the flood fill buffers are reused.
+ */
+public final class ChunkVisibility {
+
+    public static final long NONE = 0;
+    public static final long ALL = (1L << 36) - 1;
+
+    private static final int CELL_COUNT = BLOCK_COUNT;
+    /**
+     * Separating any two faces takes at least a layer of opaque blocks across the chunk.
+     */
+    private static final int MIN_SEPARATING_OPAQUE_COUNT = CHUNK_X_SIZE * CHUNK_Y_SIZE;
+
+    private final long[] opaque = new long[CELL_COUNT >> 6];
+    private final long[] visited = new long[CELL_COUNT >> 6];
+    private final int[] queue = new int[CELL_COUNT];
+    private int opaqueCount;
+
+    public static boolean isVisible(long visibility, Direction from, Direction to) {
+        return (visibility & 1L << from.index * 6 + to.index) != 0;
+    }
+
+    /**
+     * Clears the opaque blocks for a new chunk.
+     */
+    public void clear() {
+        Arrays.fill(opaque, 0);
+        opaqueCount = 0;
+    }
+
+    /**
+     * @param x x-coordinate of the block, world or chunk coordinate system
+     * @param y y-coordinate of the block, world or chunk coordinate system
+     * @param z z-coordinate of the block, world or chunk coordinate system
+     */
+    public void setOpaque(int x, int y, int z) {
+        int index = getIndex(x & CHUNK_MAX_X, y & CHUNK_MAX_Y, z & CHUNK_MAX_Z);
+        long bit = 1L << index;
+        if ((opaque[index >> 6] & bit) == 0) {
+            opaque[index >> 6] |= bit;
+            opaqueCount++;
+        }
+    }
+
+    public long compute() {
+        if (opaqueCount < MIN_SEPARATING_OPAQUE_COUNT) return ALL;
+        if (opaqueCount == CELL_COUNT) return NONE;
+        System.arraycopy(opaque, 0, visited, 0, opaque.length);
+        long visibility = NONE;
+        for (int i = 0; i < visited.length; i++) {
+            long free;
+            while ((free = ~visited[i]) != 0) {
+                int faces = fill((i << 6) + Long.numberOfTrailingZeros(free));
+                for (int from = 0; from < 6; from++) {
+                    if ((faces & 1 << from) != 0) {
+                        visibility |= (long) faces << from * 6;
+                    }
+                }
+                if (visibility == ALL) return ALL;
+            }
+        }
+        return visibility;
+    }
+
+    /**
+     * @return bit set of the faces touched by the region
+     */
+    private int fill(int start) {
+        int head = 0, tail = 0;
+        visit(start);
+        queue[tail++] = start;
+        int faces = 0;
+        while (head < tail) {
+            int index = queue[head++];
+            int x = index & CHUNK_MAX_X;
+            int y = index >> CHUNK_X_BITS & CHUNK_MAX_Y;
+            int z = index >> CHUNK_X_BITS + CHUNK_Y_BITS;
+            if (z == 0) faces |= 1 << Direction.NORTH.index;
+            else if (tryVisit(index - (1 << CHUNK_X_BITS + CHUNK_Y_BITS))) queue[tail++] = index - (1 << CHUNK_X_BITS + CHUNK_Y_BITS);
+            if (z == CHUNK_MAX_Z) faces |= 1 << Direction.SOUTH.index;
+            else if (tryVisit(index + (1 << CHUNK_X_BITS + CHUNK_Y_BITS))) queue[tail++] = index + (1 << CHUNK_X_BITS + CHUNK_Y_BITS);
+            if (x == CHUNK_MAX_X) faces |= 1 << Direction.EAST.index;
+            else if (tryVisit(index + 1)) queue[tail++] = index + 1;
+            if (x == 0) faces |= 1 << Direction.WEST.index;
+            else if (tryVisit(index - 1)) queue[tail++] = index - 1;
+            if (y == CHUNK_MAX_Y) faces |= 1 << Direction.UP.index;
+            else if (tryVisit(index + (1 << CHUNK_X_BITS))) queue[tail++] = index + (1 << CHUNK_X_BITS);
+            if (y == 0) faces |= 1 << Direction.DOWN.index;
+            else if (tryVisit(index - (1 << CHUNK_X_BITS))) queue[tail++] = index - (1 << CHUNK_X_BITS);
+        }
+        return faces;
+    }
+
+    private boolean tryVisit(int index) {
+        long bit = 1L << index;
+        if ((visited[index >> 6] & bit) != 0) return false;
+        visited[index >> 6] |= bit;
+        return true;
+    }
+
+    private void visit(int index) {
+        visited[index >> 6] |= 1L << index;
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return x | y << CHUNK_X_BITS | z << CHUNK_X_BITS + CHUNK_Y_BITS;
+    }
+}
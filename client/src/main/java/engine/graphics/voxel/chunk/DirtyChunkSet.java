@@ -0,0 +1,57 @@
+package engine.graphics.voxel.chunk;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+
+import java.util.function.LongConsumer;
+
+import static engine.world.chunk.ChunkConstants.*;
+
+/**
+ * Chunks marked dirty by block changes from any thread, flushed in one pass per frame so that a burst of changes marks
+ * each chunk once.
+ */
+final class DirtyChunkSet {
+
+    private final LongSet chunks = new LongOpenHashSet();
+
+    /**
+     * Marks the chunk of the block dirty, and the neighbor chunks if the block is on their border.
+     */
+    public synchronized void addBlock(int x, int y, int z) {
+        int chunkX = x >> CHUNK_X_BITS, chunkY = y >> CHUNK_Y_BITS, chunkZ = z >> CHUNK_Z_BITS;
+        chunks.add(getChunkIndex(chunkX, chunkY, chunkZ));
+
+        int neighbor = x + 1 >> CHUNK_X_BITS;
+        if (neighbor != chunkX) chunks.add(getChunkIndex(neighbor, chunkY, chunkZ));
+        neighbor = x - 1 >> CHUNK_X_BITS;
+        if (neighbor != chunkX) chunks.add(getChunkIndex(neighbor, chunkY, chunkZ));
+        neighbor = y + 1 >> CHUNK_Y_BITS;
+        if (neighbor != chunkY) chunks.add(getChunkIndex(chunkX, neighbor, chunkZ));
+        neighbor = y - 1 >> CHUNK_Y_BITS;
+        if (neighbor != chunkY) chunks.add(getChunkIndex(chunkX, neighbor, chunkZ));
+        neighbor = z + 1 >> CHUNK_Z_BITS;
+        if (neighbor != chunkZ) chunks.add(getChunkIndex(chunkX, chunkY, neighbor));
+        neighbor = z - 1 >> CHUNK_Z_BITS;
+        if (neighbor != chunkZ) chunks.add(getChunkIndex(chunkX, chunkY, neighbor));
+    }
+
+    public synchronized boolean isEmpty() {
+        return chunks.isEmpty();
+    }
+
+    /**
+     * Passes the index of each dirty chunk to the action once and clears the set.
+     */
+    public void flush(LongConsumer action) {
+        long[] indexes;
+        synchronized (this) {
+            if (chunks.isEmpty()) return;
+            indexes = chunks.toLongArray();
+            chunks.clear();
+        }
+        for (long index : indexes) {
+            action.accept(index);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import engine.graphics.util.DrawMode;
 import engine.graphics.vertex.VertexDataBuf;
 import engine.graphics.voxel.VoxelGraphicsHelper;
 import engine.world.chunk.Chunk;
+import engine.world.util.ChunkSnapshot;
 import org.joml.AABBf;
 import org.joml.Vector3fc;
 import org.joml.Vector3ic;
@@ -22,8 +23,13 @@ public final class DrawableChunk extends Geometry {
 
     private Map<RenderType, DrawableChunkPiece> pieces;
 
-    private volatile boolean dirty;
-    private boolean drawing;
+    private final ChunkBakeState bakeState = new ChunkBakeState();
+
+    private volatile long visibility = ChunkVisibility.ALL;
+    /**
+     * Level of detail of the baked mesh, see {@link ChunkBaker#getLodScale(double)}.
+     */
+    private int lodScale = 1;
 
     public DrawableChunk(ChunkRenderer renderer) {
         this.renderer = renderer;
@@ -39,30 +45,70 @@ public final class DrawableChunk extends Geometry {
         this.chunk = chunk;
         Vector3ic min = chunk.getMin();
         Vector3ic max = chunk.getMax();
+        setTranslation(min.x(), min.y(), min.z());
         getBoundingVolume().setBox(new AABBf(min.x(), min.y(), min.z(), max.x(), max.y(), max.z()));
     }
 
     public void reset() {
         this.chunk = null;
+        this.visibility = ChunkVisibility.ALL;
+        setOccluded(false);
     }
 
-    public boolean isDirty() {
-        return dirty;
+    /**
+     * @see ChunkVisibility
+     */
+    public long getVisibility() {
+        return visibility;
+    }
+
+    public void setVisibility(long visibility) {
+        if (this.visibility == visibility) return;
+        this.visibility = visibility;
+        renderer.markOcclusionDirty();
+    }
+
+    /**
+     * Hides the chunk if it can't be seen from the camera, see {@link ChunkOcclusionCuller}. The pieces stay in the
+     * render queue, so the chunks crossing the border of the occluded area don't change it.
+     */
+    @Override
+    public void setOccluded(boolean occluded) {
+        if (isOccluded() == occluded) return;
+        super.setOccluded(occluded);
+        if (pieces != null) {
+            pieces.values().forEach(piece -> piece.setOccluded(occluded));
+        }
     }
 
-    public void clearDirty() {
-        dirty = false;
+    public boolean isDirty() {
+        return bakeState.isDirty();
     }
 
     public void markDirty() {
-        dirty = true;
-        if (!drawing) executeBake();
+        bakeState.markDirty();
+        executeBake();
     }
 
+    /**
+     * Schedules a bake of a snapshot of the chunk, unless a bake is in progress or the chunk didn't change, see
+     * {@link ChunkBakeState}. A chunk changed during the copy or the bake is baked once more after the bake in progress.
+     */
     public void executeBake() {
+        Chunk chunk = this.chunk;
         if (chunk == null) return; // stop baking if there is nothing to bake
-        drawing = true;
-        ChunkBaker.execute(new ChunkBaker.Task(this, distanceSqChunkToCamera()));
+        int version = bakeState.tryStart();
+        if (version == ChunkBakeState.NONE) return;
+        ChunkSnapshot snapshot = chunk.isAirChunk() ? null : ChunkSnapshot.create(chunk.getWorld(), chunk);
+        ChunkBaker.execute(new ChunkBaker.Task(this, snapshot, version, distanceSqChunkToCamera()));
+    }
+
+    /**
+     * Bakes the chunk again if the level of detail of its mesh doesn't match the distance to the camera.
+     */
+    public void updateLod() {
+        if (chunk == null) return;
+        if (ChunkBaker.getLodScale(distanceSqChunkToCamera()) != lodScale) markDirty();
     }
 
     private double distanceSqChunkToCamera() {
@@ -71,23 +117,30 @@ public final class DrawableChunk extends Geometry {
         return position.distanceSquared(center.x(), center.y(), center.z());
     }
 
-    public void finishBake(HashMap<RenderType, VertexDataBuf> buf) {
+    /**
+     * Uploads the result of the bake, unless the chunk changed during the bake and already has a mesh. The stale result
+     * is dropped since the chunk is baked again.
+     */
+    public void finishBake(HashMap<RenderType, VertexDataBuf> buf, int version, int lodScale) {
+        if (!bakeState.finish(version) && pieces != null) return;
+        this.lodScale = lodScale;
         if (pieces == null) {
             pieces = new HashMap<>();
         }
         buf.forEach((type, vertexDataBuf) -> {
             pieces.computeIfAbsent(type, key -> {
                 var piece = new DrawableChunkPiece(key);
+                piece.setOccluded(isOccluded());
                 piece.setTexture(this.getTexture());
                 DrawableChunk.this.addChild(piece);
+                invalidateTransform();
                 return piece;
             }).uploadData(vertexDataBuf);
         });
-        drawing = false;
     }
 
-    public void terminateBake() {
-        drawing = false;
+    public void terminateBake(int version) {
+        bakeState.finish(version);
     }
 
     public boolean isDisposed() {
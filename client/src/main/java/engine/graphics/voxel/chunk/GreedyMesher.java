@@ -0,0 +1,265 @@
+package engine.graphics.voxel.chunk;
+
+import engine.block.state.BlockState;
+import engine.graphics.model.AmbientOcclusion;
+import engine.graphics.vertex.VertexDataBuf;
+import engine.math.BlockPos;
+import engine.util.Direction;
+import engine.world.BlockGetter;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+import static engine.world.chunk.ChunkConstants.CHUNK_X_SIZE;
+
+/**
+ * Merges coplanar visible faces of full cube blocks in a chunk into larger quads.
+ * <p>
+ * For each direction and each slice of the chunk, the visible faces are collected into a mask, and rectangles of
+ * faces with the same texture region are grown first along the u axis, then along the v axis of the face. A merged
+ * quad uses texture coordinates in blocks together with the texture region, so that the texture repeats once per
+ * block, see {@link engine.graphics.vertex.VertexElement#TEX_REGION}.
+ * <p>
+ * With an {@link OcclusionSource}, faces are merged only if the ambient occlusion levels of their corners are the
+ * same, so the merged quads are shaded like the faces would be.
+ * <p>
+ * The buffer must use a vertex format with texture region, otherwise the merged quads stretch the texture.
+ */
+public final class GreedyMesher {
+
+    private static final int SIZE = CHUNK_X_SIZE;
+    /**
+     * Ambient occlusion levels of all corners if nothing occludes them.
+     */
+    private static final int UNOCCLUDED = 0xFF;
+    /**
+     * Corner positions of the faces of a unit cube, indexed by direction.
+     */
+    private static final float[][] UNIT_CORNERS = new float[6][12];
+
+    static {
+        for (Direction direction : Direction.values()) {
+            setCorners(UNIT_CORNERS[direction.index], direction, 0, 0, 0, 1, 1, 1);
+        }
+    }
+
+    private final float[][] mask = new float[SIZE * SIZE][];
+    /**
+     * Ambient occlusion levels of the face corners, 2 bits per corner.
+     */
+    private final int[] occlusionMask = new int[SIZE * SIZE];
+    private final BlockPos.Mutable cursor = new BlockPos.Mutable(0, 0, 0);
+    private final float[] positions = new float[12];
+
+    /**
+     * Source of mergeable faces.
+     */
+    @FunctionalInterface
+    public interface FaceSource {
+        /**
+         * @return texture region (min u, min v, max u, max v) of the face if it is visible and mergeable, otherwise
+         * null. Faces are merged only if they return the same array.
+         */
+        @Nullable
+        float[] getFace(BlockGetter world, BlockPos pos, BlockState block, Direction direction);
+    }
+
+    /**
+     * Source of the occluding blocks for ambient occlusion.
+     */
+    @FunctionalInterface
+    public interface OcclusionSource {
+        /**
+         * @return occluding blocks around the block, see {@link AmbientOcclusion#getNeighborBit(int, int, int)}
+         */
+        int getOccluders(int x, int y, int z);
+    }
+
+    /**
+     * Positions are written relative to the origin, on top of the translation of the buffer.
+     *
+     * @return number of quads written to the buffer
+     */
+    public int mesh(BlockGetter world, int originX, int originY, int originZ, FaceSource faces, VertexDataBuf buffer) {
+        return mesh(world, originX, originY, originZ, faces, null, buffer);
+    }
+
+    /**
+     * Positions are written relative to the origin, on top of the translation of the buffer.
+     *
+     * @param occlusion source of the occluding blocks, or null to not shade the quads
+     * @return number of quads written to the buffer
+     */
+    public int mesh(BlockGetter world, int originX, int originY, int originZ, FaceSource faces, @Nullable OcclusionSource occlusion, VertexDataBuf buffer) {
+        int quadCount = 0;
+        for (Direction direction : Direction.values()) {
+            for (int slice = 0; slice < SIZE; slice++) {
+                fillMask(world, originX, originY, originZ, faces, occlusion, direction, slice);
+                quadCount += mergeMask(direction, slice, buffer);
+            }
+        }
+        return quadCount;
+    }
+
+    private void fillMask(BlockGetter world, int originX, int originY, int originZ, FaceSource faces, OcclusionSource occlusion, Direction direction, int slice) {
+        for (int v = 0; v < SIZE; v++) {
+            for (int u = 0; u < SIZE; u++) {
+                switch (direction) {
+                    case NORTH:
+                    case SOUTH:
+                        cursor.set(originX + u, originY + v, originZ + slice);
+                        break;
+                    case EAST:
+                    case WEST:
+                        cursor.set(originX + slice, originY + v, originZ + u);
+                        break;
+                    default:
+                        cursor.set(originX + u, originY + slice, originZ + v);
+                        break;
+                }
+                BlockState block = world.getBlock(cursor);
+                float[] face = faces.getFace(world, cursor, block, direction);
+                mask[u + v * SIZE] = face;
+                occlusionMask[u + v * SIZE] = face == null || occlusion == null ? UNOCCLUDED :
+                        getOcclusionLevels(occlusion.getOccluders(cursor.x(), cursor.y(), cursor.z()), direction);
+            }
+        }
+    }
+
+    private static int getOcclusionLevels(int occluders, Direction direction) {
+        float[] corners = UNIT_CORNERS[direction.index];
+        int levels = 0;
+        for (int corner = 0; corner < 4; corner++) {
+            int level = AmbientOcclusion.getVertexLevel(occluders, corners[corner * 3], corners[corner * 3 + 1], corners[corner * 3 + 2], direction);
+            levels |= level << corner * 2;
+        }
+        return levels;
+    }
+
+    private int mergeMask(Direction direction, int slice, VertexDataBuf buffer) {
+        int quadCount = 0;
+        for (int v = 0; v < SIZE; v++) {
+            for (int u = 0; u < SIZE; ) {
+                float[] face = mask[u + v * SIZE];
+                if (face == null) {
+                    u++;
+                    continue;
+                }
+                int levels = occlusionMask[u + v * SIZE];
+                int width = 1;
+                while (u + width < SIZE && isMergeable(u + width + v * SIZE, face, levels)) {
+                    width++;
+                }
+                int height = 1;
+                grow:
+                while (v + height < SIZE) {
+                    int row = (v + height) * SIZE;
+                    for (int i = u; i < u + width; i++) {
+                        if (!isMergeable(i + row, face, levels)) break grow;
+                    }
+                    height++;
+                }
+                for (int j = v; j < v + height; j++) {
+                    Arrays.fill(mask, u + j * SIZE, u + width + j * SIZE, null);
+                }
+                putQuad(direction, slice, u, v, width, height, face, levels, buffer);
+                quadCount++;
+                u += width;
+            }
+        }
+        return quadCount;
+    }
+
+    private boolean isMergeable(int index, float[] face, int levels) {
+        return mask[index] == face && occlusionMask[index] == levels;
+    }
+
+    /**
+     * Writes the quad with the same corner order and winding as a baked block model face.
+     */
+    private void putQuad(Direction direction, int slice, int u, int v, int width, int height, float[] face, int levels, VertexDataBuf buffer) {
+        float fromX, fromY, fromZ, toX, toY, toZ;
+        switch (direction) {
+            case NORTH:
+            case SOUTH:
+                fromX = u;
+                toX = u + width;
+                fromY = v;
+                toY = v + height;
+                fromZ = slice;
+                toZ = slice + 1;
+                break;
+            case EAST:
+            case WEST:
+                fromX = slice;
+                toX = slice + 1;
+                fromY = v;
+                toY = v + height;
+                fromZ = u;
+                toZ = u + width;
+                break;
+            default:
+                fromX = u;
+                toX = u + width;
+                fromY = slice;
+                toY = slice + 1;
+                fromZ = v;
+                toZ = v + height;
+                break;
+        }
+        setCorners(positions, direction, fromX, fromY, fromZ, toX, toY, toZ);
+        int level0 = levels & 3, level1 = levels >> 2 & 3, level2 = levels >> 4 & 3, level3 = levels >> 6 & 3;
+        if (AmbientOcclusion.isFlipped(level0, level1, level2, level3)) {
+            putVertex(buffer, 1, width, height, level1, direction, face);
+            putVertex(buffer, 2, width, 0, level2, direction, face);
+            putVertex(buffer, 3, 0, 0, level3, direction, face);
+            putVertex(buffer, 1, width, height, level1, direction, face);
+            putVertex(buffer, 3, 0, 0, level3, direction, face);
+            putVertex(buffer, 0, 0, height, level0, direction, face);
+        } else {
+            putVertex(buffer, 0, 0, height, level0, direction, face);
+            putVertex(buffer, 1, width, height, level1, direction, face);
+            putVertex(buffer, 2, width, 0, level2, direction, face);
+            putVertex(buffer, 0, 0, height, level0, direction, face);
+            putVertex(buffer, 2, width, 0, level2, direction, face);
+            putVertex(buffer, 3, 0, 0, level3, direction, face);
+        }
+    }
+
+    /**
+     * Sets the corner positions of a face of the box in the order of a baked block model face.
+     */
+    static void setCorners(float[] corners, Direction direction, float fromX, float fromY, float fromZ, float toX, float toY, float toZ) {
+        switch (direction) {
+            case NORTH:
+                set(corners, toX, fromY, fromZ, fromX, fromY, fromZ, fromX, toY, fromZ, toX, toY, fromZ);
+                break;
+            case SOUTH:
+                set(corners, fromX, fromY, toZ, toX, fromY, toZ, toX, toY, toZ, fromX, toY, toZ);
+                break;
+            case EAST:
+                set(corners, toX, fromY, toZ, toX, fromY, fromZ, toX, toY, fromZ, toX, toY, toZ);
+                break;
+            case WEST:
+                set(corners, fromX, fromY, fromZ, fromX, fromY, toZ, fromX, toY, toZ, fromX, toY, fromZ);
+                break;
+            case UP:
+                set(corners, fromX, toY, toZ, toX, toY, toZ, toX, toY, fromZ, fromX, toY, fromZ);
+                break;
+            default:
+                set(corners, toX, fromY, toZ, fromX, fromY, toZ, fromX, fromY, fromZ, toX, fromY, fromZ);
+                break;
+        }
+    }
+
+    private static void set(float[] corners, float... values) {
+        System.arraycopy(values, 0, corners, 0, 12);
+    }
+
+    private void putVertex(VertexDataBuf buffer, int corner, float u, float v, int level, Direction direction, float[] face) {
+        float shade = AmbientOcclusion.getShade(level);
+        buffer.pos(positions, corner * 3).rgba(shade, shade, shade, 1).tex(u, v)
+                .normal(direction.offsetX, direction.offsetY, direction.offsetZ)
+                .texRegion(face[0], face[1], face[2] - face[0], face[3] - face[1]).endVertex();
+    }
+}
@@ -0,0 +1,44 @@
+package engine.client.asset;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Assets of tests, loaded without an {@link AssetManager}.
+ */
+public final class TestAssets {
+
+    /**
+     * @return a loaded asset of the value
+     */
+    public static <T> Asset<T> of(Class<T> type, AssetURL url, T value) {
+        var assetType = AssetType.builder(type).provider(new AssetProvider<T>() {
+            @Override
+            public void init(AssetManager manager, AssetType<T> type) {
+            }
+
+            @Override
+            public void register(Asset<T> asset) {
+            }
+
+            @Override
+            public void unregister(Asset<T> asset) {
+            }
+
+            @Nonnull
+            @Override
+            public T loadDirect(AssetURL url) {
+                return value;
+            }
+
+            @Override
+            public void dispose() {
+            }
+        }).build();
+        var asset = new Asset<>(assetType, url);
+        asset.reload();
+        return asset;
+    }
+
+    private TestAssets() {
+    }
+}
@@ -0,0 +1,288 @@
+package engine.graphics.block;
+
+import engine.block.BaseBlock;
+import engine.block.Block;
+import engine.block.BlockShape;
+import engine.block.state.BlockState;
+import engine.client.asset.TestAssets;
+import engine.event.block.cause.BlockChangeCause;
+import engine.graphics.math.Transform;
+import engine.graphics.model.BakedModel;
+import engine.graphics.model.DisplayType;
+import engine.graphics.queue.RenderType;
+import engine.graphics.vertex.VertexDataBuf;
+import engine.graphics.vertex.VertexFormat;
+import engine.math.BlockPos;
+import engine.registry.Name;
+import engine.registry.RegistryManager;
+import engine.registry.TestRegistries;
+import engine.registry.game.BlockRegistry;
+import engine.util.Direction;
+import engine.world.chunk.CubicChunk;
+import engine.world.util.ChunkSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+
+import static engine.world.chunk.ChunkConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockRenderManagerImplTest {
+
+    private static final float[][] CUBE_FACES = new float[6][];
+
+    static {
+        for (Direction direction : Direction.values()) {
+            CUBE_FACES[direction.index] = new float[]{0, 0, 1, 1};
+        }
+    }
+
+    // Registries only keeps weak references.
+    private RegistryManager registryManager;
+    private BlockRegistry registry;
+    private Block air, stone, glass, flower, slab;
+    private BlockRenderManagerImpl renderManager;
+
+    @BeforeEach
+    void setUp() {
+        air = new BaseBlock().setShape(BlockShape.EMPTY).name(Name.of("test", "air"));
+        stone = createBlock("stone", RenderType.OPAQUE);
+        glass = createBlock("glass", RenderType.TRANSLUCENT);
+        flower = createBlock("flower", RenderType.OPAQUE);
+        slab = createBlock("slab", RenderType.OPAQUE);
+        registryManager = TestRegistries.init(air, stone, flower, slab);
+        registry = registryManager.getRegistry(Block.class).map(BlockRegistry.class::cast).orElseThrow();
+
+        renderManager = new BlockRenderManagerImpl();
+        Map<String, BakedModel> models = Map.of(
+                "stone", new TestModel(0b111111, true),
+                "glass", new TestModel(0b111111, true),
+                "flower", new TestModel(0, false),
+                "slab", new TestModel(1 << Direction.DOWN.index, false));
+        for (Block block : new Block[]{air, stone, glass, flower, slab}) {
+            renderManager.registerBlockRenderer(block, url -> TestAssets.of(BakedModel.class, url, models.get(url.getLocation())));
+        }
+    }
+
+    @Test
+    void lookupsByStateIdMatchLookupsByBlockState() {
+        assertLookupsMatch();
+
+        int stoneId = registry.getStateId(stone.getDefaultState());
+        assertEquals(RenderType.OPAQUE, renderManager.getRenderType(stoneId));
+        assertTrue(renderManager.isOpaqueCube(stoneId));
+        assertTrue(renderManager.isGreedyMeshable(stoneId));
+        assertSame(CUBE_FACES[Direction.UP.index], renderManager.getLodFace(stoneId, Direction.UP));
+        int flowerId = registry.getStateId(flower.getDefaultState());
+        assertFalse(renderManager.isOpaqueCube(flowerId));
+        assertNull(renderManager.getLodFace(flowerId, Direction.UP));
+        assertNull(renderManager.getRenderType(registry.getStateId(air.getDefaultState())));
+    }
+
+    @Test
+    void renderTableFollowsStateIdReconstruction() {
+        assertLookupsMatch();
+
+        // Like a registry synchronization, which renumbers the block states.
+        registry.register(glass);
+        registry.reconstructStateId();
+
+        assertLookupsMatch();
+        int glassId = registry.getStateId(glass.getDefaultState());
+        assertEquals(RenderType.TRANSLUCENT, renderManager.getRenderType(glassId));
+        assertFalse(renderManager.isOpaqueCube(glassId));
+    }
+
+    @Test
+    void meshesByStateIdMatchMeshesByBlockState() {
+        registry.register(glass);
+        registry.reconstructStateId();
+        var chunk = new CubicChunk(null, 0, 0, 0);
+        var random = new Random(42);
+        BlockState[] states = {air.getDefaultState(), stone.getDefaultState(), glass.getDefaultState(),
+                flower.getDefaultState(), slab.getDefaultState()};
+        for (int i = 0; i < 4000; i++) {
+            chunk.setBlock(BlockPos.of(random.nextInt(CHUNK_X_SIZE), random.nextInt(CHUNK_Y_SIZE), random.nextInt(CHUNK_Z_SIZE)),
+                    states[random.nextInt(states.length)], new BlockChangeCause.WorldGenCause());
+        }
+        var snapshot = ChunkSnapshot.create(null, chunk, (x, y, z) -> null, registry.getStateId(air.getDefaultState()));
+
+        VertexDataBuf expected = createBuffer(), actual = createBuffer();
+        expected.begin(VertexFormat.POSITION);
+        actual.begin(VertexFormat.POSITION);
+        var pos = new BlockPos.Mutable(0, 0, 0);
+        for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+            for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                    pos.set(x, y, z);
+                    renderManager.generateMesh(snapshot.getBlock(pos), snapshot, pos, expected);
+                    renderManager.generateMesh(snapshot, x, y, z, snapshot.getBlockId(x, y, z), actual);
+                }
+            }
+        }
+        expected.finish();
+        actual.finish();
+
+        assertTrue(expected.getVertexCount() > 0);
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        assertEquals(expected.getByteBuffer(), actual.getByteBuffer());
+    }
+
+    private void assertLookupsMatch() {
+        for (int id = 0; registry.getStateFromId(id) != null; id++) {
+            BlockState state = registry.getStateFromId(id);
+            RenderType renderType = renderManager.getBlockRenderTypeMap().get(state.getPrototype());
+            assertEquals(renderType, renderManager.getRenderType(id), state.toString());
+            assertEquals(renderManager.isGreedyMeshable(state), renderManager.isGreedyMeshable(id), state.toString());
+            boolean opaqueCube = renderType == RenderType.OPAQUE;
+            for (Direction direction : Direction.values()) {
+                opaqueCube &= !renderManager.canRenderNeighborBlockFace(null, null, state, direction);
+            }
+            assertEquals(opaqueCube, renderManager.isOpaqueCube(id), state.toString());
+        }
+    }
+
+    private static Block createBlock(String name, RenderType renderType) {
+        return new BaseBlock().name(Name.of("test", name))
+                .setComponent(BlockDisplay.class, new BlockDisplay().model("test:" + name).renderType(renderType));
+    }
+
+    private static VertexDataBuf createBuffer() {
+        return new VertexDataBuf() {
+            @Override
+            protected ByteBuffer createBuffer(int capacity) {
+                return ByteBuffer.allocate(capacity);
+            }
+
+            @Override
+            protected void freeBuffer(ByteBuffer buffer) {
+            }
+        };
+    }
+
+    /**
+     * Times render property lookups of the blocks of a chunk and their neighbors, by state id and by block state. The
+     * models write one vertex per visible face, so the lookups take most of the time. Run with
+     * -Dengine.chunk.ambientOcclusion=false, since only the meshes by state id are shaded.
+     */
+    private static void benchmarkLookup() {
+        var test = new BlockRenderManagerImplTest();
+        test.setUp();
+        var renderManager = test.renderManager;
+        var snapshot = test.createFilledSnapshot();
+        VertexDataBuf buffer = createBuffer();
+        var pos = new BlockPos.Mutable(0, 0, 0);
+        for (int round = 0; round < 10; round++) {
+            buffer.begin(VertexFormat.POSITION);
+            long start = System.nanoTime();
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                    for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                        int stateId = snapshot.getBlockId(x, y, z);
+                        if (renderManager.getRenderType(stateId) == RenderType.OPAQUE) {
+                            renderManager.generateMesh(snapshot, x, y, z, stateId, buffer);
+                        }
+                    }
+                }
+            }
+            long byStateId = System.nanoTime() - start;
+            buffer.finish();
+
+            buffer.begin(VertexFormat.POSITION);
+            start = System.nanoTime();
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                    for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                        pos.set(x, y, z);
+                        BlockState block = snapshot.getBlock(pos);
+                        if (renderManager.getBlockRenderTypeMap().get(block.getPrototype()) == RenderType.OPAQUE) {
+                            renderManager.generateMesh(block, snapshot, pos, buffer);
+                        }
+                    }
+                }
+            }
+            long byBlockState = System.nanoTime() - start;
+            buffer.finish();
+            System.out.println("by state id " + byStateId / 1000L + " us, by block state " + byBlockState / 1000L + " us");
+        }
+    }
+
+    /**
+     * Times gathering the occluding blocks for ambient occlusion around each block of a chunk, which the baker does for
+     * each block with a visible face.
+     */
+    private static void benchmarkOccluders() {
+        var test = new BlockRenderManagerImplTest();
+        test.setUp();
+        var renderManager = test.renderManager;
+        var snapshot = test.createFilledSnapshot();
+        for (int round = 0; round < 10; round++) {
+            int occluded = 0;
+            long start = System.nanoTime();
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                    for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                        if (renderManager.getOccluders(snapshot, x, y, z) != 0) occluded++;
+                    }
+                }
+            }
+            System.out.println((System.nanoTime() - start) / 1000L + " us for " + occluded + " occluded blocks");
+        }
+    }
+
+    /**
+     * @return snapshot of a chunk of random blocks, without neighbors
+     */
+    private ChunkSnapshot createFilledSnapshot() {
+        var chunk = new CubicChunk(null, 0, 0, 0);
+        var random = new Random(42);
+        BlockState[] states = {air.getDefaultState(), stone.getDefaultState(), flower.getDefaultState(), slab.getDefaultState()};
+        for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+            for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                    chunk.setBlock(BlockPos.of(x, y, z), states[random.nextInt(states.length)], new BlockChangeCause.WorldGenCause());
+                }
+            }
+        }
+        return ChunkSnapshot.create(null, chunk, (x, y, z) -> null, registry.getStateId(air.getDefaultState()));
+    }
+
+    /**
+     * Writes one vertex per visible face, at the center of the face.
+     */
+    private static final class TestModel implements BakedModel {
+        private final int fullFaces;
+        private final boolean cube;
+
+        private TestModel(int fullFaces, boolean cube) {
+            this.fullFaces = fullFaces;
+            this.cube = cube;
+        }
+
+        @Override
+        public void putVertexes(VertexDataBuf buffer, int coveredFace) {
+            for (Direction direction : Direction.values()) {
+                if ((coveredFace & 1 << direction.index) != 0) continue;
+                buffer.pos(0.5f + direction.offsetX * 0.5f, 0.5f + direction.offsetY * 0.5f, 0.5f + direction.offsetZ * 0.5f).endVertex();
+            }
+        }
+
+        @Override
+        public boolean isFullFace(Direction direction) {
+            return (fullFaces & 1 << direction.index) != 0;
+        }
+
+        @Override
+        public float[] getCubeFaceUv(Direction direction) {
+            return cube ? CUBE_FACES[direction.index] : null;
+        }
+
+        @Override
+        public Transform getTransformation(DisplayType type) {
+            return null;
+        }
+    }
+}
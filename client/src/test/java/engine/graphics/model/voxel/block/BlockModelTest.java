@@ -0,0 +1,223 @@
+package engine.graphics.model.voxel.block;
+
+import engine.client.asset.AssetURL;
+import engine.graphics.image.BufferedImage;
+import engine.graphics.math.RenderingMath;
+import engine.graphics.math.Transform;
+import engine.graphics.model.BakedModel;
+import engine.graphics.model.DisplayType;
+import engine.graphics.model.ModelUtils;
+import engine.graphics.texture.TextureAtlasRegion;
+import engine.graphics.vertex.VertexDataBuf;
+import engine.graphics.vertex.VertexFormat;
+import engine.util.Direction;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BlockModelTest {
+
+    private static final AssetURL TEXTURE = AssetURL.of("test", "block/stone");
+
+    @Test
+    void flattenedVertexesMatchPerFaceVertexes() {
+        BlockModel model = createModel();
+        BakedModel baked = model.bake(url -> new Region(url, 0.25f, 0.5f, 0.5f, 0.75f));
+        var perFace = bakePerFace(model, 0.25f, 0.5f, 0.5f, 0.75f);
+
+        for (int coveredFace = 0; coveredFace <= 0b111111; coveredFace++) {
+            VertexDataBuf actual = createBuffer();
+            actual.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+            baked.putVertexes(actual, coveredFace);
+            actual.finish();
+
+            VertexDataBuf expected = createBuffer();
+            expected.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+            putPerFaceVertexes(perFace, expected, coveredFace);
+            expected.finish();
+
+            assertEquals(expected.getVertexCount(), actual.getVertexCount());
+            assertEquals(expected.getByteBuffer(), actual.getByteBuffer(), "coveredFace " + coveredFace);
+        }
+    }
+
+    /**
+     * A full cube culled by its sides, and a post inside it which is never culled.
+     */
+    private static BlockModel createModel() {
+        BlockModel model = new BlockModel();
+        model.textures = Map.of();
+        model.requestTextures = List.of(TEXTURE);
+        model.cubes = new Cube[]{
+                createCube(new Vector3f(0, 0, 0), new Vector3f(1, 1, 1), true),
+                createCube(new Vector3f(0.25f, 0, 0.25f), new Vector3f(0.75f, 1.5f, 0.75f), false)};
+        model.fullFaces = new boolean[]{true, true, true, true, true, true};
+        model.transforms = new Transform[DisplayType.values().length];
+        return model;
+    }
+
+    private static Cube createCube(Vector3f from, Vector3f to, boolean culled) {
+        Cube cube = new Cube();
+        cube.from = from;
+        cube.to = to;
+        cube.faces = new Face[6];
+        for (Direction direction : Direction.values()) {
+            Face face = new Face();
+            face.texture = new Texture();
+            face.texture.name = TEXTURE;
+            face.texture.uv = new Vector4f(0, 0, 1, 1);
+            face.cullFaces = culled ? ModelUtils.toDirectionInt(direction) : 0;
+            cube.faces[direction.index] = face;
+        }
+        return cube;
+    }
+
+    /**
+     * Reference of the per-face vertex lists the flattened model replaced, with the cull face groups in ascending order.
+     */
+    private static SortedMap<Integer, List<float[]>> bakePerFace(BlockModel model, float minU, float minV, float maxU, float maxV) {
+        SortedMap<Integer, List<float[]>> vertexes = new TreeMap<>();
+        for (Cube cube : model.cubes) {
+            for (Direction direction : Direction.values()) {
+                Face face = cube.faces[direction.index];
+                Vector3fc[] p = cube.getFacePositions(direction);
+                var normal = RenderingMath.calcNormalByVertices(p[0], p[1], p[2]);
+                var normal1 = RenderingMath.calcNormalByVertices(p[0], p[2], p[3]);
+                var mesh = vertexes.computeIfAbsent(face.cullFaces, key -> new ArrayList<>());
+                mesh.add(vertex(p[0], minU, maxV, normal));
+                mesh.add(vertex(p[1], maxU, maxV, normal));
+                mesh.add(vertex(p[2], maxU, minV, normal));
+                mesh.add(vertex(p[0], minU, maxV, normal));
+                mesh.add(vertex(p[2], maxU, minV, normal));
+                mesh.add(vertex(p[3], minU, minV, normal1));
+            }
+        }
+        return vertexes;
+    }
+
+    private static void putPerFaceVertexes(SortedMap<Integer, List<float[]>> vertexes, VertexDataBuf buffer, int coveredFace) {
+        for (var entry : vertexes.entrySet()) {
+            if (ModelUtils.checkCullFace(coveredFace, entry.getKey())) continue;
+            for (float[] vertex : entry.getValue()) {
+                buffer.pos(vertex, 0).rgba(1, 1, 1, 1).tex(vertex, 3).normal(vertex, 5).texRegion(0, 0, 0, 0).endVertex();
+            }
+        }
+    }
+
+    private static float[] vertex(Vector3fc position, float u, float v, Vector3fc normal) {
+        return new float[]{position.x(), position.y(), position.z(), u, v, normal.x(), normal.y(), normal.z()};
+    }
+
+    private static void benchmarkPutVertexes() {
+        BlockModel model = createModel();
+        BakedModel baked = model.bake(url -> new Region(url, 0, 0, 1, 1));
+        var perFace = bakePerFace(model, 0, 0, 1, 1);
+        VertexDataBuf buffer = createBuffer();
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 10000; i++) {
+                buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+                baked.putVertexes(buffer, i & 0b111111);
+                buffer.finish();
+            }
+            long flattened = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < 10000; i++) {
+                buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+                putPerFaceVertexes(perFace, buffer, i & 0b111111);
+                buffer.finish();
+            }
+            System.out.println("flattened " + flattened / 1000L + " us, per face " + (System.nanoTime() - start) / 1000L + " us");
+        }
+    }
+
+    /**
+     * Times putting the vertexes of the model shaded by ambient occlusion, for random occluding blocks, against putting
+     * them unshaded.
+     */
+    private static void benchmarkAmbientOcclusion() {
+        BakedModel baked = createModel().bake(url -> new Region(url, 0, 0, 1, 1));
+        VertexDataBuf buffer = createBuffer();
+        int[] occluders = new Random(42).ints(10000, 0, 1 << 27).toArray();
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < occluders.length; i++) {
+                buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+                baked.putVertexes(buffer, i & 0b111111);
+                buffer.finish();
+            }
+            long unshaded = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < occluders.length; i++) {
+                buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+                baked.putVertexes(buffer, i & 0b111111, occluders[i]);
+                buffer.finish();
+            }
+            System.out.println("unshaded " + unshaded / 1000L + " us, shaded " + (System.nanoTime() - start) / 1000L + " us");
+        }
+    }
+
+    private static VertexDataBuf createBuffer() {
+        return new VertexDataBuf(4096) {
+            @Override
+            protected ByteBuffer createBuffer(int capacity) {
+                return ByteBuffer.allocate(capacity);
+            }
+
+            @Override
+            protected void freeBuffer(ByteBuffer buffer) {
+            }
+        };
+    }
+
+    private static final class Region implements TextureAtlasRegion {
+        private final AssetURL url;
+        private final float minU, minV, maxU, maxV;
+
+        private Region(AssetURL url, float minU, float minV, float maxU, float maxV) {
+            this.url = url;
+            this.minU = minU;
+            this.minV = minV;
+            this.maxU = maxU;
+            this.maxV = maxV;
+        }
+
+        @Override
+        public AssetURL getUrl() {
+            return url;
+        }
+
+        @Override
+        public BufferedImage getData() {
+            return null;
+        }
+
+        @Override
+        public float getMinU() {
+            return minU;
+        }
+
+        @Override
+        public float getMinV() {
+            return minV;
+        }
+
+        @Override
+        public float getMaxU() {
+            return maxU;
+        }
+
+        @Override
+        public float getMaxV() {
+            return maxV;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package engine.graphics.voxel.chunk;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+
+import static engine.world.chunk.ChunkConstants.getChunkIndex;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkBakeStateTest {
+
+    private final DirtyChunkSet dirtyChunks = new DirtyChunkSet();
+    private final Long2ObjectOpenHashMap<ChunkBakeState> states = new Long2ObjectOpenHashMap<>();
+    private final Queue<long[]> running = new ArrayDeque<>();
+    private final Long2IntOpenHashMap bakes = new Long2IntOpenHashMap();
+    private final Long2IntOpenHashMap uploads = new Long2IntOpenHashMap();
+
+    @Test
+    void burstInOneTickBakesOnce() {
+        Random random = new Random(1);
+        for (int i = 0; i < 1000; i++) {
+            dirtyChunks.addBlock(1 + random.nextInt(30), 1 + random.nextInt(30), 1 + random.nextInt(30));
+        }
+        flush();
+        finishAll();
+
+        assertEquals(1, bakes.get(getChunkIndex(0, 0, 0)));
+        assertEquals(1, bakes.size());
+        assertTrue(dirtyChunks.isEmpty());
+    }
+
+    @Test
+    void borderChangesBakeNeighborsOnce() {
+        for (int i = 0; i < 100; i++) {
+            dirtyChunks.addBlock(0, 0, 0);
+            dirtyChunks.addBlock(31, 5, 5);
+        }
+        flush();
+        finishAll();
+
+        assertEquals(1, bakes.get(getChunkIndex(0, 0, 0)));
+        assertEquals(1, bakes.get(getChunkIndex(-1, 0, 0)));
+        assertEquals(1, bakes.get(getChunkIndex(0, -1, 0)));
+        assertEquals(1, bakes.get(getChunkIndex(0, 0, -1)));
+        assertEquals(1, bakes.get(getChunkIndex(1, 0, 0)));
+        assertEquals(5, bakes.size());
+    }
+
+    @Test
+    void changesDuringBakeQueueOneMoreBake() {
+        long index = getChunkIndex(0, 0, 0);
+        dirtyChunks.addBlock(5, 5, 5);
+        flush();
+        // Ten ticks of changes while the first bake is running.
+        for (int tick = 0; tick < 10; tick++) {
+            for (int i = 0; i < 50; i++) {
+                dirtyChunks.addBlock(i % 32, 7, 7);
+            }
+            flush();
+        }
+        assertEquals(1, bakes.get(index));
+
+        finishAll();
+
+        assertEquals(2, bakes.get(index));
+        // The first result is stale but uploaded since the chunk had no mesh yet, the second one is current.
+        assertEquals(2, uploads.get(index));
+        assertFalse(states.get(index).isDirty());
+        assertFalse(states.get(index).isBaking());
+    }
+
+    @Test
+    void staleResultIsDroppedWhenChunkHasMesh() {
+        long index = getChunkIndex(0, 0, 0);
+        dirtyChunks.addBlock(5, 5, 5);
+        flush();
+        finishAll();
+        assertEquals(1, uploads.get(index));
+
+        dirtyChunks.addBlock(5, 5, 5);
+        flush();
+        dirtyChunks.addBlock(6, 5, 5);
+        flush();
+        finishAll();
+
+        assertEquals(3, bakes.get(index));
+        assertEquals(2, uploads.get(index));
+    }
+
+    /**
+     * Marks the dirty chunks and starts their bakes, like the renderer does once per frame.
+     */
+    private void flush() {
+        dirtyChunks.flush(index -> {
+            ChunkBakeState state = states.computeIfAbsent(index, key -> new ChunkBakeState());
+            state.markDirty();
+            tryStart(index, state);
+        });
+    }
+
+    private void tryStart(long index, ChunkBakeState state) {
+        int version = state.tryStart();
+        if (version == ChunkBakeState.NONE) return;
+        bakes.addTo(index, 1);
+        running.add(new long[]{index, version});
+    }
+
+    /**
+     * Finishes the running bakes and the ones started after them, like the bake results handled on the render thread.
+     */
+    private void finishAll() {
+        while (!running.isEmpty()) {
+            long[] bake = running.poll();
+            long index = bake[0];
+            ChunkBakeState state = states.get(index);
+            if (state.finish((int) bake[1]) || !uploads.containsKey(index)) {
+                uploads.addTo(index, 1);
+            }
+            if (state.isDirty()) tryStart(index, state);
+        }
+    }
+}
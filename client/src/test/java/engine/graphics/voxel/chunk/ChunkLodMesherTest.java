@@ -0,0 +1,142 @@
+package engine.graphics.voxel.chunk;
+
+import engine.graphics.vertex.VertexDataBuf;
+import engine.graphics.vertex.VertexFormat;
+import engine.util.Direction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkLodMesherTest {
+
+    private static final int AIR = 0;
+    private static final int STONE = 1;
+    private static final int GRASS = 2;
+    private static final float[] STONE_UV = {0, 0, 0.5f, 0.5f};
+    private static final float[] GRASS_UV = {0.5f, 0, 1, 0.5f};
+
+    private VertexDataBuf buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new VertexDataBuf() {
+            @Override
+            protected ByteBuffer createBuffer(int capacity) {
+                return ByteBuffer.allocate(capacity);
+            }
+
+            @Override
+            protected void freeBuffer(ByteBuffer buffer) {
+            }
+        };
+        buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+    }
+
+    @Test
+    void solidChunkHasOnlySkirts() {
+        for (int scale : List.of(2, 4)) {
+            setUp();
+            int quads = new ChunkLodMesher().mesh((x, y, z) -> STONE, 0, 0, 0, scale, ChunkLodMesherTest::getFace, buffer);
+            buffer.finish();
+
+            int cells = 32 / scale;
+            assertEquals(6 * cells * cells, quads);
+            assertEquals(6 * quads, buffer.getVertexCount());
+            assertWatertight();
+        }
+    }
+
+    @Test
+    void cellsFollowTheMajorityOfBlocks() {
+        // Three of the eight blocks of the first cell are solid, five of the second one.
+        ChunkLodMesher.BlockSource blocks = (x, y, z) -> {
+            if (y >= 2 || z >= 2 || x >= 4) return AIR;
+            int index = (x & 1) + y * 2 + z * 4;
+            return x < 2 ? (index < 3 ? STONE : AIR) : (index < 5 ? STONE : AIR);
+        };
+        int quads = new ChunkLodMesher().mesh(blocks, 0, 0, 0, 2, ChunkLodMesherTest::getFace, buffer);
+        buffer.finish();
+
+        assertEquals(6, quads);
+        FloatBuffer floats = buffer.getByteBuffer().asFloatBuffer();
+        int stride = VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION.getBytes() / Float.BYTES;
+        for (int vertex = 0; vertex < buffer.getVertexCount(); vertex++) {
+            assertTrue(floats.get(vertex * stride) >= 2);
+        }
+    }
+
+    @Test
+    void cellsTakeTheirTopSurface() {
+        // Grass on top of stone at y = 2, the cell at y = [0, 4) shows grass on every face.
+        ChunkLodMesher.BlockSource blocks = (x, y, z) -> y > 2 ? AIR : y == 2 ? GRASS : STONE;
+        new ChunkLodMesher().mesh(blocks, 0, 0, 0, 4, ChunkLodMesherTest::getFace, buffer);
+        buffer.finish();
+
+        FloatBuffer floats = buffer.getByteBuffer().asFloatBuffer();
+        int stride = VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION.getBytes() / Float.BYTES;
+        int regionOffset = stride - 4;
+        for (int vertex = 0; vertex < buffer.getVertexCount(); vertex++) {
+            assertEquals(GRASS_UV[0], floats.get(vertex * stride + regionOffset));
+        }
+        assertWatertight();
+    }
+
+    @Test
+    void terrainMeshIsWatertight() {
+        Random random = new Random(42);
+        int[] heights = new int[32 * 32];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = 4 + random.nextInt(24);
+        }
+        int[] caves = new int[32 * 32 * 32];
+        for (int i = 0; i < caves.length; i++) {
+            caves[i] = random.nextInt(5) == 0 ? AIR : STONE;
+        }
+        ChunkLodMesher.BlockSource blocks = (x, y, z) -> y < heights[x + z * 32] ? caves[x + (y + z * 32) * 32] : AIR;
+        for (int scale : List.of(2, 4)) {
+            setUp();
+            int quads = new ChunkLodMesher().mesh(blocks, 0, 0, 0, scale, ChunkLodMesherTest::getFace, buffer);
+            buffer.finish();
+
+            assertTrue(quads > 0);
+            assertWatertight();
+        }
+    }
+
+    private static float[] getFace(int stateId, Direction direction) {
+        return stateId == STONE ? STONE_UV : stateId == GRASS ? GRASS_UV : null;
+    }
+
+    /**
+     * Checks that every directed edge of the triangles is matched by the same edge in the opposite direction, so that
+     * the mesh has no holes and a consistent winding.
+     */
+    private void assertWatertight() {
+        int stride = VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION.getBytes() / Float.BYTES;
+        FloatBuffer floats = buffer.getByteBuffer().asFloatBuffer();
+        Map<String, Integer> edges = new HashMap<>();
+        for (int vertex = 0; vertex < buffer.getVertexCount(); vertex += 3) {
+            for (int i = 0; i < 3; i++) {
+                String from = position(floats, (vertex + i) * stride);
+                String to = position(floats, (vertex + (i + 1) % 3) * stride);
+                edges.merge(from + ">" + to, 1, Integer::sum);
+            }
+        }
+        edges.forEach((edge, count) -> {
+            String[] ends = edge.split(">");
+            assertEquals(count, edges.getOrDefault(ends[1] + ">" + ends[0], 0), "Unmatched edge " + edge);
+        });
+    }
+
+    private static String position(FloatBuffer floats, int index) {
+        return floats.get(index) + "," + floats.get(index + 1) + "," + floats.get(index + 2);
+    }
+}
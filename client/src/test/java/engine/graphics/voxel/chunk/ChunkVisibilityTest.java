@@ -0,0 +1,140 @@
+package engine.graphics.voxel.chunk;
+
+import engine.util.Direction;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import org.junit.jupiter.api.Test;
+
+import static engine.util.Direction.*;
+import static engine.world.chunk.ChunkConstants.getChunkIndex;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkVisibilityTest {
+
+    private final ChunkVisibility visibility = new ChunkVisibility();
+
+    @Test
+    void emptyAndSolidChunks() {
+        visibility.clear();
+        assertEquals(ChunkVisibility.ALL, visibility.compute());
+
+        fill(0, 0, 0, 31, 31, 31);
+        assertEquals(ChunkVisibility.NONE, visibility.compute());
+    }
+
+    @Test
+    void floorSeparatesUpAndDown() {
+        visibility.clear();
+        fill(0, 10, 0, 31, 10, 31);
+        long result = visibility.compute();
+
+        assertFalse(ChunkVisibility.isVisible(result, UP, DOWN));
+        assertFalse(ChunkVisibility.isVisible(result, DOWN, UP));
+        assertTrue(ChunkVisibility.isVisible(result, UP, NORTH));
+        assertTrue(ChunkVisibility.isVisible(result, DOWN, NORTH));
+        assertTrue(ChunkVisibility.isVisible(result, EAST, WEST));
+    }
+
+    @Test
+    void tunnelConnectsOnlyItsEnds() {
+        visibility.clear();
+        for (int x = 0; x < 32; x++) {
+            for (int y = 0; y < 32; y++) {
+                if (x == 5 && y == 5) continue;
+                fill(x, y, 0, x, y, 31);
+            }
+        }
+        long result = visibility.compute();
+
+        assertTrue(ChunkVisibility.isVisible(result, NORTH, SOUTH));
+        assertTrue(ChunkVisibility.isVisible(result, SOUTH, NORTH));
+        for (Direction direction : new Direction[]{EAST, WEST, UP, DOWN}) {
+            assertFalse(ChunkVisibility.isVisible(result, NORTH, direction));
+            assertFalse(ChunkVisibility.isVisible(result, direction, SOUTH));
+        }
+    }
+
+    @Test
+    void closedRoomSeesNoFace() {
+        visibility.clear();
+        fill(0, 0, 0, 31, 31, 0);
+        fill(0, 0, 31, 31, 31, 31);
+        fill(0, 0, 0, 0, 31, 31);
+        fill(31, 0, 0, 31, 31, 31);
+        fill(0, 0, 0, 31, 0, 31);
+        fill(0, 31, 0, 31, 31, 31);
+        assertEquals(ChunkVisibility.NONE, visibility.compute());
+    }
+
+    @Test
+    void traversalStopsBehindOpaqueChunk() {
+        var chunks = new Long2LongOpenHashMap();
+        for (int x = 0; x < 5; x++) {
+            chunks.put(getChunkIndex(x, 0, 0), ChunkVisibility.ALL);
+        }
+        chunks.put(getChunkIndex(2, 0, 0), ChunkVisibility.NONE);
+
+        LongSet reachable = traverse(chunks, 0, 0, 0);
+
+        assertTrue(reachable.contains(getChunkIndex(1, 0, 0)));
+        assertTrue(reachable.contains(getChunkIndex(2, 0, 0)));
+        assertFalse(reachable.contains(getChunkIndex(3, 0, 0)));
+        assertFalse(reachable.contains(getChunkIndex(4, 0, 0)));
+    }
+
+    @Test
+    void traversalDoesNotTurnBack() {
+        // Around an opaque chunk: up, east, east and down would turn back against the first step.
+        var chunks = new Long2LongOpenHashMap();
+        chunks.put(getChunkIndex(0, 0, 0), ChunkVisibility.ALL);
+        chunks.put(getChunkIndex(1, 0, 0), ChunkVisibility.NONE);
+        chunks.put(getChunkIndex(2, 0, 0), ChunkVisibility.ALL);
+        chunks.put(getChunkIndex(0, 1, 0), ChunkVisibility.ALL);
+        chunks.put(getChunkIndex(1, 1, 0), ChunkVisibility.ALL);
+        chunks.put(getChunkIndex(2, 1, 0), ChunkVisibility.ALL);
+
+        LongSet reachable = traverse(chunks, 0, 0, 0);
+
+        assertTrue(reachable.contains(getChunkIndex(2, 1, 0)));
+        assertFalse(reachable.contains(getChunkIndex(2, 0, 0)));
+        assertEquals(5, reachable.size());
+    }
+
+    @Test
+    void traversalFollowsComputedVisibility() {
+        visibility.clear();
+        fill(0, 10, 0, 31, 10, 31);
+        long floor = visibility.compute();
+        var chunks = new Long2LongOpenHashMap();
+        chunks.put(getChunkIndex(0, 0, 0), ChunkVisibility.ALL);
+        chunks.put(getChunkIndex(1, 0, 0), floor);
+        chunks.put(getChunkIndex(1, 1, 0), ChunkVisibility.ALL);
+        chunks.put(getChunkIndex(1, -1, 0), ChunkVisibility.ALL);
+
+        LongSet reachable = traverse(chunks, 0, 0, 0);
+
+        // Entering from the west side, both the space above and below the floor are seen.
+        assertTrue(reachable.contains(getChunkIndex(1, 1, 0)));
+        assertTrue(reachable.contains(getChunkIndex(1, -1, 0)));
+
+        reachable = traverse(chunks, 1, 1, 0);
+
+        assertTrue(reachable.contains(getChunkIndex(1, 0, 0)));
+        assertFalse(reachable.contains(getChunkIndex(1, -1, 0)));
+    }
+
+    private static LongSet traverse(Long2LongOpenHashMap chunks, int chunkX, int chunkY, int chunkZ) {
+        chunks.defaultReturnValue(ChunkOcclusionCuller.UNLOADED);
+        return new ChunkOcclusionCuller().traverse(chunkX, chunkY, chunkZ, (x, y, z) -> chunks.get(getChunkIndex(x, y, z)));
+    }
+
+    private void fill(int fromX, int fromY, int fromZ, int toX, int toY, int toZ) {
+        for (int x = fromX; x <= toX; x++) {
+            for (int y = fromY; y <= toY; y++) {
+                for (int z = fromZ; z <= toZ; z++) {
+                    visibility.setOpaque(x, y, z);
+                }
+            }
+        }
+    }
+}
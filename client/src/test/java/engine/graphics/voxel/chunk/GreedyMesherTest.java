@@ -0,0 +1,247 @@
+package engine.graphics.voxel.chunk;
+
+import engine.block.state.BlockState;
+import engine.graphics.model.AmbientOcclusion;
+import engine.graphics.vertex.VertexDataBuf;
+import engine.graphics.vertex.VertexFormat;
+import engine.math.BlockPos;
+import engine.util.Direction;
+import engine.world.BlockGetter;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GreedyMesherTest {
+
+    private static final BlockState AIR = new BlockState(null, Map.of());
+    private static final BlockState STONE = new BlockState(null, Map.of());
+    private static final BlockState DIRT = new BlockState(null, Map.of());
+    private static final float[] STONE_UV = {0, 0, 0.5f, 0.5f};
+    private static final float[] DIRT_UV = {0.5f, 0, 1, 0.5f};
+
+    private VertexDataBuf buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = createBuffer();
+        buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+    }
+
+    @Test
+    void floorMergesIntoOneQuadPerSide() {
+        int quads = new GreedyMesher().mesh(floor(32), 0, 0, 0, GreedyMesherTest::getFace, buffer);
+        buffer.finish();
+
+        assertEquals(6, quads);
+        assertEquals(6 * 6, buffer.getVertexCount());
+        // Per-face meshing would emit 32 * 32 quads on top and bottom plus 32 on each side.
+        assertEquals(2 * 32 * 32 + 4 * 32, coveredArea(), 1e-3);
+    }
+
+    @Test
+    void differentTexturesAreNotMerged() {
+        int quads = new GreedyMesher().mesh(floor(16), 0, 0, 0, GreedyMesherTest::getFace, buffer);
+        buffer.finish();
+
+        // Top, bottom, north and south are split at x = 16, east and west are single quads.
+        assertEquals(10, quads);
+        assertEquals(10 * 6, buffer.getVertexCount());
+        assertEquals(2 * 32 * 32 + 4 * 32, coveredArea(), 1e-3);
+    }
+
+    @Test
+    void differentOcclusionIsNotMerged() {
+        // An occluder above the floor at (5, 1, 5) shades the top faces around it.
+        GreedyMesher.OcclusionSource occlusion = (x, y, z) -> {
+            int dx = 5 - x, dy = 1 - y, dz = 5 - z;
+            if (Math.abs(dx) > 1 || Math.abs(dy) > 1 || Math.abs(dz) > 1) return 0;
+            return AmbientOcclusion.getNeighborBit(dx, dy, dz);
+        };
+        int quads = new GreedyMesher().mesh(floor(32), 0, 0, 0, GreedyMesherTest::getFace, occlusion, buffer);
+        buffer.finish();
+
+        assertTrue(quads > 6);
+        assertEquals(2 * 32 * 32 + 4 * 32, coveredArea(), 1e-3);
+        float minShade = 1;
+        int stride = VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION.getBytes() / Float.BYTES;
+        FloatBuffer floats = buffer.getByteBuffer().asFloatBuffer();
+        for (int vertex = 0; vertex < buffer.getVertexCount(); vertex++) {
+            float shade = floats.get(vertex * stride + 3);
+            minShade = Math.min(minShade, shade);
+            if (shade < 1) {
+                // Only the top face corners next to the occluder are shaded.
+                assertEquals(1, floats.get(vertex * stride + 1), 1e-6);
+                assertTrue(Math.abs(floats.get(vertex * stride) - 5.5f) <= 1.5f);
+                assertTrue(Math.abs(floats.get(vertex * stride + 2) - 5.5f) <= 1.5f);
+            }
+        }
+        assertEquals(AmbientOcclusion.getShade(2), minShade, 1e-6);
+    }
+
+    @Test
+    void terrainCoversSameAreaAsPerFaceMeshing() {
+        BlockGetter terrain = terrain(new Random(42));
+        int quads = new GreedyMesher().mesh(terrain, 0, 0, 0, GreedyMesherTest::getFace, buffer);
+        buffer.finish();
+        float greedyArea = coveredArea();
+
+        buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+        int faces = meshPerFace(terrain, buffer);
+        buffer.finish();
+
+        assertTrue(quads < faces, quads + " merged quads for " + faces + " faces");
+        assertEquals(faces, coveredArea(), 1e-3);
+        assertEquals(faces, greedyArea, 1e-3);
+    }
+
+    /**
+     * @return a one block thick floor of stone at y = 0, with dirt from x = stoneWidth
+     */
+    private static BlockGetter floor(int stoneWidth) {
+        return new BlockGetter() {
+            @Nonnull
+            @Override
+            public BlockState getBlock(int x, int y, int z) {
+                if (y != 0 || x < 0 || x >= 32 || z < 0 || z >= 32) return AIR;
+                return x < stoneWidth ? STONE : DIRT;
+            }
+
+            @Override
+            public boolean isAirBlock(int x, int y, int z) {
+                return getBlock(x, y, z) == AIR;
+            }
+        };
+    }
+
+    /**
+     * @return hills of stone covered by a layer of dirt, up to half of the chunk high
+     */
+    private static BlockGetter terrain(Random random) {
+        int[] heights = new int[32 * 32];
+        for (int i = 0; i < heights.length; i++) {
+            int x = i % 32, z = i / 32;
+            heights[i] = 8 + (int) (4 * Math.sin(x / 5.0) + 4 * Math.cos(z / 7.0)) + random.nextInt(2);
+        }
+        return new BlockGetter() {
+            @Nonnull
+            @Override
+            public BlockState getBlock(int x, int y, int z) {
+                if (x < 0 || x >= 32 || y < 0 || y >= 32 || z < 0 || z >= 32) return AIR;
+                int height = heights[x + z * 32];
+                return y > height ? AIR : y == height ? DIRT : STONE;
+            }
+
+            @Override
+            public boolean isAirBlock(int x, int y, int z) {
+                return getBlock(x, y, z) == AIR;
+            }
+        };
+    }
+
+    /**
+     * Writes one quad per visible face, like the baked block models of the per-block path.
+     *
+     * @return number of quads written to the buffer
+     */
+    private static int meshPerFace(BlockGetter world, VertexDataBuf buffer) {
+        var pos = new BlockPos.Mutable(0, 0, 0);
+        float[] corners = new float[12];
+        int quadCount = 0;
+        for (int z = 0; z < 32; z++) {
+            for (int y = 0; y < 32; y++) {
+                for (int x = 0; x < 32; x++) {
+                    pos.set(x, y, z);
+                    BlockState block = world.getBlock(pos);
+                    buffer.setTranslation(x, y, z);
+                    for (Direction direction : Direction.values()) {
+                        float[] face = getFace(world, pos, block, direction);
+                        if (face == null) continue;
+                        GreedyMesher.setCorners(corners, direction, 0, 0, 0, 1, 1, 1);
+                        for (int corner : new int[]{0, 1, 2, 0, 2, 3}) {
+                            buffer.pos(corners, corner * 3).rgba(1, 1, 1, 1).tex(corner == 1 || corner == 2 ? 1 : 0, corner < 2 ? 1 : 0)
+                                    .normal(direction.offsetX, direction.offsetY, direction.offsetZ)
+                                    .texRegion(face[0], face[1], face[2] - face[0], face[3] - face[1]).endVertex();
+                        }
+                        quadCount++;
+                    }
+                }
+            }
+        }
+        buffer.setTranslation(0, 0, 0);
+        return quadCount;
+    }
+
+    private static float[] getFace(BlockGetter world, BlockPos pos, BlockState block, Direction direction) {
+        if (block == AIR || !world.isAirBlock(pos.x() + direction.offsetX, pos.y() + direction.offsetY, pos.z() + direction.offsetZ)) {
+            return null;
+        }
+        return block == STONE ? STONE_UV : DIRT_UV;
+    }
+
+    private static VertexDataBuf createBuffer() {
+        return new VertexDataBuf() {
+            @Override
+            protected ByteBuffer createBuffer(int capacity) {
+                return ByteBuffer.allocate(capacity);
+            }
+
+            @Override
+            protected void freeBuffer(ByteBuffer buffer) {
+            }
+        };
+    }
+
+    private float coveredArea() {
+        int stride = VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION.getBytes() / Float.BYTES;
+        FloatBuffer floats = buffer.getByteBuffer().asFloatBuffer();
+        float area = 0;
+        var a = new Vector3f();
+        var b = new Vector3f();
+        for (int vertex = 0; vertex < buffer.getVertexCount(); vertex += 3) {
+            int first = vertex * stride;
+            float x = floats.get(first), y = floats.get(first + 1), z = floats.get(first + 2);
+            a.set(floats.get(first + stride) - x, floats.get(first + stride + 1) - y, floats.get(first + stride + 2) - z);
+            b.set(floats.get(first + 2 * stride) - x, floats.get(first + 2 * stride + 1) - y, floats.get(first + 2 * stride + 2) - z);
+            area += a.cross(b).length() / 2;
+        }
+        return area;
+    }
+
+    /**
+     * Compares vertex counts and bake times of greedy and per-face meshing of a hilly terrain chunk.
+     */
+    private static void benchmarkMesh() {
+        BlockGetter terrain = terrain(new Random(42));
+        VertexDataBuf buffer = createBuffer();
+        var mesher = new GreedyMesher();
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+                mesher.mesh(terrain, 0, 0, 0, GreedyMesherTest::getFace, buffer);
+                buffer.finish();
+            }
+            long greedy = (System.nanoTime() - start) / 100;
+            int greedyVertexes = buffer.getVertexCount();
+
+            start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION);
+                meshPerFace(terrain, buffer);
+                buffer.finish();
+            }
+            long perFace = (System.nanoTime() - start) / 100;
+            System.out.println("greedy " + greedyVertexes + " vertexes " + greedy / 1000L + " us, per face "
+                    + buffer.getVertexCount() + " vertexes " + perFace / 1000L + " us");
+        }
+    }
+}
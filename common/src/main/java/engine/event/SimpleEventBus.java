@@ -40,6 +40,11 @@ public class SimpleEventBus implements EventBus {
         return event.isCancellable() && ((Cancellable) event).isCancelled();
     }
 
+    @Override
+    public boolean hasListeners(Class<? extends Event> eventType) {
+        return !getListenerList(eventType).getListeners().isEmpty();
+    }
+
     private ListenerList getListenerList(Class<?> eventType) {
         return listenerLists.computeIfAbsent(eventType, this::createListenerList);
     }
@@ -42,6 +42,7 @@ public final class BlockRegistryImpl extends SynchronizableIdRegistry<Block> imp
     }
 
     private BiMap<Integer, BlockState> stateIdMap;
+    private volatile int stateIdVersion;
 
     @Override
     public void reconstructStateId() {
@@ -51,6 +52,12 @@ public final class BlockRegistryImpl extends SynchronizableIdRegistry<Block> imp
         stateIdMap.clear();
         AtomicInteger i = new AtomicInteger();
         getValues().forEach(block -> block.getStateManager().getStates().forEach(state -> stateIdMap.put(i.getAndIncrement(), state)));
+        stateIdVersion++;
+    }
+
+    @Override
+    public int getStateIdVersion() {
+        return stateIdVersion;
     }
 
     @Override
@@ -9,17 +9,46 @@ import engine.event.entity.EntitySpawnEvent;
 import engine.event.entity.EntityTickEvent;
 import engine.logic.Tickable;
 import engine.registry.Registries;
+import engine.world.chunk.ChunkConstants;
 import engine.world.hit.EntityHitResult;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
 import org.apache.commons.lang3.Validate;
 import org.joml.*;
 
+import javax.annotation.Nullable;
+import java.lang.Math;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import static engine.world.chunk.ChunkConstants.*;
+
+/**
+ * Entity manager of a world.
+ * <p>
+ * Besides the set of all entities, entities are bucketed by the chunk containing their position, so that spatial
+ * queries only visit the buckets overlapping the queried region. The buckets are refreshed when entities move
+ * during the world tick; code moving an entity outside of the tick should call {@link #updateEntityIndex(Entity)}.
+ * <p>
+ * Entity ticking can optionally run in parallel, see {@link #setTickPool(ForkJoinPool)}. Buckets are split into 8
+ * phases by the parity of their chunk coordinates, so the buckets of one phase are never adjacent and are ticked
+ * concurrently. Bucket moves and tick events are deferred to a merge phase on the calling thread, as are block changes
+ * of the worlds using this manager, see {@link #runAfterTick(Runnable)}. Entities spawned or destroyed during a tick,
+ * parallel or not, are added or removed once all entities have been ticked.
+ */
 public class DefaultEntityManager implements EntityManager, Tickable {
 
+    private static final boolean PARALLEL_TICK = Boolean.parseBoolean(System.getProperty("engine.entity.parallelTick", "false"));
+
     private final World world;
     private final EventBus eventBus;
 
@@ -27,9 +56,58 @@ public class DefaultEntityManager implements EntityManager, Tickable {
 
     private final Set<Entity> entities = new HashSet<>();
 
+    private final Long2ObjectMap<List<Entity>> entityBuckets = new Long2ObjectOpenHashMap<>();
+    private final Reference2LongMap<Entity> entityBucketKeys = new Reference2LongOpenHashMap<>();
+    /**
+     * Largest distance between the position of an entity and its bounding box, used to widen the searched buckets.
+     */
+    private double maxEntityExtent;
+
+    private ForkJoinPool tickPool = PARALLEL_TICK ? ForkJoinPool.commonPool() : null;
+    @SuppressWarnings("unchecked")
+    private final List<List<Entity>>[] tickPhases = new List[8];
+    private final Queue<Runnable> deferredChanges = new ConcurrentLinkedQueue<>();
+    /**
+     * Whether entities are being ticked, when spawning and destroying are deferred so that the ticked set is unchanged.
+     */
+    private volatile boolean ticking;
+    private volatile boolean parallelTicking;
+
     public DefaultEntityManager(World world) {
         this.world = world;
         this.eventBus = world.getGame().getEventBus();
+        for (int i = 0; i < tickPhases.length; i++) {
+            tickPhases[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * @param tickPool pool ticking entities in parallel, or null to tick them on the calling thread. Entities ticked in
+     *                 parallel must only interact with entities within a chunk, and change the world through
+     *                 {@link #runAfterTick(Runnable)}. Enabled by default on the common pool with the system property
+     *                 {@code engine.entity.parallelTick}.
+     */
+    public void setTickPool(@Nullable ForkJoinPool tickPool) {
+        this.tickPool = tickPool;
+    }
+
+    /**
+     * @return true while entities are ticked in parallel, when the world must not be changed nor chunks be loaded
+     */
+    public boolean isParallelTicking() {
+        return parallelTicking;
+    }
+
+    /**
+     * Runs a change of the world after the parallel tick on the thread ticking the world, or immediately if entities
+     * are not ticked in parallel. Deferred changes run in the order they have been queued.
+     */
+    public void runAfterTick(Runnable change) {
+        if (parallelTicking) {
+            deferredChanges.add(change);
+        } else {
+            change.run();
+        }
     }
 
     @Override
@@ -64,13 +142,25 @@ public class DefaultEntityManager implements EntityManager, Tickable {
             throw new IllegalStateException("Entity is not destroyed");
         }
 
+        if (ticking) {
+            deferredChanges.add(() -> doDestroyEntity(entity));
+            return;
+        }
         entities.remove(entity);
+        removeFromIndex(entity);
         eventBus.post(new EntityDestroyEvent(entity));
     }
 
     private Entity spawnEntity(EntityProvider provider, double x, double y, double z) {
         Validate.notNull(provider, "Entity provider is not found");
         var entity = provider.createEntity(nextId.getAndIncrement(), world, x, y, z);
+        if (ticking) {
+            deferredChanges.add(() -> {
+                eventBus.post(new EntityCreateEvent(entity));
+                spawnEntity(entity);
+            });
+            return entity;
+        }
         eventBus.post(new EntityCreateEvent(entity));
         spawnEntity(entity);
         return entity;
@@ -86,15 +176,104 @@ public class DefaultEntityManager implements EntityManager, Tickable {
             return;
         }
         entities.add(entity);
+        addToIndex(entity);
         eventBus.post(new EntitySpawnEvent.Post(entity));
     }
 
+    /**
+     * Moves the entity to the bucket of its current position if it has left its previous chunk.
+     */
+    public void updateEntityIndex(Entity entity) {
+        if (!entityBucketKeys.containsKey(entity)) {
+            return;
+        }
+        long key = getBucketKey(entity.getPosition());
+        long oldKey = entityBucketKeys.getLong(entity);
+        if (key != oldKey) {
+            removeFromBucket(oldKey, entity);
+            entityBuckets.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+            entityBucketKeys.put(entity, key);
+        }
+        updateExtent(entity);
+    }
+
+    private void addToIndex(Entity entity) {
+        long key = getBucketKey(entity.getPosition());
+        entityBuckets.computeIfAbsent(key, k -> new ArrayList<>()).add(entity);
+        entityBucketKeys.put(entity, key);
+        updateExtent(entity);
+    }
+
+    private void removeFromIndex(Entity entity) {
+        if (entityBucketKeys.containsKey(entity)) {
+            removeFromBucket(entityBucketKeys.removeLong(entity), entity);
+        }
+    }
+
+    private void removeFromBucket(long key, Entity entity) {
+        List<Entity> bucket = entityBuckets.get(key);
+        if (bucket != null && bucket.remove(entity) && bucket.isEmpty()) {
+            entityBuckets.remove(key);
+        }
+    }
+
+    private void updateExtent(Entity entity) {
+        AABBd box = entity.getBoundingBox();
+        if (box == null) {
+            return;
+        }
+        double extent = Math.max(Math.max(Math.max(-box.minX, box.maxX), Math.max(-box.minY, box.maxY)), Math.max(-box.minZ, box.maxZ));
+        if (extent > maxEntityExtent) {
+            maxEntityExtent = extent;
+        }
+    }
+
+    private static long getBucketKey(Vector3dc position) {
+        return ChunkConstants.getChunkIndex(toChunkCoordinate(position.x(), CHUNK_X_BITS),
+                toChunkCoordinate(position.y(), CHUNK_Y_BITS), toChunkCoordinate(position.z(), CHUNK_Z_BITS));
+    }
+
+    private static int toChunkCoordinate(double value, int bits) {
+        return ((int) Math.floor(value)) >> bits;
+    }
+
+    /**
+     * Visits the entities in the buckets overlapping the given region, widened by the largest entity extent.
+     * Falls back to visiting all entities when the region covers more chunks than there are buckets.
+     */
+    private void forEachCandidate(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Consumer<Entity> consumer) {
+        double margin = maxEntityExtent;
+        int minChunkX = toChunkCoordinate(minX - margin, CHUNK_X_BITS), maxChunkX = toChunkCoordinate(maxX + margin, CHUNK_X_BITS);
+        int minChunkY = toChunkCoordinate(minY - margin, CHUNK_Y_BITS), maxChunkY = toChunkCoordinate(maxY + margin, CHUNK_Y_BITS);
+        int minChunkZ = toChunkCoordinate(minZ - margin, CHUNK_Z_BITS), maxChunkZ = toChunkCoordinate(maxZ + margin, CHUNK_Z_BITS);
+        long chunkCount = (long) (maxChunkX - minChunkX + 1) * (maxChunkY - minChunkY + 1) * (maxChunkZ - minChunkZ + 1);
+        if (chunkCount <= 0 || chunkCount > entityBuckets.size()) {
+            entities.forEach(consumer);
+            return;
+        }
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    List<Entity> bucket = entityBuckets.get(ChunkConstants.getChunkIndex(chunkX, chunkY, chunkZ));
+                    if (bucket == null) continue;
+                    for (int i = 0, size = bucket.size(); i < size; i++) {
+                        consumer.accept(bucket.get(i));
+                    }
+                }
+            }
+        }
+    }
 
     @Override
     public List<Entity> getEntities() {
         return new ArrayList<>(entities);
     }
 
+    @Override
+    public void forEachEntity(Consumer<Entity> consumer) {
+        entities.forEach(consumer);
+    }
+
     @Override
     public List<Entity> getEntities(Predicate<Entity> predicate) {
         return entities.stream().filter(predicate).collect(Collectors.toList());
@@ -129,13 +308,31 @@ public class DefaultEntityManager implements EntityManager, Tickable {
 
     @Override
     public List<Entity> getEntitiesWithBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
-        return getEntities(entity -> testAABB(entity, minX, minY, minZ, maxX, maxY, maxZ));
+        return getEntitiesWithBoundingBox(minX, minY, minZ, maxX, maxY, maxZ, new ArrayList<>());
+    }
+
+    @Override
+    public void forEachEntityWithBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Consumer<Entity> consumer) {
+        forEachCandidate(minX, minY, minZ, maxX, maxY, maxZ, entity -> {
+            if (testAABB(entity, minX, minY, minZ, maxX, maxY, maxZ)) {
+                consumer.accept(entity);
+            }
+        });
     }
 
     @Override
     public List<Entity> getEntitiesWithSphere(double centerX, double centerY, double centerZ, double radius) {
+        return getEntitiesWithSphere(centerX, centerY, centerZ, radius, new ArrayList<>());
+    }
+
+    @Override
+    public void forEachEntityWithSphere(double centerX, double centerY, double centerZ, double radius, Consumer<Entity> consumer) {
         double radiusSquared = radius * radius;
-        return getEntities(entity -> testSphere(entity, centerX, centerY, centerZ, radiusSquared));
+        forEachCandidate(centerX - radius, centerY - radius, centerZ - radius, centerX + radius, centerY + radius, centerZ + radius, entity -> {
+            if (testSphere(entity, centerX, centerY, centerZ, radiusSquared)) {
+                consumer.accept(entity);
+            }
+        });
     }
 
     private boolean testSphere(Entity entity, double centerX, double centerY, double centerZ, double radiusSquared) {
@@ -174,9 +371,74 @@ public class DefaultEntityManager implements EntityManager, Tickable {
 
     @Override
     public void tick() {
-        for (Entity entity : entities) {
-            entity.tick();
-            eventBus.post(new EntityTickEvent(entity));
+        boolean postTickEvent = eventBus.hasListeners(EntityTickEvent.class);
+        ticking = true;
+        try {
+            boolean parallel = tickPool != null && entityBuckets.size() > 1;
+            if (parallel) {
+                tickParallel();
+            }
+            for (Entity entity : entities) {
+                if (!parallel) {
+                    entity.tick();
+                }
+                updateEntityIndex(entity);
+                if (postTickEvent) {
+                    eventBus.post(new EntityTickEvent(entity));
+                }
+            }
+        } finally {
+            ticking = false;
+        }
+        Runnable change;
+        while ((change = deferredChanges.poll()) != null) {
+            change.run();
+        }
+    }
+
+    private void tickParallel() {
+        for (var entry : Long2ObjectMaps.fastIterable(entityBuckets)) {
+            long key = entry.getLongKey();
+            int phase = (int) ((key >>> 42 & 1) | (key >>> 21 & 1) << 1 | (key & 1) << 2);
+            tickPhases[phase].add(entry.getValue());
+        }
+        parallelTicking = true;
+        try {
+            for (List<List<Entity>> phase : tickPhases) {
+                if (!phase.isEmpty()) {
+                    tickPool.invoke(new TickTask(phase, 0, phase.size()));
+                }
+            }
+        } finally {
+            parallelTicking = false;
+            for (List<List<Entity>> phase : tickPhases) {
+                phase.clear();
+            }
+        }
+    }
+
+    private static final class TickTask extends RecursiveAction {
+        private final List<List<Entity>> buckets;
+        private final int from;
+        private final int to;
+
+        private TickTask(List<List<Entity>> buckets, int from, int to) {
+            this.buckets = buckets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TickTask(buckets, from, middle), new TickTask(buckets, middle, to));
+                return;
+            }
+            List<Entity> bucket = buckets.get(from);
+            for (int i = 0, size = bucket.size(); i < size; i++) {
+                bucket.get(i).tick();
+            }
         }
     }
 }
@@ -0,0 +1,159 @@
+package engine.world;
+
+import engine.block.Block;
+import engine.block.state.BlockState;
+import engine.entity.Entity;
+import engine.math.BlockPos;
+import org.joml.AABBd;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * Resolves entity motion against block shapes with a swept AABB test.
+ * <p>
+ * The block boxes touched by the entity box swept along its motion are collected once per entity, then the motion
+ * is clipped on the y, x and z axis in sequence, moving the entity box after each axis. The clipped motion is
+ * written back to the entity, so that the following motion step moves the entity exactly into contact.
+ * <p>
+ * Not thread-safe, the scratch buffers are reused across entities.
+ */
+final class PhysicsSystem {
+
+    private static final double EPSILON = 1.0E-7;
+
+    private final BlockPos.Mutable cursor = new BlockPos.Mutable(0, 0, 0);
+    private final AABBd entityBox = new AABBd();
+    /**
+     * Collected block boxes in world coordinates, 6 doubles (min x, y, z, max x, y, z) per box.
+     */
+    private double[] boxes = new double[6 * 64];
+    private int boxCount;
+
+    public void tick(World world, Entity entity) {
+        Vector3f motion = entity.getMotion();
+        if (motion.x == 0 && motion.y == 0 && motion.z == 0)
+            return;
+        AABBd box = entity.getBoundingBox();
+        if (box == null)
+            return;
+        Vector3d position = entity.getPosition();
+        entityBox.setMin(box.minX + position.x, box.minY + position.y, box.minZ + position.z)
+                .setMax(box.maxX + position.x, box.maxY + position.y, box.maxZ + position.z);
+
+        collectBlockBoxes(world, motion);
+
+        double dy = clipY(motion.y);
+        entityBox.minY += dy;
+        entityBox.maxY += dy;
+        double dx = clipX(motion.x);
+        entityBox.minX += dx;
+        entityBox.maxX += dx;
+        double dz = clipZ(motion.z);
+
+        if (dx != motion.x) motion.x = towardsZero(dx);
+        if (dy != motion.y) motion.y = towardsZero(dy);
+        if (dz != motion.z) motion.z = towardsZero(dz);
+    }
+
+    private void collectBlockBoxes(World world, Vector3f motion) {
+        boxCount = 0;
+        int minX = (int) Math.floor(Math.min(entityBox.minX, entityBox.minX + motion.x));
+        int minY = (int) Math.floor(Math.min(entityBox.minY, entityBox.minY + motion.y));
+        int minZ = (int) Math.floor(Math.min(entityBox.minZ, entityBox.minZ + motion.z));
+        int maxX = (int) Math.floor(Math.max(entityBox.maxX, entityBox.maxX + motion.x));
+        int maxY = (int) Math.floor(Math.max(entityBox.maxY, entityBox.maxY + motion.y));
+        int maxZ = (int) Math.floor(Math.max(entityBox.maxZ, entityBox.maxZ + motion.z));
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    cursor.set(x, y, z);
+                    BlockState state = world.getBlock(cursor);
+                    Block block = state.getPrototype();
+                    AABBd[] blockBoxes = block.getShape().getBoundingBoxes(world, cursor, block);
+                    for (AABBd blockBox : blockBoxes) {
+                        addBox(blockBox.minX + x, blockBox.minY + y, blockBox.minZ + z,
+                                blockBox.maxX + x, blockBox.maxY + y, blockBox.maxZ + z);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        int offset = boxCount * 6;
+        if (offset + 6 > boxes.length) {
+            boxes = Arrays.copyOf(boxes, boxes.length * 2);
+        }
+        boxes[offset] = minX;
+        boxes[offset + 1] = minY;
+        boxes[offset + 2] = minZ;
+        boxes[offset + 3] = maxX;
+        boxes[offset + 4] = maxY;
+        boxes[offset + 5] = maxZ;
+        boxCount++;
+    }
+
+    private double clipX(double dx) {
+        if (dx == 0) return 0;
+        for (int i = 0, offset = 0; i < boxCount; i++, offset += 6) {
+            if (!overlaps(boxes[offset + 1], boxes[offset + 4], entityBox.minY, entityBox.maxY)
+                    || !overlaps(boxes[offset + 2], boxes[offset + 5], entityBox.minZ, entityBox.maxZ))
+                continue;
+            dx = clip(dx, boxes[offset], boxes[offset + 3], entityBox.minX, entityBox.maxX);
+        }
+        return dx;
+    }
+
+    private double clipY(double dy) {
+        if (dy == 0) return 0;
+        for (int i = 0, offset = 0; i < boxCount; i++, offset += 6) {
+            if (!overlaps(boxes[offset], boxes[offset + 3], entityBox.minX, entityBox.maxX)
+                    || !overlaps(boxes[offset + 2], boxes[offset + 5], entityBox.minZ, entityBox.maxZ))
+                continue;
+            dy = clip(dy, boxes[offset + 1], boxes[offset + 4], entityBox.minY, entityBox.maxY);
+        }
+        return dy;
+    }
+
+    private double clipZ(double dz) {
+        if (dz == 0) return 0;
+        for (int i = 0, offset = 0; i < boxCount; i++, offset += 6) {
+            if (!overlaps(boxes[offset], boxes[offset + 3], entityBox.minX, entityBox.maxX)
+                    || !overlaps(boxes[offset + 1], boxes[offset + 4], entityBox.minY, entityBox.maxY))
+                continue;
+            dz = clip(dz, boxes[offset + 2], boxes[offset + 5], entityBox.minZ, entityBox.maxZ);
+        }
+        return dz;
+    }
+
+    private static boolean overlaps(double blockMin, double blockMax, double entityMin, double entityMax) {
+        return blockMax > entityMin + EPSILON && blockMin < entityMax - EPSILON;
+    }
+
+    /**
+     * Limits the movement along one axis so that the entity stops at the face of the block box.
+     * Block boxes already overlapping the entity on this axis are ignored so that a stuck entity can move out.
+     */
+    private static double clip(double delta, double blockMin, double blockMax, double entityMin, double entityMax) {
+        if (delta > 0 && blockMin >= entityMax - EPSILON) {
+            return Math.min(delta, Math.max(0, blockMin - entityMax));
+        }
+        if (delta < 0 && blockMax <= entityMin + EPSILON) {
+            return Math.max(delta, Math.min(0, blockMax - entityMin));
+        }
+        return delta;
+    }
+
+    /**
+     * Narrows the clipped motion to float without rounding it into the block.
+     */
+    private static float towardsZero(double value) {
+        float result = (float) value;
+        if (Math.abs(result) > Math.abs(value)) {
+            result = Math.nextAfter(result, 0.0);
+        }
+        return result;
+    }
+}
@@ -15,7 +15,6 @@ import engine.event.block.BlockPlaceEvent;
 import engine.event.block.BlockReplaceEvent;
 import engine.event.block.cause.BlockChangeCause;
 import engine.game.Game;
-import engine.math.AABBs;
 import engine.math.BlockPos;
 import engine.registry.Registries;
 import engine.util.Direction;
@@ -26,6 +25,7 @@ import engine.world.gen.ChunkGenerator;
 import engine.world.hit.BlockHitResult;
 import engine.world.hit.EntityHitResult;
 import engine.world.hit.HitResult;
+import engine.world.light.LightEngine;
 import org.joml.*;
 
 import javax.annotation.Nonnull;
@@ -36,6 +36,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 import static engine.world.chunk.ChunkConstants.*;
@@ -55,6 +56,7 @@ public class WorldCommonDebug implements World {
     private final DefaultEntityManager entityManager;
 
     private DebugChunkManager chunkManager;
+    private final LightEngine lightEngine;
 
     //    private final Ticker ticker;
     private long gameTick;
@@ -69,6 +71,7 @@ public class WorldCommonDebug implements World {
         this.name = "Debug";
         this.creationSetting = creationSetting;
         this.chunkManager = new DebugChunkManager(this, chunkGenerator);
+        this.lightEngine = new LightEngine(this, chunkManager.getChunkGenExecutor());
 //        this.ticker = new Ticker(this::tick, Ticker.LOGIC_TICK); // TODO: make tps configurable
         this.collisionManager = new DefaultCollisionManager(this);
         this.entityManager = new DefaultEntityManager(this);
@@ -157,6 +160,21 @@ public class WorldCommonDebug implements World {
         return entityManager.getEntitiesWithSphere(centerX, centerY, centerZ, radius);
     }
 
+    @Override
+    public void forEachEntity(Consumer<Entity> consumer) {
+        entityManager.forEachEntity(consumer);
+    }
+
+    @Override
+    public void forEachEntityWithBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Consumer<Entity> consumer) {
+        entityManager.forEachEntityWithBoundingBox(minX, minY, minZ, maxX, maxY, maxZ, consumer);
+    }
+
+    @Override
+    public void forEachEntityWithSphere(double centerX, double centerY, double centerZ, double radius, Consumer<Entity> consumer) {
+        entityManager.forEachEntityWithSphere(centerX, centerY, centerZ, radius, consumer);
+    }
+
     public EntityHitResult raycastEntity(Vector3fc from, Vector3fc dir, float distance) {
         return entityManager.raycastEntity(from, dir, distance);
     }
@@ -202,6 +220,11 @@ public class WorldCommonDebug implements World {
         return collisionManager.raycastBlock(from, dir, distance, ignore);
     }
 
+    @Override
+    public BlockHitResult[] raycastBlocks(Rayf[] segments) {
+        return collisionManager.raycastBlocks(segments);
+    }
+
     @Override
     public HitResult raycast(Vector3fc from, Vector3fc dir, float distance) {
         BlockHitResult blockHitResult = raycastBlock(from, dir, distance);
@@ -224,19 +247,21 @@ public class WorldCommonDebug implements World {
 
     @Override
     public void tick() {
-        physicsSystem.tick(this);
         tickEntityMotion();
         chunkManager.tick();
+        lightEngine.tick();
         entityManager.tick();
         gameTick++;
     }
 
     protected void tickEntityMotion() {
-        for (Entity entity : this.getEntities()) {
+        entityManager.forEachEntity(entity -> {
+            physicsSystem.tick(this, entity);
             Vector3d position = entity.getPosition();
             Vector3f motion = entity.getMotion();
             position.add(motion);
-        }
+            entityManager.updateEntityIndex(entity);
+        });
     }
 
     @Nonnull
@@ -254,7 +279,16 @@ public class WorldCommonDebug implements World {
     @Nonnull
     @Override
     public BlockState setBlock(@Nonnull BlockPos pos, @Nonnull BlockState block, @Nonnull BlockChangeCause cause, boolean shouldNotify) {
-        BlockState oldBlock = getBlock(pos);
+        if (entityManager.isParallelTicking()) {
+            entityManager.runAfterTick(() -> setBlock(pos, block, cause, shouldNotify));
+            return getBlock(pos);
+        }
+        Chunk chunk = getChunk(pos.x() >> CHUNK_X_BITS, pos.y() >> CHUNK_Y_BITS, pos.z() >> CHUNK_Z_BITS, true);
+        if (chunk == null) {
+            // Not generated yet.
+            return Registries.getBlockRegistry().air().getDefaultState();
+        }
+        BlockState oldBlock = chunk.getBlock(pos.x(), pos.y(), pos.z());
         BlockChangeEvent pre, post;
         if (block.getPrototype() == AirBlock.AIR) {
             pre = new BlockDestroyEvent.Pre(this, pos, oldBlock, block, cause);
@@ -267,8 +301,8 @@ public class WorldCommonDebug implements World {
             post = new BlockReplaceEvent.Post(this, pos, oldBlock, block, cause);
         }
         if (!getGame().getEventBus().post(pre)) {
-            getChunk(pos.x() >> CHUNK_X_BITS, pos.y() >> CHUNK_Y_BITS, pos.z() >> CHUNK_Z_BITS, true)
-                    .setBlock(pos, block, cause);
+            chunk.setBlock(pos, block, cause);
+            lightEngine.onBlockChanged(pos, oldBlock, block);
 
             oldBlock.getPrototype().getComponent(DestroyBehavior.class).ifPresent(destroyBehavior -> destroyBehavior.onDestroyed(this, pos, oldBlock, cause));
             block.getPrototype().getComponent(PlaceBehavior.class).ifPresent(placeBehavior -> placeBehavior.onPlaced(this, pos, block, cause));
@@ -298,7 +332,8 @@ public class WorldCommonDebug implements World {
 
     @Override
     public Chunk getChunk(int chunkX, int chunkY, int chunkZ, boolean shouldLoadWhenNonexist) {
-        return shouldLoadWhenNonexist ? chunkManager.getOrLoadChunk(chunkX, chunkY, chunkZ) : chunkManager.getChunk(chunkX, chunkY, chunkZ).orElse(null);
+        // Chunks are not loaded from entities ticked in parallel.
+        return shouldLoadWhenNonexist && !entityManager.isParallelTicking() ? chunkManager.getOrLoadChunk(chunkX, chunkY, chunkZ) : chunkManager.getChunk(chunkX, chunkY, chunkZ).orElse(null);
     }
 
     @Override
@@ -348,93 +383,8 @@ public class WorldCommonDebug implements World {
 //        this.chunkManager = chunkManager;
 //    }
 
-    static final class PhysicsSystem {
-        public void tick(World world) {
-            for (Entity entity : world.getEntities()) {
-                Vector3f motion = entity.getMotion();
-                if (motion.x == 0 && motion.y == 0 && motion.z == 0)
-                    continue;
-                Vector3f direction = new Vector3f(motion);
-                Vector3d position = entity.getPosition();
-                AABBd box = entity.getBoundingBox();
-                if (box == null)
-                    continue;
-
-                BlockPos localPos = BlockPos.of(((int) Math.floor(position.x)), ((int) Math.floor(position.y)),
-                        ((int) Math.floor(position.z)));
-
-//                 int directionX = motion.x == -0 ? 0 : Float.compare(motion.x, 0),
-//                 directionY = motion.y == -0 ? 0 : Float.compare(motion.y, 0),
-//                 directionZ = motion.z == -0 ? 0 : Float.compare(motion.z, 0);
-
-                AABBd entityBox = box.translate(position.add(direction, new Vector3d()), new AABBd());
-                List<BlockPos>[] around = AABBs.around(entityBox, motion);
-                for (List<BlockPos> ls : around) {
-                    ls.add(localPos);
-                }
-                List<BlockPos> faceX = around[0], faceY = around[1], faceZ = around[2];
-
-                double xFix = Integer.MAX_VALUE, yFix = Integer.MAX_VALUE, zFix = Integer.MAX_VALUE;
-                if (faceX.size() != 0) {
-                    for (BlockPos pos : faceX) {
-                        BlockState block = world.getBlock(pos);
-                        AABBd[] blockBoxes = block.getPrototype().getShape().getBoundingBoxes(world, pos, block.getPrototype());
-                        if (blockBoxes.length != 0)
-                            for (AABBd blockBoxLocal : blockBoxes) {
-                                AABBd blockBox = blockBoxLocal.translate(
-                                        new Vector3f(pos.x(), pos.y(), pos.z()), new AABBd());
-                                if (blockBox.testAABB(entityBox)) {
-                                    xFix = Math.min(xFix, Math.min(Math.abs(blockBox.maxX - entityBox.minX),
-                                            Math.abs(blockBox.minX - entityBox.maxX)));
-                                }
-                            }
-                    }
-                }
-                if (faceY.size() != 0) {
-                    for (BlockPos pos : faceY) {
-                        BlockState block = world.getBlock(pos);
-                        AABBd[] blockBoxes = block.getPrototype().getShape()
-                                .getBoundingBoxes(world, pos, block.getPrototype());
-                        if (blockBoxes.length != 0)
-                            for (AABBd blockBox : blockBoxes) {
-                                AABBd translated = blockBox.translate(
-                                        new Vector3f(pos.x(), pos.y(), pos.z()), new AABBd());
-                                if (translated.testAABB(entityBox)) {
-                                    yFix = Math.min(yFix, Math.min(Math.abs(translated.maxY - entityBox.minY),
-                                            Math.abs(translated.minY - entityBox.maxY)));
-                                }
-                            }
-                    }
-                }
-                if (faceZ.size() != 0) {
-                    for (BlockPos pos : faceZ) {
-                        BlockState block = world.getBlock(pos);
-                        AABBd[] blockBoxes = block.getPrototype().getShape()
-                                .getBoundingBoxes(world, pos, block.getPrototype());
-                        if (blockBoxes.length != 0)
-                            for (AABBd blockBox : blockBoxes) {
-                                AABBd translated = blockBox.translate(
-                                        new Vector3f(pos.x(), pos.y(), pos.z()), new AABBd());
-                                if (translated.testAABB(entityBox)) {
-                                    zFix = Math.min(zFix, Math.min(Math.abs(translated.maxZ - entityBox.minZ),
-                                            Math.abs(translated.minZ - entityBox.maxZ)));
-                                }
-                            }
-                    }
-                }
-                if (Integer.MAX_VALUE != xFix)
-                    motion.x = 0;
-                if (Integer.MAX_VALUE != yFix)
-                    motion.y = 0;
-                if (Integer.MAX_VALUE != zFix) {
-                    motion.z = 0;
-                }
-
-                // if (motion.y > 0) motion.y -= 0.01f;
-                // else if (motion.y < 0) motion.y += 0.01f;
-                // if (Math.abs(motion.y) <= 0.01f) motion.y = 0; // physics update
-            }
-        }
+    public LightEngine getLightEngine() {
+        return lightEngine;
     }
 
     @Override
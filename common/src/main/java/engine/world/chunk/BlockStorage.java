@@ -18,6 +18,17 @@ public class BlockStorage {
         return Registries.getBlockRegistry().getStateFromId(data.get(getPosIndex(x, y, z)));
     }
 
+    public int getBlockId(int x, int y, int z) {
+        return data.get(getPosIndex(x, y, z));
+    }
+
+    /**
+     * @see Chunk#getBlockIds(int, int, int, int[], int, int)
+     */
+    public void getBlockIds(int x, int y, int z, int[] dest, int destOffset, int length) {
+        data.copyTo(getPosIndex(x, y, z), dest, destOffset, length);
+    }
+
     public BlockState setBlock(int x, int y, int z, BlockState block) {
         return Registries.getBlockRegistry().getStateFromId(data.getAndSet(getPosIndex(x, y, z), Registries.getBlockRegistry().getStateId(block)));
     }
@@ -3,11 +3,17 @@ package engine.world.chunk;
 import engine.world.World;
 import engine.world.gen.Heightmap;
 
+import static engine.world.chunk.ChunkConstants.CHUNK_MAX_X;
+import static engine.world.chunk.ChunkConstants.CHUNK_MAX_Z;
+
 /**
  * Chunk Column
  * <p>
  * This object contains a column of chunks in a World object.
  * Chunk Column is a collection of chunks which have the same x- and z-coordinate
+ * <p>
+ * Columns are accessed on the world thread only: chunks are attached once generated or loaded, so the heightmap is
+ * never updated by generator threads.
  */
 public class ChunkColumn {
 
@@ -17,6 +23,8 @@ public class ChunkColumn {
 
     private final Heightmap heightmap;
 
+    private int loadedChunkCount;
+
     public ChunkColumn(World world, int chunkX, int chunkZ) {
         this.world = world;
         this.chunkX = chunkX;
@@ -26,6 +34,14 @@ public class ChunkColumn {
         heightmap = Heightmap.create(this, Heightmap.NOT_AIR_PREDICATE);
     }
 
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    public int getChunkZ() {
+        return chunkZ;
+    }
+
     public Chunk getChunk(int chunkY) {
         return world.getChunk(chunkX, chunkY, chunkZ, false);
     }
@@ -33,4 +49,37 @@ public class ChunkColumn {
     public Heightmap getHeightmap() {
         return heightmap;
     }
+
+    /**
+     * @param x x-coordinate of the block, world or chunk coordinate system
+     * @param z z-coordinate of the block, world or chunk coordinate system
+     * @return y-coordinate of the highest non-air block in the column
+     */
+    public int getHighestBlockY(int x, int z) {
+        return heightmap.getHighestPosition(x & CHUNK_MAX_X, z & CHUNK_MAX_Z);
+    }
+
+    /**
+     * Attaches a loaded chunk to this column, so that its block changes keep the heightmap up to date.
+     */
+    public void onChunkLoad(Chunk chunk) {
+        if (chunk instanceof CubicChunk) {
+            ((CubicChunk) chunk).setColumn(this);
+        }
+        loadedChunkCount++;
+        heightmap.onChunkLoad(chunk);
+    }
+
+    /**
+     * Detaches an unloading chunk from this column.
+     *
+     * @return true if no chunk of this column remains loaded
+     */
+    public boolean onChunkUnload(Chunk chunk) {
+        if (chunk instanceof CubicChunk) {
+            ((CubicChunk) chunk).setColumn(null);
+        }
+        heightmap.onChunkUnload(chunk);
+        return --loadedChunkCount <= 0;
+    }
 }
@@ -36,6 +36,20 @@ public class CubicChunk implements Chunk {
     private BlockStorage blockStorage;
     private int nonAirBlockCount = 0;
 
+    /**
+     * Highest non-air block y plus one for each column of this chunk, 0 if the column is empty.
+     */
+    private final byte[] columnHeights = new byte[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+    /**
+     * Column of the chunk once it is published. Only the world thread attaches chunks and sets their blocks from then
+     * on, generator threads only see chunks without column, so heightmaps are never updated concurrently.
+     */
+    private ChunkColumn column;
+
+    private NibbleArray skyLight;
+    private NibbleArray blockLight;
+    private volatile int modificationCount;
+
     public CubicChunk(World world, int chunkX, int chunkY, int chunkZ) {
         this.world = new WeakReference<>(world);
         this.pos = ChunkPos.of(chunkX, chunkY, chunkZ);
@@ -102,6 +116,25 @@ public class CubicChunk implements Chunk {
         return blockStorage.getBlock(x, y, z);
     }
 
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        if (blockStorage == null) {
+            return Registries.getBlockRegistry().getStateId(Registries.getBlockRegistry().air().getDefaultState());
+        }
+
+        return blockStorage.getBlockId(x, y, z);
+    }
+
+    @Override
+    public void getBlockIds(int x, int y, int z, int[] dest, int destOffset, int length) {
+        if (blockStorage == null) {
+            Arrays.fill(dest, destOffset, destOffset + length, getBlockId(x, y, z));
+            return;
+        }
+
+        blockStorage.getBlockIds(x, y, z, dest, destOffset, length);
+    }
+
     @Override
     public BlockState setBlock(@Nonnull BlockPos pos, @Nonnull BlockState block, @Nonnull BlockChangeCause cause) {
         var block1 = setBlock(pos.x(), pos.y(), pos.z(), block);
@@ -118,16 +151,116 @@ public class CubicChunk implements Chunk {
             blockStorage = new BlockStorage();
         }
 
-        if (block.getPrototype() != Registries.getBlockRegistry().air()) {
-            nonAirBlockCount++;
-        } else {
-            nonAirBlockCount--;
-        }
-
+        var air = Registries.getBlockRegistry().air();
         var block1 = blockStorage.setBlock(x, y, z, block);
+        modificationCount++;
+        boolean wasAir = block1.getPrototype() == air;
+        boolean isAir = block.getPrototype() == air;
+        if (wasAir != isAir) {
+            nonAirBlockCount += isAir ? -1 : 1;
+            updateColumnHeight(x & CHUNK_MAX_X, y & CHUNK_MAX_Y, z & CHUNK_MAX_Z, isAir);
+            if (column != null) {
+                column.getHeightmap().updatePos(x & CHUNK_MAX_X, min.y() + (y & CHUNK_MAX_Y), z & CHUNK_MAX_Z, block);
+            }
+        }
         return block1;
     }
 
+    private void updateColumnHeight(int x, int y, int z, boolean removed) {
+        int index = getColumnIndex(x, z);
+        int height = columnHeights[index];
+        if (!removed) {
+            if (y >= height) {
+                columnHeights[index] = (byte) (y + 1);
+            }
+        } else if (y == height - 1) {
+            columnHeights[index] = (byte) scanColumnHeight(x, y - 1, z);
+        }
+    }
+
+    private int scanColumnHeight(int x, int fromY, int z) {
+        var air = Registries.getBlockRegistry().air();
+        for (int y = fromY; y >= 0; y--) {
+            if (blockStorage.getBlock(x, y, z).getPrototype() != air) {
+                return y + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void rebuildColumnHeights() {
+        for (int x = 0; x < CHUNK_X_SIZE; x++) {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                columnHeights[getColumnIndex(x, z)] = nonAirBlockCount == 0 ? 0 : (byte) scanColumnHeight(x, CHUNK_MAX_Y, z);
+            }
+        }
+    }
+
+    private static int getColumnIndex(int x, int z) {
+        return x | (z << CHUNK_X_BITS);
+    }
+
+    /**
+     * @param x x-coordinate of the column related to chunk coordinate system
+     * @param z z-coordinate of the column related to chunk coordinate system
+     * @return y-coordinate of the highest non-air block in the column related to chunk coordinate system, or -1 if
+     * the column contains only air
+     */
+    public int getHighestBlockY(int x, int z) {
+        return columnHeights[getColumnIndex(x & CHUNK_MAX_X, z & CHUNK_MAX_Z)] - 1;
+    }
+
+    /**
+     * @return counter increased by every block change, used to detect changes during off-thread work
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
+
+    public boolean isLightComputed() {
+        return skyLight != null;
+    }
+
+    /**
+     * Installs light computed for this chunk. Should only be called on the thread that ticks the world.
+     */
+    public void setLight(NibbleArray skyLight, NibbleArray blockLight) {
+        this.skyLight = skyLight;
+        this.blockLight = blockLight;
+    }
+
+    private static int getBlockIndex(int x, int y, int z) {
+        return (x & CHUNK_MAX_X) | ((y & CHUNK_MAX_Y) << CHUNK_X_BITS) | ((z & CHUNK_MAX_Z) << CHUNK_X_BITS + CHUNK_Y_BITS);
+    }
+
+    public int getSkyLight(int x, int y, int z) {
+        return skyLight == null ? 0 : skyLight.get(getBlockIndex(x, y, z));
+    }
+
+    public void setSkyLight(int x, int y, int z, int level) {
+        skyLight.set(getBlockIndex(x, y, z), level);
+    }
+
+    public int getBlockLight(int x, int y, int z) {
+        return blockLight == null ? 0 : blockLight.get(getBlockIndex(x, y, z));
+    }
+
+    public void setBlockLight(int x, int y, int z, int level) {
+        blockLight.set(getBlockIndex(x, y, z), level);
+    }
+
+    public ChunkColumn getColumn() {
+        return column;
+    }
+
+    /**
+     * Attaches the chunk to its column, called on the world thread by {@link ChunkColumn#onChunkLoad(Chunk)} when the
+     * chunk is published.
+     */
+    public void setColumn(ChunkColumn column) {
+        this.column = column;
+    }
+
     @Override
     public boolean isAirChunk() {
         return nonAirBlockCount == 0;
@@ -165,6 +298,7 @@ public class CubicChunk implements Chunk {
             var data = nibbleArray.getBackingArray();
             for (long datum : data) output.writeLong(datum);
         }
+        writeLight(output);
     }
 
     public void read(DataInput input) throws IOException {
@@ -202,6 +336,8 @@ public class CubicChunk implements Chunk {
                 blockStorage.getData().set(i, Registries.getBlockRegistry().getStateId(list.get(blockStorage.getData().get(i))));
             }
         }
+        rebuildColumnHeights();
+        readLight(input);
     }
 
     public void writeBlockContent(DataOutput output) throws IOException{
@@ -212,6 +348,7 @@ public class CubicChunk implements Chunk {
                 output.writeLong(l);
             }
         }
+        writeLight(output);
     }
 
     public void readBlockContent(DataInput input) throws IOException {
@@ -224,5 +361,38 @@ public class CubicChunk implements Chunk {
                 data[i] = input.readLong();
             }
         }
+        rebuildColumnHeights();
+        readLight(input);
+    }
+
+    private void writeLight(DataOutput output) throws IOException {
+        var skyLight = this.skyLight;
+        var blockLight = this.blockLight;
+        output.writeBoolean(skyLight != null);
+        if (skyLight != null) {
+            for (long l : skyLight.getBackingArray()) output.writeLong(l);
+            for (long l : blockLight.getBackingArray()) output.writeLong(l);
+        }
+    }
+
+    private void readLight(DataInput input) throws IOException {
+        boolean hasLight;
+        try {
+            hasLight = input.readBoolean();
+        } catch (EOFException e) {
+            hasLight = false; // Saved before light was stored
+        }
+        if (!hasLight) {
+            skyLight = null;
+            blockLight = null;
+            return;
+        }
+        var skyLight = new NibbleArray(4, BLOCK_COUNT);
+        var blockLight = new NibbleArray(4, BLOCK_COUNT);
+        long[] skyData = skyLight.getBackingArray();
+        for (int i = 0; i < skyData.length; i++) skyData[i] = input.readLong();
+        long[] blockData = blockLight.getBackingArray();
+        for (int i = 0; i < blockData.length; i++) blockData[i] = input.readLong();
+        setLight(skyLight, blockLight);
     }
 }
@@ -1,6 +1,7 @@
 package engine.world.chunk;
 
 import com.google.common.collect.Sets;
+import engine.Platform;
 import engine.event.world.chunk.ChunkLoadEvent;
 import engine.event.world.chunk.ChunkUnloadEvent;
 import engine.logic.Tickable;
@@ -10,14 +11,20 @@ import engine.player.Player;
 import engine.world.WorldCommonDebug;
 import engine.world.gen.ChunkGenExecutor;
 import engine.world.gen.ChunkGenerator;
+import engine.world.gen.NodeBasedChunkGenerator;
 import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.apache.commons.lang3.Validate;
 import org.joml.Vector3dc;
 import org.joml.Vector3i;
 
 import java.util.Collection;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 import static engine.world.chunk.ChunkConstants.getChunkIndex;
 
@@ -25,10 +32,18 @@ public class DebugChunkManager implements ChunkManager, Tickable {
 
     private final WorldCommonDebug world;
     private final ChunkGenerator generator;
+    private final ChunkGenExecutor generatorExecutor;
 
     private final Long2ObjectMap<Chunk> chunkMap;
     private final Long2ObjectMap<ChunkColumn> chunkColumnMap;
 
+    /**
+     * Chunks being generated, published to {@link #chunkMap} by {@link #tick()} once their generation completed.
+     */
+    private final Long2ObjectMap<PendingChunk> pendingChunks = new Long2ObjectOpenHashMap<>();
+    private final Queue<PendingChunk> generatedChunks = new ConcurrentLinkedQueue<>();
+    private final Queue<PendingChunk> rejectedChunks = new ConcurrentLinkedQueue<>();
+
     private int viewDistance;
     private int viewDistanceSquared;
 
@@ -37,8 +52,12 @@ public class DebugChunkManager implements ChunkManager, Tickable {
         this.chunkMap = new Long2ObjectAVLTreeMap<>();
         this.chunkColumnMap = new Long2ObjectAVLTreeMap<>();
         this.generator = generator;
+        this.generatorExecutor = new ChunkGenExecutor(world.getName(), ChunkGenExecutor.nearestPlayerDistance(world));
+        if (generator instanceof NodeBasedChunkGenerator) { //TODO: generalize
+            ((NodeBasedChunkGenerator) generator).setExecutor(generatorExecutor);
+        }
         setViewDistance(6);
-        ChunkGenExecutor.start();
+        generatorExecutor.start();
     }
 
     //    @Override
@@ -67,10 +86,27 @@ public class DebugChunkManager implements ChunkManager, Tickable {
         return chunkColumnMap.get(ChunkConstants.getChunkIndex(x, 0, z));
     }
 
+    /**
+     * Gets a loaded chunk, or starts generating it. A chunk is only published once its generation completed, until
+     * then null is returned, so that no blocks are read from or written to the chunk being generated.
+     */
     @Override
     public Chunk getOrLoadChunk(int x, int y, int z) {
         long index = getChunkIndex(x, y, z);
-        return chunkMap.computeIfAbsent(index, key -> loadChunk(index, x, y, z));
+        Chunk chunk = chunkMap.get(index);
+        if (chunk != null || pendingChunks.containsKey(index)) return chunk;
+        return loadChunk(index, x, y, z);
+    }
+
+    /**
+     * @return true if the chunk is being generated and not published yet
+     */
+    public boolean isGenerating(int x, int y, int z) {
+        return pendingChunks.containsKey(getChunkIndex(x, y, z));
+    }
+
+    public int getGeneratingChunkCount() {
+        return pendingChunks.size();
     }
 
     private boolean shouldChunkOnline(int x, int y, int z, ChunkPos pos) {
@@ -79,7 +115,9 @@ public class DebugChunkManager implements ChunkManager, Tickable {
 
     private synchronized Chunk loadChunk(long index, int x, int y, int z) {
         if (y < 0) { //Not buildable below 0
-            return new AirChunk(world, x, y, z);
+            Chunk chunk = new AirChunk(world, x, y, z);
+            chunkMap.put(index, chunk);
+            return chunk;
         }
 //        if (!shouldChunkOnline(x, y, z, ChunkPos.of(0, 0, 0))) {
 //            Chunk chunk = new AirChunk(world, x, y, z);
@@ -87,23 +125,59 @@ public class DebugChunkManager implements ChunkManager, Tickable {
 //            return chunk;
 //        }
 
-        Chunk chunk;
         //Chunk has not been created
-        chunk = new CubicChunk(world, x, y, z);
-        chunkColumnMap.computeIfAbsent(getChunkIndex(x, 0, z), key -> new ChunkColumn(world, x, z));
-        generator.generateAsync(chunk).thenRun(() -> {
-            chunkMap.put(index, chunk);
-            world.getGame().getEventBus().post(new ChunkLoadEvent(chunk));
-        }).join();
+        var pending = new PendingChunk(index, new CubicChunk(world, x, y, z));
+        pendingChunks.put(index, pending);
+        generate(pending);
+        return null;
+    }
+
+    private void generate(PendingChunk pending) {
+        generator.generateAsync(pending.chunk).whenComplete((chunk, e) -> {
+            if (e == null) {
+                generatedChunks.add(pending);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException && generatorExecutor.isAvailable()) {
+                rejectedChunks.add(pending);
+            } else if (generatorExecutor.isAvailable()) {
+                pending.failure = cause;
+                generatedChunks.add(pending);
+            }
+        });
+    }
+
+    private void publishChunk(long index, Chunk chunk) {
+        chunkMap.put(index, chunk);
+        attachToColumn(chunk);
+        world.getLightEngine().onChunkLoad(chunk);
+        world.getGame().getEventBus().post(new ChunkLoadEvent(chunk));
+    }
 
-//        chunkMap.put(index, chunk);
-//        world.getGame().getEventBus().post(new ChunkLoadEvent(chunk));
-        return chunk;
+    private void attachToColumn(Chunk chunk) {
+        if (!(chunk instanceof CubicChunk)) return;
+        chunkColumnMap.computeIfAbsent(getChunkIndex(chunk.getX(), 0, chunk.getZ()), key -> new ChunkColumn(world, chunk.getX(), chunk.getZ())).onChunkLoad(chunk);
+    }
+
+    private void detachFromColumn(Chunk chunk) {
+        if (!(chunk instanceof CubicChunk)) return;
+        long columnIndex = getChunkIndex(chunk.getX(), 0, chunk.getZ());
+        var column = chunkColumnMap.get(columnIndex);
+        if (column != null && column.onChunkUnload(chunk)) {
+            chunkColumnMap.remove(columnIndex);
+        }
     }
 
     @Override
     public void unloadChunk(Chunk chunk) {
         long index = getChunkIndex(chunk.getX(), chunk.getY(), chunk.getZ());
+        var pending = pendingChunks.get(index);
+        if (pending != null && pending.chunk == chunk) {
+            // Dropped once its generation completes.
+            pendingChunks.remove(index);
+            return;
+        }
         if (!chunkMap.containsKey(index))
             return;
         unloadChunk(index, chunk);
@@ -113,6 +187,7 @@ public class DebugChunkManager implements ChunkManager, Tickable {
     private synchronized void unloadChunk(long index, Chunk chunk) {
         Validate.notNull(chunk);
 //        chunkStorage.save(chunk);
+        detachFromColumn(chunk);
         world.getGame().getEventBus().post(new ChunkUnloadEvent(chunk));
     }
 
@@ -120,7 +195,11 @@ public class DebugChunkManager implements ChunkManager, Tickable {
     public void unloadAll() {
         chunkMap.forEach(this::unloadChunk);
         chunkMap.clear();
-        ChunkGenExecutor.stop();
+        chunkColumnMap.clear();
+        generatorExecutor.stop();
+        pendingChunks.clear();
+        generatedChunks.clear();
+        rejectedChunks.clear();
 //        chunkStorage.close();
     }
 
@@ -138,6 +217,10 @@ public class DebugChunkManager implements ChunkManager, Tickable {
         return generator;
     }
 
+    public ChunkGenExecutor getChunkGenExecutor() {
+        return generatorExecutor;
+    }
+
     public void handlePlayerJoin(Player player) {
         if (!player.isControllingEntity()) return; // We cannot do anything if the player does not control an entity
         var position = ChunkPos.fromWorldPos(player.getControlledEntity().getPosition());
@@ -191,6 +274,11 @@ public class DebugChunkManager implements ChunkManager, Tickable {
     }
 
     private void sendUnloadNotice(Player player, int x, int y, int z) {
+        var pending = pendingChunks.get(getChunkIndex(x, y, z));
+        if (pending != null) {
+            unloadChunk(pending.chunk);
+            return;
+        }
         getChunk(x, y, z).ifPresent(this::unloadChunk);
 //        player.getNetworkHandler().sendPacket(new PacketUnloadChunk(world.getName(), x, y, z));
     }
@@ -205,6 +293,36 @@ public class DebugChunkManager implements ChunkManager, Tickable {
 
     @Override
     public void tick() {
+        PendingChunk pending;
+        while ((pending = generatedChunks.poll()) != null) {
+            if (pendingChunks.get(pending.index) != pending) continue; // Unloaded while generating
+            pendingChunks.remove(pending.index);
+            if (pending.failure != null) {
+                Platform.getLogger().error("Failed to generate chunk " + pending.chunk.getPos(), pending.failure);
+                continue;
+            }
+            publishChunk(pending.index, pending.chunk);
+        }
+        // Resubmits the chunks rejected by a full backlog only as it drains, so that they don't evict each other.
+        while (generatorExecutor.getQueueDepth() < generatorExecutor.getMaxPendingTasks()
+                && (pending = rejectedChunks.poll()) != null) {
+            if (pendingChunks.get(pending.index) == pending) {
+                // The nodes run before the rejection already wrote to the chunk, so it is generated from scratch.
+                Chunk chunk = pending.chunk;
+                pending.chunk = new CubicChunk(world, chunk.getX(), chunk.getY(), chunk.getZ());
+                generate(pending);
+            }
+        }
+    }
+
+    private static final class PendingChunk {
+        private final long index;
+        private Chunk chunk;
+        private volatile Throwable failure;
 
+        private PendingChunk(long index, Chunk chunk) {
+            this.index = index;
+            this.chunk = chunk;
+        }
     }
 }
@@ -1,6 +1,7 @@
 package engine.world.chunk;
 
 import com.google.common.collect.Sets;
+import engine.Platform;
 import engine.event.world.chunk.ChunkLoadEvent;
 import engine.event.world.chunk.ChunkUnloadEvent;
 import engine.logic.Tickable;
@@ -11,15 +12,23 @@ import engine.server.network.packet.s2c.PacketChunkData;
 import engine.server.network.packet.s2c.PacketUnloadChunk;
 import engine.world.WorldCommon;
 import engine.world.chunk.storage.RegionBasedChunkStorage;
+import engine.world.gen.ChunkGenExecutor;
 import engine.world.gen.ChunkGenerator;
+import engine.world.gen.NodeBasedChunkGenerator;
 import io.netty.util.collection.LongObjectHashMap;
 import io.netty.util.collection.LongObjectMap;
 import org.apache.commons.lang3.Validate;
 import org.joml.Vector3dc;
 import org.joml.Vector3i;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 import static engine.world.chunk.ChunkConstants.getChunkIndex;
 
@@ -28,8 +37,17 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
     private final WorldCommon world;
     private final ChunkStorage chunkStorage;
     private final ChunkGenerator generator;
+    private final ChunkGenExecutor generatorExecutor;
 
     private final LongObjectMap<Chunk> chunkMap;
+    private final LongObjectMap<ChunkColumn> chunkColumnMap;
+
+    /**
+     * Chunks being generated, published to {@link #chunkMap} by {@link #tick()} once their generation completed.
+     */
+    private final LongObjectMap<PendingChunk> pendingChunks = new LongObjectHashMap<>();
+    private final Queue<PendingChunk> generatedChunks = new ConcurrentLinkedQueue<>();
+    private final Queue<PendingChunk> rejectedChunks = new ConcurrentLinkedQueue<>();
 
     private int viewDistance;
     private int viewDistanceSquared;
@@ -38,8 +56,14 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
         this.world = world;
         this.chunkStorage = new RegionBasedChunkStorage(world, world.getStoragePath().resolve("chunk"));
         this.chunkMap = new LongObjectHashMap<>();
+        this.chunkColumnMap = new LongObjectHashMap<>();
         this.generator = generator;
+        this.generatorExecutor = new ChunkGenExecutor(world.getName(), ChunkGenExecutor.nearestPlayerDistance(world));
+        if (generator instanceof NodeBasedChunkGenerator) { //TODO: generalize
+            ((NodeBasedChunkGenerator) generator).setExecutor(generatorExecutor);
+        }
         setViewDistance(12);
+        generatorExecutor.start();
     }
 
 //    @Override
@@ -64,10 +88,31 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
         return Optional.ofNullable(chunkMap.get(chunkIndex));
     }
 
+    public ChunkColumn getChunkColumn(int x, int z) {
+        return chunkColumnMap.get(getChunkIndex(x, 0, z));
+    }
+
+    /**
+     * Gets a loaded chunk, or starts loading it. A generated chunk is only published once its generation completed,
+     * until then null is returned, so that no blocks are read from or written to the chunk being generated.
+     */
     @Override
     public Chunk getOrLoadChunk(int x, int y, int z) {
         long index = getChunkIndex(x, y, z);
-        return chunkMap.computeIfAbsent(index, key -> loadChunk(index, x, y, z));
+        Chunk chunk = chunkMap.get(index);
+        if (chunk != null || pendingChunks.containsKey(index)) return chunk;
+        return loadChunk(index, x, y, z);
+    }
+
+    /**
+     * @return true if the chunk is being generated and not published yet
+     */
+    public boolean isGenerating(int x, int y, int z) {
+        return pendingChunks.containsKey(getChunkIndex(x, y, z));
+    }
+
+    public int getGeneratingChunkCount() {
+        return pendingChunks.size();
     }
 
     private boolean shouldChunkOnline(int x, int y, int z, ChunkPos pos) {
@@ -76,7 +121,9 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
 
     private synchronized Chunk loadChunk(long index, int x, int y, int z) {
         if (y < 0) { //Not buildable below 0
-            return new AirChunk(world, x, y, z);
+            Chunk chunk = new AirChunk(world, x, y, z);
+            chunkMap.put(index, chunk);
+            return chunk;
         }
 //        if (!shouldChunkOnline(x, y, z, ChunkPos.of(0, 0, 0))) {
 //            Chunk chunk = new AirChunk(world, x, y, z);
@@ -86,17 +133,61 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
 
         Chunk chunk = chunkStorage.load(x, y, z);
         if (chunk == null) { //Chunk has not been created
-            chunk = new CubicChunk(world, x, y, z);
-            generator.generate(chunk);
+            var pending = new PendingChunk(index, new CubicChunk(world, x, y, z));
+            pendingChunks.put(index, pending);
+            generate(pending);
+            return null;
         }
+        publishChunk(index, chunk);
+        return chunk;
+    }
+
+    private void generate(PendingChunk pending) {
+        generator.generateAsync(pending.chunk).whenComplete((chunk, e) -> {
+            if (e == null) {
+                generatedChunks.add(pending);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException && generatorExecutor.isAvailable()) {
+                rejectedChunks.add(pending);
+            } else if (generatorExecutor.isAvailable()) {
+                pending.failure = cause;
+                generatedChunks.add(pending);
+            }
+        });
+    }
+
+    private void publishChunk(long index, Chunk chunk) {
         chunkMap.put(index, chunk);
+        attachToColumn(chunk);
+        world.getLightEngine().onChunkLoad(chunk);
         world.getGame().getEventBus().post(new ChunkLoadEvent(chunk));
-        return chunk;
+    }
+
+    private void attachToColumn(Chunk chunk) {
+        if (!(chunk instanceof CubicChunk)) return;
+        chunkColumnMap.computeIfAbsent(getChunkIndex(chunk.getX(), 0, chunk.getZ()), key -> new ChunkColumn(world, chunk.getX(), chunk.getZ())).onChunkLoad(chunk);
+    }
+
+    private void detachFromColumn(Chunk chunk) {
+        if (!(chunk instanceof CubicChunk)) return;
+        long columnIndex = getChunkIndex(chunk.getX(), 0, chunk.getZ());
+        var column = chunkColumnMap.get(columnIndex);
+        if (column != null && column.onChunkUnload(chunk)) {
+            chunkColumnMap.remove(columnIndex);
+        }
     }
 
     @Override
     public void unloadChunk(Chunk chunk) {
         long index = getChunkIndex(chunk.getX(), chunk.getY(), chunk.getZ());
+        var pending = pendingChunks.get(index);
+        if (pending != null && pending.chunk == chunk) {
+            // Dropped once its generation completes.
+            pendingChunks.remove(index);
+            return;
+        }
         if (!chunkMap.containsKey(index))
             return;
         unloadChunk(index, chunk);
@@ -106,6 +197,7 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
     private synchronized void unloadChunk(long index, Chunk chunk) {
         Validate.notNull(chunk);
         chunkStorage.save(chunk);
+        detachFromColumn(chunk);
         world.getGame().getEventBus().post(new ChunkUnloadEvent(chunk));
     }
 
@@ -113,6 +205,11 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
     public void unloadAll() {
         chunkMap.forEach(this::unloadChunk);
         chunkMap.clear();
+        chunkColumnMap.clear();
+        generatorExecutor.stop();
+        pendingChunks.clear();
+        generatedChunks.clear();
+        rejectedChunks.clear();
         chunkStorage.close();
     }
 
@@ -131,6 +228,10 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
         return generator;
     }
 
+    public ChunkGenExecutor getChunkGenExecutor() {
+        return generatorExecutor;
+    }
+
     @Override
     public void handlePlayerJoin(Player player) {
         if (!player.isControllingEntity()) return; // We cannot do anything if the player does not control an entity
@@ -186,11 +287,21 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
     }
 
     private void sendUnloadNotice(Player player, int x, int y, int z) {
+        var pending = pendingChunks.get(getChunkIndex(x, y, z));
+        if (pending != null) {
+            pending.viewers.remove(player);
+        }
         player.getNetworkHandler().sendPacket(new PacketUnloadChunk(world.getName(), x, y, z));
     }
 
     private void sendChunkData(Player player, int x, int y, int z) {
         var chunk = getOrLoadChunk(x, y, z);
+        var pending = pendingChunks.get(getChunkIndex(x, y, z));
+        if (pending != null) {
+            // Sent once generated.
+            if (!pending.viewers.contains(player)) pending.viewers.add(player);
+            return;
+        }
         if (chunk instanceof CubicChunk)
             player.getNetworkHandler().sendPacket(new PacketChunkData(((CubicChunk) chunk)));
 //        getChunk(x, y, z).filter(chunk -> chunk instanceof CubicChunk)
@@ -199,6 +310,42 @@ public class WorldCommonChunkManager implements ChunkManager, Tickable {
 
     @Override
     public void tick() {
+        PendingChunk pending;
+        while ((pending = generatedChunks.poll()) != null) {
+            if (pendingChunks.get(pending.index) != pending) continue; // Unloaded while generating
+            pendingChunks.remove(pending.index);
+            if (pending.failure != null) {
+                Platform.getLogger().error("Failed to generate chunk " + pending.chunk.getPos(), pending.failure);
+                continue;
+            }
+            publishChunk(pending.index, pending.chunk);
+            for (Player viewer : pending.viewers) {
+                if (viewer.getWorld() == world) {
+                    viewer.getNetworkHandler().sendPacket(new PacketChunkData((CubicChunk) pending.chunk));
+                }
+            }
+        }
+        // Resubmits the chunks rejected by a full backlog only as it drains, so that they don't evict each other.
+        while (generatorExecutor.getQueueDepth() < generatorExecutor.getMaxPendingTasks()
+                && (pending = rejectedChunks.poll()) != null) {
+            if (pendingChunks.get(pending.index) == pending) {
+                // The nodes run before the rejection already wrote to the chunk, so it is generated from scratch.
+                Chunk chunk = pending.chunk;
+                pending.chunk = new CubicChunk(world, chunk.getX(), chunk.getY(), chunk.getZ());
+                generate(pending);
+            }
+        }
+    }
 
+    private static final class PendingChunk {
+        private final long index;
+        private Chunk chunk;
+        private final List<Player> viewers = new ArrayList<>(1);
+        private volatile Throwable failure;
+
+        private PendingChunk(long index, Chunk chunk) {
+            this.index = index;
+            this.chunk = chunk;
+        }
     }
 }
@@ -0,0 +1,205 @@
+package engine.world.collision;
+
+import engine.block.Block;
+import engine.block.state.BlockState;
+import engine.math.BlockPos;
+import engine.registry.Registries;
+import engine.util.Direction;
+import engine.world.World;
+import engine.world.chunk.Chunk;
+import engine.world.hit.BlockHitResult;
+import org.joml.Vector2d;
+import org.joml.Vector3f;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+import static engine.world.chunk.ChunkConstants.*;
+import static engine.world.collision.DefaultCollisionManager.CALC_ERROR_FIXING;
+
+/**
+ * Voxel traversal of Amanatides and Woo, reading blocks directly from the chunks.
+ * <p>
+ * The ray is parametrized by t in [0, 1] over the traced segment. Unloaded and air chunks are crossed in a single
+ * step by advancing every axis to the cell where the ray leaves the chunk. The traversal state and the current chunk
+ * are kept in fields, so an instance is not thread-safe but allocates nothing until a block is hit.
+ */
+final class BlockRaycaster {
+
+    private final World world;
+
+    private final BlockPos.Mutable cursor = new BlockPos.Mutable(0, 0, 0);
+    private final Vector2d intersection = new Vector2d();
+
+    private int x, y, z;
+    private int stepX, stepY, stepZ;
+    private double tMaxX, tMaxY, tMaxZ;
+    private double tDeltaX, tDeltaY, tDeltaZ;
+
+    private Chunk chunk;
+    private int chunkX, chunkY, chunkZ;
+    private boolean chunkCached;
+
+    BlockRaycaster(World world) {
+        this.world = world;
+    }
+
+    /**
+     * @param ignore blocks to pass through, or null to only pass through air
+     */
+    BlockHitResult raycast(float fromX, float fromY, float fromZ, float offsetX, float offsetY, float offsetZ, @Nullable Set<Block> ignore) {
+        Block air = Registries.getBlockRegistry().air();
+        init(fromX, fromY, fromZ, offsetX, offsetY, offsetZ);
+        while (true) {
+            Chunk chunk = getChunk();
+            if (chunk == null || chunk.isAirChunk()) {
+                if (!skipChunk()) {
+                    return BlockHitResult.failure();
+                }
+                continue;
+            }
+            BlockState state = chunk.getBlock(x, y, z);
+            Block block = state.getPrototype();
+            if (block != air && (ignore == null || !ignore.contains(block))) {
+                BlockHitResult result = intersect(state, fromX, fromY, fromZ, offsetX, offsetY, offsetZ);
+                if (result != null) {
+                    return result;
+                }
+            }
+            if (!step()) {
+                return BlockHitResult.failure();
+            }
+        }
+    }
+
+    /**
+     * Drops the cached chunk, so that an unloaded chunk isn't retained between raycasts.
+     */
+    void reset() {
+        chunk = null;
+        chunkCached = false;
+    }
+
+    private void init(double fromX, double fromY, double fromZ, double offsetX, double offsetY, double offsetZ) {
+        x = (int) Math.floor(fromX);
+        y = (int) Math.floor(fromY);
+        z = (int) Math.floor(fromZ);
+        stepX = (int) Math.signum(offsetX);
+        stepY = (int) Math.signum(offsetY);
+        stepZ = (int) Math.signum(offsetZ);
+        tDeltaX = stepX == 0 ? Double.MAX_VALUE : Math.abs(1 / offsetX);
+        tDeltaY = stepY == 0 ? Double.MAX_VALUE : Math.abs(1 / offsetY);
+        tDeltaZ = stepZ == 0 ? Double.MAX_VALUE : Math.abs(1 / offsetZ);
+        tMaxX = stepX == 0 ? Double.MAX_VALUE : (stepX > 0 ? x + 1 - fromX : fromX - x) * tDeltaX;
+        tMaxY = stepY == 0 ? Double.MAX_VALUE : (stepY > 0 ? y + 1 - fromY : fromY - y) * tDeltaY;
+        tMaxZ = stepZ == 0 ? Double.MAX_VALUE : (stepZ > 0 ? z + 1 - fromZ : fromZ - z) * tDeltaZ;
+    }
+
+    private Chunk getChunk() {
+        int cx = x >> CHUNK_X_BITS, cy = y >> CHUNK_Y_BITS, cz = z >> CHUNK_Z_BITS;
+        if (!chunkCached || cx != chunkX || cy != chunkY || cz != chunkZ) {
+            chunk = world.getChunk(cx, cy, cz, false);
+            chunkX = cx;
+            chunkY = cy;
+            chunkZ = cz;
+            chunkCached = true;
+        }
+        return chunk;
+    }
+
+    /**
+     * Moves to the next cell along the ray.
+     *
+     * @return false if the ray ends before the next cell
+     */
+    private boolean step() {
+        if (tMaxX < tMaxY) {
+            if (tMaxX < tMaxZ) {
+                if (tMaxX > 1) return false;
+                x += stepX;
+                tMaxX += tDeltaX;
+                return true;
+            }
+        } else if (tMaxY < tMaxZ) {
+            if (tMaxY > 1) return false;
+            y += stepY;
+            tMaxY += tDeltaY;
+            return true;
+        }
+        if (tMaxZ > 1) return false;
+        z += stepZ;
+        tMaxZ += tDeltaZ;
+        return true;
+    }
+
+    /**
+     * Moves to the first cell outside of the current chunk along the ray.
+     *
+     * @return false if the ray ends inside the chunk
+     */
+    private boolean skipChunk() {
+        int stepsX = stepsToLeave(x, stepX, CHUNK_X_BITS);
+        int stepsY = stepsToLeave(y, stepY, CHUNK_Y_BITS);
+        int stepsZ = stepsToLeave(z, stepZ, CHUNK_Z_BITS);
+        double exitX = stepX == 0 ? Double.MAX_VALUE : tMaxX + (stepsX - 1) * tDeltaX;
+        double exitY = stepY == 0 ? Double.MAX_VALUE : tMaxY + (stepsY - 1) * tDeltaY;
+        double exitZ = stepZ == 0 ? Double.MAX_VALUE : tMaxZ + (stepsZ - 1) * tDeltaZ;
+        double exit = Math.min(exitX, Math.min(exitY, exitZ));
+        if (exit > 1) {
+            return false;
+        }
+        // The exit axis takes all its steps, the others take the crossings strictly before the exit.
+        int crossX = exit == exitX ? stepsX : crossingsBefore(exit, tMaxX, tDeltaX, stepX);
+        int crossY = exit == exitY && exit != exitX ? stepsY : crossingsBefore(exit, tMaxY, tDeltaY, stepY);
+        int crossZ = exit == exitZ && exit != exitX && exit != exitY ? stepsZ : crossingsBefore(exit, tMaxZ, tDeltaZ, stepZ);
+        x += crossX * stepX;
+        y += crossY * stepY;
+        z += crossZ * stepZ;
+        tMaxX += crossX * tDeltaX;
+        tMaxY += crossY * tDeltaY;
+        tMaxZ += crossZ * tDeltaZ;
+        return true;
+    }
+
+    private static int stepsToLeave(int coordinate, int step, int bits) {
+        if (step > 0) {
+            return ((coordinate >> bits) + 1 << bits) - coordinate;
+        }
+        return coordinate - (coordinate >> bits << bits) + 1;
+    }
+
+    private static int crossingsBefore(double t, double tMax, double tDelta, int step) {
+        if (step == 0 || tMax >= t) {
+            return 0;
+        }
+        return (int) Math.ceil((t - tMax) / tDelta);
+    }
+
+    private BlockHitResult intersect(BlockState state, float fromX, float fromY, float fromZ, float offsetX, float offsetY, float offsetZ) {
+        cursor.set(x, y, z);
+        float localX = fromX - x, localY = fromY - y, localZ = fromZ - z;
+        Block block = state.getPrototype();
+        if (!block.getShape().intersectRay(world, cursor, block, localX, localY, localZ, offsetX, offsetY, offsetZ, intersection)) {
+            return null;
+        }
+        float t = (float) intersection.x;
+        float hitX = localX + offsetX * t, hitY = localY + offsetY * t, hitZ = localZ + offsetZ * t;
+        Direction direction;
+        if (hitX <= 0f + CALC_ERROR_FIXING) {
+            direction = Direction.WEST;
+        } else if (hitX >= 1f - CALC_ERROR_FIXING) {
+            direction = Direction.EAST;
+        } else if (hitY <= 0f + CALC_ERROR_FIXING) {
+            direction = Direction.DOWN;
+        } else if (hitY >= 1f - CALC_ERROR_FIXING) {
+            direction = Direction.UP;
+        } else if (hitZ <= 0f + CALC_ERROR_FIXING) {
+            direction = Direction.NORTH;
+        } else if (hitZ >= 1f - CALC_ERROR_FIXING) {
+            direction = Direction.SOUTH;
+        } else {
+            return null;
+        }
+        return new BlockHitResult(world, BlockPos.of(x, y, z), state, new Vector3f(hitX, hitY, hitZ), direction);
+    }
+}
@@ -1,52 +1,261 @@
 package engine.world.gen;
 
+import engine.player.Player;
+import engine.world.World;
+import engine.world.chunk.ChunkPos;
+import org.joml.Vector3dc;
+
+import java.util.Arrays;
+import java.util.TreeSet;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import static engine.world.chunk.ChunkConstants.*;
 
+/**
+ * Executor of chunk generation tasks, owned by a single world.
+ * <p>
+ * Tasks are kept in a bounded backlog ordered by priority (lower value runs first, usually the squared distance
+ * to the nearest player) and executed on a work-stealing {@link ForkJoinPool}. When the backlog is full, a new
+ * task either evicts the pending task with the worst priority or is rejected itself, so a burst of far chunks
+ * can never delay the chunks around a player.
+ */
 public class ChunkGenExecutor {
-    private static ExecutorService executor;
-    private static boolean isAvailable;
 
-    public static void start() {
-        int threadCount = Runtime.getRuntime().availableProcessors();
-        executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
-            private final AtomicInteger poolNumber = new AtomicInteger(0);
+    public static final int DEFAULT_MAX_PENDING_TASKS = 4096;
+
+    private final String name;
+    private final ToDoubleFunction<ChunkPos> priorityFunction;
+    private final int maxPendingTasks;
+    private final int parallelism;
+
+    private final TreeSet<Task<?>> pendingTasks = new TreeSet<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong rejectedTaskCount = new AtomicLong();
+    private final AtomicLong completedTaskCount = new AtomicLong();
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder(1024);
+
+    private ForkJoinPool pool;
+    private volatile boolean isAvailable;
+
+    public ChunkGenExecutor(String name, ToDoubleFunction<ChunkPos> priorityFunction) {
+        this(name, priorityFunction, DEFAULT_MAX_PENDING_TASKS, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ChunkGenExecutor(String name, ToDoubleFunction<ChunkPos> priorityFunction, int maxPendingTasks, int parallelism) {
+        if (maxPendingTasks <= 0) throw new IllegalArgumentException("maxPendingTasks must be positive");
+        if (parallelism <= 0) throw new IllegalArgumentException("parallelism must be positive");
+        this.name = name;
+        this.priorityFunction = priorityFunction;
+        this.maxPendingTasks = maxPendingTasks;
+        this.parallelism = parallelism;
+    }
 
-            @Override
-            public Thread newThread(Runnable r) {
-                return new Thread(r, "Chunk Generator " + poolNumber.getAndIncrement());
+    /**
+     * @return priority function which orders chunks by the squared distance between the chunk center and the nearest
+     * player controlling an entity in the world. Chunks without any player nearby get {@link Double#MAX_VALUE}.
+     */
+    public static ToDoubleFunction<ChunkPos> nearestPlayerDistance(World world) {
+        return pos -> {
+            double centerX = (pos.x() << CHUNK_X_BITS) + (CHUNK_X_SIZE >> 1);
+            double centerY = (pos.y() << CHUNK_Y_BITS) + (CHUNK_Y_SIZE >> 1);
+            double centerZ = (pos.z() << CHUNK_Z_BITS) + (CHUNK_Z_SIZE >> 1);
+            double nearest = Double.MAX_VALUE;
+            for (Player player : world.getGame().getPlayers()) {
+                if (player.getWorld() != world || !player.isControllingEntity()) continue;
+                Vector3dc position = player.getControlledEntity().getPosition();
+                nearest = Math.min(nearest, position.distanceSquared(centerX, centerY, centerZ));
             }
-        });
+            return nearest;
+        };
+    }
+
+    public synchronized void start() {
+        if (isAvailable) {
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger(0);
+        pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("Chunk Generator " + name + " " + threadNumber.getAndIncrement());
+            return thread;
+        }, null, true);
         isAvailable = true;
     }
 
-    public static <T> CompletableFuture<T> submitTask(Supplier<T> supplier) {
+    /**
+     * Submits a generation task of the chunk at the given position.
+     *
+     * @return future completed with the result of the supplier, or exceptionally with {@link RejectedExecutionException}
+     * if the backlog is full of tasks with better priority. Completed with {@code null} if the executor is not running.
+     */
+    public <T> CompletableFuture<T> submitTask(ChunkPos pos, Supplier<T> supplier) {
         if (!isAvailable) {
             return CompletableFuture.completedFuture(null);
         }
+        var task = new Task<>(supplier, priorityFunction.applyAsDouble(pos), sequence.getAndIncrement());
+        Task<?> evicted = null;
+        synchronized (pendingTasks) {
+            if (pendingTasks.size() >= maxPendingTasks) {
+                var worst = pendingTasks.last();
+                if (task.compareTo(worst) > 0) {
+                    reject(task);
+                    return task.future;
+                }
+                pendingTasks.pollLast();
+                evicted = worst;
+            }
+            pendingTasks.add(task);
+        }
+        if (evicted != null) {
+            // The evicted task has already scheduled a runner which will pick up the new task.
+            reject(evicted);
+            return task.future;
+        }
         try {
-            return CompletableFuture.supplyAsync(supplier, executor);
+            pool.execute(this::runNext);
         } catch (RejectedExecutionException e) {
-            return CompletableFuture.completedFuture(null);
+            synchronized (pendingTasks) {
+                pendingTasks.remove(task);
+            }
+            reject(task);
         }
+        return task.future;
+    }
+
+    private void runNext() {
+        Task<?> task;
+        synchronized (pendingTasks) {
+            task = pendingTasks.pollFirst();
+        }
+        if (task == null) {
+            return;
+        }
+        task.run();
+        latencyRecorder.record(System.nanoTime() - task.submitTime);
+        completedTaskCount.incrementAndGet();
+    }
+
+    private void reject(Task<?> task) {
+        rejectedTaskCount.incrementAndGet();
+        task.future.completeExceptionally(new RejectedExecutionException("Chunk generation backlog of " + name + " is full"));
+    }
+
+    public void stop() {
+        synchronized (this) {
+            if (!isAvailable) {
+                return;
+            }
+            isAvailable = false;
+            pool.shutdownNow();
+        }
+        synchronized (pendingTasks) {
+            pendingTasks.forEach(task -> task.future.cancel(false));
+            pendingTasks.clear();
+        }
+    }
+
+    public boolean isAvailable() {
+        return isAvailable;
     }
 
-    public static void stop() {
-        isAvailable = false;
-        executor.shutdownNow();
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxPendingTasks() {
+        return maxPendingTasks;
     }
 
     /**
-     * @return executor
-     * @deprecated should submit task to ChunkGenExecutor instead of accessing inner executor
+     * @return number of tasks waiting for a worker thread
      */
-    @Deprecated
-    public static Executor getExecutor() {
-        return executor;
+    public int getQueueDepth() {
+        synchronized (pendingTasks) {
+            return pendingTasks.size();
+        }
+    }
+
+    /**
+     * @return number of tasks rejected or evicted because the backlog was full
+     */
+    public long getRejectedTaskCount() {
+        return rejectedTaskCount.get();
+    }
+
+    public long getCompletedTaskCount() {
+        return completedTaskCount.get();
     }
 
-    //    public static void execute(Task task) {
-//        executor.execute(task);
-//    }
+    /**
+     * @param percentile percentile in range [0, 1], e.g. 0.99
+     * @return latency from submission to completion in nanoseconds over the recently completed tasks, or 0 if none
+     */
+    public long getLatencyPercentile(double percentile) {
+        return latencyRecorder.percentile(percentile);
+    }
+
+    private static final class Task<T> implements Comparable<Task<?>> {
+        private final Supplier<T> supplier;
+        private final double priority;
+        private final long sequence;
+        private final long submitTime = System.nanoTime();
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(Supplier<T> supplier, double priority, long sequence) {
+            this.supplier = supplier;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        private void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(Task<?> o) {
+            int result = Double.compare(priority, o.priority);
+            return result != 0 ? result : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    /**
+     * Fixed-size ring of the most recent latency samples.
+     */
+    private static final class LatencyRecorder {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        private LatencyRecorder(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        private synchronized void record(long latency) {
+            samples[next] = latency;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) size++;
+        }
+
+        private long percentile(double percentile) {
+            long[] sorted;
+            synchronized (this) {
+                if (size == 0) return 0;
+                sorted = Arrays.copyOf(samples, size);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(Math.min(Math.max(percentile, 0), 1) * sorted.length) - 1;
+            return sorted[Math.max(index, 0)];
+        }
+    }
 }
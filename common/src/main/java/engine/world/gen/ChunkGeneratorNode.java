@@ -13,7 +13,12 @@ public class ChunkGeneratorNode {
     }
 
     public final CompletableFuture<Chunk> processAsync(Chunk chunk, GeneratorContext context) {
-        return ChunkGenExecutor.submitTask(() -> {
+        var executor = context.getExecutor();
+        if (executor == null) {
+            process(chunk, context);
+            return CompletableFuture.completedFuture(chunk);
+        }
+        return executor.submitTask(chunk.getPos(), () -> {
             process(chunk, context);
             return chunk;
         });
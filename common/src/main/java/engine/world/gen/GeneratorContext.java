@@ -16,6 +16,7 @@ public class GeneratorContext {
     private Chunk targetChunk;
     private ChunkColumn targetChunkColumn;
     private List<ChunkStatus> statusOrder;
+    private ChunkGenExecutor executor;
 
     public GeneratorContext(World world, WorldCreationSetting setting) {
         this.world = world;
@@ -55,4 +56,15 @@ public class GeneratorContext {
     public List<ChunkStatus> getStatusOrder() {
         return statusOrder;
     }
+
+    /**
+     * @return executor of the world the chunk belongs to, or null if the generation should run on the calling thread
+     */
+    public ChunkGenExecutor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(ChunkGenExecutor executor) {
+        this.executor = executor;
+    }
 }
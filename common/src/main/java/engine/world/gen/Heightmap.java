@@ -2,12 +2,22 @@ package engine.world.gen;
 
 import engine.block.state.BlockState;
 import engine.registry.Registries;
+import engine.world.chunk.Chunk;
 import engine.world.chunk.ChunkColumn;
 import engine.world.chunk.ChunkConstants;
+import engine.world.chunk.CubicChunk;
 
 import java.util.Objects;
 import java.util.function.Predicate;
 
+import static engine.world.chunk.ChunkConstants.*;
+
+/**
+ * Highest valid block of each column of a {@link ChunkColumn}.
+ * <p>
+ * The heightmap is maintained incrementally: placing a block only compares it with the current top, and removing
+ * the top block rescans the column from the per-chunk height summary of {@link CubicChunk}, skipping empty chunks.
+ */
 public class Heightmap {
     public static final Predicate<BlockState> NOT_AIR_PREDICATE = block -> !Objects.equals(Registries.getBlockRegistry().air(), block.getPrototype());
     private final int xSize;
@@ -48,21 +58,69 @@ public class Heightmap {
                 return true;
             }
         } else if (highestPosition == y) {
-            if (chunkColumn != null) {
-                for (int i = y - 1; i >= 0; i--) {
-                    var block = chunkColumn.getChunk(i / ChunkConstants.CHUNK_Y_SIZE).getBlock(x, i, z);
-                    if (validBlock.test(block)) {
-                        setHighestPosition(x, z, i);
-                        return true;
-                    }
-                }
-            }
-            setHighestPosition(x, z, 0);
+            setHighestPosition(x, z, findHighestPosition(x, z, y >> CHUNK_Y_BITS));
             return true;
         }
         return false;
     }
 
+    /**
+     * Merges the blocks of a newly loaded chunk of the column.
+     */
+    public void onChunkLoad(Chunk chunk) {
+        int baseY = chunk.getY() << CHUNK_Y_BITS;
+        for (int x = 0; x < xSize; x++) {
+            for (int z = 0; z < zSize; z++) {
+                int localY = getHighestInChunk(chunk, x, z);
+                if (localY != -1 && baseY + localY > getHighestPosition(x, z)) {
+                    setHighestPosition(x, z, baseY + localY);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rescans the columns whose highest block is in the unloading chunk.
+     */
+    public void onChunkUnload(Chunk chunk) {
+        for (int x = 0; x < xSize; x++) {
+            for (int z = 0; z < zSize; z++) {
+                if (getHighestPosition(x, z) >> CHUNK_Y_BITS == chunk.getY()) {
+                    setHighestPosition(x, z, findHighestPosition(x, z, chunk.getY() - 1));
+                }
+            }
+        }
+    }
+
+    private int findHighestPosition(int x, int z, int fromChunkY) {
+        if (chunkColumn != null) {
+            for (int chunkY = fromChunkY; chunkY >= 0; chunkY--) {
+                var chunk = chunkColumn.getChunk(chunkY);
+                if (chunk == null) continue;
+                int localY = getHighestInChunk(chunk, x, z);
+                if (localY != -1) {
+                    return (chunkY << CHUNK_Y_BITS) + localY;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private int getHighestInChunk(Chunk chunk, int x, int z) {
+        if (chunk.isAirChunk()) {
+            return -1;
+        }
+        if (validBlock == NOT_AIR_PREDICATE && chunk instanceof CubicChunk) {
+            return ((CubicChunk) chunk).getHighestBlockY(x, z);
+        }
+        for (int y = CHUNK_MAX_Y; y >= 0; y--) {
+            if (validBlock.test(chunk.getBlock(x, y, z))) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
     /**
      * @param x
      * @param z
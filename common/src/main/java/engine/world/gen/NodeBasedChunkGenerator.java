@@ -15,6 +15,7 @@ public class NodeBasedChunkGenerator implements ChunkGenerator {
     private final Map<ChunkStatus, ChunkGeneratorNode> nodeMap;
     private final List<ChunkGeneratorNode> sortedNodes;
     private ChunkStatusListener chunkStatusListener;
+    private ChunkGenExecutor executor;
 
     public NodeBasedChunkGenerator(NodeBasedChunkGeneratorInfo info, WorldCreationSetting setting) {
         nodeMap = info.getNodeInfos().stream().collect(Collectors.toMap(ChunkGeneratorNodeInfo::getStatus, ChunkGeneratorNode::new));
@@ -27,6 +28,10 @@ public class NodeBasedChunkGenerator implements ChunkGenerator {
         this.chunkStatusListener = chunkStatusListener;
     }
 
+    public void setExecutor(ChunkGenExecutor executor) {
+        this.executor = executor;
+    }
+
     private static List<ChunkGeneratorNode> getOrderedNodes(Collection<ChunkGeneratorNode> nodes) {
         var closedList = new ArrayList<ChunkGeneratorNode>(nodes.size());
         var openList = new LinkedList<>(nodes);
@@ -48,6 +53,7 @@ public class NodeBasedChunkGenerator implements ChunkGenerator {
         GeneratorContext context = new GeneratorContext(chunk.getWorld(), setting);
         context.setTargetChunk(chunk);
         context.setStatusOrder(sortedNodes.stream().map(node -> node.getInfo().getStatus()).collect(Collectors.toList()));
+        context.setExecutor(executor);
         final CompletableFuture<Chunk>[] cf = new CompletableFuture[1];
         sortedNodes.forEach(node -> {
             var future = node.processAsync(chunk, context);
@@ -64,6 +70,7 @@ public class NodeBasedChunkGenerator implements ChunkGenerator {
         GeneratorContext context = new GeneratorContext(chunk.getWorld(), setting);
         context.setTargetChunk(chunk);
         context.setStatusOrder(sortedNodes.stream().map(node -> node.getInfo().getStatus()).collect(Collectors.toList()));
+        context.setExecutor(executor);
         final CompletableFuture<Chunk>[] cf = new CompletableFuture[1];
         sortedNodes.forEach(node -> {
             var future = node.processAsync(chunk, context).thenApply(chunk1 -> {
@@ -0,0 +1,492 @@
+package engine.world.light;
+
+import engine.Platform;
+import engine.block.BlockShape;
+import engine.block.component.LightBehavior;
+import engine.block.state.BlockState;
+import engine.math.BlockPos;
+import engine.registry.Registries;
+import engine.registry.game.BlockRegistry;
+import engine.util.NibbleArray;
+import engine.world.World;
+import engine.world.chunk.Chunk;
+import engine.world.chunk.CubicChunk;
+import engine.world.gen.ChunkGenExecutor;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import static engine.world.chunk.ChunkConstants.*;
+
+/**
+ * Sky and block light propagation of a world.
+ * <p>
+ * The initial light of a chunk is computed by a flood fill inside the chunk on worker threads, and installed on
+ * the thread that ticks the world, where it is propagated across chunk borders. Block changes update the light
+ * incrementally with removal and addition queues, which are processed with a budget of nodes per tick so that a
+ * large update never stalls a single tick.
+ * <p>
+ * Sky light keeps its level of {@link #MAX_LIGHT} when going straight down through transparent blocks, and decays
+ * by 1 plus the opacity of the block in every other case. All methods except the worker part must be called on the
+ * thread that ticks the world.
+ */
+public class LightEngine {
+
+    public static final int MAX_LIGHT = 15;
+    public static final int DEFAULT_NODES_PER_TICK = 1 << 16;
+
+    private static final int[] OFFSET_X = {1, -1, 0, 0, 0, 0};
+    private static final int[] OFFSET_Y = {0, 0, 1, -1, 0, 0};
+    private static final int[] OFFSET_Z = {0, 0, 0, 0, 1, -1};
+    private static final int DOWN = 3;
+
+    private final World world;
+    private final ChunkGenExecutor executor;
+    private final Queue<LightResult> completedChunks = new ConcurrentLinkedQueue<>();
+    /**
+     * Chunks whose computation has been rejected by a full executor, rescheduled by {@link #tick()} as it drains.
+     */
+    private final Queue<CubicChunk> rejectedChunks = new ConcurrentLinkedQueue<>();
+
+    private final Channel sky = new Channel(true);
+    private final Channel block = new Channel(false);
+
+    private int nodesPerTick = DEFAULT_NODES_PER_TICK;
+
+    private volatile LightTable lightTable;
+
+    /**
+     * Last chunk accessed by the current call, it is never kept between calls as the chunk may be unloaded.
+     */
+    private CubicChunk cachedChunk;
+
+    /**
+     * @param executor executor to compute light of chunks, or null to use the common pool
+     */
+    public LightEngine(World world, ChunkGenExecutor executor) {
+        this.world = world;
+        this.executor = executor;
+    }
+
+    public int getNodesPerTick() {
+        return nodesPerTick;
+    }
+
+    public void setNodesPerTick(int nodesPerTick) {
+        this.nodesPerTick = nodesPerTick;
+    }
+
+    public int getSkyLight(int x, int y, int z) {
+        var chunk = getLitChunk(x >> CHUNK_X_BITS, y >> CHUNK_Y_BITS, z >> CHUNK_Z_BITS);
+        return chunk == null ? MAX_LIGHT : chunk.getSkyLight(x, y, z);
+    }
+
+    public int getBlockLight(int x, int y, int z) {
+        var chunk = getLitChunk(x >> CHUNK_X_BITS, y >> CHUNK_Y_BITS, z >> CHUNK_Z_BITS);
+        return chunk == null ? 0 : chunk.getBlockLight(x, y, z);
+    }
+
+    /**
+     * @return true if there are pending light updates
+     */
+    public boolean hasPendingUpdates() {
+        return !completedChunks.isEmpty() || !rejectedChunks.isEmpty() || sky.hasPending() || block.hasPending();
+    }
+
+    /**
+     * Called when a chunk is loaded. Chunks without stored light are computed off-thread, chunks with stored light
+     * are connected to their neighbours immediately.
+     */
+    public void onChunkLoad(Chunk chunk) {
+        if (!(chunk instanceof CubicChunk)) {
+            return;
+        }
+        var cubicChunk = (CubicChunk) chunk;
+        if (cubicChunk.isLightComputed()) {
+            connectToNeighbours(cubicChunk);
+            cachedChunk = null;
+        } else {
+            scheduleCompute(cubicChunk);
+        }
+    }
+
+    /**
+     * Called after a block has been changed in a loaded chunk.
+     */
+    public void onBlockChanged(BlockPos pos, BlockState oldBlock, BlockState newBlock) {
+        var table = getLightTable();
+        int oldId = Registries.getBlockRegistry().getStateId(oldBlock);
+        int newId = Registries.getBlockRegistry().getStateId(newBlock);
+        if (table.opacity[oldId] == table.opacity[newId] && table.emission[oldId] == table.emission[newId]) {
+            return;
+        }
+        int x = pos.x(), y = pos.y(), z = pos.z();
+        var chunk = getLitChunk(x >> CHUNK_X_BITS, y >> CHUNK_Y_BITS, z >> CHUNK_Z_BITS);
+        if (chunk == null) {
+            return; // Light of the chunk will be computed with the new block
+        }
+        sky.invalidate(chunk, x, y, z, 0);
+        block.invalidate(chunk, x, y, z, table.emission[newId]);
+        cachedChunk = null;
+    }
+
+    /**
+     * Installs computed chunks and processes pending light updates within the node budget.
+     */
+    public void tick() {
+        LightResult result;
+        while ((result = completedChunks.poll()) != null) {
+            install(result);
+        }
+        CubicChunk chunk;
+        while ((executor == null || executor.getQueueDepth() < executor.getMaxPendingTasks())
+                && (chunk = rejectedChunks.poll()) != null) {
+            if (world.getChunk(chunk.getX(), chunk.getY(), chunk.getZ(), false) == chunk && !chunk.isLightComputed()) {
+                scheduleCompute(chunk);
+            }
+        }
+        int budget = nodesPerTick;
+        budget = sky.processRemovals(budget);
+        budget = block.processRemovals(budget);
+        budget = sky.processAdditions(budget);
+        block.processAdditions(budget);
+        cachedChunk = null;
+    }
+
+    private void scheduleCompute(CubicChunk chunk) {
+        var column = chunk.getColumn();
+        int[] columnTops = new int[CHUNK_X_SIZE * CHUNK_Z_SIZE];
+        for (int x = 0; x < CHUNK_X_SIZE; x++) {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                columnTops[x | z << CHUNK_X_BITS] = column != null ? column.getHighestBlockY(x, z) : chunk.getMin().y() + chunk.getHighestBlockY(x, z);
+            }
+        }
+        int modificationCount = chunk.getModificationCount();
+        var future = executor != null ?
+                executor.submitTask(chunk.getPos(), () -> computeLocal(chunk, columnTops, modificationCount)) :
+                CompletableFuture.supplyAsync(() -> computeLocal(chunk, columnTops, modificationCount));
+        future.whenComplete((result, e) -> {
+            if (e == null) {
+                if (result != null) completedChunks.add(result);
+                return;
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RejectedExecutionException) {
+                if (executor == null || executor.isAvailable()) {
+                    rejectedChunks.add(chunk);
+                }
+            } else {
+                // The chunk stays unlit, it is computed again when reloaded.
+                Platform.getLogger().error("Cannot compute light of chunk {}", chunk.getPos(), cause);
+            }
+        });
+    }
+
+    private void install(LightResult result) {
+        var chunk = result.chunk;
+        if (world.getChunk(chunk.getX(), chunk.getY(), chunk.getZ(), false) != chunk) {
+            return; // Unloaded
+        }
+        if (chunk.getModificationCount() != result.modificationCount) {
+            scheduleCompute(chunk);
+            return;
+        }
+        chunk.setLight(result.skyLight, result.blockLight);
+        connectToNeighbours(chunk);
+    }
+
+    /**
+     * Queues the borders of the chunk and its loaded neighbours, so that light flows across them in both directions.
+     */
+    private void connectToNeighbours(CubicChunk chunk) {
+        int minX = chunk.getMin().x(), minY = chunk.getMin().y(), minZ = chunk.getMin().z();
+        for (int i = 0; i < CHUNK_X_SIZE; i++) {
+            for (int j = 0; j < CHUNK_Y_SIZE; j++) {
+                queueBorder(minX, minY + i, minZ + j, -1, 0, 0);
+                queueBorder(minX + CHUNK_MAX_X, minY + i, minZ + j, 1, 0, 0);
+                queueBorder(minX + i, minY, minZ + j, 0, -1, 0);
+                queueBorder(minX + i, minY + CHUNK_MAX_Y, minZ + j, 0, 1, 0);
+                queueBorder(minX + i, minY + j, minZ, 0, 0, -1);
+                queueBorder(minX + i, minY + j, minZ + CHUNK_MAX_Z, 0, 0, 1);
+            }
+        }
+
+        // A chunk loaded above may cover sky light which has been propagated straight down in the chunk below.
+        var below = getLitChunk(chunk.getX(), chunk.getY() - 1, chunk.getZ());
+        if (below != null) {
+            for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                    if (chunk.getSkyLight(x, 0, z) < MAX_LIGHT && below.getSkyLight(x, CHUNK_MAX_Y, z) == MAX_LIGHT) {
+                        below.setSkyLight(x, CHUNK_MAX_Y, z, 0);
+                        sky.queueRemoval(minX + x, minY - 1, minZ + z, MAX_LIGHT);
+                    }
+                }
+            }
+        }
+    }
+
+    private void queueBorder(int x, int y, int z, int dx, int dy, int dz) {
+        sky.queueAddition(x, y, z);
+        block.queueAddition(x, y, z);
+        if (getLitChunk((x + dx) >> CHUNK_X_BITS, (y + dy) >> CHUNK_Y_BITS, (z + dz) >> CHUNK_Z_BITS) != null) {
+            sky.queueAddition(x + dx, y + dy, z + dz);
+            block.queueAddition(x + dx, y + dy, z + dz);
+        }
+    }
+
+    /**
+     * Computes the light of a chunk without looking at its neighbours. Runs on worker threads.
+     */
+    private LightResult computeLocal(CubicChunk chunk, int[] columnTops, int modificationCount) {
+        var table = getLightTable();
+        var skyLight = new NibbleArray(4, BLOCK_COUNT);
+        var blockLight = new NibbleArray(4, BLOCK_COUNT);
+        byte[] opacity = new byte[BLOCK_COUNT];
+        var skyQueue = new IntArrayFIFOQueue();
+        var blockQueue = new IntArrayFIFOQueue();
+        int minY = chunk.getMin().y();
+        for (int x = 0; x < CHUNK_X_SIZE; x++) {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                int columnTop = columnTops[x | z << CHUNK_X_BITS];
+                for (int y = CHUNK_MAX_Y; y >= 0; y--) {
+                    int index = localIndex(x, y, z);
+                    int id = chunk.getBlockId(x, y, z);
+                    opacity[index] = table.opacity[id];
+                    if (minY + y > columnTop) {
+                        skyLight.set(index, MAX_LIGHT);
+                        skyQueue.enqueue(index);
+                    }
+                    int emission = table.emission[id];
+                    if (emission > 0) {
+                        blockLight.set(index, emission);
+                        blockQueue.enqueue(index);
+                    }
+                }
+            }
+        }
+        floodLocal(skyLight, opacity, skyQueue, true);
+        floodLocal(blockLight, opacity, blockQueue, false);
+        return new LightResult(chunk, skyLight, blockLight, modificationCount);
+    }
+
+    private static void floodLocal(NibbleArray light, byte[] opacity, IntArrayFIFOQueue queue, boolean isSky) {
+        while (!queue.isEmpty()) {
+            int index = queue.dequeueInt();
+            int level = light.get(index);
+            if (level <= 1) continue;
+            int x = index & CHUNK_MAX_X, y = (index >> CHUNK_X_BITS) & CHUNK_MAX_Y, z = index >> CHUNK_X_BITS + CHUNK_Y_BITS;
+            for (int direction = 0; direction < 6; direction++) {
+                int nx = x + OFFSET_X[direction], ny = y + OFFSET_Y[direction], nz = z + OFFSET_Z[direction];
+                if (nx < 0 || nx > CHUNK_MAX_X || ny < 0 || ny > CHUNK_MAX_Y || nz < 0 || nz > CHUNK_MAX_Z) continue;
+                int neighbor = localIndex(nx, ny, nz);
+                int newLevel = propagate(level, opacity[neighbor], isSky, direction);
+                if (newLevel > light.get(neighbor)) {
+                    light.set(neighbor, newLevel);
+                    queue.enqueue(neighbor);
+                }
+            }
+        }
+    }
+
+    private static int propagate(int level, int opacity, boolean isSky, int direction) {
+        if (opacity >= MAX_LIGHT) return 0;
+        if (isSky && direction == DOWN && level == MAX_LIGHT && opacity == 0) return MAX_LIGHT;
+        return Math.max(0, level - 1 - opacity);
+    }
+
+    private static int localIndex(int x, int y, int z) {
+        return x | y << CHUNK_X_BITS | z << CHUNK_X_BITS + CHUNK_Y_BITS;
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & 0x1fffff) << 42) | ((long) (y & 0x1fffff) << 21) | (z & 0x1fffff);
+    }
+
+    private static int unpackX(long packed) {
+        return (int) (packed << 1 >> 43);
+    }
+
+    private static int unpackY(long packed) {
+        return (int) (packed << 22 >> 43);
+    }
+
+    private static int unpackZ(long packed) {
+        return (int) (packed << 43 >> 43);
+    }
+
+    private CubicChunk getLitChunk(int chunkX, int chunkY, int chunkZ) {
+        var cached = cachedChunk;
+        if (cached != null && cached.getX() == chunkX && cached.getY() == chunkY && cached.getZ() == chunkZ) {
+            return cached;
+        }
+        var chunk = world.getChunk(chunkX, chunkY, chunkZ, false);
+        if (!(chunk instanceof CubicChunk) || !((CubicChunk) chunk).isLightComputed()) {
+            return null;
+        }
+        cachedChunk = (CubicChunk) chunk;
+        return cachedChunk;
+    }
+
+    private LightTable getLightTable() {
+        var table = lightTable;
+        var registry = Registries.getBlockRegistry();
+        if (table == null || table.registry != registry || table.stateIdVersion != registry.getStateIdVersion()) {
+            table = lightTable = new LightTable(registry);
+        }
+        return table;
+    }
+
+    /**
+     * Light queues of sky or block light.
+     */
+    private final class Channel {
+        private final boolean isSky;
+        private final LongArrayFIFOQueue additions = new LongArrayFIFOQueue();
+        private final LongArrayFIFOQueue removals = new LongArrayFIFOQueue();
+        private final IntArrayFIFOQueue removalLevels = new IntArrayFIFOQueue();
+
+        private Channel(boolean isSky) {
+            this.isSky = isSky;
+        }
+
+        private boolean hasPending() {
+            return !additions.isEmpty() || !removals.isEmpty();
+        }
+
+        private int get(CubicChunk chunk, int x, int y, int z) {
+            return isSky ? chunk.getSkyLight(x, y, z) : chunk.getBlockLight(x, y, z);
+        }
+
+        private void set(CubicChunk chunk, int x, int y, int z, int level) {
+            if (isSky) chunk.setSkyLight(x, y, z, level);
+            else chunk.setBlockLight(x, y, z, level);
+        }
+
+        private void queueAddition(int x, int y, int z) {
+            additions.enqueue(pack(x, y, z));
+        }
+
+        private void queueRemoval(int x, int y, int z, int level) {
+            removals.enqueue(pack(x, y, z));
+            removalLevels.enqueue(level);
+        }
+
+        private void invalidate(CubicChunk chunk, int x, int y, int z, int emission) {
+            int level = get(chunk, x, y, z);
+            if (level > 0) {
+                set(chunk, x, y, z, 0);
+                queueRemoval(x, y, z, level);
+            }
+            if (emission > 0) {
+                set(chunk, x, y, z, emission);
+                queueAddition(x, y, z);
+            }
+            for (int direction = 0; direction < 6; direction++) {
+                queueAddition(x + OFFSET_X[direction], y + OFFSET_Y[direction], z + OFFSET_Z[direction]);
+            }
+        }
+
+        private int processRemovals(int budget) {
+            var table = getLightTable();
+            while (budget > 0 && !removals.isEmpty()) {
+                budget--;
+                long packed = removals.dequeueLong();
+                int level = removalLevels.dequeueInt();
+                int x = unpackX(packed), y = unpackY(packed), z = unpackZ(packed);
+                for (int direction = 0; direction < 6; direction++) {
+                    int nx = x + OFFSET_X[direction], ny = y + OFFSET_Y[direction], nz = z + OFFSET_Z[direction];
+                    var chunk = getLitChunk(nx >> CHUNK_X_BITS, ny >> CHUNK_Y_BITS, nz >> CHUNK_Z_BITS);
+                    if (chunk == null) continue;
+                    int neighborLevel = get(chunk, nx, ny, nz);
+                    if (neighborLevel == 0) continue;
+                    if (neighborLevel < level || (isSky && direction == DOWN && level == MAX_LIGHT && neighborLevel == MAX_LIGHT)) {
+                        set(chunk, nx, ny, nz, 0);
+                        queueRemoval(nx, ny, nz, neighborLevel);
+                        if (!isSky) {
+                            int emission = table.emission[chunk.getBlockId(nx, ny, nz)];
+                            if (emission > 0) {
+                                set(chunk, nx, ny, nz, emission);
+                                queueAddition(nx, ny, nz);
+                            }
+                        }
+                    } else {
+                        queueAddition(nx, ny, nz);
+                    }
+                }
+            }
+            return budget;
+        }
+
+        private int processAdditions(int budget) {
+            var table = getLightTable();
+            while (budget > 0 && !additions.isEmpty()) {
+                budget--;
+                long packed = additions.dequeueLong();
+                int x = unpackX(packed), y = unpackY(packed), z = unpackZ(packed);
+                var chunk = getLitChunk(x >> CHUNK_X_BITS, y >> CHUNK_Y_BITS, z >> CHUNK_Z_BITS);
+                if (chunk == null) continue;
+                int level = get(chunk, x, y, z);
+                if (level <= 1) continue;
+                for (int direction = 0; direction < 6; direction++) {
+                    int nx = x + OFFSET_X[direction], ny = y + OFFSET_Y[direction], nz = z + OFFSET_Z[direction];
+                    var neighborChunk = getLitChunk(nx >> CHUNK_X_BITS, ny >> CHUNK_Y_BITS, nz >> CHUNK_Z_BITS);
+                    if (neighborChunk == null) continue;
+                    int newLevel = propagate(level, table.opacity[neighborChunk.getBlockId(nx, ny, nz)], isSky, direction);
+                    if (newLevel > get(neighborChunk, nx, ny, nz)) {
+                        set(neighborChunk, nx, ny, nz, newLevel);
+                        queueAddition(nx, ny, nz);
+                    }
+                }
+            }
+            return budget;
+        }
+    }
+
+    /**
+     * Light properties of all block states, indexed by state id.
+     */
+    private static final class LightTable {
+        private final BlockRegistry registry;
+        private final int stateIdVersion;
+        private final byte[] emission;
+        private final byte[] opacity;
+
+        private LightTable(BlockRegistry registry) {
+            this.registry = registry;
+            this.stateIdVersion = registry.getStateIdVersion();
+            int count = 0;
+            while (registry.getStateFromId(count) != null) count++;
+            emission = new byte[count];
+            opacity = new byte[count];
+            for (int id = 0; id < count; id++) {
+                BlockState state = registry.getStateFromId(id);
+                var behavior = state.getPrototype().getComponent(LightBehavior.class);
+                if (behavior.isPresent()) {
+                    emission[id] = (byte) Math.min(MAX_LIGHT, Math.max(0, behavior.get().getLightEmission(state)));
+                    opacity[id] = (byte) Math.min(MAX_LIGHT, Math.max(0, behavior.get().getLightOpacity(state)));
+                } else {
+                    opacity[id] = (byte) (state.getPrototype().getShape() == BlockShape.NORMAL_CUBE ? MAX_LIGHT : 0);
+                }
+            }
+        }
+    }
+
+    private static final class LightResult {
+        private final CubicChunk chunk;
+        private final NibbleArray skyLight;
+        private final NibbleArray blockLight;
+        private final int modificationCount;
+
+        private LightResult(CubicChunk chunk, NibbleArray skyLight, NibbleArray blockLight, int modificationCount) {
+            this.chunk = chunk;
+            this.skyLight = skyLight;
+            this.blockLight = blockLight;
+            this.modificationCount = modificationCount;
+        }
+    }
+}
@@ -48,9 +48,6 @@ public class TestWorldProvider extends BaseWorldProvider {
                         if (j + yOffset <= Math.floor(sampler.sample((xOffset + i) / xResolution, (zOffset + k) / zResolution) * noiseScaleY + seaLevel)) {
                             var state = Registries.getBlockRegistry().getValue(Name.of("foundation", "grass")).getDefaultState();
                             chunk.setBlock(BlockPos.of(i, j, k), state, new BlockChangeCause.WorldGenCause());
-                            if (ctx.getTargetChunkColumn() != null) {
-                                ctx.getTargetChunkColumn().getHeightmap().updatePos(i, j, k, state);
-                            }
                         }
                     }
                 }
@@ -0,0 +1,47 @@
+package engine.registry;
+
+import engine.block.Block;
+import engine.entity.EntityProvider;
+import engine.item.Item;
+import engine.registry.game.BlockRegistryImpl;
+import engine.registry.game.EntityRegistryImpl;
+import engine.registry.game.ItemRegistryImpl;
+import engine.registry.impl.IdAutoIncreaseRegistry;
+import engine.world.WorldProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registries of tests.
+ */
+public final class TestRegistries {
+
+    /**
+     * Initializes {@link Registries} with a block registry of the given blocks, the first one being air.
+     * <p>
+     * {@link Registries} only keeps weak references, the caller must keep the returned manager.
+     */
+    public static RegistryManager init(Block air, Block... blocks) {
+        // Registries are named in the current namespace.
+        Namespaces.setNamespace("test");
+        var blockRegistry = new BlockRegistryImpl();
+        blockRegistry.register(air);
+        blockRegistry.setAirBlock(air);
+        for (Block block : blocks) {
+            blockRegistry.register(block);
+        }
+        blockRegistry.reconstructStateId();
+        Map<Class<?>, Registry<?>> registries = new HashMap<>();
+        registries.put(Block.class, blockRegistry);
+        registries.put(Item.class, new ItemRegistryImpl());
+        registries.put(EntityProvider.class, new EntityRegistryImpl());
+        registries.put(WorldProvider.class, new IdAutoIncreaseRegistry<>(WorldProvider.class));
+        var manager = new EngineRegistryManager(registries);
+        Registries.init(manager);
+        return manager;
+    }
+
+    private TestRegistries() {
+    }
+}
@@ -0,0 +1,300 @@
+package engine.world;
+
+import engine.block.BaseBlock;
+import engine.entity.BaseEntity;
+import engine.entity.Entity;
+import engine.entity.EntityProvider;
+import engine.event.EventBus;
+import engine.event.SimpleEventBus;
+import engine.event.block.cause.BlockChangeCause;
+import engine.game.Game;
+import engine.math.BlockPos;
+import engine.registry.Name;
+import engine.registry.Registries;
+import engine.registry.RegistryManager;
+import engine.registry.TestRegistries;
+import org.joml.AABBd;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultEntityManagerTest {
+
+    // Registries only keeps weak references.
+    private RegistryManager registryManager;
+    private final EventBus eventBus = SimpleEventBus.builder().build();
+    private DefaultEntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        registryManager = TestRegistries.init(new BaseBlock().name(Name.of("test", "air")));
+        var entityRegistry = registryManager.getRegistry(EntityProvider.class).orElseThrow();
+        entityRegistry.register(EntityProvider.Builder.builder()
+                .type(TestEntity.class).factory(TestEntity::new).registeredName("test_entity").build());
+        entityRegistry.register(EntityProvider.Builder.builder()
+                .type(TickingEntity.class).factory(TickingEntity::new).registeredName("ticking_entity").build());
+        entityManager = createEntityManager(new ArrayList<>());
+    }
+
+    /**
+     * Creates an entity manager of a world which records the positions of changed blocks.
+     */
+    private DefaultEntityManager createEntityManager(List<String> blockChanges) {
+        // Only the event bus of the game is used by the entity manager.
+        Game game = (Game) Proxy.newProxyInstance(Game.class.getClassLoader(), new Class<?>[]{Game.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getEventBus")) return eventBus;
+            throw new UnsupportedOperationException(method.getName());
+        });
+        DefaultEntityManager[] manager = new DefaultEntityManager[1];
+        World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getGame":
+                    return game;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "spawnEntity":
+                    return manager[0].spawnEntity(((Class<?>) args[0]).asSubclass(Entity.class), (double) args[1], (double) args[2], (double) args[3]);
+                case "doDestroyEntity":
+                    manager[0].doDestroyEntity((Entity) args[0]);
+                    return null;
+                case "setBlock":
+                    // Block changes of worlds are applied like in WorldCommon.
+                    manager[0].runAfterTick(() -> {
+                        assertFalse(manager[0].isParallelTicking());
+                        blockChanges.add(args[0].toString());
+                    });
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        manager[0] = new DefaultEntityManager(world);
+        return manager[0];
+    }
+
+    @Test
+    void spatialQueriesMatchScanOfAllEntities() {
+        var random = new Random(42);
+        List<TestEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            var entity = entityManager.spawnEntity(TestEntity.class, random.nextDouble() * 200 - 100,
+                    random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100);
+            double size = random.nextDouble() * 3;
+            entity.setBoundingBox(new AABBd(-size, 0, -size, size, size * 2, size));
+            entity.collision = i % 5 != 0;
+            entityManager.updateEntityIndex(entity);
+            entities.add(entity);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 200; i++) {
+                // Queries from smaller than a chunk up to larger than the populated space.
+                double size = Math.pow(2, random.nextInt(9)) * random.nextDouble();
+                double x = random.nextDouble() * 240 - 120, y = random.nextDouble() * 240 - 120, z = random.nextDouble() * 240 - 120;
+                assertSameEntities(entities, entity -> intersectsBox(entity, x - size, y - size, z - size, x + size, y + size, z + size),
+                        entityManager.getEntitiesWithBoundingBox(x - size, y - size, z - size, x + size, y + size, z + size));
+                assertSameEntities(entities, entity -> intersectsSphere(entity, x, y, z, size),
+                        entityManager.getEntitiesWithSphere(x, y, z, size));
+            }
+            // Moved entities are found at their new position.
+            for (TestEntity entity : entities) {
+                entity.getPosition().add(random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20);
+                entityManager.updateEntityIndex(entity);
+            }
+        }
+    }
+
+    @Test
+    void largeEntitiesAreFoundFromNeighbourChunks() {
+        var entity = entityManager.spawnEntity(TestEntity.class, 16, 16, 16);
+        entity.setBoundingBox(new AABBd(-40, -40, -40, 40, 40, 40));
+        entityManager.updateEntityIndex(entity);
+        // Enough buckets for the widened query to visit buckets rather than all entities.
+        for (int i = 0; i < 64; i++) {
+            entityManager.spawnEntity(TestEntity.class, 1000 + i * 32, 0, 0);
+        }
+
+        assertEquals(List.of(entity), entityManager.getEntitiesWithBoundingBox(50, 50, 50, 51, 51, 51));
+        assertEquals(List.of(entity), entityManager.getEntitiesWithSphere(-20, 16, 16, 1));
+    }
+
+    @Test
+    void parallelTickMatchesSerialTick() {
+        var serialBlockChanges = new ArrayList<String>();
+        var serial = createEntityManager(serialBlockChanges);
+        var parallelBlockChanges = new ArrayList<String>();
+        var parallel = createEntityManager(parallelBlockChanges);
+        var pool = new ForkJoinPool(4);
+        parallel.setTickPool(pool);
+        try {
+            var random = new Random(42);
+            for (int i = 0; i < 300; i++) {
+                double x = random.nextDouble() * 192 - 96, y = random.nextDouble() * 192 - 96, z = random.nextDouble() * 192 - 96;
+                float motionX = random.nextFloat() * 4 - 2, motionY = random.nextFloat() * 4 - 2, motionZ = random.nextFloat() * 4 - 2;
+                for (DefaultEntityManager manager : List.of(serial, parallel)) {
+                    var entity = manager.spawnEntity(TickingEntity.class, x, y, z);
+                    entity.seed = i;
+                    entity.spawnPeriod = i % 3 == 0 ? 5 : 0;
+                    entity.destroyAge = i % 4 == 1 ? 12 : -1;
+                    entity.getMotion().set(motionX, motionY, motionZ);
+                }
+            }
+
+            for (int tick = 0; tick < 20; tick++) {
+                serial.tick();
+                parallel.tick();
+                assertEquals(describe(serial), describe(parallel), "Entities after tick " + tick);
+            }
+            assertTrue(serial.getEntities().size() > 300, "Entities have been spawned");
+            assertFalse(serialBlockChanges.isEmpty());
+            Collections.sort(serialBlockChanges);
+            Collections.sort(parallelBlockChanges);
+            assertEquals(serialBlockChanges, parallelBlockChanges);
+
+            // The index follows the entities moved by the parallel tick.
+            for (Entity entity : parallel.getEntities()) {
+                var position = entity.getPosition();
+                assertTrue(parallel.getEntitiesWithSphere(position.x(), position.y(), position.z(), 0.1).contains(entity));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void entitiesSpawnedAndDestroyedDuringTickAreAppliedAfterIt() {
+        var pool = new ForkJoinPool(2);
+        try {
+            for (ForkJoinPool tickPool : Arrays.asList(null, pool)) {
+                var manager = createEntityManager(new ArrayList<>());
+                manager.setTickPool(tickPool);
+                List<TickingEntity> parents = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    var parent = manager.spawnEntity(TickingEntity.class, i * 40, 0, 0);
+                    // Spawns a child on every tick and is destroyed on its second one.
+                    parent.spawnPeriod = 1;
+                    parent.destroyAge = 2;
+                    parents.add(parent);
+                }
+
+                manager.tick();
+                assertEquals(16, manager.getEntities().size());
+                for (Entity entity : manager.getEntities()) {
+                    // Children are not ticked by the tick which spawned them.
+                    assertEquals(parents.contains(entity) ? 1 : 0, ((TickingEntity) entity).age);
+                }
+
+                manager.tick();
+                for (TickingEntity parent : parents) {
+                    assertTrue(parent.isDestroyed());
+                    assertFalse(manager.getEntities().contains(parent));
+                    var position = parent.getPosition();
+                    assertFalse(manager.getEntitiesWithSphere(position.x(), position.y(), position.z(), 0.1).contains(parent));
+                }
+                assertTrue(manager.getEntities().stream().noneMatch(Entity::isDestroyed));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<String> describe(DefaultEntityManager manager) {
+        List<String> descriptions = new ArrayList<>();
+        for (Entity entity : manager.getEntities()) {
+            var ticking = (TickingEntity) entity;
+            var position = entity.getPosition();
+            descriptions.add(ticking.seed + " " + ticking.age + " " + position.x() + " " + position.y() + " " + position.z());
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private static void assertSameEntities(List<TestEntity> all, Predicate<Entity> reference, List<Entity> actual) {
+        Set<Entity> expected = new HashSet<>();
+        for (TestEntity entity : all) {
+            if (reference.test(entity)) expected.add(entity);
+        }
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, new HashSet<>(actual));
+    }
+
+    private static boolean intersectsBox(Entity entity, double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        var position = entity.getPosition();
+        if (!entity.hasCollision()) {
+            return position.x() >= minX && position.y() >= minY && position.z() >= minZ
+                    && position.x() <= maxX && position.y() <= maxY && position.z() <= maxZ;
+        }
+        var box = entity.getBoundingBox();
+        return position.x() + box.minX <= maxX && position.x() + box.maxX >= minX
+                && position.y() + box.minY <= maxY && position.y() + box.maxY >= minY
+                && position.z() + box.minZ <= maxZ && position.z() + box.maxZ >= minZ;
+    }
+
+    private static boolean intersectsSphere(Entity entity, double x, double y, double z, double radius) {
+        var position = entity.getPosition();
+        if (!entity.hasCollision()) {
+            return position.distanceSquared(x, y, z) <= radius * radius;
+        }
+        var box = entity.getBoundingBox();
+        double dx = Math.max(0, Math.max(position.x() + box.minX - x, x - position.x() - box.maxX));
+        double dy = Math.max(0, Math.max(position.y() + box.minY - y, y - position.y() - box.maxY));
+        double dz = Math.max(0, Math.max(position.z() + box.minZ - z, z - position.z() - box.maxZ));
+        return dx * dx + dy * dy + dz * dz <= radius * radius;
+    }
+
+    /**
+     * Entity moving by its motion, which periodically spawns entities and changes blocks, and destroys itself at a
+     * given age.
+     */
+    public static class TickingEntity extends TestEntity {
+        private int seed;
+        private int age;
+        private int spawnPeriod;
+        private int destroyAge = -1;
+
+        public TickingEntity(int id, World world, double x, double y, double z) {
+            super(id, world, x, y, z);
+        }
+
+        @Override
+        public void tick() {
+            age++;
+            var position = getPosition();
+            position.add(getMotion());
+            if (spawnPeriod > 0 && age % spawnPeriod == 0) {
+                var child = getWorld().spawnEntity(TickingEntity.class, position.x(), position.y(), position.z());
+                child.seed = seed * 31 + age;
+                child.getMotion().set(-getMotion().z, getMotion().y, getMotion().x);
+            }
+            if (age % 4 == 0) {
+                getWorld().setBlock(BlockPos.of((int) Math.floor(position.x()), (int) Math.floor(position.y()), (int) Math.floor(position.z())),
+                        Registries.getBlockRegistry().air().getDefaultState(), new BlockChangeCause.WorldGenCause());
+            }
+            if (age == destroyAge) {
+                destroy();
+            }
+        }
+    }
+
+    public static class TestEntity extends BaseEntity {
+        private boolean collision = true;
+
+        public TestEntity(int id, World world, double x, double y, double z) {
+            super(id, world, x, y, z);
+            setBoundingBox(new AABBd(-0.5, 0, -0.5, 0.5, 1, 0.5));
+        }
+
+        @Override
+        public boolean hasCollision() {
+            return collision;
+        }
+    }
+}
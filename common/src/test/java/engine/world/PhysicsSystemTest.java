@@ -0,0 +1,195 @@
+package engine.world;
+
+import engine.block.BaseBlock;
+import engine.block.BlockShape;
+import engine.block.state.BlockState;
+import engine.entity.BaseEntity;
+import engine.math.BlockPos;
+import org.joml.AABBd;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhysicsSystemTest {
+
+    private static final int SIZE = 16;
+    private static final int STEPS = 4096;
+    private static final double EPSILON = 1.0E-7;
+
+    private static final BlockState AIR = new BaseBlock().setShape(BlockShape.EMPTY).getDefaultState();
+    private static final BlockState STONE = new BaseBlock().getDefaultState();
+    private static final BlockState SLAB = new BaseBlock().setShape(BlockShape.of(new AABBd(0, 0, 0, 1, 0.5, 1))).getDefaultState();
+
+    private final BlockState[] blocks = new BlockState[SIZE * SIZE * SIZE];
+    /**
+     * Blocks of a {@link #SIZE} cube at the origin, air elsewhere.
+     */
+    private final World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+        if (method.getName().equals("getBlock")) {
+            return args.length == 1 ? getBlock(((BlockPos) args[0]).x(), ((BlockPos) args[0]).y(), ((BlockPos) args[0]).z())
+                    : getBlock((int) args[0], (int) args[1], (int) args[2]);
+        }
+        throw new UnsupportedOperationException(method.getName());
+    });
+
+    @Test
+    void sweepStopsWhereSmallStepsStop() {
+        var random = new Random(42);
+        var physicsSystem = new PhysicsSystem();
+        for (int round = 0; round < 20; round++) {
+            fillBlocks(random, 0.2);
+            for (int i = 0; i < 50; i++) {
+                var entity = placeEntity(random);
+                entity.getMotion().set(random.nextFloat() * 6 - 3, random.nextFloat() * 6 - 3, random.nextFloat() * 6 - 3);
+                var position = entity.getPosition();
+                var box = new AABBd(entity.getBoundingBox()).translate(position);
+                // The sweep clips the y, x and z axis in sequence, the reference moves along the same path.
+                double dy = stepAlong(box, 1, entity.getMotion().y);
+                box.translate(0, dy, 0);
+                double dx = stepAlong(box, 0, entity.getMotion().x);
+                box.translate(dx, 0, 0);
+                double dz = stepAlong(box, 2, entity.getMotion().z);
+
+                physicsSystem.tick(world, entity);
+                assertClipped(dx, entity.getMotion().x);
+                assertClipped(dy, entity.getMotion().y);
+                assertClipped(dz, entity.getMotion().z);
+
+                // The entity ends in contact at most, never inside a block.
+                position.add(entity.getMotion());
+                assertTrue(!overlapsBlock(new AABBd(entity.getBoundingBox()).translate(position)),
+                        "Entity at " + position + " overlaps a block");
+            }
+        }
+    }
+
+    @Test
+    void entityStopsOnTopOfBlocks() {
+        fillBlocks(new Random(), 0);
+        blocks[index(4, 2, 4)] = STONE;
+        blocks[index(6, 2, 4)] = SLAB;
+        var physicsSystem = new PhysicsSystem();
+
+        var onStone = createEntity(4.5, 5, 4.5);
+        onStone.getMotion().set(0, -5, 0);
+        physicsSystem.tick(world, onStone);
+        assertEquals(-2, onStone.getMotion().y, 1e-6);
+
+        var onSlab = createEntity(6.5, 5, 4.5);
+        onSlab.getMotion().set(0, -5, 0);
+        physicsSystem.tick(world, onSlab);
+        assertEquals(-2.5, onSlab.getMotion().y, 1e-6);
+
+        // Motion along the other axes is kept.
+        var sliding = createEntity(4.5, 3, 4.5);
+        sliding.getMotion().set(0.25f, -1, -0.5f);
+        physicsSystem.tick(world, sliding);
+        assertEquals(0, sliding.getMotion().y, 1e-6);
+        assertEquals(0.25f, sliding.getMotion().x);
+        assertEquals(-0.5f, sliding.getMotion().z);
+    }
+
+    /**
+     * Moves the box along one axis in small steps until the next step overlaps a block.
+     *
+     * @return the distance moved
+     */
+    private double stepAlong(AABBd box, int axis, double delta) {
+        double moved = 0;
+        for (int step = 1; step <= STEPS; step++) {
+            double next = delta * step / STEPS;
+            var moving = new AABBd(box).translate(axis == 0 ? next : 0, axis == 1 ? next : 0, axis == 2 ? next : 0);
+            if (overlapsBlock(moving)) break;
+            moved = next;
+        }
+        return moved;
+    }
+
+    private static void assertClipped(double reference, float actual) {
+        // The sweep stops exactly in contact, the reference up to one step before.
+        double tolerance = 6.0 / STEPS + 1e-5;
+        assertTrue(Math.abs(actual) >= Math.abs(reference) - 1e-5 && Math.abs(actual - reference) <= tolerance,
+                "Expected " + reference + " but was " + actual);
+    }
+
+    private boolean overlapsBlock(AABBd box) {
+        for (int x = (int) Math.floor(box.minX); x <= (int) Math.floor(box.maxX); x++) {
+            for (int y = (int) Math.floor(box.minY); y <= (int) Math.floor(box.maxY); y++) {
+                for (int z = (int) Math.floor(box.minZ); z <= (int) Math.floor(box.maxZ); z++) {
+                    for (AABBd blockBox : getBlock(x, y, z).getPrototype().getShape().getBoundingBoxes()) {
+                        if (blockBox.maxX + x > box.minX + EPSILON && blockBox.minX + x < box.maxX - EPSILON
+                                && blockBox.maxY + y > box.minY + EPSILON && blockBox.minY + y < box.maxY - EPSILON
+                                && blockBox.maxZ + z > box.minZ + EPSILON && blockBox.minZ + z < box.maxZ - EPSILON) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void fillBlocks(Random random, double density) {
+        for (int i = 0; i < blocks.length; i++) {
+            double value = random.nextDouble();
+            blocks[i] = value < density * 0.75 ? STONE : value < density ? SLAB : AIR;
+        }
+    }
+
+    private TestEntity placeEntity(Random random) {
+        while (true) {
+            var entity = createEntity(2 + random.nextDouble() * (SIZE - 4), 2 + random.nextDouble() * (SIZE - 4), 2 + random.nextDouble() * (SIZE - 4));
+            if (!overlapsBlock(new AABBd(entity.getBoundingBox()).translate(entity.getPosition()))) {
+                return entity;
+            }
+        }
+    }
+
+    private TestEntity createEntity(double x, double y, double z) {
+        return new TestEntity(world, x, y, z);
+    }
+
+    private BlockState getBlock(int x, int y, int z) {
+        if (x < 0 || y < 0 || z < 0 || x >= SIZE || y >= SIZE || z >= SIZE) return AIR;
+        return blocks[index(x, y, z)];
+    }
+
+    private static int index(int x, int y, int z) {
+        return (x * SIZE + y) * SIZE + z;
+    }
+
+    /**
+     * Times sweeps of entities moving in random directions through a world filled at 20%.
+     */
+    private static void benchmarkSweep() {
+        var test = new PhysicsSystemTest();
+        var random = new Random(42);
+        test.fillBlocks(random, 0.2);
+        var entities = new TestEntity[10000];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = test.placeEntity(random);
+        }
+        var physicsSystem = new PhysicsSystem();
+        for (int round = 0; round < 10; round++) {
+            for (TestEntity entity : entities) {
+                entity.getMotion().set(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1);
+            }
+            long start = System.nanoTime();
+            for (TestEntity entity : entities) {
+                physicsSystem.tick(test.world, entity);
+            }
+            System.out.println((System.nanoTime() - start) / entities.length + " ns per sweep");
+        }
+    }
+
+    private static final class TestEntity extends BaseEntity {
+        private TestEntity(World world, double x, double y, double z) {
+            super(0, world, x, y, z);
+            setBoundingBox(new AABBd(-0.3, 0, -0.3, 0.3, 1.8, 0.3));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package engine.world.chunk;
+
+import engine.block.BaseBlock;
+import engine.block.state.BlockState;
+import engine.registry.Name;
+import engine.registry.RegistryManager;
+import engine.registry.TestRegistries;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static engine.world.chunk.ChunkConstants.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChunkColumnHeightTest {
+
+    // Registries only keeps weak references.
+    private RegistryManager registryManager;
+    private BlockState air;
+    private BlockState stone;
+
+    @BeforeEach
+    void setUp() {
+        var airBlock = new BaseBlock().name(Name.of("test", "air"));
+        var stoneBlock = new BaseBlock().name(Name.of("test", "stone"));
+        registryManager = TestRegistries.init(airBlock, stoneBlock);
+        air = airBlock.getDefaultState();
+        stone = stoneBlock.getDefaultState();
+    }
+
+    @Test
+    void placingAndRemovingBlocksUpdatesChunkHeights() {
+        var chunk = new CubicChunk(null, 0, 0, 0);
+        assertEquals(-1, chunk.getHighestBlockY(1, 2));
+
+        chunk.setBlock(1, 5, 2, stone);
+        chunk.setBlock(1, 10, 2, stone);
+        assertEquals(10, chunk.getHighestBlockY(1, 2));
+        assertEquals(-1, chunk.getHighestBlockY(2, 1));
+
+        chunk.setBlock(1, 5, 2, air);
+        assertEquals(10, chunk.getHighestBlockY(1, 2));
+        chunk.setBlock(1, 10, 2, air);
+        assertEquals(-1, chunk.getHighestBlockY(1, 2));
+    }
+
+    @Test
+    void readingBlockContentRebuildsChunkHeights() throws IOException {
+        var chunk = new CubicChunk(null, 0, 0, 0);
+        for (int x = 0; x < CHUNK_X_SIZE; x++) {
+            for (int z = 0; z < CHUNK_Z_SIZE; z += 3) {
+                chunk.setBlock(x, (x * 7 + z) & CHUNK_MAX_Y, z, stone);
+            }
+        }
+        var output = new ByteArrayOutputStream();
+        chunk.writeBlockContent(new DataOutputStream(output));
+
+        var read = new CubicChunk(null, 0, 0, 0);
+        read.readBlockContent(new DataInputStream(new ByteArrayInputStream(output.toByteArray())));
+        for (int x = 0; x < CHUNK_X_SIZE; x++) {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                assertEquals(chunk.getHighestBlockY(x, z), read.getHighestBlockY(x, z), "Column " + x + ", " + z);
+            }
+        }
+    }
+
+    @Test
+    void heightmapFollowsBlocksAcrossChunks() {
+        var column = new TestColumn();
+        var bottom = column.load(0);
+        var middle = column.load(1);
+        var top = column.load(2);
+        bottom.setBlock(4, 3, 4, stone);
+        middle.setBlock(4, 7, 4, stone);
+        assertEquals(CHUNK_Y_SIZE + 7, column.getHighestBlockY(4, 4));
+
+        // Removing the highest block rescans the chunks below.
+        middle.setBlock(4, 7, 4, air);
+        assertEquals(3, column.getHighestBlockY(4, 4));
+
+        // Empty chunks are skipped.
+        top.setBlock(4, 0, 4, stone);
+        assertEquals(2 * CHUNK_Y_SIZE, column.getHighestBlockY(4, 4));
+        top.setBlock(4, 0, 4, air);
+        assertEquals(3, column.getHighestBlockY(4, 4));
+
+        // Blocks below the highest one don't change it.
+        top.setBlock(4, 9, 4, stone);
+        bottom.setBlock(4, 3, 4, air);
+        assertEquals(2 * CHUNK_Y_SIZE + 9, column.getHighestBlockY(4, 4));
+        assertEquals(0, column.getHighestBlockY(5, 4));
+    }
+
+    @Test
+    void heightmapFollowsChunkLoadAndUnload() {
+        var column = new TestColumn();
+        var bottom = new CubicChunk(null, 0, 0, 0);
+        bottom.setBlock(2, 12, 3, stone);
+        var top = new CubicChunk(null, 0, 1, 0);
+        top.setBlock(2, 1, 3, stone);
+
+        column.load(bottom);
+        assertEquals(12, column.getHighestBlockY(2, 3));
+        column.load(top);
+        assertEquals(CHUNK_Y_SIZE + 1, column.getHighestBlockY(2, 3));
+        // Loading an empty chunk keeps the highest block.
+        column.load(new CubicChunk(null, 0, 2, 0));
+        assertEquals(CHUNK_Y_SIZE + 1, column.getHighestBlockY(2, 3));
+
+        column.unload(top);
+        assertEquals(12, column.getHighestBlockY(2, 3));
+        column.load(top);
+        assertEquals(CHUNK_Y_SIZE + 1, column.getHighestBlockY(2, 3));
+    }
+
+    /**
+     * Column of the chunks loaded in the test, without world.
+     */
+    private static final class TestColumn extends ChunkColumn {
+        private final Int2ObjectMap<Chunk> chunks = new Int2ObjectOpenHashMap<>();
+
+        private TestColumn() {
+            super(null, 0, 0);
+        }
+
+        private CubicChunk load(int chunkY) {
+            var chunk = new CubicChunk(null, 0, chunkY, 0);
+            load(chunk);
+            return chunk;
+        }
+
+        private void load(CubicChunk chunk) {
+            chunks.put(chunk.getY(), chunk);
+            onChunkLoad(chunk);
+        }
+
+        private void unload(CubicChunk chunk) {
+            chunks.remove(chunk.getY());
+            onChunkUnload(chunk);
+        }
+
+        @Override
+        public Chunk getChunk(int chunkY) {
+            return chunks.get(chunkY);
+        }
+    }
+}
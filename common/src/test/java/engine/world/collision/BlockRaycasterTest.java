@@ -0,0 +1,219 @@
+package engine.world.collision;
+
+import engine.block.BaseBlock;
+import engine.block.Block;
+import engine.block.BlockShape;
+import engine.block.state.BlockState;
+import engine.event.block.cause.BlockChangeCause;
+import engine.math.BlockPos;
+import engine.registry.Name;
+import engine.registry.RegistryManager;
+import engine.registry.TestRegistries;
+import engine.util.Direction;
+import engine.world.World;
+import engine.world.chunk.ChunkConstants;
+import engine.world.chunk.CubicChunk;
+import engine.world.hit.BlockHitResult;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static engine.world.chunk.ChunkConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockRaycasterTest {
+
+    // Registries only keeps weak references.
+    private RegistryManager registryManager;
+    private BlockState stone;
+
+    private final Long2ObjectMap<CubicChunk> chunks = new Long2ObjectOpenHashMap<>();
+    private final List<BlockPos> solidBlocks = new ArrayList<>();
+    private World world;
+    private BlockRaycaster raycaster;
+
+    @BeforeEach
+    void setUp() {
+        Block airBlock = new BaseBlock().setShape(BlockShape.EMPTY).name(Name.of("test", "air"));
+        Block stoneBlock = new BaseBlock().name(Name.of("test", "stone"));
+        registryManager = TestRegistries.init(airBlock, stoneBlock);
+        stone = stoneBlock.getDefaultState();
+
+        // Only chunks are looked up by the raycaster.
+        world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getChunk") && args.length == 4) {
+                return chunks.get(ChunkConstants.getChunkIndex((int) args[0], (int) args[1], (int) args[2]));
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+        raycaster = new BlockRaycaster(world);
+    }
+
+    @Test
+    void hitsMatchNearestIntersectedBlock() {
+        var random = new Random(42);
+        // Unloaded, air and sparsely filled chunks around the origin.
+        for (int chunkX = -2; chunkX < 2; chunkX++) {
+            for (int chunkY = -2; chunkY < 2; chunkY++) {
+                for (int chunkZ = -2; chunkZ < 2; chunkZ++) {
+                    int kind = random.nextInt(3);
+                    if (kind == 0) continue;
+                    var chunk = loadChunk(chunkX, chunkY, chunkZ);
+                    if (kind == 1) continue;
+                    for (int i = 0; i < 200; i++) {
+                        setBlock(chunk.getMin().x() + random.nextInt(CHUNK_X_SIZE), chunk.getMin().y() + random.nextInt(CHUNK_Y_SIZE),
+                                chunk.getMin().z() + random.nextInt(CHUNK_Z_SIZE));
+                    }
+                }
+            }
+        }
+
+        int hits = 0;
+        for (int i = 0; i < 2000; i++) {
+            float fromX, fromY, fromZ;
+            do {
+                fromX = random.nextFloat() * 128 - 64;
+                fromY = random.nextFloat() * 128 - 64;
+                fromZ = random.nextFloat() * 128 - 64;
+            } while (isSolid((int) Math.floor(fromX), (int) Math.floor(fromY), (int) Math.floor(fromZ)));
+            float length = random.nextFloat() * 100;
+            // A quarter of the rays are parallel to an axis and another quarter to a plane of two axes.
+            float[] offset = new float[3];
+            for (int axis = 0; axis < 3; axis++) {
+                boolean zero = i % 4 == 0 ? axis != i % 3 : i % 4 == 2 && axis == i % 3;
+                offset[axis] = zero ? 0 : random.nextFloat() * 2 - 1;
+            }
+            float offsetX = offset[0], offsetY = offset[1], offsetZ = offset[2];
+            float scale = length / (float) Math.sqrt(offsetX * offsetX + offsetY * offsetY + offsetZ * offsetZ);
+            offsetX *= scale;
+            offsetY *= scale;
+            offsetZ *= scale;
+
+            BlockPos expected = findNearestBlock(fromX, fromY, fromZ, offsetX, offsetY, offsetZ);
+            BlockHitResult result = raycast(fromX, fromY, fromZ, offsetX, offsetY, offsetZ);
+            String ray = "Ray from " + fromX + ", " + fromY + ", " + fromZ + " by " + offsetX + ", " + offsetY + ", " + offsetZ;
+            if (expected == null) {
+                assertTrue(result.isFailure(), ray);
+            } else {
+                assertTrue(result.isSuccess(), ray);
+                assertEquals(expected, result.getPos(), ray);
+                hits++;
+            }
+        }
+        assertTrue(hits > 100, "Only " + hits + " rays hit a block");
+    }
+
+    @Test
+    void axisAlignedRaysCrossChunkBorders() {
+        loadChunk(-1, 0, 0);
+        loadChunk(0, 0, 0);
+        // Chunk 1 stays unloaded.
+        loadChunk(2, 0, 0);
+        setBlock(70, 5, 5);
+        setBlock(-20, 5, 5);
+        setBlock(31, 6, 5);
+
+        var result = raycast(0.5f, 5.5f, 5.5f, 100, 0, 0);
+        assertEquals(BlockPos.of(70, 5, 5), result.getPos());
+        assertEquals(Direction.WEST, result.getDirection());
+        assertEquals(0, result.getHitPoint().x(), 1e-5);
+
+        result = raycast(0.5f, 5.5f, 5.5f, -100, 0, 0);
+        assertEquals(BlockPos.of(-20, 5, 5), result.getPos());
+        assertEquals(Direction.EAST, result.getDirection());
+
+        // Along the last column of a chunk.
+        result = raycast(31.5f, 31.5f, 5.5f, 0, -100, 0);
+        assertEquals(BlockPos.of(31, 6, 5), result.getPos());
+        assertEquals(Direction.UP, result.getDirection());
+
+        // Stops before the block.
+        assertTrue(raycast(0.5f, 5.5f, 5.5f, 69.4f, 0, 0).isFailure());
+        assertTrue(raycast(0.5f, 5.5f, 5.5f, 69.6f, 0, 0).isSuccess());
+    }
+
+    @Test
+    void raysEndingOnChunkBordersStop() {
+        loadChunk(0, 0, 0);
+        loadChunk(1, 0, 0);
+        setBlock(CHUNK_X_SIZE, 5, 5);
+        setBlock(CHUNK_X_SIZE, 5, 0);
+
+        assertTrue(raycast(CHUNK_X_SIZE - 2.5f, 5.5f, 5.5f, 2, 0, 0).isFailure());
+        assertEquals(BlockPos.of(CHUNK_X_SIZE, 5, 5), raycast(CHUNK_X_SIZE - 2.5f, 5.5f, 5.5f, 2.6f, 0, 0).getPos());
+        // Diagonal ray from an unloaded chunk through the edge shared by four chunks.
+        assertEquals(BlockPos.of(CHUNK_X_SIZE, 5, 0), raycast(CHUNK_X_SIZE - 0.5f, 5.5f, -0.5f, 1, 0, 1).getPos());
+        assertTrue(raycast(CHUNK_X_SIZE - 0.5f, 5.5f, -0.5f, 0.4f, 0, 0.4f).isFailure());
+    }
+
+    @Test
+    void zeroLengthRaysHitNothing() {
+        loadChunk(0, 0, 0);
+        setBlock(5, 5, 5);
+
+        assertTrue(raycast(4.5f, 5.5f, 5.5f, 0, 0, 0).isFailure());
+        assertTrue(raycast(4.999f, 5.5f, 5.5f, 0, 0, 0).isFailure());
+        // In an unloaded chunk.
+        assertTrue(raycast(-4.5f, 5.5f, 5.5f, 0, 0, 0).isFailure());
+    }
+
+    private BlockHitResult raycast(float fromX, float fromY, float fromZ, float offsetX, float offsetY, float offsetZ) {
+        try {
+            return raycaster.raycast(fromX, fromY, fromZ, offsetX, offsetY, offsetZ, null);
+        } finally {
+            raycaster.reset();
+        }
+    }
+
+    /**
+     * Tests the segment against every solid block.
+     */
+    private BlockPos findNearestBlock(double fromX, double fromY, double fromZ, double offsetX, double offsetY, double offsetZ) {
+        BlockPos nearest = null;
+        double nearestT = Double.MAX_VALUE;
+        for (BlockPos pos : solidBlocks) {
+            double tNear = 0, tFar = 1;
+            double[] from = {fromX, fromY, fromZ}, offset = {offsetX, offsetY, offsetZ};
+            int[] min = {pos.x(), pos.y(), pos.z()};
+            for (int axis = 0; axis < 3 && tNear <= tFar; axis++) {
+                if (offset[axis] == 0) {
+                    if (from[axis] < min[axis] || from[axis] > min[axis] + 1) tNear = Double.MAX_VALUE;
+                    continue;
+                }
+                double t0 = (min[axis] - from[axis]) / offset[axis], t1 = (min[axis] + 1 - from[axis]) / offset[axis];
+                tNear = Math.max(tNear, Math.min(t0, t1));
+                tFar = Math.min(tFar, Math.max(t0, t1));
+            }
+            if (tNear <= tFar && tNear < nearestT) {
+                nearestT = tNear;
+                nearest = pos;
+            }
+        }
+        return nearest;
+    }
+
+    private CubicChunk loadChunk(int chunkX, int chunkY, int chunkZ) {
+        var chunk = new CubicChunk(world, chunkX, chunkY, chunkZ);
+        chunks.put(ChunkConstants.getChunkIndex(chunkX, chunkY, chunkZ), chunk);
+        return chunk;
+    }
+
+    private void setBlock(int x, int y, int z) {
+        var chunk = chunks.get(ChunkConstants.getChunkIndex(x >> CHUNK_X_BITS, y >> CHUNK_Y_BITS, z >> CHUNK_Z_BITS));
+        if (chunk.getBlock(x, y, z) != stone) {
+            chunk.setBlock(BlockPos.of(x, y, z), stone, new BlockChangeCause.WorldGenCause());
+            solidBlocks.add(BlockPos.of(x, y, z));
+        }
+    }
+
+    private boolean isSolid(int x, int y, int z) {
+        var chunk = chunks.get(ChunkConstants.getChunkIndex(x >> CHUNK_X_BITS, y >> CHUNK_Y_BITS, z >> CHUNK_Z_BITS));
+        return chunk != null && chunk.getBlock(x, y, z) == stone;
+    }
+}
@@ -0,0 +1,83 @@
+package engine.world.gen;
+
+import engine.world.chunk.ChunkPos;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkGenExecutorTest {
+
+    private ChunkGenExecutor executor;
+    private CountDownLatch blocker;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        executor = new ChunkGenExecutor("test", pos -> pos.x(), 4, 1);
+        executor.start();
+        blocker = new CountDownLatch(1);
+        var started = new CountDownLatch(1);
+        executor.submitTask(ChunkPos.of(0, 0, 0), () -> {
+            started.countDown();
+            try {
+                blocker.await();
+            } catch (InterruptedException ignored) {
+            }
+            return null;
+        });
+        started.await();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.stop();
+    }
+
+    @Test
+    void nearestFirst() {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<?>[] futures = new CompletableFuture[3];
+        int[] distances = {30, 20, 10};
+        for (int i = 0; i < distances.length; i++) {
+            int distance = distances[i];
+            futures[i] = executor.submitTask(ChunkPos.of(distance, 0, 0), () -> order.add(distance));
+        }
+        assertEquals(3, executor.getQueueDepth());
+        blocker.countDown();
+        CompletableFuture.allOf(futures).join();
+        assertEquals(List.of(10, 20, 30), order);
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    @Test
+    void fullBacklogEvictsFarthest() throws InterruptedException {
+        var far = executor.submitTask(ChunkPos.of(1000, 0, 0), () -> 1000);
+        for (int i = 1; i <= 3; i++) {
+            int distance = i;
+            executor.submitTask(ChunkPos.of(distance, 0, 0), () -> distance);
+        }
+        var near = executor.submitTask(ChunkPos.of(0, 0, 0), () -> 0);
+        var farther = executor.submitTask(ChunkPos.of(2000, 0, 0), () -> 2000);
+        assertEquals(4, executor.getQueueDepth());
+        assertEquals(2, executor.getRejectedTaskCount());
+        assertRejected(far);
+        assertRejected(farther);
+
+        blocker.countDown();
+        assertEquals(0, near.join());
+        assertTrue(executor.getLatencyPercentile(0.5) > 0);
+    }
+
+    private static void assertRejected(CompletableFuture<?> future) throws InterruptedException {
+        var exception = assertThrows(ExecutionException.class, future::get);
+        assertTrue(exception.getCause() instanceof RejectedExecutionException);
+    }
+}
@@ -0,0 +1,261 @@
+package engine.world.light;
+
+import engine.block.BaseBlock;
+import engine.block.Block;
+import engine.block.BlockShape;
+import engine.block.component.LightBehavior;
+import engine.block.state.BlockState;
+import engine.event.block.cause.BlockChangeCause;
+import engine.math.BlockPos;
+import engine.registry.Name;
+import engine.registry.RegistryManager;
+import engine.registry.TestRegistries;
+import engine.registry.game.BlockRegistry;
+import engine.world.World;
+import engine.world.chunk.ChunkConstants;
+import engine.world.chunk.CubicChunk;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import static engine.world.chunk.ChunkConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LightEngineTest {
+
+    private static final int LAMP_LIGHT = 14;
+    private static final int ROOF_Y = 20;
+
+    // Registries only keeps weak references.
+    private RegistryManager registryManager;
+    private BlockState air;
+    private BlockState stone;
+    private BlockState lamp;
+
+    private final Long2ObjectMap<CubicChunk> chunks = new Long2ObjectOpenHashMap<>();
+    private World world;
+    private LightEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        Block airBlock = new BaseBlock().setShape(BlockShape.EMPTY).name(Name.of("test", "air"));
+        Block stoneBlock = new BaseBlock().name(Name.of("test", "stone"));
+        Block lampBlock = createLamp("lamp");
+        registryManager = TestRegistries.init(airBlock, stoneBlock, lampBlock);
+        air = airBlock.getDefaultState();
+        stone = stoneBlock.getDefaultState();
+        lamp = lampBlock.getDefaultState();
+
+        // Only chunks are looked up by the light engine.
+        world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class}, (proxy, method, args) -> {
+            if (method.getName().equals("getChunk") && args.length == 4) {
+                return chunks.get(ChunkConstants.getChunkIndex((int) args[0], (int) args[1], (int) args[2]));
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+        engine = new LightEngine(world, null);
+    }
+
+    @Test
+    void lightSpreadsInsideChunk() {
+        var chunk = createChunk(0, 0, 0);
+        var lampPos = BlockPos.of(16, 8, 16);
+        setBlock(lampPos, lamp);
+        load(chunk);
+
+        assertBlockLight(lampPos, 0, 0, 0);
+    }
+
+    @Test
+    void skyLightFillsOpenChunk() {
+        load(createChunk(0, 0, 0));
+
+        assertSkyLight(-1, -1, -1, 0, 0, 0);
+    }
+
+    @Test
+    void skyLightIsBlockedByRoof() {
+        var chunk = createChunk(0, 0, 0);
+        buildRoof(chunk);
+        load(chunk);
+
+        assertSkyLight(ROOF_Y, -1, -1, 0, 0, 0);
+    }
+
+    @Test
+    void removingBlocksUpdatesLight() {
+        var chunk = createChunk(0, 0, 0);
+        buildRoof(chunk);
+        var lampPos = BlockPos.of(10, 4, 12);
+        setBlock(lampPos, lamp);
+        load(chunk);
+        assertBlockLight(lampPos, 0, 0, 0);
+
+        // The light of the removed lamp is removed.
+        setBlock(lampPos, air);
+        processUpdates();
+        assertBlockLight(null, 0, 0, 0);
+
+        // Sky light goes straight down through a hole in the roof, and spreads sideways from there.
+        setBlock(BlockPos.of(20, ROOF_Y, 5), air);
+        processUpdates();
+        assertSkyLight(ROOF_Y, 20, 5, 0, 0, 0);
+
+        // Closing the hole removes it again.
+        setBlock(BlockPos.of(20, ROOF_Y, 5), stone);
+        processUpdates();
+        assertSkyLight(ROOF_Y, -1, -1, 0, 0, 0);
+    }
+
+    @Test
+    void lightSpreadsAcrossChunkBorders() {
+        var first = createChunk(0, 0, 0);
+        var lampPos = BlockPos.of(CHUNK_X_SIZE - 2, 16, 16);
+        setBlock(lampPos, lamp);
+        load(first);
+        assertBlockLight(lampPos, 0, 0, 0);
+
+        // Light flows into a chunk loaded next to a lit one.
+        load(createChunk(1, 0, 0));
+        assertBlockLight(lampPos, 0, 0, 0);
+        assertBlockLight(lampPos, 1, 0, 0);
+
+        // Removal flows back across the border.
+        setBlock(lampPos, air);
+        processUpdates();
+        assertBlockLight(null, 0, 0, 0);
+        assertBlockLight(null, 1, 0, 0);
+    }
+
+    @Test
+    void blockChangesAcrossChunkBordersUpdateBothChunks() {
+        var first = createChunk(0, 0, 0);
+        var second = createChunk(1, 0, 0);
+        load(first);
+        load(second);
+        assertBlockLight(null, 0, 0, 0);
+
+        var lampPos = BlockPos.of(CHUNK_X_SIZE, 10, 3);
+        setBlock(lampPos, lamp);
+        processUpdates();
+        assertBlockLight(lampPos, 0, 0, 0);
+        assertBlockLight(lampPos, 1, 0, 0);
+    }
+
+    @Test
+    void lightFollowsStateIdReconstruction() {
+        var chunk = createChunk(0, 0, 0);
+        load(chunk);
+        assertBlockLight(null, 0, 0, 0);
+
+        // Like a registry synchronization, which renumbers the block states.
+        var registry = registryManager.getRegistry(Block.class).map(BlockRegistry.class::cast).orElseThrow();
+        Block glowBlock = createLamp("glow");
+        registry.register(glowBlock);
+        registry.reconstructStateId();
+
+        var lampPos = BlockPos.of(12, 9, 20);
+        setBlock(lampPos, glowBlock.getDefaultState());
+        processUpdates();
+        assertBlockLight(lampPos, 0, 0, 0);
+    }
+
+    private static Block createLamp(String name) {
+        return new BaseBlock().name(Name.of("test", name)).setComponent(LightBehavior.class, new LightBehavior() {
+            @Override
+            public int getLightEmission(BlockState state) {
+                return LAMP_LIGHT;
+            }
+
+            @Override
+            public int getLightOpacity(BlockState state) {
+                return LightEngine.MAX_LIGHT;
+            }
+        });
+    }
+
+    private CubicChunk createChunk(int chunkX, int chunkY, int chunkZ) {
+        var chunk = new CubicChunk(world, chunkX, chunkY, chunkZ);
+        chunks.put(ChunkConstants.getChunkIndex(chunkX, chunkY, chunkZ), chunk);
+        return chunk;
+    }
+
+    private void buildRoof(CubicChunk chunk) {
+        for (int x = 0; x < CHUNK_X_SIZE; x++) {
+            for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+                chunk.setBlock(BlockPos.of(chunk.getMin().x() + x, chunk.getMin().y() + ROOF_Y, chunk.getMin().z() + z),
+                        stone, new BlockChangeCause.WorldGenCause());
+            }
+        }
+    }
+
+    private void setBlock(BlockPos pos, BlockState block) {
+        var chunk = chunks.get(ChunkConstants.getChunkIndex(pos));
+        var oldBlock = chunk.setBlock(pos, block, new BlockChangeCause.WorldGenCause());
+        engine.onBlockChanged(pos, oldBlock, block);
+    }
+
+    private void load(CubicChunk chunk) {
+        engine.onChunkLoad(chunk);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!chunk.isLightComputed()) {
+            assertTrue(System.nanoTime() < deadline, "Light of the chunk is not computed");
+            engine.tick();
+            Thread.onSpinWait();
+        }
+        processUpdates();
+    }
+
+    private void processUpdates() {
+        while (engine.hasPendingUpdates()) {
+            engine.tick();
+        }
+    }
+
+    /**
+     * Checks the block light of a chunk against the light of a single lamp in open air, which decreases by 1 per block
+     * of Manhattan distance.
+     */
+    private void assertBlockLight(BlockPos lampPos, int chunkX, int chunkY, int chunkZ) {
+        int minX = chunkX << CHUNK_X_BITS, minY = chunkY << CHUNK_Y_BITS, minZ = chunkZ << CHUNK_Z_BITS;
+        for (int x = minX; x < minX + CHUNK_X_SIZE; x++) {
+            for (int y = minY; y < minY + CHUNK_Y_SIZE; y++) {
+                for (int z = minZ; z < minZ + CHUNK_Z_SIZE; z++) {
+                    int expected = lampPos == null ? 0 : Math.max(0, LAMP_LIGHT
+                            - Math.abs(x - lampPos.x()) - Math.abs(y - lampPos.y()) - Math.abs(z - lampPos.z()));
+                    assertEquals(expected, engine.getBlockLight(x, y, z), "Block light at " + x + ", " + y + ", " + z);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the sky light of a chunk, full above the roof, and below it only under the hole at holeX, holeZ if any,
+     * decreasing by 1 per block of horizontal Manhattan distance from it.
+     *
+     * @param roofY y of the roof, or -1 if the chunk has none
+     * @param holeX x of the hole in the roof, or -1 if it has none
+     */
+    private void assertSkyLight(int roofY, int holeX, int holeZ, int chunkX, int chunkY, int chunkZ) {
+        int minX = chunkX << CHUNK_X_BITS, minY = chunkY << CHUNK_Y_BITS, minZ = chunkZ << CHUNK_Z_BITS;
+        for (int x = minX; x < minX + CHUNK_X_SIZE; x++) {
+            for (int y = minY; y < minY + CHUNK_Y_SIZE; y++) {
+                for (int z = minZ; z < minZ + CHUNK_Z_SIZE; z++) {
+                    int expected;
+                    if (roofY == -1 || y > roofY) {
+                        expected = LightEngine.MAX_LIGHT;
+                    } else if (y == roofY) {
+                        expected = x == holeX && z == holeZ ? LightEngine.MAX_LIGHT : 0;
+                    } else {
+                        expected = holeX == -1 ? 0 : Math.max(0, LightEngine.MAX_LIGHT - Math.abs(x - holeX) - Math.abs(z - holeZ));
+                    }
+                    assertEquals(expected, engine.getSkyLight(x, y, z), "Sky light at " + x + ", " + y + ", " + z);
+                }
+            }
+        }
+    }
+}
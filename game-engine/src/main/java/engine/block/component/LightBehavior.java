@@ -0,0 +1,23 @@
+package engine.block.component;
+
+import engine.block.state.BlockState;
+import engine.component.Component;
+
+/**
+ * Light properties of a block.
+ * <p>
+ * Blocks without this component emit no light, and are opaque only if their shape is {@link engine.block.BlockShape#NORMAL_CUBE}.
+ */
+public interface LightBehavior extends Component {
+
+    /**
+     * @return light level emitted by the block, in range [0, 15]
+     */
+    int getLightEmission(BlockState state);
+
+    /**
+     * @return light level absorbed by the block in addition to the natural decay of 1 per block, in range [0, 15].
+     * 15 means the block is fully opaque.
+     */
+    int getLightOpacity(BlockState state);
+}
@@ -11,6 +11,13 @@ public interface EventBus {
      */
     boolean post(Event event);
 
+    /**
+     * @return True if any listener would receive events of the type, so that posters can skip creating the event.
+     */
+    default boolean hasListeners(Class<? extends Event> eventType) {
+        return true;
+    }
+
     /**
      * Register listeners.
      */
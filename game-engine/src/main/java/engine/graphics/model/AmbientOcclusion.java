@@ -0,0 +1,104 @@
+package engine.graphics.model;
+
+import engine.util.Direction;
+
+/**
+ * Voxel ambient occlusion, which darkens a vertex of a face by the occluding blocks in front of the face around the
+ * vertex: the two blocks at the sides of the corner and the block diagonal to it.
+ * <p>
+ * The occluding blocks around a block are passed as a 27 bit set, see {@link #getNeighborBit(int, int, int)}.
+ */
+public final class AmbientOcclusion {
+
+    public static final int MAX_LEVEL = 3;
+
+    private static final float[] SHADES = {0.5f, 0.7f, 0.85f, 1f};
+    private static final float EPSILON = 1e-4f;
+
+    /**
+     * @param dx x-offset of the neighbor, in [-1, 1]
+     * @param dy y-offset of the neighbor, in [-1, 1]
+     * @param dz z-offset of the neighbor, in [-1, 1]
+     */
+    public static int getNeighborBit(int dx, int dy, int dz) {
+        return 1 << (dx + 1) + (dy + 1) * 3 + (dz + 1) * 9;
+    }
+
+    /**
+     * @return occlusion level of a vertex, 0 for the darkest and {@link #MAX_LEVEL} for no occlusion
+     */
+    public static int getLevel(boolean side1, boolean side2, boolean corner) {
+        if (side1 && side2) return 0;
+        return MAX_LEVEL - (side1 ? 1 : 0) - (side2 ? 1 : 0) - (corner ? 1 : 0);
+    }
+
+    public static float getShade(int level) {
+        return SHADES[level];
+    }
+
+    /**
+     * Samples the layer of blocks in front of the face if the face lies on the side of the block, otherwise the layer of
+     * the block itself.
+     *
+     * @param x         x-coordinate of the vertex relative to the block
+     * @param y         y-coordinate of the vertex relative to the block
+     * @param z         z-coordinate of the vertex relative to the block
+     * @param direction facing of the face
+     * @return occlusion level of the vertex, see {@link #getLevel(boolean, boolean, boolean)}
+     */
+    public static int getVertexLevel(int occluders, float x, float y, float z, Direction direction) {
+        int frontX = direction.offsetX, frontY = direction.offsetY, frontZ = direction.offsetZ;
+        if (!isOnSide(x, frontX) || !isOnSide(y, frontY) || !isOnSide(z, frontZ)) {
+            frontX = frontY = frontZ = 0;
+        }
+        // Offsets towards the corner on the two axes along the face.
+        int cornerX = direction.offsetX == 0 ? (x < 0.5f ? -1 : 1) : 0;
+        int cornerY = direction.offsetY == 0 ? (y < 0.5f ? -1 : 1) : 0;
+        int cornerZ = direction.offsetZ == 0 ? (z < 0.5f ? -1 : 1) : 0;
+        boolean side1, side2;
+        if (cornerX == 0) {
+            side1 = isOccluding(occluders, frontX, frontY + cornerY, frontZ);
+            side2 = isOccluding(occluders, frontX, frontY, frontZ + cornerZ);
+        } else if (cornerY == 0) {
+            side1 = isOccluding(occluders, frontX + cornerX, frontY, frontZ);
+            side2 = isOccluding(occluders, frontX, frontY, frontZ + cornerZ);
+        } else {
+            side1 = isOccluding(occluders, frontX + cornerX, frontY, frontZ);
+            side2 = isOccluding(occluders, frontX, frontY + cornerY, frontZ);
+        }
+        boolean corner = isOccluding(occluders, frontX + cornerX, frontY + cornerY, frontZ + cornerZ);
+        return getLevel(side1, side2, corner);
+    }
+
+    /**
+     * @return facing of a face with the normal, the axis of its largest component
+     */
+    public static Direction getFacing(float normalX, float normalY, float normalZ) {
+        float absX = Math.abs(normalX), absY = Math.abs(normalY), absZ = Math.abs(normalZ);
+        if (absX >= absY && absX >= absZ) return normalX > 0 ? Direction.EAST : Direction.WEST;
+        if (absY >= absZ) return normalY > 0 ? Direction.UP : Direction.DOWN;
+        return normalZ > 0 ? Direction.SOUTH : Direction.NORTH;
+    }
+
+    /**
+     * Chooses the diagonal which splits a quad into two triangles, so that the occlusion is interpolated the same way
+     * regardless of the orientation of the quad.
+     *
+     * @return true if the quad should be split along the diagonal from the second to the fourth vertex, instead of
+     * from the first to the third
+     */
+    public static boolean isFlipped(int level0, int level1, int level2, int level3) {
+        return level0 + level2 < level1 + level3;
+    }
+
+    private static boolean isOnSide(float coordinate, int offset) {
+        return offset == 0 || (offset > 0 ? coordinate > 1 - EPSILON : coordinate < EPSILON);
+    }
+
+    private static boolean isOccluding(int occluders, int dx, int dy, int dz) {
+        return (occluders & getNeighborBit(dx, dy, dz)) != 0;
+    }
+
+    private AmbientOcclusion() {
+    }
+}
@@ -4,6 +4,8 @@ import engine.graphics.math.Transform;
 import engine.graphics.vertex.VertexDataBuf;
 import engine.util.Direction;
 
+import javax.annotation.Nullable;
+
 public interface BakedModel {
 
     /**
@@ -12,7 +14,27 @@ public interface BakedModel {
      */
     void putVertexes(VertexDataBuf buffer, int coveredFace);
 
+    /**
+     * Puts the vertexes shaded by ambient occlusion, see {@link AmbientOcclusion}. Models which don't support it put
+     * the vertexes unshaded.
+     *
+     * @param coveredFace {@link ModelUtils#toDirectionInt(Direction...)}
+     * @param occluders   occluding blocks around the block, see {@link AmbientOcclusion#getNeighborBit(int, int, int)}
+     */
+    default void putVertexes(VertexDataBuf buffer, int coveredFace, int occluders) {
+        putVertexes(buffer, coveredFace);
+    }
+
     boolean isFullFace(Direction direction);
 
+    /**
+     * @return texture region (min u, min v, max u, max v) of the face if the model is a unit cube with one full quad
+     * on each face, otherwise null. The same array is returned on every call, so faces can be compared by identity.
+     */
+    @Nullable
+    default float[] getCubeFaceUv(Direction direction) {
+        return null;
+    }
+
     Transform getTransformation(DisplayType type);
 }
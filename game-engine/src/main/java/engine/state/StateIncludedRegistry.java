@@ -9,6 +9,12 @@ public interface StateIncludedRegistry<S extends State> {
      */
     void reconstructStateId();
 
+    /**
+     * @return version of the id-to-state mapping, incremented each time it is (re)constructed, so that tables
+     * indexed by state id can tell they are outdated
+     */
+    int getStateIdVersion();
+
     int getStateId(S state);
 
     S getStateFromId(int id);
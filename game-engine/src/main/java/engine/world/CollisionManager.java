@@ -2,6 +2,8 @@ package engine.world;
 
 import engine.block.Block;
 import engine.world.hit.BlockHitResult;
+import org.joml.Rayf;
+import org.joml.Vector3f;
 import org.joml.Vector3fc;
 
 import javax.annotation.Nonnull;
@@ -14,4 +16,23 @@ public interface CollisionManager {
 
     @Nonnull
     BlockHitResult raycastBlock(Vector3fc from, Vector3fc dir, float distance, Set<Block> ignore);
+
+    /**
+     * Raycasts many segments at once, e.g. for line of sight or explosion exposure checks.
+     *
+     * @param segments rays whose direction spans the whole traced segment, from the origin to the end point
+     * @return hit result of each segment, in the same order
+     */
+    @Nonnull
+    default BlockHitResult[] raycastBlocks(Rayf[] segments) {
+        var results = new BlockHitResult[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            Rayf segment = segments[i];
+            var dir = new Vector3f(segment.dX, segment.dY, segment.dZ);
+            float length = dir.length();
+            results[i] = length == 0 ? BlockHitResult.failure() :
+                    raycastBlock(new Vector3f(segment.oX, segment.oY, segment.oZ), dir, length);
+        }
+        return results;
+    }
 }
@@ -7,6 +7,7 @@ import org.joml.Vector3dc;
 import org.joml.Vector3fc;
 
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public interface EntityManager {
@@ -31,6 +32,41 @@ public interface EntityManager {
 
     List<Entity> getEntitiesWithSphere(double centerX, double centerY, double centerZ, double radius);
 
+    /**
+     * Visits every entity without copying the entity collection. The consumer must not spawn or destroy entities.
+     */
+    default void forEachEntity(Consumer<Entity> consumer) {
+        getEntities().forEach(consumer);
+    }
+
+    default void forEachEntityWithBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, Consumer<Entity> consumer) {
+        getEntitiesWithBoundingBox(minX, minY, minZ, maxX, maxY, maxZ).forEach(consumer);
+    }
+
+    default void forEachEntityWithSphere(double centerX, double centerY, double centerZ, double radius, Consumer<Entity> consumer) {
+        getEntitiesWithSphere(centerX, centerY, centerZ, radius).forEach(consumer);
+    }
+
+    /**
+     * Appends the entities intersecting the bounding box to the given list.
+     *
+     * @return the given list
+     */
+    default List<Entity> getEntitiesWithBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, List<Entity> result) {
+        forEachEntityWithBoundingBox(minX, minY, minZ, maxX, maxY, maxZ, result::add);
+        return result;
+    }
+
+    /**
+     * Appends the entities intersecting the sphere to the given list.
+     *
+     * @return the given list
+     */
+    default List<Entity> getEntitiesWithSphere(double centerX, double centerY, double centerZ, double radius, List<Entity> result) {
+        forEachEntityWithSphere(centerX, centerY, centerZ, radius, result::add);
+        return result;
+    }
+
     EntityHitResult raycastEntity(Vector3fc from, Vector3fc dir, float distance);
 
     void doDestroyEntity(Entity entity);
@@ -8,6 +8,7 @@ import engine.world.chunk.Chunk;
 import engine.world.chunk.ChunkManager;
 import engine.world.hit.BlockHitResult;
 import engine.world.hit.HitResult;
+import org.joml.Rayf;
 import org.joml.Vector3fc;
 
 import javax.annotation.Nonnull;
@@ -40,6 +41,11 @@ public interface World extends BlockGetter, BlockSetter, EntityManager, GameObje
 
     BlockHitResult raycastBlock(Vector3fc from, Vector3fc dir, float distance, Set<Block> ignore);
 
+    /**
+     * @see CollisionManager#raycastBlocks(Rayf[])
+     */
+    BlockHitResult[] raycastBlocks(Rayf[] segments);
+
     HitResult raycast(Vector3fc from, Vector3fc dir, float distance);
 
     default Chunk getChunk(@Nonnull BlockPos pos) {
@@ -3,6 +3,7 @@ package engine.world.chunk;
 import engine.block.state.BlockState;
 import engine.event.block.cause.BlockChangeCause;
 import engine.math.BlockPos;
+import engine.registry.Registries;
 import engine.world.World;
 import org.joml.Vector3ic;
 
@@ -46,11 +47,30 @@ public interface Chunk {
         return getBlock(pos.x(), pos.y(), pos.z());
     }
 
-//    int getBlockId(int x, int y, int z);
+    /**
+     * @return state id of the block, see {@link engine.state.StateIncludedRegistry#getStateId}
+     */
+    default int getBlockId(int x, int y, int z) {
+        return Registries.getBlockRegistry().getStateId(getBlock(x, y, z));
+    }
+
+    default int getBlockId(@Nonnull BlockPos pos) {
+        return getBlockId(pos.x(), pos.y(), pos.z());
+    }
 
-//    default int getBlockId(@Nonnull BlockPos pos) {
-//        return getBlockId(pos.x(), pos.y(), pos.z());
-//    }
+    /**
+     * Copies the state ids of a row of blocks along the x-axis, see {@link #getBlockId(int, int, int)}.
+     *
+     * @param x      x-coordinate of the first block related to chunk coordinate system
+     * @param y      y-coordinate of the blocks related to chunk coordinate system
+     * @param z      z-coordinate of the blocks related to chunk coordinate system
+     * @param length number of blocks, the row must not leave the chunk
+     */
+    default void getBlockIds(int x, int y, int z, int[] dest, int destOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dest[destOffset + i] = getBlockId(x + i, y, z);
+        }
+    }
 
     BlockState setBlock(@Nonnull BlockPos pos, @Nonnull BlockState block, @Nonnull BlockChangeCause cause);
 
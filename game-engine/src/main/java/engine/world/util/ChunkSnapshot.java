@@ -0,0 +1,136 @@
+package engine.world.util;
+
+import engine.block.state.BlockState;
+import engine.registry.Registries;
+import engine.world.BlockGetter;
+import engine.world.World;
+import engine.world.chunk.Chunk;
+import org.joml.Vector3ic;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+import static engine.world.chunk.ChunkConstants.*;
+
+/**
+ * Copy of the block state ids of a chunk and the border blocks of its 26 neighbors, so that the chunk can be read by
+ * another thread while the world keeps changing. Blocks out of the snapshot and in unloaded chunks are air.
+ * <p>
+ * The snapshot should be taken on the thread which changes the blocks, it is immutable afterwards.
+ */
+public final class ChunkSnapshot implements BlockGetter {
+
+    /**
+     * Blocks on each axis, the chunk plus a border block on both sides.
+     */
+    private static final int SIZE = CHUNK_X_SIZE + 2;
+
+    private final World world;
+    private final Vector3ic min;
+    private final int airId;
+    private final int[] ids = new int[SIZE * SIZE * SIZE];
+
+    @FunctionalInterface
+    public interface ChunkGetter {
+        @Nullable
+        Chunk getChunk(int chunkX, int chunkY, int chunkZ);
+    }
+
+    public static ChunkSnapshot create(World world, Chunk chunk) {
+        var registry = Registries.getBlockRegistry();
+        return create(world, chunk, (x, y, z) -> world.getChunk(x, y, z, false),
+                registry.getStateId(registry.air().getDefaultState()));
+    }
+
+    public static ChunkSnapshot create(World world, Chunk chunk, ChunkGetter neighbors, int airId) {
+        Chunk[] chunks = new Chunk[27];
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    chunks[getNeighborIndex(dx, dy, dz)] = dx == 0 && dy == 0 && dz == 0 ? chunk :
+                            neighbors.getChunk(chunk.getX() + dx, chunk.getY() + dy, chunk.getZ() + dz);
+                }
+            }
+        }
+        var snapshot = new ChunkSnapshot(world, chunk.getMin(), airId);
+        snapshot.copy(chunks);
+        return snapshot;
+    }
+
+    private ChunkSnapshot(World world, Vector3ic min, int airId) {
+        this.world = world;
+        this.min = min;
+        this.airId = airId;
+    }
+
+    /**
+     * Copies each row along the x-axis in three parts: the border block of the west neighbor, the blocks of the chunk
+     * or its neighbor at the same x and the border block of the east neighbor.
+     */
+    private void copy(Chunk[] chunks) {
+        for (int localZ = 0; localZ < SIZE; localZ++) {
+            int dz = getNeighborOffset(localZ);
+            int z = localZ - 1 & CHUNK_MAX_Z;
+            for (int localY = 0; localY < SIZE; localY++) {
+                int dy = getNeighborOffset(localY);
+                int y = localY - 1 & CHUNK_MAX_Y;
+                int row = (localY + localZ * SIZE) * SIZE;
+                copyRow(chunks[getNeighborIndex(-1, dy, dz)], CHUNK_MAX_X, y, z, row, 1);
+                copyRow(chunks[getNeighborIndex(0, dy, dz)], 0, y, z, row + 1, CHUNK_X_SIZE);
+                copyRow(chunks[getNeighborIndex(1, dy, dz)], 0, y, z, row + SIZE - 1, 1);
+            }
+        }
+    }
+
+    private void copyRow(Chunk chunk, int x, int y, int z, int offset, int length) {
+        if (chunk == null) {
+            Arrays.fill(ids, offset, offset + length, airId);
+        } else {
+            chunk.getBlockIds(x, y, z, ids, offset, length);
+        }
+    }
+
+    private static int getNeighborOffset(int local) {
+        return local == 0 ? -1 : local == SIZE - 1 ? 1 : 0;
+    }
+
+    private static int getNeighborIndex(int dx, int dy, int dz) {
+        return (dx + 1) + (dy + 1) * 3 + (dz + 1) * 9;
+    }
+
+    @Nonnull
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * @return min block position of the chunk
+     */
+    @Nonnull
+    public Vector3ic getMin() {
+        return min;
+    }
+
+    /**
+     * @return state id of the block, see {@link Chunk#getBlockId(int, int, int)}
+     */
+    public int getBlockId(int x, int y, int z) {
+        int localX = x - min.x() + 1, localY = y - min.y() + 1, localZ = z - min.z() + 1;
+        if ((localX | localY | localZ) < 0 || localX >= SIZE || localY >= SIZE || localZ >= SIZE) {
+            return airId;
+        }
+        return ids[localX + (localY + localZ * SIZE) * SIZE];
+    }
+
+    @Nonnull
+    @Override
+    public BlockState getBlock(int x, int y, int z) {
+        return Registries.getBlockRegistry().getStateFromId(getBlockId(x, y, z));
+    }
+
+    @Override
+    public boolean isAirBlock(int x, int y, int z) {
+        return getBlockId(x, y, z) == airId;
+    }
+}
@@ -0,0 +1,92 @@
+package engine.graphics.model;
+
+import org.junit.jupiter.api.Test;
+
+import static engine.graphics.model.AmbientOcclusion.*;
+import static engine.util.Direction.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmbientOcclusionTest {
+
+    @Test
+    void levels() {
+        assertEquals(MAX_LEVEL, getLevel(false, false, false));
+        assertEquals(2, getLevel(true, false, false));
+        assertEquals(2, getLevel(false, false, true));
+        assertEquals(1, getLevel(true, false, true));
+        assertEquals(0, getLevel(true, true, false));
+        assertEquals(0, getLevel(true, true, true));
+    }
+
+    @Test
+    void openTopFaceIsUnoccluded() {
+        // Blocks below and beside the block don't shade its top face.
+        int occluders = getNeighborBit(0, -1, 0) | getNeighborBit(1, 0, 0) | getNeighborBit(-1, -1, -1);
+        for (float x = 0; x <= 1; x++) {
+            for (float z = 0; z <= 1; z++) {
+                assertEquals(MAX_LEVEL, getVertexLevel(occluders, x, 1, z, UP));
+            }
+        }
+    }
+
+    @Test
+    void wallBesideTopFace() {
+        // A block on top of the east neighbor, the top face is shaded along its east edge.
+        int occluders = getNeighborBit(1, 1, 0);
+        assertEquals(2, getVertexLevel(occluders, 1, 1, 0, UP));
+        assertEquals(2, getVertexLevel(occluders, 1, 1, 1, UP));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 0, 1, 0, UP));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 0, 1, 1, UP));
+    }
+
+    @Test
+    void innerCornerIsDarkest() {
+        int occluders = getNeighborBit(1, 1, 0) | getNeighborBit(0, 1, 1);
+        assertEquals(0, getVertexLevel(occluders, 1, 1, 1, UP));
+        assertEquals(2, getVertexLevel(occluders, 1, 1, 0, UP));
+        assertEquals(2, getVertexLevel(occluders, 0, 1, 1, UP));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 0, 1, 0, UP));
+    }
+
+    @Test
+    void diagonalBlockShadesOneCorner() {
+        int occluders = getNeighborBit(-1, 1, -1);
+        assertEquals(2, getVertexLevel(occluders, 0, 1, 0, UP));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 1, 1, 0, UP));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 0, 1, 1, UP));
+    }
+
+    @Test
+    void sideFacesSampleTheirFrontLayer() {
+        // A block above the west neighbor shades the upper edge of the west face only.
+        int occluders = getNeighborBit(-1, 1, 0);
+        assertEquals(2, getVertexLevel(occluders, 0, 1, 0, WEST));
+        assertEquals(2, getVertexLevel(occluders, 0, 1, 1, WEST));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 0, 0, 0, WEST));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 0, 1, 0, EAST));
+    }
+
+    @Test
+    void innerFacesSampleTheBlockLayer() {
+        // A slab top at y = 0.5 is shaded by the blocks beside the block, not above it.
+        int occluders = getNeighborBit(1, 0, 0) | getNeighborBit(0, 1, 0);
+        assertEquals(2, getVertexLevel(occluders, 1, 0.5f, 0, UP));
+        assertEquals(MAX_LEVEL, getVertexLevel(occluders, 0, 0.5f, 0, UP));
+    }
+
+    @Test
+    void quadIsFlippedTowardsTheBrighterDiagonal() {
+        assertFalse(isFlipped(3, 3, 3, 3));
+        assertFalse(isFlipped(3, 0, 3, 3));
+        assertTrue(isFlipped(0, 3, 3, 3));
+        assertTrue(isFlipped(3, 3, 2, 3));
+    }
+
+    @Test
+    void facingFollowsLargestNormalComponent() {
+        assertSame(UP, getFacing(0, 1, 0));
+        assertSame(DOWN, getFacing(0.1f, -0.9f, 0.2f));
+        assertSame(EAST, getFacing(0.8f, 0.5f, 0));
+        assertSame(NORTH, getFacing(0, 0, -1));
+    }
+}
@@ -48,4 +48,19 @@ public class NibbleArrayTest {
             assertEquals(bit31RawArray[i], bit31Array.getAndSet(i, bit31RawArray2[i]));
         }
     }
+
+    @Test
+    public void copyTo() {
+        NibbleArray array = new NibbleArray(24, 9);
+        for (int i = 0; i < array.length(); i++) {
+            array.set(i, i * 0x10101 + 1);
+        }
+        int[] copy = new int[array.length() + 2];
+        array.copyTo(1, copy, 2, array.length() - 1);
+        for (int i = 1; i < array.length(); i++) {
+            assertEquals(array.get(i), copy[i + 1]);
+        }
+        assertEquals(0, copy[0]);
+        assertEquals(0, copy[1]);
+    }
 }
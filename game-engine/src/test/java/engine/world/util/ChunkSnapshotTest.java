@@ -0,0 +1,245 @@
+package engine.world.util;
+
+import engine.block.state.BlockState;
+import engine.event.block.cause.BlockChangeCause;
+import engine.math.BlockPos;
+import engine.util.NibbleArray;
+import engine.world.World;
+import engine.world.chunk.Chunk;
+import engine.world.chunk.ChunkPos;
+import engine.world.chunk.ChunkStatus;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static engine.world.chunk.ChunkConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkSnapshotTest {
+
+    private static final int AIR = 0;
+
+    private final Map<ChunkPos, TestChunk> chunks = new HashMap<>();
+
+    @Test
+    void copiesChunkAndNeighborBorders() {
+        TestChunk chunk = addChunk(2, -1, 3, 1);
+        addChunk(3, -1, 3, 2);
+        addChunk(2, 0, 4, 3);
+        addChunk(1, -2, 2, 4);
+        Vector3ic min = chunk.getMin();
+
+        ChunkSnapshot snapshot = snapshot(chunk);
+
+        assertEquals(1, snapshot.getBlockId(min.x() + 5, min.y() + 5, min.z() + 5));
+        assertEquals(1, snapshot.getBlockId(min.x() + 31, min.y() + 31, min.z() + 31));
+        // East face, edge along x and corner of the neighbors.
+        assertEquals(2, snapshot.getBlockId(min.x() + 32, min.y() + 5, min.z() + 5));
+        assertEquals(3, snapshot.getBlockId(min.x() + 5, min.y() + 32, min.z() + 32));
+        assertEquals(4, snapshot.getBlockId(min.x() - 1, min.y() - 1, min.z() - 1));
+        // Unloaded neighbor and beyond the border.
+        assertEquals(AIR, snapshot.getBlockId(min.x() - 1, min.y() + 5, min.z() + 5));
+        assertEquals(AIR, snapshot.getBlockId(min.x() + 33, min.y() + 5, min.z() + 5));
+        assertEquals(AIR, snapshot.getBlockId(min.x() + 5, min.y() - 2, min.z() + 5));
+    }
+
+    @Test
+    void laterWritesDoNotChangeSnapshot() {
+        TestChunk chunk = addChunk(0, 0, 0, 1);
+        ChunkSnapshot snapshot = snapshot(chunk);
+
+        chunk.setBlockId(7, 8, 9, 5);
+
+        assertEquals(1, snapshot.getBlockId(7, 8, 9));
+        assertEquals(5, snapshot(chunk).getBlockId(7, 8, 9));
+    }
+
+    @Test
+    void snapshotsStayConsistentWhileChunkIsWritten() throws Exception {
+        TestChunk chunk = addChunk(0, 0, 0, 1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (running.get()) {
+                    chunk.setBlockId(random.nextInt(32), random.nextInt(32), random.nextInt(32), random.nextInt(4));
+                }
+            });
+            for (int i = 0; i < 200; i++) {
+                // Like a bake, the snapshot is read several times while the chunk keeps changing.
+                ChunkSnapshot snapshot = snapshot(chunk);
+                long faces = countVisibleFaces(snapshot);
+                Thread.yield();
+                assertEquals(faces, countVisibleFaces(snapshot));
+            }
+            running.set(false);
+            writer.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ChunkSnapshot snapshot = snapshot(chunk);
+        for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+            for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                    assertEquals(chunk.getBlockId(x, y, z), snapshot.getBlockId(x, y, z));
+                }
+            }
+        }
+    }
+
+    private static long countVisibleFaces(ChunkSnapshot snapshot) {
+        long faces = 0;
+        for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+            for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                    if (snapshot.getBlockId(x, y, z) == AIR) continue;
+                    if (snapshot.getBlockId(x + 1, y, z) == AIR) faces++;
+                    if (snapshot.getBlockId(x - 1, y, z) == AIR) faces++;
+                    if (snapshot.getBlockId(x, y + 1, z) == AIR) faces++;
+                    if (snapshot.getBlockId(x, y - 1, z) == AIR) faces++;
+                    if (snapshot.getBlockId(x, y, z + 1) == AIR) faces++;
+                    if (snapshot.getBlockId(x, y, z - 1) == AIR) faces++;
+                }
+            }
+        }
+        return faces;
+    }
+
+    private static void benchmarkCreate() {
+        var test = new ChunkSnapshotTest();
+        for (int x = -1; x <= 1; x++) {
+            for (int y = -1; y <= 1; y++) {
+                for (int z = -1; z <= 1; z++) {
+                    test.addChunk(x, y, z, 1);
+                }
+            }
+        }
+        TestChunk chunk = test.chunks.get(ChunkPos.of(0, 0, 0));
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                test.snapshot(chunk);
+            }
+            System.out.println((System.nanoTime() - start) / 1000L / 1000L + " us per snapshot");
+        }
+    }
+
+    private ChunkSnapshot snapshot(TestChunk chunk) {
+        return ChunkSnapshot.create(null, chunk, (x, y, z) -> chunks.get(ChunkPos.of(x, y, z)), AIR);
+    }
+
+    private TestChunk addChunk(int chunkX, int chunkY, int chunkZ, int id) {
+        TestChunk chunk = new TestChunk(chunkX, chunkY, chunkZ);
+        for (int z = 0; z < CHUNK_Z_SIZE; z++) {
+            for (int y = 0; y < CHUNK_Y_SIZE; y++) {
+                for (int x = 0; x < CHUNK_X_SIZE; x++) {
+                    chunk.setBlockId(x, y, z, id);
+                }
+            }
+        }
+        chunks.put(chunk.getPos(), chunk);
+        return chunk;
+    }
+
+    private static final class TestChunk implements Chunk {
+
+        private final ChunkPos pos;
+        private final Vector3ic min;
+        private final NibbleArray data = new NibbleArray(8, BLOCK_COUNT);
+
+        private TestChunk(int chunkX, int chunkY, int chunkZ) {
+            this.pos = ChunkPos.of(chunkX, chunkY, chunkZ);
+            this.min = new Vector3i(chunkX << CHUNK_X_BITS, chunkY << CHUNK_Y_BITS, chunkZ << CHUNK_Z_BITS);
+        }
+
+        private static int getIndex(int x, int y, int z) {
+            return (x & CHUNK_MAX_X) | ((y & CHUNK_MAX_Y) << CHUNK_X_BITS) | ((z & CHUNK_MAX_Z) << CHUNK_X_BITS + CHUNK_Y_BITS);
+        }
+
+        void setBlockId(int x, int y, int z, int id) {
+            data.set(getIndex(x, y, z), id);
+        }
+
+        @Override
+        public int getBlockId(int x, int y, int z) {
+            return data.get(getIndex(x, y, z));
+        }
+
+        @Override
+        public void getBlockIds(int x, int y, int z, int[] dest, int destOffset, int length) {
+            data.copyTo(getIndex(x, y, z), dest, destOffset, length);
+        }
+
+        @Override
+        public ChunkStatus getStatus() {
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public World getWorld() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ChunkPos getPos() {
+            return pos;
+        }
+
+        @Override
+        public int getX() {
+            return pos.x();
+        }
+
+        @Override
+        public int getY() {
+            return pos.y();
+        }
+
+        @Override
+        public int getZ() {
+            return pos.z();
+        }
+
+        @Nonnull
+        @Override
+        public Vector3ic getMin() {
+            return min;
+        }
+
+        @Nonnull
+        @Override
+        public Vector3ic getMax() {
+            return min.add(CHUNK_X_SIZE, CHUNK_Y_SIZE, CHUNK_Z_SIZE, new Vector3i());
+        }
+
+        @Nonnull
+        @Override
+        public Vector3ic getCenter() {
+            return min.add(CHUNK_X_SIZE >> 1, CHUNK_Y_SIZE >> 1, CHUNK_Z_SIZE >> 1, new Vector3i());
+        }
+
+        @Override
+        public BlockState getBlock(int x, int y, int z) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BlockState setBlock(@Nonnull BlockPos pos, @Nonnull BlockState block, @Nonnull BlockChangeCause cause) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isAirChunk() {
+            return false;
+        }
+    }
+}
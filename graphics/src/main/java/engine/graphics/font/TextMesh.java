@@ -5,18 +5,33 @@ import engine.graphics.vertex.VertexDataBuf;
 import engine.util.Color;
 import org.joml.Vector4fc;
 
+import javax.annotation.Nullable;
+import java.util.function.IntSupplier;
+
 public class TextMesh {
 
     private final CharSequence text;
     private final Font font;
     private final Texture2D texture;
     private final CharQuad[] quads;
+    private final IntSupplier glyphGeneration;
+    private final int bakedGlyphGeneration;
 
     public TextMesh(CharSequence text, Font font, Texture2D texture, CharQuad[] quads) {
+        this(text, font, texture, quads, null);
+    }
+
+    /**
+     * @param glyphGeneration generation of the glyph textures, which changes when glyphs are evicted from them, or
+     *                        null if glyphs are never evicted
+     */
+    public TextMesh(CharSequence text, Font font, Texture2D texture, CharQuad[] quads, @Nullable IntSupplier glyphGeneration) {
         this.text = text;
         this.font = font;
         this.texture = texture;
         this.quads = quads;
+        this.glyphGeneration = glyphGeneration;
+        this.bakedGlyphGeneration = glyphGeneration != null ? glyphGeneration.getAsInt() : 0;
     }
 
     public CharSequence getText() {
@@ -31,6 +46,22 @@ public class TextMesh {
         return texture;
     }
 
+    /**
+     * @return texture of the glyph of a character, glyphs may be spread over several textures
+     */
+    public Texture2D getTexture(int index) {
+        CharQuad quad = quads[index];
+        return quad != null && quad.texture != null ? quad.texture : texture;
+    }
+
+    /**
+     * @return true if glyphs were evicted from the glyph textures since the mesh was baked. The quads may then refer to
+     * slots reused by other glyphs, and the mesh must be baked again before it is drawn.
+     */
+    public boolean isStale() {
+        return glyphGeneration != null && glyphGeneration.getAsInt() != bakedGlyphGeneration;
+    }
+
     public int length() {
         return quads.length;
     }
@@ -61,21 +92,30 @@ public class TextMesh {
     }
 
     public static final class CharQuad {
-        private final char character;
+        private final int codePoint;
         private final float x0, y0, x1, y1;
         private final Vector4fc texCoord;
+        private final Texture2D texture;
+
+        public CharQuad(int codePoint, float x0, float y0, float x1, float y1, Vector4fc texCoord) {
+            this(codePoint, x0, y0, x1, y1, texCoord, null);
+        }
 
-        public CharQuad(char character, float x0, float y0, float x1, float y1, Vector4fc texCoord) {
-            this.character = character;
+        /**
+         * @param texture texture of the glyph, null for the texture of the mesh
+         */
+        public CharQuad(int codePoint, float x0, float y0, float x1, float y1, Vector4fc texCoord, Texture2D texture) {
+            this.codePoint = codePoint;
             this.x0 = x0;
             this.y0 = y0;
             this.x1 = x1;
             this.y1 = y1;
             this.texCoord = texCoord;
+            this.texture = texture;
         }
 
-        public char getCharacter() {
-            return character;
+        public int getCodePoint() {
+            return codePoint;
         }
 
         public float getWidth() {
@@ -9,6 +9,7 @@ import engine.graphics.texture.WrapMode;
 import engine.util.Color;
 import org.joml.Vector2ic;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL21;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.opengl.GL45;
@@ -41,17 +42,22 @@ public final class GLTexture2D extends GLTexture implements Texture2D, GLFrameBu
         return new Builder();
     }
 
-    private GLTexture2D(GLColorFormat format, int width, int height, boolean mipmap) {
+    private GLTexture2D(GLColorFormat format, int width, int height, boolean mipmap, int levels) {
         super(GL11.GL_TEXTURE_2D, format);
         this.width = width;
         this.height = height;
         this.mipmap = mipmap;
         if (GLHelper.isSupportARBDirectStateAccess()) {
-            GL45.glTextureStorage2D(id, 1, format.internalFormat, width, height);
+            GL45.glTextureStorage2D(id, levels, format.internalFormat, width, height);
         } else {
             bind();
-            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, format.internalFormat,
-                    width, height, 0, format.format, format.type, (ByteBuffer) null);
+            for (int level = 0; level < levels; level++) {
+                GL11.glTexImage2D(GL11.GL_TEXTURE_2D, level, format.internalFormat,
+                        Math.max(width >> level, 1), Math.max(height >> level, 1), 0, format.format, format.type, (ByteBuffer) null);
+            }
+        }
+        if (levels > 1) {
+            setTextureParameteri(GL12.GL_TEXTURE_MAX_LEVEL, levels - 1);
         }
     }
 
@@ -92,7 +98,7 @@ public final class GLTexture2D extends GLTexture implements Texture2D, GLFrameBu
         if (pixels == null) {
             if (GL11.glGetInteger(GL21.GL_PIXEL_UNPACK_BUFFER_BINDING) == 0) return;
             if (GLHelper.isSupportARBDirectStateAccess()) {
-                GL45.nglTextureSubImage2D(id, level, 0, 0, width, height,
+                GL45.nglTextureSubImage2D(id, level, offsetX, offsetY, width, height,
                         format.format, format.type, MemoryUtil.NULL);
                 if (mipmap) GL45.glGenerateTextureMipmap(id);
             } else {
@@ -104,7 +110,7 @@ public final class GLTexture2D extends GLTexture implements Texture2D, GLFrameBu
             }
         } else {
             if (GLHelper.isSupportARBDirectStateAccess()) {
-                GL45.glTextureSubImage2D(id, level, 0, 0, width, height,
+                GL45.glTextureSubImage2D(id, level, offsetX, offsetY, width, height,
                         format.format, format.type, pixels);
                 if (mipmap) GL45.glGenerateTextureMipmap(id);
             } else {
@@ -124,6 +130,7 @@ public final class GLTexture2D extends GLTexture implements Texture2D, GLFrameBu
         private GLColorFormat format = GLColorFormat.RGBA8;
 
         private boolean mipmap = false;
+        private int mipmapLevels = 1;
 
         private Color borderColor;
 
@@ -171,6 +178,13 @@ public final class GLTexture2D extends GLTexture implements Texture2D, GLFrameBu
             return this;
         }
 
+        @Override
+        public Builder mipmapLevels(int levels) {
+            if (levels < 1) throw new IllegalArgumentException("Mipmap levels must be positive: " + levels);
+            mipmapLevels = levels;
+            return this;
+        }
+
         @Override
         public Builder borderColor(Color color) {
             borderColor = color;
@@ -199,7 +213,7 @@ public final class GLTexture2D extends GLTexture implements Texture2D, GLFrameBu
 
         @Override
         public GLTexture2D build(ByteBuffer pixelBuffer, int width, int height) {
-            GLTexture2D texture = new GLTexture2D(format, width, height, mipmap);
+            GLTexture2D texture = new GLTexture2D(format, width, height, mipmap, mipmapLevels);
             parameterMap.forEach(texture::setTextureParameteri);
             if (borderColor != null) {
                 try (MemoryStack stack = MemoryStack.stackPush()) {
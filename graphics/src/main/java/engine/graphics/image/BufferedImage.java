@@ -111,8 +111,14 @@ public class BufferedImage implements WritableImage {
 
     @Override
     public void setPixel(int x, int y, int width, int height, int rgba) {
-        for (int i = y, maxY = y + height; i < maxY; i++) {
-            memSet(address + i * stride + (x << 2), rgba, width << 2);
+        if (width <= 0 || height <= 0) return;
+        // memSet only repeats a byte, so fills the first row and copies it to the next ones.
+        for (int i = 0; i < width; i++) {
+            pixelBuffer.putInt(y * stride + (x + i << 2), rgba);
+        }
+        long firstRow = address + y * stride + (x << 2);
+        for (int i = y + 1, maxY = y + height; i < maxY; i++) {
+            memCopy(firstRow, address + i * stride + (x << 2), width << 2);
         }
     }
 
@@ -132,7 +138,6 @@ public class BufferedImage implements WritableImage {
 
     @Override
     public void fill(int rgba) {
-        pixelBuffer.clear();
-        memSet(pixelBuffer.asIntBuffer(), rgba);
+        setPixel(0, 0, width, height, rgba);
     }
 }
@@ -0,0 +1,289 @@
+package engine.graphics.light;
+
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Assigns point and spot lights to the clusters of the view frustum, for clustered forward shading.
+ * <p>
+ * The frustum is split into tiles on screen and into slices by depth, whose depths grow exponentially from the near
+ * plane to the far plane so that clusters stay roughly cubic. A light is assigned to each cluster touched by its
+ * bounding sphere, and for spot lights by its cone too.
+ * <p>
+ * The result is a compact list of light indexes: the lights of a cluster are at
+ * {@link #getLightOffset(int)} in {@link #getLightIndexes()}, point lights first. Point lights are numbered by their
+ * index in the list passed to {@link #assign(List, List)}, spot lights by their index plus the number of point
+ * lights.
+ * <p>
+ * Everything is in view space, lights must be {@link Light#setup(org.joml.Matrix4fc) set up} with the view matrix
+ * first.
+ */
+public final class LightClusters {
+
+    /**
+     * Light intensity below which a light is considered out of range.
+     */
+    public static final float CUTOFF_INTENSITY = 1 / 256f;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final int slices;
+
+    private float near;
+    private float far;
+    private float tanHalfFovX;
+    private float tanHalfFovY;
+    private float logDepthScale;
+
+    /**
+     * View space box of each cluster, min x, y, z and max x, y, z.
+     */
+    private float[] clusterBounds;
+
+    private final int[] lightOffsets;
+    private int[] lightIndexes = new int[256];
+    private int lightIndexCount;
+
+    /**
+     * Pairs of cluster and light collected before they are sorted by cluster.
+     */
+    private int[] pairs = new int[512];
+    private int pairCount;
+
+    public LightClusters(int tilesX, int tilesY, int slices) {
+        if (tilesX <= 0 || tilesY <= 0 || slices <= 0) {
+            throw new IllegalArgumentException("Cluster counts must be positive: " + tilesX + "x" + tilesY + "x" + slices);
+        }
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+        this.slices = slices;
+        this.clusterBounds = new float[getClusterCount() * 6];
+        this.lightOffsets = new int[getClusterCount() + 1];
+    }
+
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    public int getTilesY() {
+        return tilesY;
+    }
+
+    public int getSlices() {
+        return slices;
+    }
+
+    public int getClusterCount() {
+        return tilesX * tilesY * slices;
+    }
+
+    public int getClusterIndex(int tileX, int tileY, int slice) {
+        return tileX + (tileY + slice * tilesY) * tilesX;
+    }
+
+    /**
+     * Sets the perspective projection of the view, and computes the bounds of the clusters.
+     *
+     * @param fovY vertical field of view in radians
+     */
+    public void setProjection(float fovY, float aspect, float near, float far) {
+        if (!(near > 0) || !(far > near)) {
+            throw new IllegalArgumentException("Invalid depth range: " + near + " to " + far);
+        }
+        this.near = near;
+        this.far = far;
+        this.tanHalfFovY = (float) Math.tan(fovY * 0.5);
+        this.tanHalfFovX = tanHalfFovY * aspect;
+        this.logDepthScale = (float) (slices / Math.log(far / near));
+
+        float[] bounds = clusterBounds;
+        for (int slice = 0; slice < slices; slice++) {
+            float sliceNear = getSliceDepth(slice), sliceFar = getSliceDepth(slice + 1);
+            for (int tileY = 0; tileY < tilesY; tileY++) {
+                float minY = (2f * tileY / tilesY - 1) * tanHalfFovY, maxY = (2f * (tileY + 1) / tilesY - 1) * tanHalfFovY;
+                for (int tileX = 0; tileX < tilesX; tileX++) {
+                    float minX = (2f * tileX / tilesX - 1) * tanHalfFovX, maxX = (2f * (tileX + 1) / tilesX - 1) * tanHalfFovX;
+                    int offset = getClusterIndex(tileX, tileY, slice) * 6;
+                    // The cluster is a frustum piece, its box is bounded by the corners at both depths.
+                    bounds[offset] = Math.min(minX * sliceNear, minX * sliceFar);
+                    bounds[offset + 1] = Math.min(minY * sliceNear, minY * sliceFar);
+                    bounds[offset + 2] = -sliceFar;
+                    bounds[offset + 3] = Math.max(maxX * sliceNear, maxX * sliceFar);
+                    bounds[offset + 4] = Math.max(maxY * sliceNear, maxY * sliceFar);
+                    bounds[offset + 5] = -sliceNear;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return distance to the near side of the slice, the far plane for the slice past the last one
+     */
+    public float getSliceDepth(int slice) {
+        return slice >= slices ? far : near * (float) Math.pow(far / near, (double) slice / slices);
+    }
+
+    /**
+     * @param depth distance from the view, the negated view space z
+     * @return slice containing the depth, clamped to the existing slices
+     */
+    public int getSlice(float depth) {
+        if (depth <= near) return 0;
+        int slice = (int) (Math.log(depth / near) * logDepthScale);
+        return Math.min(slice, slices - 1);
+    }
+
+    /**
+     * Assigns the lights to the clusters they touch, replacing the previous assignment.
+     */
+    public void assign(List<PointLight> pointLights, List<SpotLight> spotLights) {
+        pairCount = 0;
+        for (int i = 0, size = pointLights.size(); i < size; i++) {
+            PointLight light = pointLights.get(i);
+            float range = getRange(light.getIntensity(), light.getKconstant(), light.getKlinear(), light.getKquadratic());
+            addSphere(i, light.getViewPosition(), range, null, 0, 0);
+        }
+        for (int i = 0, size = spotLights.size(); i < size; i++) {
+            SpotLight light = spotLights.get(i);
+            float range = getRange(light.getIntensity(), light.getKconstant(), light.getKlinear(), light.getKquadratic());
+            float angle = Math.max(light.getCutoffAngle(), light.getOuterCutoffAngle());
+            addSphere(pointLights.size() + i, light.getViewPosition(), range, light.getViewDirection(),
+                    (float) Math.sin(angle), (float) Math.cos(angle));
+        }
+        sortPairs();
+    }
+
+    /**
+     * @return offset of the lights of the cluster in {@link #getLightIndexes()}
+     */
+    public int getLightOffset(int cluster) {
+        return lightOffsets[cluster];
+    }
+
+    public int getLightCount(int cluster) {
+        return lightOffsets[cluster + 1] - lightOffsets[cluster];
+    }
+
+    /**
+     * @return light indexes of all clusters, valid up to {@link #getLightIndexCount()}
+     */
+    public int[] getLightIndexes() {
+        return lightIndexes;
+    }
+
+    public int getLightIndexCount() {
+        return lightIndexCount;
+    }
+
+    /**
+     * Gets the distance at which the attenuated intensity of a light falls below {@link #CUTOFF_INTENSITY}.
+     *
+     * @return range of the light, infinite if it isn't attenuated
+     */
+    public static float getRange(float intensity, float kconstant, float klinear, float kquadratic) {
+        // Solves intensity / (kconstant + klinear * d + kquadratic * d^2) = CUTOFF_INTENSITY for d.
+        float c = kconstant - intensity / CUTOFF_INTENSITY;
+        if (c >= 0) return 0;
+        if (kquadratic > 0) {
+            return (float) ((-klinear + Math.sqrt(klinear * klinear - 4 * kquadratic * c)) / (2 * kquadratic));
+        }
+        if (klinear > 0) return -c / klinear;
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Tests the box of a cluster against the bounding sphere of a light, and against its cone if it has a direction.
+     */
+    boolean intersects(int cluster, Vector3fc center, float radius, Vector3fc direction, float sinAngle, float cosAngle) {
+        float[] bounds = clusterBounds;
+        int offset = cluster * 6;
+        float x = center.x(), y = center.y(), z = center.z();
+        float dx = Math.max(Math.max(bounds[offset] - x, 0), x - bounds[offset + 3]);
+        float dy = Math.max(Math.max(bounds[offset + 1] - y, 0), y - bounds[offset + 4]);
+        float dz = Math.max(Math.max(bounds[offset + 2] - z, 0), z - bounds[offset + 5]);
+        if (dx * dx + dy * dy + dz * dz > radius * radius) return false;
+        if (direction == null) return true;
+
+        // Tests the bounding sphere of the box against the cone.
+        float halfX = (bounds[offset + 3] - bounds[offset]) * 0.5f,
+                halfY = (bounds[offset + 4] - bounds[offset + 1]) * 0.5f,
+                halfZ = (bounds[offset + 5] - bounds[offset + 2]) * 0.5f;
+        float sphereRadius = (float) Math.sqrt(halfX * halfX + halfY * halfY + halfZ * halfZ);
+        float vx = bounds[offset] + halfX - x, vy = bounds[offset + 1] + halfY - y, vz = bounds[offset + 2] + halfZ - z;
+        float sqLength = vx * vx + vy * vy + vz * vz;
+        float axial = vx * direction.x() + vy * direction.y() + vz * direction.z();
+        if (axial < -sphereRadius) return false;
+        float radial = (float) Math.sqrt(Math.max(sqLength - axial * axial, 0));
+        return cosAngle * radial - sinAngle * axial <= sphereRadius;
+    }
+
+    private void addSphere(int light, Vector3fc center, float radius, Vector3fc direction, float sinAngle, float cosAngle) {
+        if (!(radius > 0)) return;
+        float nearDepth = -center.z() - radius, farDepth = -center.z() + radius;
+        if (farDepth < near || nearDepth > far) return;
+        int minSlice = getSlice(nearDepth), maxSlice = getSlice(farDepth);
+
+        // Projects the box of the sphere on the screen, x / depth is monotonic so its extremes are at the depth bounds.
+        float minDepth = Math.max(nearDepth, near), maxDepth = Math.min(farDepth, far);
+        int minTileX = getTile(Math.min((center.x() - radius) / minDepth, (center.x() - radius) / maxDepth), tanHalfFovX, tilesX);
+        int maxTileX = getTile(Math.max((center.x() + radius) / minDepth, (center.x() + radius) / maxDepth), tanHalfFovX, tilesX);
+        int minTileY = getTile(Math.min((center.y() - radius) / minDepth, (center.y() - radius) / maxDepth), tanHalfFovY, tilesY);
+        int maxTileY = getTile(Math.max((center.y() + radius) / minDepth, (center.y() + radius) / maxDepth), tanHalfFovY, tilesY);
+
+        for (int slice = minSlice; slice <= maxSlice; slice++) {
+            for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+                for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+                    int cluster = getClusterIndex(tileX, tileY, slice);
+                    if (intersects(cluster, center, radius, direction, sinAngle, cosAngle)) {
+                        addPair(cluster, light);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param slope view space coordinate divided by depth
+     */
+    private static int getTile(float slope, float tanHalfFov, int tiles) {
+        if (Float.isInfinite(slope)) return slope < 0 ? 0 : tiles - 1;
+        float ndc = slope / tanHalfFov;
+        int tile = (int) Math.floor((ndc + 1) * 0.5f * tiles);
+        return Math.max(0, Math.min(tile, tiles - 1));
+    }
+
+    private void addPair(int cluster, int light) {
+        if (pairCount * 2 == pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        pairs[pairCount * 2] = cluster;
+        pairs[pairCount * 2 + 1] = light;
+        pairCount++;
+    }
+
+    /**
+     * Sorts the pairs by cluster with a counting sort, keeping the order of the lights.
+     */
+    private void sortPairs() {
+        int[] offsets = lightOffsets;
+        Arrays.fill(offsets, 0);
+        for (int i = 0; i < pairCount; i++) {
+            offsets[pairs[i * 2] + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        if (lightIndexes.length < pairCount) {
+            lightIndexes = new int[Math.max(pairCount, lightIndexes.length * 2)];
+        }
+        // Uses the offsets as insertion cursors, shifted back to the starts of the clusters afterwards.
+        for (int i = 0; i < pairCount; i++) {
+            lightIndexes[offsets[pairs[i * 2]]++] = pairs[i * 2 + 1];
+        }
+        System.arraycopy(offsets, 0, offsets, 1, offsets.length - 1);
+        offsets[0] = 0;
+        lightIndexCount = pairCount;
+    }
+}
@@ -64,6 +64,13 @@ public class PointLight extends Light {
         return this;
     }
 
+    /**
+     * @return position in view space, computed by {@link #setup(Matrix4fc)}
+     */
+    public Vector3fc getViewPosition() {
+        return viewPosition;
+    }
+
     public float getKconstant() {
         return kconstant;
     }
@@ -56,6 +56,13 @@ public class SpotLight extends Light {
         return this;
     }
 
+    /**
+     * @return position in view space, computed by {@link #setup(Matrix4fc)}
+     */
+    public Vector3fc getViewPosition() {
+        return viewPosition;
+    }
+
     public float getKconstant() {
         return kconstant;
     }
@@ -92,6 +99,13 @@ public class SpotLight extends Light {
         return this;
     }
 
+    /**
+     * @return normalized direction in view space, computed by {@link #setup(Matrix4fc)}
+     */
+    public Vector3fc getViewDirection() {
+        return viewDirection;
+    }
+
     public float getCutoffAngle() {
         return cutoffAngle;
     }
@@ -5,134 +5,175 @@ import engine.graphics.texture.ColorFormat;
 import engine.graphics.texture.FilterMode;
 import engine.graphics.texture.Texture2D;
 import engine.math.Math2;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.joml.Vector4f;
-import org.lwjgl.BufferUtils;
-import org.lwjgl.stb.STBTTAlignedQuad;
-import org.lwjgl.stb.STBTTPackContext;
-import org.lwjgl.stb.STBTTPackRange;
-import org.lwjgl.stb.STBTTPackedchar;
-
-import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
+import org.lwjgl.stb.STBTTFontinfo;
+
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import static org.lwjgl.stb.STBTruetype.*;
 
+/**
+ * Glyph textures of a font, rasterized on demand into a {@link GlyphAtlas} and uploaded to one texture per page.
+ */
 public final class FontPlaneTexture {
-    private Texture2D texture;
-    private Font font;
-    private TTFontInfo fontInfo;
 
-    private ArrayList<Character.UnicodeBlock> blocks;
-    private Map<Character, CharQuad> charQuads;
-    private boolean dirty = false;
+    /**
+     * Memory of the glyph pages of a font, beyond which the least recently used glyphs are evicted.
+     */
+    private static final int MEMORY_BUDGET = 4 * 1024 * 1024;
+
+    private final Font font;
+    private final TTFontInfo fontInfo;
+    private final GlyphAtlas atlas;
+    private final List<Texture2D> textures = new ArrayList<>();
+    private final Int2ObjectMap<CharQuad> charQuads = new Int2ObjectOpenHashMap<>();
+    /**
+     * Incremented when glyphs are evicted, see {@link engine.graphics.font.TextMesh#isStale()}.
+     */
+    private int generation;
+
+    public FontPlaneTexture(Font font, TTFontInfo fontInfo, float scale) {
+        this.font = font;
+        this.fontInfo = fontInfo;
+        // Room for about 1024 glyphs per page.
+        int pageSize = Math.max(256, Math.min(Math2.ceilPowerOfTwo((int) Math.ceil(font.getSize() * 32)), 2048));
+        this.atlas = new GlyphAtlas(pageSize, Math.max(1, MEMORY_BUDGET / (pageSize * pageSize)),
+                new STBTTRasterizer(fontInfo.getSTBFontInfo(), scale), this::onEvicted);
+    }
 
-    public FontPlaneTexture() {
-        blocks = new ArrayList<>();
-        charQuads = new HashMap<>();
+    private void onEvicted(int codePoint) {
+        charQuads.remove(codePoint);
+        generation++;
     }
 
     public Font getFont() {
         return font;
     }
 
+    public TTFontInfo getFontInfo() {
+        return fontInfo;
+    }
+
+    /**
+     * @return generation of the glyphs, which changes when glyphs are evicted and their slots reused
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return texture of the first page
+     */
     public Texture2D getTexture() {
-        return texture;
+        return getTexture(0);
     }
 
-    public TTFontInfo getFontInfo() {
-        return fontInfo;
+    public Texture2D getTexture(int page) {
+        return page < textures.size() ? textures.get(page) : null;
     }
 
-    public void putBlock(Character.UnicodeBlock block) {
-        if (!blocks.contains(block)) { //Make sure we don't load the same block twice
-            blocks.add(block);
-            dirty = true;
+    /**
+     * Gets the quad of a character, rasterizing its glyph if needed. Call {@link #upload()} before drawing it.
+     *
+     * @return the quad, or null if the font has no glyph for the code point
+     */
+    public CharQuad getQuad(int codePoint) {
+        var glyph = atlas.get(codePoint);
+        if (glyph == null) return null;
+        var quad = charQuads.get(codePoint);
+        if (quad == null) {
+            quad = createQuad(glyph);
+            charQuads.put(codePoint, quad);
         }
+        return quad;
     }
 
-    public void removeBlock(Character.UnicodeBlock block) {
-        blocks.remove(block);
+    private CharQuad createQuad(GlyphAtlas.Glyph glyph) {
+        float x0 = glyph.getOffsetX(), y0 = font.getSize() + glyph.getOffsetY();
+        var pos = new Vector4f(x0, y0, x0 + glyph.getWidth(), y0 + glyph.getHeight());
+        var texCoord = new Vector4f();
+        int page = Math.max(glyph.getPage(), 0);
+        if (glyph.getPage() != -1) {
+            float size = atlas.getPageSize();
+            texCoord.set(glyph.getX() / size, glyph.getY() / size,
+                    (glyph.getX() + glyph.getWidth()) / size, (glyph.getY() + glyph.getHeight()) / size);
+        }
+        return new CharQuad(glyph.getCodePoint(), pos, texCoord, glyph.getAdvance(), page);
     }
 
-    public boolean isBlockInList(Character.UnicodeBlock block) {
-        return blocks.contains(block);
+    /**
+     * Uploads the glyphs rasterized since the last upload, only the changed rows of each page are uploaded.
+     */
+    public void upload() {
+        int size = atlas.getPageSize();
+        atlas.flush((page, bitmap, minY, maxY) -> {
+            while (textures.size() <= page) addTexture();
+            textures.get(page).upload(0, 0, minY, size, maxY - minY,
+                    bitmap.duplicate().position(minY * size).limit(maxY * size).slice());
+        });
+        // Glyphs without bitmap still refer to the first page.
+        if (textures.isEmpty()) addTexture();
     }
 
-    public boolean isWaitingForReloading() {
-        return dirty;
+    private void addTexture() {
+        int size = atlas.getPageSize();
+        textures.add(Texture2D.builder().format(ColorFormat.RED8)
+                .magFilter(FilterMode.LINEAR).minFilter(FilterMode.LINEAR).build(size, size));
     }
 
-    public CharQuad getQuad(char ch) {
-        return charQuads.get(ch);
+    public void dispose() {
+        textures.forEach(Texture2D::dispose);
+        textures.clear();
     }
 
-    public void bakeTexture(Font font, TTFontInfo fontInfo) {
-        if (texture != null) {
-            texture.dispose();
+    private static final class STBTTRasterizer implements GlyphAtlas.Rasterizer {
+        private final STBTTFontinfo info;
+        private final float scale;
+        private final int[] x0 = new int[1], y0 = new int[1], x1 = new int[1], y1 = new int[1];
+        private final int[] advance = new int[1], leftSideBearing = new int[1];
+
+        private STBTTRasterizer(STBTTFontinfo info, float scale) {
+            this.info = info;
+            this.scale = scale;
         }
-        this.font = font;
-        this.fontInfo = fontInfo;
-        charQuads.clear();
-        var blockSize = blocks.stream().mapToInt(UnicodeBlockWrapper::getBlockSize).sum();
-        int bitmapSize = getBitmapSize(font.getSize(), blockSize);
-        ByteBuffer bitmap = ByteBuffer.allocateDirect(bitmapSize * bitmapSize);
-        try (var context = STBTTPackContext.malloc()) {
-            var ranges = STBTTPackRange.malloc(blocks.size());
-            for (Character.UnicodeBlock block : blocks) {
-                var range = STBTTPackRange.malloc();
-                var blockSize1 = UnicodeBlockWrapper.getBlockSize(block);
-                var charBuffer = STBTTPackedchar.malloc(blockSize1);
-                range.set(font.getSize(), UnicodeBlockWrapper.getRange(block).lowerEndpoint(), null, blockSize1, charBuffer, (byte) 1, (byte) 1);
-                ranges.put(range);
-            }
-            ranges.flip();
-            stbtt_PackBegin(context, bitmap, bitmapSize, bitmapSize, 0, 1);
-            stbtt_PackFontRanges(context, fontInfo.getFontData(), fontInfo.getOffsetIndex(), ranges);
-            stbtt_PackEnd(context);
-
-            texture = Texture2D.builder().format(ColorFormat.RED8).magFilter(FilterMode.LINEAR).minFilter(FilterMode.LINEAR).build(bitmap, bitmapSize, bitmapSize);
-            STBTTAlignedQuad stbQuad = STBTTAlignedQuad.mallocStack();
-            for (int i = 0; i < blocks.size(); i++) {
-                FloatBuffer posX = BufferUtils.createFloatBuffer(1);
-                FloatBuffer posY = BufferUtils.createFloatBuffer(1);
-                posY.put(0, font.getSize());
-                var startPoint = UnicodeBlockWrapper.getRange(blocks.get(i)).lowerEndpoint();
-                var cdata = ranges.get(i).chardata_for_range();
-                for (int j = 0; j < UnicodeBlockWrapper.getBlockSize(blocks.get(i)); j++) {
-                    stbtt_GetPackedQuad(cdata, bitmapSize, bitmapSize, j, posX, posY, stbQuad, false);
-                    var quads = new Vector4f(stbQuad.x0(), stbQuad.y0(), stbQuad.x1(), stbQuad.y1());
-                    var tex = new Vector4f(stbQuad.s0(), stbQuad.t0(), stbQuad.s1(), stbQuad.t1());
-                    charQuads.put((char) (startPoint + j), new CharQuad((char) (startPoint + j), quads, tex, posX.get(0)));
-                    posX.put(0, 0);
-                    posY.put(0, font.getSize());
-                }
-            }
+
+        /**
+         * Code points without glyph are measured and rasterized as the missing glyph of the font.
+         */
+        @Override
+        public boolean measure(int codePoint, GlyphAtlas.Glyph glyph) {
+            stbtt_GetCodepointBitmapBox(info, codePoint, scale, scale, x0, y0, x1, y1);
+            stbtt_GetCodepointHMetrics(info, codePoint, advance, leftSideBearing);
+            glyph.setMetrics(x1[0] - x0[0], y1[0] - y0[0], x0[0], y0[0], advance[0] * scale);
+            return true;
         }
-        dirty = false;
-    }
 
-    private int getBitmapSize(float size, int countOfChar) {
-        return Math2.ceilPowerOfTwo((int) Math.ceil(size * Math.sqrt(countOfChar)));
+        @Override
+        public void rasterize(int codePoint, long address, int width, int height, int stride) {
+            nstbtt_MakeCodepointBitmap(info.address(), address, width, height, stride, scale, scale, codePoint);
+        }
     }
 
     public static class CharQuad {
         private final Vector4f pos;
         private final Vector4f texCoord;
-        private final char character;
+        private final int codePoint;
         private final float xOffset;
+        private final int page;
 
-        public CharQuad(char character, Vector4f pos, Vector4f texCoord, float xOffset) {
-            this.character = character;
+        public CharQuad(int codePoint, Vector4f pos, Vector4f texCoord, float xOffset, int page) {
+            this.codePoint = codePoint;
             this.pos = pos;
             this.texCoord = texCoord;
             this.xOffset = xOffset;
+            this.page = page;
         }
 
-        public char getCharacter() {
-            return character;
+        public int getCodePoint() {
+            return codePoint;
         }
 
         public Vector4f getPos() {
@@ -146,5 +187,12 @@ public final class FontPlaneTexture {
         public float getXOffset() {
             return xOffset;
         }
+
+        /**
+         * @return page of the texture containing the glyph
+         */
+        public int getPage() {
+            return page;
+        }
     }
 }
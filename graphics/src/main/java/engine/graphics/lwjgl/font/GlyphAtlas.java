@@ -0,0 +1,438 @@
+package engine.graphics.lwjgl.font;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.lwjgl.system.MemoryUtil.memAddress;
+
+/**
+ * CPU side cache of glyph bitmaps, rasterized one by one when they are first requested.
+ * <p>
+ * Glyphs are packed in pages of 8 bit bitmaps, on shelves: rows of glyphs of about the same height. The space of
+ * evicted glyphs is reused by later glyphs of the same shelf. A new page is added when no shelf has room left, up to
+ * the maximum number of pages, then the least recently used glyphs are evicted. Shelves left empty by evictions are
+ * merged with their empty neighbours and split again for glyphs of other heights. Glyphs requested since the last
+ * {@link #flush(UploadVisitor)} are never evicted, so that the glyphs of a text being laid out stay valid.
+ * <p>
+ * The changed rows of each page are reported by {@link #flush(UploadVisitor)}, to upload them to textures.
+ */
+final class GlyphAtlas {
+
+    /**
+     * Empty texels around each glyph, so that linear filtering doesn't sample the neighbouring glyphs.
+     */
+    static final int PADDING = 1;
+
+    /**
+     * Shelves heights are rounded to a multiple of this, so that glyphs of close heights share shelves.
+     */
+    private static final int SHELF_HEIGHT_STEP = 4;
+
+    private final int pageSize;
+    private final int maxPages;
+    private final Rasterizer rasterizer;
+    private final IntConsumer evictionListener;
+
+    private final Int2ObjectMap<Glyph> glyphs = new Int2ObjectOpenHashMap<>();
+    private final List<Page> pages = new ArrayList<>();
+
+    /**
+     * Sentinel of the circular list of glyphs with a bitmap, from the most recently used to the least recently used.
+     */
+    private final Glyph lru = new Glyph(-1);
+    private int batch;
+
+    interface Rasterizer {
+        /**
+         * Sets the size of the bitmap of the glyph, its offset to the pen position and its advance.
+         *
+         * @return false if the font has no glyph for the code point
+         */
+        boolean measure(int codePoint, Glyph glyph);
+
+        /**
+         * Rasterizes the glyph into the bitmap, at the address of its first texel.
+         */
+        void rasterize(int codePoint, long address, int width, int height, int stride);
+    }
+
+    interface UploadVisitor {
+        /**
+         * @param bitmap bitmap of the page, from its first row
+         * @param minY   first changed row
+         * @param maxY   row after the last changed row
+         */
+        void upload(int page, ByteBuffer bitmap, int minY, int maxY);
+    }
+
+    /**
+     * @param evictionListener called with the code point of each evicted glyph
+     */
+    GlyphAtlas(int pageSize, int maxPages, Rasterizer rasterizer, IntConsumer evictionListener) {
+        if (pageSize <= 0 || maxPages <= 0) {
+            throw new IllegalArgumentException("Invalid page size or count: " + pageSize + ", " + maxPages);
+        }
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.rasterizer = rasterizer;
+        this.evictionListener = evictionListener;
+        lru.previous = lru.next = lru;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    int getPageCount() {
+        return pages.size();
+    }
+
+    int getGlyphCount() {
+        return glyphs.size();
+    }
+
+    ByteBuffer getBitmap(int page) {
+        return pages.get(page).bitmap;
+    }
+
+    /**
+     * Gets a glyph, rasterizing it if it isn't cached.
+     *
+     * @return the glyph, or null if the font has no glyph for the code point
+     */
+    Glyph get(int codePoint) {
+        Glyph glyph = glyphs.get(codePoint);
+        if (glyph == null) {
+            glyph = new Glyph(codePoint);
+            if (!rasterizer.measure(codePoint, glyph)) return null;
+            if (glyph.width > pageSize - PADDING * 2 || glyph.height > pageSize - PADDING * 2) {
+                throw new IllegalStateException("Glyph " + codePoint + " doesn't fit in a page: " + glyph.width + "x" + glyph.height);
+            }
+            if (glyph.width > 0 && glyph.height > 0) {
+                allocate(glyph);
+                Page page = pages.get(glyph.page);
+                rasterizer.rasterize(codePoint, memAddress(page.bitmap, 0) + glyph.y * pageSize + glyph.x, glyph.width, glyph.height, pageSize);
+            }
+            glyphs.put(codePoint, glyph);
+        }
+        if (glyph.page != -1) {
+            glyph.batch = batch;
+            glyph.unlink();
+            glyph.linkAfter(lru);
+        }
+        return glyph;
+    }
+
+    /**
+     * Reports the rows changed since the last flush, and allows the glyphs requested since then to be evicted again.
+     */
+    void flush(UploadVisitor visitor) {
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (page.dirtyMinY < page.dirtyMaxY) {
+                visitor.upload(i, page.bitmap, page.dirtyMinY, page.dirtyMaxY);
+                page.dirtyMinY = pageSize;
+                page.dirtyMaxY = 0;
+            }
+        }
+        batch++;
+    }
+
+    private void allocate(Glyph glyph) {
+        int width = glyph.width + PADDING * 2, height = glyph.height + PADDING * 2;
+        while (true) {
+            // Prefers shelves not much higher than the glyph, then a new shelf or page, then any shelf.
+            if (allocateInShelf(glyph, width, height, height + height / 2)) break;
+            if (allocateShelf(glyph, width, height)) break;
+            if (allocateInShelf(glyph, width, height, Integer.MAX_VALUE)) break;
+            if (!evict()) {
+                // Every glyph is in use, exceeds the budget rather than failing.
+                addPage();
+            }
+        }
+        Page page = pages.get(glyph.page);
+        // Clears the bitmap of evicted glyphs, padding included.
+        int slotY = glyph.y - PADDING;
+        for (int y = slotY; y < slotY + height; y++) {
+            int offset = y * pageSize + glyph.x - PADDING;
+            for (int x = 0; x < width; x++) {
+                page.bitmap.put(offset + x, (byte) 0);
+            }
+        }
+        page.dirtyMinY = Math.min(page.dirtyMinY, slotY);
+        page.dirtyMaxY = Math.max(page.dirtyMaxY, slotY + height);
+    }
+
+    private boolean allocateInShelf(Glyph glyph, int width, int height, int maxShelfHeight) {
+        Shelf best = null;
+        int bestPage = -1;
+        for (int i = 0; i < pages.size(); i++) {
+            for (Shelf shelf : pages.get(i).shelves) {
+                if (shelf.height < height || shelf.height > maxShelfHeight) continue;
+                if (best != null && shelf.height >= best.height) continue;
+                if (shelf.findSlot(width) != -1) {
+                    best = shelf;
+                    bestPage = i;
+                }
+            }
+        }
+        if (best == null) return false;
+        place(glyph, bestPage, best, width);
+        return true;
+    }
+
+    private boolean allocateShelf(Glyph glyph, int width, int height) {
+        int shelfHeight = Math.min((height + SHELF_HEIGHT_STEP - 1) / SHELF_HEIGHT_STEP * SHELF_HEIGHT_STEP, pageSize);
+        for (int i = 0; ; i++) {
+            if (i == pages.size()) {
+                if (pages.size() >= maxPages) return false;
+                addPage();
+            }
+            Shelf shelf = pages.get(i).addShelf(shelfHeight);
+            if (shelf != null) {
+                place(glyph, i, shelf, width);
+                return true;
+            }
+        }
+    }
+
+    private void place(Glyph glyph, int page, Shelf shelf, int width) {
+        int slotX = shelf.take(shelf.findSlot(width), width);
+        glyph.page = page;
+        glyph.shelf = shelf;
+        glyph.x = slotX + PADDING;
+        glyph.y = shelf.y + PADDING;
+    }
+
+    private void addPage() {
+        pages.add(new Page(ByteBuffer.allocateDirect(pageSize * pageSize), pageSize));
+    }
+
+    /**
+     * @return false if all the glyphs have been requested since the last flush
+     */
+    private boolean evict() {
+        Glyph glyph = lru.previous;
+        if (glyph == lru || glyph.batch == batch) return false;
+        glyph.unlink();
+        glyphs.remove(glyph.codePoint);
+        glyph.shelf.free(glyph.x - PADDING, glyph.width + PADDING * 2);
+        if (glyph.shelf.isEmpty()) pages.get(glyph.page).releaseShelf(glyph.shelf);
+        glyph.page = -1;
+        glyph.shelf = null;
+        if (evictionListener != null) evictionListener.accept(glyph.codePoint);
+        return true;
+    }
+
+    static final class Glyph {
+        private final int codePoint;
+        private int width;
+        private int height;
+        private float offsetX;
+        private float offsetY;
+        private float advance;
+
+        private int page = -1;
+        private int x;
+        private int y;
+        private Shelf shelf;
+
+        private int batch;
+        private Glyph previous;
+        private Glyph next;
+
+        private Glyph(int codePoint) {
+            this.codePoint = codePoint;
+        }
+
+        void setMetrics(int width, int height, float offsetX, float offsetY, float advance) {
+            this.width = width;
+            this.height = height;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.advance = advance;
+        }
+
+        int getCodePoint() {
+            return codePoint;
+        }
+
+        int getWidth() {
+            return width;
+        }
+
+        int getHeight() {
+            return height;
+        }
+
+        float getOffsetX() {
+            return offsetX;
+        }
+
+        float getOffsetY() {
+            return offsetY;
+        }
+
+        float getAdvance() {
+            return advance;
+        }
+
+        /**
+         * @return page of the bitmap, -1 for glyphs without bitmap, like spaces
+         */
+        int getPage() {
+            return page;
+        }
+
+        int getX() {
+            return x;
+        }
+
+        int getY() {
+            return y;
+        }
+
+        private void unlink() {
+            if (previous == null) return;
+            previous.next = next;
+            next.previous = previous;
+            previous = next = null;
+        }
+
+        private void linkAfter(Glyph glyph) {
+            previous = glyph;
+            next = glyph.next;
+            next.previous = this;
+            glyph.next = this;
+        }
+    }
+
+    private static final class Page {
+        private final ByteBuffer bitmap;
+        private final int size;
+        /**
+         * Shelves sorted by y.
+         */
+        private final List<Shelf> shelves = new ArrayList<>();
+        private int shelfBottom;
+        private int dirtyMinY;
+        private int dirtyMaxY;
+
+        private Page(ByteBuffer bitmap, int size) {
+            this.bitmap = bitmap;
+            this.size = size;
+            this.dirtyMinY = size;
+        }
+
+        /**
+         * Splits the first empty shelf high enough, or adds a shelf below the others.
+         *
+         * @return the new shelf, or null if there is no room left
+         */
+        private Shelf addShelf(int height) {
+            for (int i = 0; i < shelves.size(); i++) {
+                Shelf empty = shelves.get(i);
+                if (empty.height < height || !empty.isEmpty()) continue;
+                Shelf shelf = new Shelf(empty.y, height, size);
+                shelves.set(i, shelf);
+                if (empty.height > height) {
+                    shelves.add(i + 1, new Shelf(empty.y + height, empty.height - height, size));
+                }
+                return shelf;
+            }
+            if (shelfBottom + height > size) return null;
+            Shelf shelf = new Shelf(shelfBottom, height, size);
+            shelves.add(shelf);
+            shelfBottom += height;
+            return shelf;
+        }
+
+        /**
+         * Merges an empty shelf with its empty neighbours, so that higher shelves can take their place.
+         */
+        private void releaseShelf(Shelf shelf) {
+            int i = shelves.indexOf(shelf);
+            int y = shelf.y, bottom = shelf.y + shelf.height;
+            if (i + 1 < shelves.size() && shelves.get(i + 1).isEmpty()) {
+                bottom += shelves.remove(i + 1).height;
+            }
+            if (i > 0 && shelves.get(i - 1).isEmpty()) {
+                y = shelves.remove(--i).y;
+            }
+            if (i == shelves.size() - 1) {
+                shelves.remove(i);
+                shelfBottom = y;
+            } else {
+                shelves.set(i, new Shelf(y, bottom - y, size));
+            }
+        }
+    }
+
+    private static final class Shelf {
+        private final int y;
+        private final int height;
+        private final int width;
+        /**
+         * Free slots, x and width, sorted by x.
+         */
+        private final IntArrayList slots = new IntArrayList();
+
+        private Shelf(int y, int height, int width) {
+            this.y = y;
+            this.height = height;
+            this.width = width;
+            slots.add(0);
+            slots.add(width);
+        }
+
+        private boolean isEmpty() {
+            return slots.size() == 2 && slots.getInt(1) == width;
+        }
+
+        /**
+         * @return index of the first free slot at least as wide, -1 if none
+         */
+        private int findSlot(int width) {
+            for (int i = 0; i < slots.size(); i += 2) {
+                if (slots.getInt(i + 1) >= width) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * @return x of the taken space, the left of the slot
+         */
+        private int take(int slot, int width) {
+            int x = slots.getInt(slot), slotWidth = slots.getInt(slot + 1);
+            if (slotWidth == width) {
+                slots.removeElements(slot, slot + 2);
+            } else {
+                slots.set(slot, x + width);
+                slots.set(slot + 1, slotWidth - width);
+            }
+            return x;
+        }
+
+        private void free(int x, int width) {
+            int slot = 0;
+            while (slot < slots.size() && slots.getInt(slot) < x) slot += 2;
+            slots.add(slot, x);
+            slots.add(slot + 1, width);
+            // Merges with the next slot, then with the previous one.
+            if (slot + 2 < slots.size() && x + width == slots.getInt(slot + 2)) {
+                slots.set(slot + 1, width + slots.getInt(slot + 3));
+                slots.removeElements(slot + 2, slot + 4);
+            }
+            if (slot > 0 && slots.getInt(slot - 2) + slots.getInt(slot - 1) == x) {
+                slots.set(slot - 1, slots.getInt(slot - 1) + slots.getInt(slot + 1));
+                slots.removeElements(slot, slot + 2);
+            }
+        }
+    }
+}
@@ -303,7 +303,7 @@ public final class STBTTFontManager extends FontManager {
             FloatBuffer posY = stack.floats(0 + font.getSize());
 
             float maxY = (float) (nativeTTFont.getFontInfo().getAscent() - nativeTTFont.getFontInfo().getDescent()) * stbtt_ScaleForPixelHeight(nativeTTFont.getFontInfo().getSTBFontInfo(), font.getSize());
-            var plane = nativeTTFont.getPlaneTextures().get(0);
+            var plane = nativeTTFont.getPlaneTexture();
             for (int i = 0; i < text.length(); ) {
                 i += getCodePoint(text, i, charPointBuffer);
 
@@ -311,10 +311,7 @@ public final class STBTTFontManager extends FontManager {
                 if (!isSupportedCharacter(nativeTTFont, charPoint)) {
                     continue;
                 }
-                if (!nativeTTFont.isBlockLoaded((char) charPoint)) {
-                    plane.putBlock(Character.UnicodeBlock.of(charPoint));
-                }
-                var quad = plane.getQuad((char) charPoint);
+                var quad = plane.getQuad(charPoint);
                 if (quad == null) continue;
                 float diff = /*Math.abs(stbQuad.y0() - stbQuad.y1())*/ quad.getPos().w();
                 if (maxY < diff) {
@@ -337,20 +334,18 @@ public final class STBTTFontManager extends FontManager {
             IntBuffer charPointBuffer = stack.mallocInt(1);
             FloatBuffer posX = stack.floats(0);
 
-            var fontPlaneTexture = TTFont.getPlaneTextures().get(0);
-            for (int i = 0; i < text.length(); ) {
+            var fontPlaneTexture = TTFont.getPlaneTexture();
+            // Rasterizes the missing glyphs first, so that they are uploaded at once.
+            FontPlaneTexture.CharQuad[] planeQuads = new FontPlaneTexture.CharQuad[text.length()];
+            for (int i = 0, j = 0; i < text.length(); j++) {
                 i += getCodePoint(text, i, charPointBuffer);
                 int charPoint = charPointBuffer.get(0);
                 if (!isSupportedCharacter(TTFont, charPoint)) {
-                    continue;
-                }
-                if (!TTFont.isBlockLoaded((char) charPoint)) {
-                    fontPlaneTexture.putBlock(Character.UnicodeBlock.of(charPoint));
-                }
-                if (fontPlaneTexture.isWaitingForReloading()) {
-                    fontPlaneTexture.bakeTexture(TTFont.getFont(), TTFont.getFontInfo());
+                    charPoint = '\u001A';
                 }
+                planeQuads[j] = fontPlaneTexture.getQuad(charPoint);
             }
+            fontPlaneTexture.upload();
             for (int i = 0, j = 0; i < text.length(); j++) {
                 i += getCodePoint(text, i, charPointBuffer);
 
@@ -362,7 +357,7 @@ public final class STBTTFontManager extends FontManager {
                 }
 
                 float centerX = posX.get(0);
-                var quad = fontPlaneTexture.getQuad((char) charPoint);
+                var quad = planeQuads[j];
                 if (quad == null) continue;
                 posX.put(0, posX.get(0) + quad.getXOffset());
                 if (i < text.length()) {
@@ -374,9 +369,10 @@ public final class STBTTFontManager extends FontManager {
                         x1 = (float) Math.floor(centerX + quad.getPos().z() + 0.5),
                         y0 = (float) Math.floor(quad.getPos().y() + 0.5),
                         y1 = (float) Math.floor(quad.getPos().w() + 0.5);
-                quads[j] = new TextMesh.CharQuad((char) charPoint, x0, y0, x1, y1, quad.getTexCoord());
+                quads[j] = new TextMesh.CharQuad(charPoint, x0, y0, x1, y1, quad.getTexCoord(),
+                        fontPlaneTexture.getTexture(quad.getPage()));
             }
-            return new TextMesh(text, font, fontPlaneTexture.getTexture(), quads);
+            return new TextMesh(text, font, fontPlaneTexture.getTexture(), quads, fontPlaneTexture::getGeneration);
         }
     }
 
@@ -394,10 +390,7 @@ public final class STBTTFontManager extends FontManager {
 
     private TTFont loadNativeFont(TTFontInfo info, Font font) {
         float scale = stbtt_ScaleForPixelHeight(info.getSTBFontInfo(), font.getSize());
-        var plane = new FontPlaneTexture();
-        plane.putBlock(Character.UnicodeBlock.BASIC_LATIN);
-        plane.bakeTexture(font, info);
-        return new TTFont(info, font, scale, plane);
+        return new TTFont(info, font, scale, new FontPlaneTexture(font, info, scale));
     }
 
     private TTFontInfo[] loadFontInfo(InputStream input) throws IOException {
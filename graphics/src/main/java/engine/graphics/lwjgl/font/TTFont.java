@@ -2,10 +2,6 @@ package engine.graphics.lwjgl.font;
 
 import engine.graphics.font.Font;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 public final class TTFont {
 
     private final TTFontInfo fontInfo;
@@ -13,26 +9,17 @@ public final class TTFont {
 
     private final float scaleForPixelHeight;
 
-    private final List<FontPlaneTexture> planeTextures;
+    private final FontPlaneTexture planeTexture;
 
-    public TTFont(TTFontInfo fontInfo, Font font, float scaleForPixelHeight, FontPlaneTexture... planes) {
+    public TTFont(TTFontInfo fontInfo, Font font, float scaleForPixelHeight, FontPlaneTexture planeTexture) {
         this.fontInfo = fontInfo;
         this.font = font;
         this.scaleForPixelHeight = scaleForPixelHeight;
-        planeTextures = new ArrayList<>();
-        planeTextures.addAll(Arrays.asList(planes));
-    }
-
-    public boolean isBlockLoaded(char c) {
-        return isBlockLoaded(Character.UnicodeBlock.of(c));
-    }
-
-    public boolean isBlockLoaded(Character.UnicodeBlock block) {
-        return planeTextures.stream().anyMatch(fontPlaneTexture -> fontPlaneTexture.isBlockInList(block));
+        this.planeTexture = planeTexture;
     }
 
-    public List<FontPlaneTexture> getPlaneTextures() {
-        return planeTextures;
+    public FontPlaneTexture getPlaneTexture() {
+        return planeTexture;
     }
 
     public TTFontInfo getFontInfo() {
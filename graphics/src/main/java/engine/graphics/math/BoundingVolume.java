@@ -13,6 +13,8 @@ public class BoundingVolume {
 
     private boolean dirty;
 
+    private Runnable changeListener;
+
     public enum Type {
         Box, Sphere
     }
@@ -40,6 +42,7 @@ public class BoundingVolume {
         this.boundingType = Type.Box;
         this.box = box;
         this.dirty = true;
+        if (changeListener != null) changeListener.run();
     }
 
     public Spheref getSphere() {
@@ -57,12 +60,21 @@ public class BoundingVolume {
         this.boundingType = Type.Sphere;
         this.sphere = sphere;
         this.dirty = true;
+        if (changeListener != null) changeListener.run();
     }
 
     public Type getType() {
         return boundingType;
     }
 
+    /**
+     * Sets the listener called when the box or the sphere is set. Changes made to the box or the sphere in place aren't
+     * reported, set them again after changing them.
+     */
+    public void setChangeListener(Runnable changeListener) {
+        this.changeListener = changeListener;
+    }
+
     public boolean test(FrustumIntersection intersection) {
         if (boundingType == Type.Box) {
             return intersection.testAab(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
@@ -0,0 +1,394 @@
+package engine.graphics.math;
+
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+
+/**
+ * Bounding volume hierarchy over axis aligned boxes which is updated incrementally as values are added, moved and
+ * removed.
+ * <p>
+ * Each leaf stores a box enlarged by a margin, so that small moves of a value don't change the tree. The tree is kept
+ * balanced by rotations like an AVL tree, and new leaves are placed next to the sibling which enlarges the tree the
+ * least.
+ * <p>
+ * Nodes are stored in flat arrays and referenced by index. The index of a leaf is the proxy of its value, and stays
+ * the same until the value is removed.
+ */
+public final class DynamicAABBTree<T> {
+
+    public static final int NULL = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final float margin;
+
+    /**
+     * Min x, y, z and max x, y, z of each node.
+     */
+    private float[] bounds;
+    private int[] parents;
+    private int[] children1;
+    private int[] children2;
+    /**
+     * Height of each node, 0 for leaves and -1 for free nodes.
+     */
+    private int[] heights;
+    private Object[] values;
+
+    private int root = NULL;
+    private int freeList = NULL;
+    private int leafCount;
+
+    private int[] stack = new int[64];
+
+    /**
+     * @param margin distance by which the box of each leaf is enlarged on every side
+     */
+    public DynamicAABBTree(float margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("Margin must be non negative: " + margin);
+        }
+        this.margin = margin;
+        this.bounds = new float[0];
+        this.parents = new int[0];
+        this.children1 = new int[0];
+        this.children2 = new int[0];
+        this.heights = new int[0];
+        this.values = new Object[0];
+        grow(INITIAL_CAPACITY);
+    }
+
+    public int size() {
+        return leafCount;
+    }
+
+    public boolean isEmpty() {
+        return leafCount == 0;
+    }
+
+    /**
+     * @return height of the tree, 0 for a single leaf and -1 for an empty tree
+     */
+    public int getHeight() {
+        return root == NULL ? -1 : heights[root];
+    }
+
+    /**
+     * @return proxy of the value, used to move or remove it
+     */
+    public int insert(T value, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int leaf = allocateNode();
+        setFatBounds(leaf, minX, minY, minZ, maxX, maxY, maxZ);
+        values[leaf] = value;
+        insertLeaf(leaf);
+        leafCount++;
+        return leaf;
+    }
+
+    public void remove(int proxy) {
+        checkLeaf(proxy);
+        removeLeaf(proxy);
+        freeNode(proxy);
+        leafCount--;
+    }
+
+    /**
+     * Moves the value to the new box. The tree only changes if the box leaves the enlarged box of the leaf, or has
+     * become much smaller than it.
+     *
+     * @return true if the leaf has been reinserted
+     */
+    public boolean update(int proxy, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        checkLeaf(proxy);
+        int offset = proxy * 6;
+        float[] bounds = this.bounds;
+        if (bounds[offset] <= minX && bounds[offset + 1] <= minY && bounds[offset + 2] <= minZ
+                && bounds[offset + 3] >= maxX && bounds[offset + 4] >= maxY && bounds[offset + 5] >= maxZ) {
+            float slack = margin * 4;
+            if (minX - bounds[offset] <= slack && minY - bounds[offset + 1] <= slack && minZ - bounds[offset + 2] <= slack
+                    && bounds[offset + 3] - maxX <= slack && bounds[offset + 4] - maxY <= slack && bounds[offset + 5] - maxZ <= slack) {
+                return false;
+            }
+        }
+        removeLeaf(proxy);
+        setFatBounds(proxy, minX, minY, minZ, maxX, maxY, maxZ);
+        insertLeaf(proxy);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getValue(int proxy) {
+        checkLeaf(proxy);
+        return (T) values[proxy];
+    }
+
+    public void clear() {
+        Arrays.fill(heights, -1);
+        Arrays.fill(values, null);
+        root = NULL;
+        freeList = NULL;
+        leafCount = 0;
+        for (int i = heights.length - 1; i >= 0; i--) {
+            parents[i] = freeList;
+            freeList = i;
+        }
+    }
+
+    @FunctionalInterface
+    public interface Visitor<T> {
+        /**
+         * @param inside true if the enlarged box of the value is entirely inside the frustum, false if it only
+         *               intersects the frustum and the value should be tested on its own
+         */
+        void visit(T value, boolean inside);
+    }
+
+    /**
+     * Visits the values whose enlarged box is not outside the frustum. Subtrees outside the frustum are skipped, and
+     * subtrees entirely inside it are visited without further tests.
+     */
+    @SuppressWarnings("unchecked")
+    public void query(FrustumIntersection frustum, Visitor<? super T> visitor) {
+        if (root == NULL) return;
+        int[] stack = this.stack;
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int entry = stack[--top];
+            // Nodes entirely inside the frustum are pushed complemented.
+            boolean inside = entry < 0;
+            int node = inside ? ~entry : entry;
+            if (!inside) {
+                int offset = node * 6;
+                int result = frustum.intersectAab(bounds[offset], bounds[offset + 1], bounds[offset + 2],
+                        bounds[offset + 3], bounds[offset + 4], bounds[offset + 5]);
+                if (result != FrustumIntersection.INTERSECT && result != FrustumIntersection.INSIDE) continue;
+                inside = result == FrustumIntersection.INSIDE;
+            }
+            if (children1[node] == NULL) {
+                visitor.visit((T) values[node], inside);
+                continue;
+            }
+            if (top + 2 > stack.length) {
+                stack = this.stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = inside ? ~children1[node] : children1[node];
+            stack[top++] = inside ? ~children2[node] : children2[node];
+        }
+    }
+
+    private void checkLeaf(int proxy) {
+        if (proxy < 0 || proxy >= heights.length || heights[proxy] != 0) {
+            throw new IllegalArgumentException("Not a proxy: " + proxy);
+        }
+    }
+
+    private void setFatBounds(int node, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        int offset = node * 6;
+        bounds[offset] = minX - margin;
+        bounds[offset + 1] = minY - margin;
+        bounds[offset + 2] = minZ - margin;
+        bounds[offset + 3] = maxX + margin;
+        bounds[offset + 4] = maxY + margin;
+        bounds[offset + 5] = maxZ + margin;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            grow(heights.length * 2);
+        }
+        int node = freeList;
+        freeList = parents[node];
+        parents[node] = NULL;
+        children1[node] = NULL;
+        children2[node] = NULL;
+        heights[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parents[node] = freeList;
+        heights[node] = -1;
+        values[node] = null;
+        freeList = node;
+    }
+
+    private void grow(int capacity) {
+        int oldCapacity = heights.length;
+        bounds = Arrays.copyOf(bounds, capacity * 6);
+        parents = Arrays.copyOf(parents, capacity);
+        children1 = Arrays.copyOf(children1, capacity);
+        children2 = Arrays.copyOf(children2, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        values = Arrays.copyOf(values, capacity);
+        for (int i = capacity - 1; i >= oldCapacity; i--) {
+            heights[i] = -1;
+            parents[i] = freeList;
+            freeList = i;
+        }
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parents[leaf] = NULL;
+            return;
+        }
+
+        // Find the sibling which enlarges the tree the least, by the surface area of the boxes.
+        int index = root;
+        while (children1[index] != NULL) {
+            int child1 = children1[index], child2 = children2[index];
+            float area = getArea(index);
+            float combinedArea = getCombinedArea(index, leaf);
+            // Cost of creating a new parent for this node and the leaf.
+            float cost = 2 * combinedArea;
+            // Minimum cost of pushing the leaf further down the tree.
+            float inheritanceCost = 2 * (combinedArea - area);
+            float cost1 = getDescendCost(child1, leaf) + inheritanceCost;
+            float cost2 = getDescendCost(child2, leaf) + inheritanceCost;
+            if (cost < cost1 && cost < cost2) break;
+            index = cost1 < cost2 ? child1 : child2;
+        }
+
+        int sibling = index;
+        int oldParent = parents[sibling];
+        int newParent = allocateNode();
+        parents[newParent] = oldParent;
+        union(newParent, leaf, sibling);
+        heights[newParent] = heights[sibling] + 1;
+        if (oldParent != NULL) {
+            if (children1[oldParent] == sibling) children1[oldParent] = newParent;
+            else children2[oldParent] = newParent;
+        } else {
+            root = newParent;
+        }
+        children1[newParent] = sibling;
+        children2[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        refit(parents[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+        freeNode(parent);
+        if (grandParent != NULL) {
+            if (children1[grandParent] == parent) children1[grandParent] = sibling;
+            else children2[grandParent] = sibling;
+            parents[sibling] = grandParent;
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parents[sibling] = NULL;
+        }
+    }
+
+    /**
+     * Balances the node and its ancestors, and updates their heights and boxes.
+     */
+    private void refit(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int child1 = children1[index], child2 = children2[index];
+            heights[index] = 1 + Math.max(heights[child1], heights[child2]);
+            union(index, child1, child2);
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Rotates the higher child up if the heights of the children of the node differ by more than one.
+     *
+     * @return node which has taken the place of the node
+     */
+    private int balance(int a) {
+        if (children1[a] == NULL || heights[a] < 2) return a;
+
+        int b = children1[a], c = children2[a];
+        int balance = heights[c] - heights[b];
+        if (balance > 1) {
+            rotateUp(a, c, b, false);
+            return c;
+        }
+        if (balance < -1) {
+            rotateUp(a, b, c, true);
+            return b;
+        }
+        return a;
+    }
+
+    /**
+     * Rotates the child up in place of the node, the node keeps the other child and the lower grandchild.
+     *
+     * @param first true if the child is the first child of the node
+     */
+    private void rotateUp(int node, int child, int other, boolean first) {
+        int grandChild1 = children1[child], grandChild2 = children2[child];
+
+        children1[child] = node;
+        parents[child] = parents[node];
+        parents[node] = child;
+        int parent = parents[child];
+        if (parent != NULL) {
+            if (children1[parent] == node) children1[parent] = child;
+            else children2[parent] = child;
+        } else {
+            root = child;
+        }
+
+        int higher = heights[grandChild1] > heights[grandChild2] ? grandChild1 : grandChild2;
+        int lower = higher == grandChild1 ? grandChild2 : grandChild1;
+        children2[child] = higher;
+        if (first) children1[node] = lower;
+        else children2[node] = lower;
+        parents[lower] = node;
+
+        union(node, other, lower);
+        union(child, node, higher);
+        heights[node] = 1 + Math.max(heights[other], heights[lower]);
+        heights[child] = 1 + Math.max(heights[node], heights[higher]);
+    }
+
+    private float getDescendCost(int child, int leaf) {
+        float combinedArea = getCombinedArea(child, leaf);
+        return children1[child] == NULL ? combinedArea : combinedArea - getArea(child);
+    }
+
+    private float getArea(int node) {
+        int offset = node * 6;
+        float[] bounds = this.bounds;
+        return getArea(bounds[offset + 3] - bounds[offset], bounds[offset + 4] - bounds[offset + 1], bounds[offset + 5] - bounds[offset + 2]);
+    }
+
+    private float getCombinedArea(int node1, int node2) {
+        int offset1 = node1 * 6, offset2 = node2 * 6;
+        float[] bounds = this.bounds;
+        return getArea(
+                Math.max(bounds[offset1 + 3], bounds[offset2 + 3]) - Math.min(bounds[offset1], bounds[offset2]),
+                Math.max(bounds[offset1 + 4], bounds[offset2 + 4]) - Math.min(bounds[offset1 + 1], bounds[offset2 + 1]),
+                Math.max(bounds[offset1 + 5], bounds[offset2 + 5]) - Math.min(bounds[offset1 + 2], bounds[offset2 + 2]));
+    }
+
+    private static float getArea(float sizeX, float sizeY, float sizeZ) {
+        return 2 * (sizeX * sizeY + sizeY * sizeZ + sizeZ * sizeX);
+    }
+
+    private void union(int dest, int node1, int node2) {
+        int offset = dest * 6, offset1 = node1 * 6, offset2 = node2 * 6;
+        float[] bounds = this.bounds;
+        for (int i = 0; i < 3; i++) {
+            bounds[offset + i] = Math.min(bounds[offset1 + i], bounds[offset2 + i]);
+            bounds[offset + 3 + i] = Math.max(bounds[offset1 + 3 + i], bounds[offset2 + 3 + i]);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package engine.graphics.texture;
+
+import org.joml.Vector2i;
+
+import java.util.Arrays;
+
+/**
+ * Packs rectangles with the MaxRects algorithm, keeping the list of maximal free rectangles of the atlas and placing
+ * each rectangle by the best short side fit heuristic: in the free rectangle leaving the smallest leftover on its
+ * shorter side. Rectangles are never rotated, since rotated textures would need rotated texture coordinates.
+ * <p>
+ * When no free rectangle is large enough the atlas doubles in size, keeping the rectangles already placed: the free
+ * rectangles touching the right or bottom edge are extended into the new area.
+ */
+public class MaxRectsPacker implements TextureAtlasBuilder.Packer {
+
+    private int size;
+    private long usedArea;
+
+    /**
+     * Free rectangles, x, y, width and height.
+     */
+    private int[] free = new int[64];
+    private int freeCount;
+
+    private int[] newFree = new int[64];
+    private int newFreeCount;
+
+    public MaxRectsPacker(int size) {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of two: " + size);
+        }
+        this.size = size;
+        addFree(0, 0, size, size);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public float getOccupancy() {
+        return (float) ((double) usedArea / ((long) size * size));
+    }
+
+    @Override
+    public Vector2i pack(int width, int height, Vector2i dest) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid rectangle size: " + width + "x" + height);
+        }
+        int index;
+        while ((index = findFree(width, height)) == -1) {
+            grow();
+        }
+        int x = free[index * 4], y = free[index * 4 + 1];
+        place(x, y, width, height);
+        usedArea += (long) width * height;
+        return dest.set(x, y);
+    }
+
+    /**
+     * @return index of the free rectangle the best short side fit, -1 if none is large enough
+     */
+    private int findFree(int width, int height) {
+        int best = -1, bestShortSide = Integer.MAX_VALUE, bestLongSide = Integer.MAX_VALUE;
+        for (int i = 0; i < freeCount; i++) {
+            int freeWidth = free[i * 4 + 2], freeHeight = free[i * 4 + 3];
+            if (freeWidth < width || freeHeight < height) continue;
+            int leftoverX = freeWidth - width, leftoverY = freeHeight - height;
+            int shortSide = Math.min(leftoverX, leftoverY), longSide = Math.max(leftoverX, leftoverY);
+            if (shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide)) {
+                best = i;
+                bestShortSide = shortSide;
+                bestLongSide = longSide;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Splits the free rectangles overlapping the placed rectangle into the maximal rectangles around it.
+     */
+    private void place(int x, int y, int width, int height) {
+        int maxX = x + width, maxY = y + height;
+        newFreeCount = 0;
+        for (int i = 0; i < freeCount; ) {
+            int freeX = free[i * 4], freeY = free[i * 4 + 1];
+            int freeMaxX = freeX + free[i * 4 + 2], freeMaxY = freeY + free[i * 4 + 3];
+            if (x >= freeMaxX || maxX <= freeX || y >= freeMaxY || maxY <= freeY) {
+                i++;
+                continue;
+            }
+            if (x > freeX) addNewFree(freeX, freeY, x - freeX, freeMaxY - freeY);
+            if (maxX < freeMaxX) addNewFree(maxX, freeY, freeMaxX - maxX, freeMaxY - freeY);
+            if (y > freeY) addNewFree(freeX, freeY, freeMaxX - freeX, y - freeY);
+            if (maxY < freeMaxY) addNewFree(freeX, maxY, freeMaxX - freeX, freeMaxY - maxY);
+            removeFree(i);
+        }
+        pruneNewFree();
+    }
+
+    /**
+     * Doubles the size of the atlas, the new area is covered by a right and a bottom free rectangle.
+     */
+    private void grow() {
+        int oldSize = size;
+        size *= 2;
+        newFreeCount = 0;
+        for (int i = 0; i < freeCount; i++) {
+            int offset = i * 4;
+            boolean right = free[offset] + free[offset + 2] == oldSize, bottom = free[offset + 1] + free[offset + 3] == oldSize;
+            if (right) free[offset + 2] = size - free[offset];
+            if (bottom) free[offset + 3] = size - free[offset + 1];
+        }
+        addNewFree(oldSize, 0, oldSize, size);
+        addNewFree(0, oldSize, size, oldSize);
+        pruneNewFree();
+    }
+
+    /**
+     * Removes the new free rectangles contained in another free rectangle, and the old ones contained in a new one,
+     * then appends the new ones to the free rectangles.
+     */
+    private void pruneNewFree() {
+        for (int i = 0; i < newFreeCount; i++) {
+            if (newFree[i * 4 + 2] == 0) continue;
+            for (int j = 0; j < newFreeCount; j++) {
+                if (i != j && newFree[j * 4 + 2] != 0 && contains(newFree, j, newFree, i)) {
+                    // Removes duplicates only once.
+                    if (!contains(newFree, i, newFree, j) || j < i) {
+                        newFree[i * 4 + 2] = 0;
+                        break;
+                    }
+                }
+            }
+            if (newFree[i * 4 + 2] == 0) continue;
+            for (int j = 0; j < freeCount; j++) {
+                if (contains(free, j, newFree, i)) {
+                    newFree[i * 4 + 2] = 0;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < freeCount; ) {
+            boolean contained = false;
+            for (int j = 0; j < newFreeCount; j++) {
+                if (newFree[j * 4 + 2] != 0 && contains(newFree, j, free, i)) {
+                    contained = true;
+                    break;
+                }
+            }
+            if (contained) removeFree(i);
+            else i++;
+        }
+        for (int i = 0; i < newFreeCount; i++) {
+            if (newFree[i * 4 + 2] != 0) {
+                addFree(newFree[i * 4], newFree[i * 4 + 1], newFree[i * 4 + 2], newFree[i * 4 + 3]);
+            }
+        }
+        newFreeCount = 0;
+    }
+
+    private static boolean contains(int[] outer, int outerIndex, int[] inner, int innerIndex) {
+        int outerOffset = outerIndex * 4, innerOffset = innerIndex * 4;
+        return inner[innerOffset] >= outer[outerOffset] && inner[innerOffset + 1] >= outer[outerOffset + 1]
+                && inner[innerOffset] + inner[innerOffset + 2] <= outer[outerOffset] + outer[outerOffset + 2]
+                && inner[innerOffset + 1] + inner[innerOffset + 3] <= outer[outerOffset + 1] + outer[outerOffset + 3];
+    }
+
+    private void addFree(int x, int y, int width, int height) {
+        if (freeCount * 4 == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        int offset = freeCount++ * 4;
+        free[offset] = x;
+        free[offset + 1] = y;
+        free[offset + 2] = width;
+        free[offset + 3] = height;
+    }
+
+    private void addNewFree(int x, int y, int width, int height) {
+        if (newFreeCount * 4 == newFree.length) {
+            newFree = Arrays.copyOf(newFree, newFree.length * 2);
+        }
+        int offset = newFreeCount++ * 4;
+        newFree[offset] = x;
+        newFree[offset + 1] = y;
+        newFree[offset + 2] = width;
+        newFree[offset + 3] = height;
+    }
+
+    /**
+     * Removes a free rectangle by moving the last one in its place.
+     */
+    private void removeFree(int index) {
+        freeCount--;
+        System.arraycopy(free, freeCount * 4, free, index * 4, 4);
+    }
+
+    int getFreeCount() {
+        return freeCount;
+    }
+}
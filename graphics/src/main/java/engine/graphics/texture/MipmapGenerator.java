@@ -0,0 +1,124 @@
+package engine.graphics.texture;
+
+import engine.graphics.image.BufferedImage;
+import engine.graphics.image.ReadOnlyImage;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * Generates mipmap levels of RGBA images on the CPU.
+ * <p>
+ * Each texel is the average of 2x2 texels of the previous level, computed on linear colors rather than sRGB ones and
+ * weighted by alpha, so that dark or transparent texels don't darken their neighbours.
+ */
+public final class MipmapGenerator {
+
+    private static final int STRIPE_HEIGHT = 64;
+
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+    /**
+     * Linear values halfway between consecutive sRGB values, for rounding to the nearest sRGB value.
+     */
+    private static final float[] LINEAR_THRESHOLDS = new float[255];
+    /**
+     * Lowest sRGB value of each of the linear ranges splitting [0, 1], the nearest value is found from it in a few
+     * steps.
+     */
+    private static final int LINEAR_STEPS = 4096;
+    private static final byte[] LINEAR_TO_SRGB = new byte[LINEAR_STEPS + 1];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            double srgb = i / 255.0;
+            SRGB_TO_LINEAR[i] = (float) (srgb <= 0.04045 ? srgb / 12.92 : Math.pow((srgb + 0.055) / 1.055, 2.4));
+        }
+        for (int i = 0; i < 255; i++) {
+            double linear = (SRGB_TO_LINEAR[i] + SRGB_TO_LINEAR[i + 1]) * 0.5;
+            LINEAR_THRESHOLDS[i] = (float) linear;
+        }
+        for (int i = 0, srgb = 0; i <= LINEAR_STEPS; i++) {
+            float linear = (float) i / LINEAR_STEPS;
+            while (srgb < 255 && LINEAR_THRESHOLDS[srgb] < linear) srgb++;
+            LINEAR_TO_SRGB[i] = (byte) srgb;
+        }
+    }
+
+    private MipmapGenerator() {
+    }
+
+    /**
+     * @return the levels of the image, the image itself being the first one
+     */
+    public static BufferedImage[] generate(BufferedImage image, int levels) {
+        if (levels < 1) throw new IllegalArgumentException("Mipmap levels must be positive: " + levels);
+        BufferedImage[] result = new BufferedImage[levels];
+        result[0] = image;
+        for (int level = 1; level < levels; level++) {
+            result[level] = downsample(result[level - 1]);
+        }
+        return result;
+    }
+
+    /**
+     * Halves the size of an image, odd sizes being rounded down.
+     */
+    public static BufferedImage downsample(ReadOnlyImage image) {
+        int width = Math.max(image.getWidth() / 2, 1), height = Math.max(image.getHeight() / 2, 1);
+        BufferedImage result = new BufferedImage(width, height);
+        int stripes = (height + STRIPE_HEIGHT - 1) / STRIPE_HEIGHT;
+        if (stripes == 1) {
+            downsample(image, result, 0, height);
+        } else {
+            IntStream.range(0, stripes).parallel().forEach(stripe ->
+                    downsample(image, result, stripe * STRIPE_HEIGHT, Math.min(stripe * STRIPE_HEIGHT + STRIPE_HEIGHT, height)));
+        }
+        return result;
+    }
+
+    private static void downsample(ReadOnlyImage src, BufferedImage dst, int minY, int maxY) {
+        ByteBuffer pixels = src.getPixelBuffer();
+        int srcWidth = src.getWidth(), srcHeight = src.getHeight(), stride = srcWidth * Integer.BYTES;
+        for (int y = minY; y < maxY; y++) {
+            int row0 = Math.min(y * 2, srcHeight - 1) * stride, row1 = Math.min(y * 2 + 1, srcHeight - 1) * stride;
+            for (int x = 0, width = dst.getWidth(); x < width; x++) {
+                int column0 = Math.min(x * 2, srcWidth - 1) * Integer.BYTES, column1 = Math.min(x * 2 + 1, srcWidth - 1) * Integer.BYTES;
+                dst.setPixel(x, y, average(pixels.getInt(row0 + column0), pixels.getInt(row0 + column1),
+                        pixels.getInt(row1 + column0), pixels.getInt(row1 + column1)));
+            }
+        }
+    }
+
+    /**
+     * @return alpha weighted average of four RGBA colors, in linear space
+     */
+    static int average(int rgba0, int rgba1, int rgba2, int rgba3) {
+        if (rgba0 == rgba1 && rgba0 == rgba2 && rgba0 == rgba3) return rgba0;
+        int alpha0 = rgba0 & 0xFF, alpha1 = rgba1 & 0xFF, alpha2 = rgba2 & 0xFF, alpha3 = rgba3 & 0xFF;
+        int alphaSum = alpha0 + alpha1 + alpha2 + alpha3;
+        if (alphaSum == 0) {
+            // Fully transparent, the colors are still averaged since filtering may blend them with other texels.
+            alpha0 = alpha1 = alpha2 = alpha3 = 1;
+        }
+        float weightSum = alpha0 + alpha1 + alpha2 + alpha3;
+        float red = (alpha0 * linear(rgba0, 24) + alpha1 * linear(rgba1, 24) + alpha2 * linear(rgba2, 24) + alpha3 * linear(rgba3, 24)) / weightSum;
+        float green = (alpha0 * linear(rgba0, 16) + alpha1 * linear(rgba1, 16) + alpha2 * linear(rgba2, 16) + alpha3 * linear(rgba3, 16)) / weightSum;
+        float blue = (alpha0 * linear(rgba0, 8) + alpha1 * linear(rgba1, 8) + alpha2 * linear(rgba2, 8) + alpha3 * linear(rgba3, 8)) / weightSum;
+        return toSrgb(red) << 24 | toSrgb(green) << 16 | toSrgb(blue) << 8 | (alphaSum + 2) >> 2;
+    }
+
+    private static float linear(int rgba, int shift) {
+        return SRGB_TO_LINEAR[rgba >>> shift & 0xFF];
+    }
+
+    /**
+     * @return nearest sRGB value of a linear value
+     */
+    static int toSrgb(float linear) {
+        if (!(linear > 0)) return 0;
+        if (linear >= 1) return 255;
+        int srgb = LINEAR_TO_SRGB[(int) (linear * LINEAR_STEPS)] & 0xFF;
+        while (srgb < 255 && LINEAR_THRESHOLDS[srgb] < linear) srgb++;
+        return srgb;
+    }
+}
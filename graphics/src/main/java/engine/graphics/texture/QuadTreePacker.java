@@ -0,0 +1,142 @@
+package engine.graphics.texture;
+
+import engine.math.Math2;
+import org.joml.Vector2i;
+
+/**
+ * Packs each rectangle into a square region whose size is a power of two, taken from a quadtree over the atlas. The
+ * atlas grows by adding a new root whose top left child is the previous root.
+ */
+public class QuadTreePacker implements TextureAtlasBuilder.Packer {
+
+    private int size;
+    private Node root;
+    private long usedArea;
+
+    public QuadTreePacker(int size) {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.root = new Node(size);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public float getOccupancy() {
+        return (float) ((double) usedArea / ((long) size * size));
+    }
+
+    @Override
+    public Vector2i pack(int width, int height, Vector2i dest) {
+        // Each rectangle occupies an area which size is power of two.
+        var regionSize = Math2.ceilPowerOfTwo(Math.max(width, height));
+        var node = root.requestNode(regionSize);
+        if (node == null) {
+            resize(regionSize);
+            node = root.requestNode(regionSize);
+        }
+        node.use();
+        usedArea += (long) width * height;
+        return dest.set(node.x, node.y);
+    }
+
+    private void resize(int requiredSize) {
+        int factor = (int) Math.ceil(1D * requiredSize / size);
+        for (int i = 0; i < factor; i++) {
+            size *= 2;
+            var newRoot = new Node(size);
+            newRoot.setChild(Node.TOP_LEFT, root);
+            root = newRoot;
+        }
+    }
+
+    private static final class Node {
+        private static final int TOP_LEFT = 0;
+        private static final int TOP_RIGHT = 1;
+        private static final int BOTTOM_LEFT = 2;
+        private static final int BOTTOM_RIGHT = 3;
+
+        private Node parent;
+        private final int x;
+        private final int y;
+        private final int size;
+
+        private boolean used;
+        private Node[] children;
+
+        private Node(int size) {
+            this(null, 0, 0, size);
+        }
+
+        private Node(Node parent, int x, int y, int size) {
+            this.parent = parent;
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        private void use() {
+            used = true;
+            if (parent != null) parent.notifyChildUsed();
+        }
+
+        private boolean hasChildren() {
+            return children != null;
+        }
+
+        private void notifyChildUsed() {
+            for (var child : children)
+                if (child == null || !child.used) return;
+            used = true;
+            if (parent != null) parent.notifyChildUsed();
+        }
+
+        private Node requestNode(int requestSize) {
+            if (used) return null;
+
+            if (this.size == requestSize && !hasChildren()) {
+                return this;
+            }
+
+            if (this.size < requestSize) return null;
+
+            if (children == null) children = new Node[4];
+
+            for (int i = 0; i < children.length; i++) {
+                var child = getChild(i);
+                if (child.used) continue;
+
+                var node = child.requestNode(requestSize);
+                if (node != null) return node;
+            }
+            return null;
+        }
+
+        private Node getChild(int index) {
+            var child = children[index];
+            if (child != null) return child;
+
+            var childSize = size / 2;
+            if (index == TOP_LEFT)
+                child = new Node(this, x, y, childSize);
+            else if (index == TOP_RIGHT)
+                child = new Node(this, x + childSize, y, childSize);
+            else if (index == BOTTOM_LEFT)
+                child = new Node(this, x, y + childSize, childSize);
+            else if (index == BOTTOM_RIGHT)
+                child = new Node(this, x + childSize, y + childSize, childSize);
+            return children[index] = child;
+        }
+
+        private void setChild(int index, Node child) {
+            if (children == null) children = new Node[4];
+            children[index] = child;
+            child.parent = this;
+        }
+    }
+}
@@ -42,6 +42,14 @@ public interface Texture2D extends Texture {
 
         Builder generateMipmap();
 
+        /**
+         * Allocates mipmap levels to be uploaded by {@link Texture2D#upload(int, ReadOnlyImage)}, instead of being
+         * generated.
+         *
+         * @param levels number of levels, including the base level
+         */
+        Builder mipmapLevels(int levels);
+
         Builder borderColor(Color color);
 
         Texture2D build();
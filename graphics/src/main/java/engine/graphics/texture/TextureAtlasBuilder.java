@@ -2,209 +2,255 @@ package engine.graphics.texture;
 
 import engine.graphics.image.BufferedImage;
 import engine.graphics.image.ReadOnlyImage;
-import engine.math.Math2;
-
+import org.apache.commons.lang3.Validate;
+import org.joml.Vector2i;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Packs images into a square atlas whose size is a power of two.
+ * <p>
+ * Images are only collected by {@link #add(ReadOnlyImage)}, they are packed and copied into the atlas by
+ * {@link #finish()}. Packing goes from the image with the longest side to the one with the shortest, and keeps the
+ * order in which images were added for images of the same size, so the layout only depends on the added images and
+ * their order. Copying is split into stripes of rows which are filled in parallel.
+ * <p>
+ * Where images are placed is decided by a {@link Packer}, the {@link QuadTreePacker} by default. The
+ * {@link MaxRectsPacker} fills the atlas more densely when images aren't squares of power of two sizes.
+ * <p>
+ * Images can be surrounded by a {@link #setPadding(int) padding} filled with their edge texels, so that mipmap levels
+ * don't blend neighbouring images. The {@link #getMipmap(int) mipmap levels} are generated by {@link MipmapGenerator},
+ * only as many as the padding allows: the padding of the last level is at least a texel wide.
+ */
 public class TextureAtlasBuilder {
 
-    private BufferedImage result;
-    private int size;
+    private static final int STRIPE_HEIGHT = 64;
+
+    private static final Comparator<Entry> PACKING_ORDER = Comparator
+            .comparingInt((Entry entry) -> Math.max(entry.image.getWidth(), entry.image.getHeight()))
+            .thenComparingInt(entry -> Math.min(entry.image.getWidth(), entry.image.getHeight()))
+            .reversed();
 
-    private Node root;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Packer packer;
+
+    private int padding;
+    private int maxMipmapLevels = 1;
+
+    private BufferedImage result;
+    private BufferedImage[] mipmaps;
+
+    /**
+     * Decides where the rectangles of the images are placed in the atlas.
+     */
+    public interface Packer {
+        /**
+         * @return current size of the atlas, a power of two
+         */
+        int getSize();
+
+        /**
+         * @return ratio of the area of the atlas covered by packed rectangles
+         */
+        float getOccupancy();
+
+        /**
+         * Places a rectangle without overlapping the previous ones, growing the atlas when there is no place left.
+         *
+         * @return dest, set to the position of the rectangle
+         */
+        Vector2i pack(int width, int height, Vector2i dest);
+    }
 
     public TextureAtlasBuilder() {
         this(512);
     }
 
     public TextureAtlasBuilder(int size) {
-        this.size = size;
-        this.result = new BufferedImage(size);
-        this.root = new Node(size);
+        this(new QuadTreePacker(size));
+    }
+
+    public TextureAtlasBuilder(Packer packer) {
+        this.packer = Validate.notNull(packer);
     }
 
+    /**
+     * @return the atlas, only available after {@link #finish()}
+     */
     public BufferedImage getResult() {
         return result;
     }
 
-    public int getSize() {
-        return size;
+    /**
+     * @return the mipmap level of the atlas, only available after {@link #finish()}
+     */
+    public BufferedImage getMipmap(int level) {
+        return mipmaps[level];
     }
 
-    public TexCoord add(ReadOnlyImage image) {
-        // Each image occupies an area which size is power of two.
-        var regionSize = Math2.ceilPowerOfTwo(Math.max(image.getWidth(), image.getHeight()));
-        var node = root.requestNode(image, regionSize);
-        if (node == null) {
-            resize(regionSize);
-            node = root.requestNode(image, regionSize);
-        }
-        result.setImage(node.getX(), node.getY(), image);
-        return node.getUv();
+    /**
+     * @return number of mipmap levels of the atlas, including the atlas itself
+     */
+    public int getMipmapLevels() {
+        return Math.min(maxMipmapLevels, padding == 0 ? 1 : 32 - Integer.numberOfLeadingZeros(padding));
     }
 
-    private void resize(int requiredSize) {
-        int factor = (int) Math.ceil(1D * requiredSize / size);
-        for (int i = 0; i < factor; i++) {
-            size *= 2;
-            var newRoot = new Node(size);
-            newRoot.setChild(Node.TOP_LEFT, root);
-            root = newRoot;
-        }
-        result = BufferedImage.resize(result, size);
+    public int getPadding() {
+        return padding;
     }
 
-    public void finish() {
-        root.resizeUv(0, 0, 1, 1);
+    /**
+     * @param padding width in texels of the border around each image, filled by repeating the edge of the image
+     */
+    public void setPadding(int padding) {
+        if (padding < 0) throw new IllegalArgumentException("Padding must not be negative: " + padding);
+        this.padding = padding;
     }
 
-    public void dispose() {
-        result = null;
+    public int getMaxMipmapLevels() {
+        return maxMipmapLevels;
     }
 
-    public static final class TexCoord {
-        private float minU;
-        private float minV;
-        private float maxU;
-        private float maxV;
-
-        public float getMinU() {
-            return minU;
-        }
-
-        public float getMinV() {
-            return minV;
-        }
-
-        public float getMaxU() {
-            return maxU;
-        }
-
-        public float getMaxV() {
-            return maxV;
-        }
+    /**
+     * @param maxMipmapLevels number of mipmap levels to generate including the atlas itself, limited by the padding
+     */
+    public void setMaxMipmapLevels(int maxMipmapLevels) {
+        if (maxMipmapLevels < 1) throw new IllegalArgumentException("Mipmap levels must be positive: " + maxMipmapLevels);
+        this.maxMipmapLevels = maxMipmapLevels;
     }
 
-    public static class Node {
-        private static final int TOP_LEFT = 0;
-        private static final int TOP_RIGHT = 1;
-        private static final int BOTTOM_LEFT = 2;
-        private static final int BOTTOM_RIGHT = 3;
-
-        private Node parent;
-        private int x;
-        private int y;
-        private int size;
-
-        private TexCoord uv;
+    public int getSize() {
+        return packer.getSize();
+    }
 
-        private boolean used;
-        private Node[] children;
+    /**
+     * @return ratio of the area of the atlas covered by images
+     */
+    public float getOccupancy() {
+        return packer.getOccupancy();
+    }
 
-        private Node(int size) {
-            this(null, 0, 0, size);
-        }
+    /**
+     * Adds an image to the atlas.
+     *
+     * @return texture coordinates of the image, only set after {@link #finish()}
+     */
+    public TexCoord add(ReadOnlyImage image) {
+        var entry = new Entry(image);
+        entries.add(entry);
+        return entry.uv;
+    }
 
-        private Node(Node parent, int x, int y, int size) {
-            this.parent = parent;
-            this.x = x;
-            this.y = y;
-            this.size = size;
+    /**
+     * Packs the added images, copies them into the atlas and generates its mipmap levels.
+     */
+    public void finish() {
+        int levels = getMipmapLevels();
+        // Regions are aligned to the texels of the last level, so that a texel never covers two regions.
+        int alignment = 1 << levels - 1;
+        entries.sort(PACKING_ORDER);
+        var position = new Vector2i();
+        for (var entry : entries) {
+            entry.width = align(entry.image.getWidth() + padding * 2, alignment);
+            entry.height = align(entry.image.getHeight() + padding * 2, alignment);
+            packer.pack(entry.width, entry.height, position);
+            entry.x = position.x;
+            entry.y = position.y;
         }
 
-        public int getX() {
-            return x;
+        int size = packer.getSize();
+        for (var entry : entries) {
+            var uv = entry.uv;
+            uv.minU = (float) (entry.x + padding) / size;
+            uv.minV = (float) (entry.y + padding) / size;
+            uv.maxU = (float) (entry.x + padding + entry.image.getWidth()) / size;
+            uv.maxV = (float) (entry.y + padding + entry.image.getHeight()) / size;
         }
 
-        public int getY() {
-            return y;
+        result = new BufferedImage(size);
+        int stripes = (size + STRIPE_HEIGHT - 1) / STRIPE_HEIGHT;
+        if (stripes == 1) {
+            copyStripe(0);
+        } else {
+            IntStream.range(0, stripes).parallel().forEach(this::copyStripe);
         }
+        mipmaps = MipmapGenerator.generate(result, levels);
+    }
 
-        public int getSize() {
-            return size;
-        }
+    private static int align(int value, int alignment) {
+        return (value + alignment - 1) & -alignment;
+    }
 
-        public TexCoord getUv() {
-            if (uv == null) {
-                uv = new TexCoord();
-                used = true;
-                if (parent != null) parent.notifyChildUsed();
+    private void copyStripe(int stripe) {
+        int minY = stripe * STRIPE_HEIGHT, maxY = Math.min(minY + STRIPE_HEIGHT, result.getHeight());
+        for (var entry : entries) {
+            int regionMinY = Math.max(minY, entry.y), regionMaxY = Math.min(maxY, entry.y + entry.height);
+            if (regionMinY >= regionMaxY) continue;
+            var image = entry.image;
+            int imageWidth = image.getWidth(), imageHeight = image.getHeight();
+            int imageX = entry.x + padding, imageY = entry.y + padding;
+            if (entry.width == imageWidth && entry.height == imageHeight) {
+                result.setImage(imageX, regionMinY, image, 0, regionMinY - imageY, imageWidth, regionMaxY - imageY);
+                continue;
+            }
+            // Extrudes the edges of the image to the whole region.
+            var pixels = image.getPixelBuffer();
+            int rightPadding = entry.x + entry.width - imageX - imageWidth;
+            for (int y = regionMinY; y < regionMaxY; y++) {
+                int srcY = Math.max(0, Math.min(y - imageY, imageHeight - 1));
+                result.setImage(imageX, y, image, 0, srcY, imageWidth, srcY + 1);
+                if (padding > 0) {
+                    result.setPixel(entry.x, y, padding, 1, pixels.getInt(srcY * imageWidth * Integer.BYTES));
+                }
+                if (rightPadding > 0) {
+                    result.setPixel(imageX + imageWidth, y, rightPadding, 1, pixels.getInt(((srcY + 1) * imageWidth - 1) * Integer.BYTES));
+                }
             }
-            return uv;
         }
+    }
 
-        private boolean isUsed() {
-            return used;
-        }
+    public void dispose() {
+        result = null;
+        mipmaps = null;
+        entries.clear();
+    }
 
-        private boolean hasChildren() {
-            return children != null;
-        }
+    private static final class Entry {
+        private final ReadOnlyImage image;
+        private final TexCoord uv = new TexCoord();
+        private int x;
+        private int y;
+        private int width;
+        private int height;
 
-        private void notifyChildUsed() {
-            for (var child : children)
-                if (child == null || !child.isUsed()) return;
-            used = true;
+        private Entry(ReadOnlyImage image) {
+            this.image = image;
         }
+    }
 
-        private void resizeUv(float minU, float minV, float maxU, float maxV) {
-            if (uv != null) {
-                uv.minU = minU;
-                uv.minV = minV;
-                uv.maxU = maxU;
-                uv.maxV = maxV;
-            }
-
-            if (children == null) return;
-            float midU = (maxU + minU) / 2;
-            float midV = (maxV + minV) / 2;
-            resizeChildUv(children[TOP_LEFT], minU, minV, midU, midV);
-            resizeChildUv(children[TOP_RIGHT], midU, minV, maxU, midV);
-            resizeChildUv(children[BOTTOM_LEFT], minU, midV, midU, maxV);
-            resizeChildUv(children[BOTTOM_RIGHT], midU, midV, maxU, maxV);
-        }
+    public static final class TexCoord {
+        private float minU;
+        private float minV;
+        private float maxU;
+        private float maxV;
 
-        private void resizeChildUv(Node child, float minU, float minV, float maxU, float maxV) {
-            if (child == null) return;
-            child.resizeUv(minU, minV, maxU, maxV);
+        public float getMinU() {
+            return minU;
         }
 
-        private Node requestNode(ReadOnlyImage image, int requestSize) {
-            if (this.size == requestSize && !hasChildren()) {
-                return this;
-            }
-
-            if (this.size < requestSize) return null;
-
-            if (children == null) children = new Node[4];
-
-            for (int i = 0; i < children.length; i++) {
-                var child = getChild(i);
-                if (child.isUsed()) continue;
-
-                var node = child.requestNode(image, requestSize);
-                if (node != null) return node;
-            }
-            return null;
+        public float getMinV() {
+            return minV;
         }
 
-        private Node getChild(int index) {
-            var child = children[index];
-            if (child != null) return child;
-
-            var childSize = size / 2;
-            if (index == TOP_LEFT)
-                child = new Node(this, x, y, childSize);
-            else if (index == TOP_RIGHT)
-                child = new Node(this, x + childSize, y, childSize);
-            else if (index == BOTTOM_LEFT)
-                child = new Node(this, x, y + childSize, childSize);
-            else if (index == BOTTOM_RIGHT)
-                child = new Node(this, x + childSize, y + childSize, childSize);
-            return children[index] = child;
+        public float getMaxU() {
+            return maxU;
         }
 
-        private void setChild(int index, Node child) {
-            if (children == null) children = new Node[4];
-            children[index] = child;
+        public float getMaxV() {
+            return maxV;
         }
     }
 }
@@ -1,5 +1,6 @@
 package engine.graphics.vertex;
 
+import engine.graphics.util.DataType;
 import engine.math.Math2;
 import engine.util.Color;
 import org.joml.Vector2fc;
@@ -91,6 +92,15 @@ public abstract class VertexDataBuf {
         ready = true;
     }
 
+    /**
+     * Drops the vertexes put since {@link #begin(VertexFormat)}, so that the buffer can begin again.
+     */
+    public void discard() {
+        byteBuffer.clear();
+        vertexCount = 0;
+        ready = true;
+    }
+
     public void ensureCapacity(int minCapacity) {
         if (minCapacity > byteBuffer.capacity()) {
             int newCapacity = byteBuffer.capacity() << 1;
@@ -234,9 +244,16 @@ public abstract class VertexDataBuf {
 
     public VertexDataBuf pos(float x, float y, float z) {
         if (vertexFormat.isUsingPosition()) {
-            byteBuffer.putFloat(x + translationX);
-            byteBuffer.putFloat(y + translationY);
-            byteBuffer.putFloat(z + translationZ);
+            if (vertexFormat.getPositionType() == DataType.SHORT) {
+                byteBuffer.putShort(VertexPacking.packPosition(x + translationX));
+                byteBuffer.putShort(VertexPacking.packPosition(y + translationY));
+                byteBuffer.putShort(VertexPacking.packPosition(z + translationZ));
+                byteBuffer.putShort(VertexPacking.POSITION_SCALE);
+            } else {
+                byteBuffer.putFloat(x + translationX);
+                byteBuffer.putFloat(y + translationY);
+                byteBuffer.putFloat(z + translationZ);
+            }
         }
         return this;
     }
@@ -269,29 +286,29 @@ public abstract class VertexDataBuf {
     }
 
     public VertexDataBuf rgb(float r, float g, float b) {
-        if (vertexFormat.isUsingColor()) {
-            byteBuffer.putFloat(r);
-            byteBuffer.putFloat(g);
-            byteBuffer.putFloat(b);
-            if (vertexFormat.isUsingAlpha()) {
-                byteBuffer.putFloat(1f);
-            }
-        }
-        return this;
+        return rgba(r, g, b, 1f);
     }
 
     public VertexDataBuf rgba(float r, float g, float b, float a) {
         if (vertexFormat.isUsingColor()) {
-            byteBuffer.putFloat(r);
-            byteBuffer.putFloat(g);
-            byteBuffer.putFloat(b);
+            putColor(r);
+            putColor(g);
+            putColor(b);
             if (vertexFormat.isUsingAlpha()) {
-                byteBuffer.putFloat(a);
+                putColor(a);
             }
         }
         return this;
     }
 
+    private void putColor(float value) {
+        if (vertexFormat.getColorType() == DataType.UNSIGNED_BYTE) {
+            byteBuffer.put(VertexPacking.packUnorm8(value));
+        } else {
+            byteBuffer.putFloat(value);
+        }
+    }
+
     public VertexDataBuf rgb(float[] array, int start) {
         return rgb(array[start], array[start + 1], array[start + 2]);
     }
@@ -306,8 +323,13 @@ public abstract class VertexDataBuf {
 
     public VertexDataBuf tex(float u, float v) {
         if (vertexFormat.isUsingTexCoord()) {
-            byteBuffer.putFloat(u);
-            byteBuffer.putFloat(v);
+            if (vertexFormat.getTexCoordType() == DataType.UNSIGNED_SHORT) {
+                byteBuffer.putShort(VertexPacking.packUnorm16(u));
+                byteBuffer.putShort(VertexPacking.packUnorm16(v));
+            } else {
+                byteBuffer.putFloat(u);
+                byteBuffer.putFloat(v);
+            }
         }
         return this;
     }
@@ -322,9 +344,16 @@ public abstract class VertexDataBuf {
 
     public VertexDataBuf normal(float nx, float ny, float nz) {
         if (vertexFormat.isUsingNormal()) {
-            byteBuffer.putFloat(nx);
-            byteBuffer.putFloat(ny);
-            byteBuffer.putFloat(nz);
+            if (vertexFormat.getNormalType() == DataType.BYTE) {
+                byteBuffer.put(VertexPacking.packSnorm8(nx));
+                byteBuffer.put(VertexPacking.packSnorm8(ny));
+                byteBuffer.put(VertexPacking.packSnorm8(nz));
+                byteBuffer.put((byte) 0);
+            } else {
+                byteBuffer.putFloat(nx);
+                byteBuffer.putFloat(ny);
+                byteBuffer.putFloat(nz);
+            }
         }
         return this;
     }
@@ -367,6 +396,20 @@ public abstract class VertexDataBuf {
         return bitangent(array[start], array[start + 1], array[start + 2]);
     }
 
+    /**
+     * @param width  width of the region, 0 if the texture coordinate doesn't repeat
+     * @param height height of the region
+     */
+    public VertexDataBuf texRegion(float minU, float minV, float width, float height) {
+        if (vertexFormat.isUsingTexRegion()) {
+            byteBuffer.putFloat(minU);
+            byteBuffer.putFloat(minV);
+            byteBuffer.putFloat(width);
+            byteBuffer.putFloat(height);
+        }
+        return this;
+    }
+
     public VertexDataBuf endVertex() {
         if (byteBuffer.position() % vertexFormat.getBytes() != 0) {
             throw new IllegalStateException("Invalid vertex data");
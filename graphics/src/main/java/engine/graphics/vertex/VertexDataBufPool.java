@@ -1,24 +1,64 @@
 package engine.graphics.vertex;
 
-import com.google.common.collect.Sets;
-
 import javax.annotation.concurrent.ThreadSafe;
-import java.util.Comparator;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Pool of vertex data buffers, grouped into power of two size classes by capacity.
+ * <p>
+ * A request is served by the smallest free buffer of at least the requested capacity, first from a cache of the
+ * calling thread, which holds at most one buffer per size class, then from the lock-free free list of each size class.
+ * A new buffer is created if neither the buffer count limit nor the memory budget is exceeded, otherwise a smaller
+ * buffer is handed out, or the caller waits for a buffer to be freed.
+ * <p>
+ * Buffers grow while in use, the memory budget is checked against their capacity again when they are freed, and
+ * buffers which no longer fit in the budget are disposed.
+ */
 @ThreadSafe
 public abstract class VertexDataBufPool {
 
-    private final Set<VertexDataBuf> buffers = Sets.newConcurrentHashSet();
-    private final Queue<VertexDataBuf> availableBuffers = new PriorityQueue<>(11, Comparator.comparingInt(o -> -o.getByteBuffer().capacity()));
+    private static final int SIZE_CLASS_COUNT = Integer.SIZE;
+
+    /**
+     * All buffers of this pool, to their capacity counted in the allocated bytes.
+     */
+    private final Map<VertexDataBuf, Integer> buffers = new ConcurrentHashMap<>();
+    private final List<ConcurrentLinkedDeque<VertexDataBuf>> freeLists = new ArrayList<>(SIZE_CLASS_COUNT);
+    /**
+     * Caches of the threads getting buffers, so that a thread which only frees buffers doesn't hold any.
+     */
+    private final ThreadLocal<VertexDataBuf[]> threadCaches = new ThreadLocal<>();
+
+    private final Object exhausted = new Object();
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final AtomicInteger bufferCount = new AtomicInteger();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private final AtomicLong peakBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     private final int bufferInitialCapacity;
     private final int poolCapacity;
+    private final long memoryBudget;
 
     public static VertexDataBufPool create(int bufferInitialCapacity, int poolCapacity) {
-        return new DirectBufferPool(bufferInitialCapacity, poolCapacity);
+        return create(bufferInitialCapacity, poolCapacity, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param poolCapacity maximum number of buffers
+     * @param memoryBudget maximum total capacity of the buffers in bytes
+     */
+    public static VertexDataBufPool create(int bufferInitialCapacity, int poolCapacity, long memoryBudget) {
+        return new DirectBufferPool(bufferInitialCapacity, poolCapacity, memoryBudget);
     }
 
     public static VertexDataBufPool create() {
@@ -26,8 +66,16 @@ public abstract class VertexDataBufPool {
     }
 
     protected VertexDataBufPool(int bufferInitialCapacity, int poolCapacity) {
+        this(bufferInitialCapacity, poolCapacity, Long.MAX_VALUE);
+    }
+
+    protected VertexDataBufPool(int bufferInitialCapacity, int poolCapacity, long memoryBudget) {
         this.bufferInitialCapacity = bufferInitialCapacity;
         this.poolCapacity = poolCapacity;
+        this.memoryBudget = memoryBudget;
+        for (int i = 0; i < SIZE_CLASS_COUNT; i++) {
+            freeLists.add(new ConcurrentLinkedDeque<>());
+        }
     }
 
     public VertexDataBuf get() throws InterruptedException {
@@ -35,20 +83,32 @@ public abstract class VertexDataBufPool {
     }
 
     public VertexDataBuf get(int capacity) throws InterruptedException {
-        while (true) {
-            synchronized (availableBuffers) {
-                VertexDataBuf buffer = availableBuffers.poll();
-                if (buffer != null) {
-                    return buffer;
-                }
+        int sizeClass = ceilSizeClass(capacity);
+        VertexDataBuf buffer = pollThreadCache(sizeClass);
+        if (buffer == null) buffer = pollFreeLists(sizeClass, SIZE_CLASS_COUNT);
+        if (buffer != null) {
+            hits.increment();
+            return buffer;
+        }
 
-                if (buffers.size() < poolCapacity) {
-                    buffer = createBuffer(capacity);
-                    buffers.add(buffer);
-                    return buffer;
-                }
+        misses.increment();
+        buffer = tryCreateBuffer(capacity);
+        if (buffer != null) return buffer;
 
-                availableBuffers.wait();
+        while (true) {
+            buffer = pollThreadCache(0);
+            if (buffer == null) buffer = pollFreeLists(0, SIZE_CLASS_COUNT);
+            if (buffer != null) return buffer;
+            synchronized (exhausted) {
+                waiters.incrementAndGet();
+                try {
+                    buffer = pollFreeLists(0, SIZE_CLASS_COUNT);
+                    if (buffer == null) buffer = tryCreateBuffer(capacity);
+                    if (buffer != null) return buffer;
+                    exhausted.wait();
+                } finally {
+                    waiters.decrementAndGet();
+                }
             }
         }
     }
@@ -56,26 +116,154 @@ public abstract class VertexDataBufPool {
     protected abstract VertexDataBuf createBuffer(int initialCapacity);
 
     public void free(VertexDataBuf buffer) {
-        if (!buffers.contains(buffer)) {
+        Integer countedCapacity = buffers.get(buffer);
+        if (countedCapacity == null) {
             throw new IllegalArgumentException("The buffer doesn't belong to this pool.");
         }
-        synchronized (availableBuffers) {
-            availableBuffers.offer(buffer);
-            availableBuffers.notify();
+        int capacity = buffer.byteBuffer.capacity();
+        if (capacity != countedCapacity) {
+            buffers.put(buffer, capacity);
+            updatePeakBytes(allocatedBytes.addAndGet(capacity - countedCapacity));
+        }
+
+        if (allocatedBytes.get() > memoryBudget) {
+            disposeBuffer(buffer);
+        } else {
+            int sizeClass = floorSizeClass(capacity);
+            VertexDataBuf[] cache = threadCaches.get();
+            if (cache != null && cache[sizeClass] == null && waiters.get() == 0) {
+                cache[sizeClass] = buffer;
+                return;
+            }
+            freeLists.get(sizeClass).push(buffer);
+        }
+        if (waiters.get() > 0) {
+            synchronized (exhausted) {
+                exhausted.notifyAll();
+            }
         }
     }
 
+    /**
+     * Disposes the free buffers and detaches the buffers in use from this pool. Buffers in the caches of other threads
+     * are disposed when those threads next get a buffer.
+     */
     public void clear() {
-        synchronized (availableBuffers) {
-            availableBuffers.clear();
-            buffers.clear();
+        threadCaches.remove();
+        for (ConcurrentLinkedDeque<VertexDataBuf> freeList : freeLists) {
+            VertexDataBuf buffer;
+            while ((buffer = freeList.poll()) != null) {
+                buffer.dispose();
+            }
         }
+        buffers.clear();
+        bufferCount.set(0);
+        allocatedBytes.set(0);
+    }
+
+    /**
+     * @return number of requests served by a free buffer
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of requests which found no free buffer of the requested size
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int getBufferCount() {
+        return bufferCount.get();
+    }
+
+    /**
+     * @return total capacity of the buffers of this pool in bytes, as of their last creation or release
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public long getPeakBytes() {
+        return peakBytes.get();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    private VertexDataBuf pollThreadCache(int sizeClass) {
+        VertexDataBuf[] cache = threadCaches.get();
+        if (cache == null) {
+            threadCaches.set(new VertexDataBuf[SIZE_CLASS_COUNT]);
+            return null;
+        }
+        for (int i = sizeClass; i < SIZE_CLASS_COUNT; i++) {
+            VertexDataBuf buffer = cache[i];
+            if (buffer == null) continue;
+            cache[i] = null;
+            if (buffers.containsKey(buffer)) return buffer;
+            buffer.dispose(); // Cached before the pool was cleared.
+        }
+        return null;
+    }
+
+    private VertexDataBuf pollFreeLists(int fromSizeClass, int toSizeClass) {
+        for (int i = fromSizeClass; i < toSizeClass; i++) {
+            VertexDataBuf buffer = freeLists.get(i).poll();
+            if (buffer != null) return buffer;
+        }
+        return null;
+    }
+
+    private VertexDataBuf tryCreateBuffer(int capacity) {
+        if (bufferCount.incrementAndGet() > poolCapacity) {
+            bufferCount.decrementAndGet();
+            return null;
+        }
+        long bytes = allocatedBytes.addAndGet(capacity);
+        if (bytes > memoryBudget && bytes > capacity) { // A single buffer may exceed the budget.
+            allocatedBytes.addAndGet(-capacity);
+            bufferCount.decrementAndGet();
+            return null;
+        }
+        VertexDataBuf buffer = createBuffer(capacity);
+        int actualCapacity = buffer.byteBuffer.capacity();
+        if (actualCapacity != capacity) {
+            bytes = allocatedBytes.addAndGet(actualCapacity - capacity);
+        }
+        updatePeakBytes(bytes);
+        buffers.put(buffer, actualCapacity);
+        return buffer;
+    }
+
+    private void disposeBuffer(VertexDataBuf buffer) {
+        Integer capacity = buffers.remove(buffer);
+        if (capacity == null) return;
+        bufferCount.decrementAndGet();
+        allocatedBytes.addAndGet(-capacity);
+        buffer.dispose();
+    }
+
+    private void updatePeakBytes(long bytes) {
+        long peak;
+        while (bytes > (peak = peakBytes.get()) && !peakBytes.compareAndSet(peak, bytes)) ;
+    }
+
+    private static int floorSizeClass(int capacity) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(capacity, 1));
+    }
+
+    private static int ceilSizeClass(int capacity) {
+        return capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(capacity - 1);
     }
 
     private static class DirectBufferPool extends VertexDataBufPool {
 
-        private DirectBufferPool(int bufferInitialCapacity, int poolCapacity) {
-            super(bufferInitialCapacity, poolCapacity);
+        private DirectBufferPool(int bufferInitialCapacity, int poolCapacity, long memoryBudget) {
+            super(bufferInitialCapacity, poolCapacity, memoryBudget);
         }
 
         @Override
@@ -16,6 +16,7 @@ public final class VertexElement {
     public static final String NAME_NORMAL = "Normal";
     public static final String NAME_TANGENT = "Tangent";
     public static final String NAME_BITANGENT = "Bitangent";
+    public static final String NAME_TEX_REGION = "TexRegion";
     public static final String NAME_UNKNOWN = "Unknown";
 
     public static final VertexElement POSITION = new VertexElement(DataType.FLOAT, NAME_POSITION, 3);
@@ -25,6 +26,21 @@ public final class VertexElement {
     public static final VertexElement NORMAL = new VertexElement(DataType.FLOAT, NAME_NORMAL, 3, true);
     public static final VertexElement TANGENT = new VertexElement(DataType.FLOAT, NAME_TANGENT, 3, true);
     public static final VertexElement BITANGENT = new VertexElement(DataType.FLOAT, NAME_BITANGENT, 3, true);
+    /**
+     * Texture region (min u, min v, width, height) which the texture coordinate repeats in, for tiled quads.
+     */
+    public static final VertexElement TEX_REGION = new VertexElement(DataType.FLOAT, NAME_TEX_REGION, 4);
+    /**
+     * Position in fixed point, see {@link VertexPacking#POSITION_SCALE}. The fourth component holds the scale, so the
+     * shader gets the position with {@code a_Position.xyz / a_Position.w}.
+     */
+    public static final VertexElement POSITION_PACKED = new VertexElement(DataType.SHORT, NAME_POSITION, 4);
+    public static final VertexElement COLOR_RGBA_PACKED = new VertexElement(DataType.UNSIGNED_BYTE, NAME_COLOR, 4, true);
+    public static final VertexElement TEX_COORD_PACKED = new VertexElement(DataType.UNSIGNED_SHORT, NAME_TEX_COORD, 2, true);
+    /**
+     * Normal in signed bytes, the fourth byte pads the element to 4 bytes.
+     */
+    public static final VertexElement NORMAL_PACKED = new VertexElement(DataType.BYTE, NAME_NORMAL, 4, true);
 
     private final DataType type;
     private final String name;
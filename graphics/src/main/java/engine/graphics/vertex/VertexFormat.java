@@ -31,6 +31,14 @@ public final class VertexFormat {
             of(POSITION_COLOR_TEX_COORD, VertexElement.NORMAL);
     public static final VertexFormat POSITION_COLOR_ALPHA_TEX_COORD_NORMAL =
             of(POSITION_COLOR_ALPHA_TEX_COORD, VertexElement.NORMAL);
+    public static final VertexFormat POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_TEX_REGION =
+            of(POSITION_COLOR_ALPHA_TEX_COORD_NORMAL, VertexElement.TEX_REGION);
+    /**
+     * Compact layout of {@link #POSITION_COLOR_ALPHA_TEX_COORD_NORMAL} in 20 bytes instead of 48, see {@link VertexPacking}.
+     * Positions must be within the range of {@link VertexPacking#packPosition(float)}, and texture coordinates within [0, 1].
+     */
+    public static final VertexFormat POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_PACKED =
+            of(VertexElement.POSITION_PACKED, VertexElement.COLOR_RGBA_PACKED, VertexElement.TEX_COORD_PACKED, VertexElement.NORMAL_PACKED);
 
     private final VertexElement[] elements;
     private final Entry[] entries;
@@ -45,6 +53,12 @@ public final class VertexFormat {
     private boolean usingTangent;
     private boolean usingBitangent;
     private boolean usingAlpha;
+    private boolean usingTexRegion;
+
+    private DataType positionType;
+    private DataType colorType;
+    private DataType texCoordType;
+    private DataType normalType;
 
     public static VertexFormat of(VertexElement... elements) {
         return new VertexFormat(elements);
@@ -89,16 +103,20 @@ public final class VertexFormat {
         switch (element.getName()) {
             case NAME_POSITION:
                 usingPosition = true;
+                positionType = element.getType();
                 break;
             case NAME_COLOR:
                 usingColor = true;
                 usingAlpha |= element.getComponentCount() == 4;
+                colorType = element.getType();
                 break;
             case NAME_TEX_COORD:
                 usingTexCoord = true;
+                texCoordType = element.getType();
                 break;
             case NAME_NORMAL:
                 usingNormal = true;
+                normalType = element.getType();
                 break;
             case NAME_TANGENT:
                 usingTangent = true;
@@ -106,6 +124,9 @@ public final class VertexFormat {
             case NAME_BITANGENT:
                 usingBitangent = true;
                 break;
+            case NAME_TEX_REGION:
+                usingTexRegion = true;
+                break;
         }
     }
 
@@ -170,6 +191,26 @@ public final class VertexFormat {
         return usingBitangent;
     }
 
+    public boolean isUsingTexRegion() {
+        return usingTexRegion;
+    }
+
+    public DataType getPositionType() {
+        return positionType;
+    }
+
+    public DataType getColorType() {
+        return colorType;
+    }
+
+    public DataType getTexCoordType() {
+        return texCoordType;
+    }
+
+    public DataType getNormalType() {
+        return normalType;
+    }
+
     @Override
     public String toString() {
         return "VertexFormat{" +
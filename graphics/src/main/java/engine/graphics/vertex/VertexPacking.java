@@ -0,0 +1,57 @@
+package engine.graphics.vertex;
+
+/**
+ * Encoding of the packed vertex elements, such as {@link VertexElement#POSITION_PACKED}.
+ * <p>
+ * Normalized values are encoded as OpenGL converts them back, an unsigned value {@code c} of {@code b} bits to
+ * {@code c / (2^b - 1)}, a signed value to {@code max(c / (2^(b-1) - 1), -1)}.
+ */
+public final class VertexPacking {
+
+    /**
+     * Fixed point scale of packed positions, positions in [-128, 128) are representable with a precision of 1/256.
+     */
+    public static final short POSITION_SCALE = 256;
+
+    /**
+     * @return position in fixed point, clamped to the representable range
+     */
+    public static short packPosition(float value) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value * POSITION_SCALE)));
+    }
+
+    public static float unpackPosition(short value) {
+        return (float) value / POSITION_SCALE;
+    }
+
+    public static byte packUnorm8(float value) {
+        return (byte) Math.round(clamp(value, 0, 1) * 255);
+    }
+
+    public static float unpackUnorm8(byte value) {
+        return (value & 0xFF) / 255f;
+    }
+
+    public static short packUnorm16(float value) {
+        return (short) Math.round(clamp(value, 0, 1) * 65535);
+    }
+
+    public static float unpackUnorm16(short value) {
+        return (value & 0xFFFF) / 65535f;
+    }
+
+    public static byte packSnorm8(float value) {
+        return (byte) Math.round(clamp(value, -1, 1) * 127);
+    }
+
+    public static float unpackSnorm8(byte value) {
+        return Math.max(value / 127f, -1f);
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private VertexPacking() {
+    }
+}
@@ -0,0 +1,28 @@
+package engine.graphics.font;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextMeshTest {
+
+    @Test
+    void meshIsStaleAfterGlyphEvictions() {
+        var generation = new AtomicInteger(3);
+        var mesh = new TextMesh("a", null, null, new TextMesh.CharQuad[1], generation::get);
+        assertFalse(mesh.isStale());
+
+        generation.incrementAndGet();
+        assertTrue(mesh.isStale());
+        // Baked again, after the eviction.
+        assertFalse(new TextMesh("a", null, null, new TextMesh.CharQuad[1], generation::get).isStale());
+    }
+
+    @Test
+    void meshWithoutGenerationIsNeverStale() {
+        assertFalse(new TextMesh("a", null, null, new TextMesh.CharQuad[1]).isStale());
+    }
+}
@@ -0,0 +1,214 @@
+package engine.graphics.light;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LightClustersTest {
+
+    private static final float FOV_Y = (float) Math.toRadians(70);
+    private static final float ASPECT = 16f / 9;
+    private static final float NEAR = 0.1f;
+    private static final float FAR = 256;
+
+    private final Random random = new Random(11);
+    private final Matrix4f viewMatrix = new Matrix4f().lookAt(10, 20, 30, 10, 20, 0, 0, 1, 0);
+    private final List<PointLight> pointLights = new ArrayList<>();
+    private final List<SpotLight> spotLights = new ArrayList<>();
+    private LightClusters clusters;
+
+    @BeforeEach
+    void setUp() {
+        clusters = new LightClusters(16, 9, 24);
+        clusters.setProjection(FOV_Y, ASPECT, NEAR, FAR);
+    }
+
+    @Test
+    void pointLightsCoverTheirSpheres() {
+        for (int i = 0; i < 500; i++) {
+            pointLights.add(new PointLight().setIntensity(0.5f + random.nextFloat())
+                    .setKlinear(random.nextFloat() * 0.2f).setKquadratic(random.nextFloat() * 0.05f)
+                    .setPosition(randomWorldPosition()));
+        }
+        assign();
+
+        Vector3f point = new Vector3f();
+        for (int i = 0; i < 20000; i++) {
+            int cluster = randomViewPoint(point);
+            for (int light = 0; light < pointLights.size(); light++) {
+                PointLight pointLight = pointLights.get(light);
+                if (pointLight.getViewPosition().distance(point) <= getRange(pointLight)) {
+                    assertTrue(contains(cluster, light), "Light " + light + " missing in cluster " + cluster);
+                }
+            }
+        }
+    }
+
+    @Test
+    void spotLightsCoverTheirCones() {
+        for (int i = 0; i < 300; i++) {
+            float angle = 0.1f + random.nextFloat();
+            spotLights.add(new SpotLight().setKlinear(random.nextFloat() * 0.2f).setKquadratic(random.nextFloat() * 0.05f)
+                    .setPosition(randomWorldPosition())
+                    .setDirection(new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalize())
+                    .setCutoffAngle(angle * 0.8f).setOuterCutoffAngle(angle));
+            spotLights.get(i).setIntensity(0.5f + random.nextFloat());
+        }
+        assign();
+
+        Vector3f point = new Vector3f(), toPoint = new Vector3f();
+        int covered = 0;
+        for (int i = 0; i < 20000; i++) {
+            int cluster = randomViewPoint(point);
+            for (int light = 0; light < spotLights.size(); light++) {
+                SpotLight spotLight = spotLights.get(light);
+                point.sub(spotLight.getViewPosition(), toPoint);
+                float distance = toPoint.length();
+                if (distance > getRange(spotLight)) continue;
+                if (distance > 0 && toPoint.dot(spotLight.getViewDirection()) / distance < Math.cos(spotLight.getOuterCutoffAngle())) continue;
+                assertTrue(contains(cluster, light), "Light " + light + " missing in cluster " + cluster);
+                covered++;
+            }
+        }
+        assertTrue(covered > 100);
+    }
+
+    @Test
+    void lightsAreOnlyAssignedToClustersTheyIntersect() {
+        for (int i = 0; i < 200; i++) {
+            pointLights.add(new PointLight().setIntensity(1).setKquadratic(0.01f).setPosition(randomWorldPosition()));
+        }
+        assign();
+
+        int total = 0;
+        for (int cluster = 0; cluster < clusters.getClusterCount(); cluster++) {
+            int offset = clusters.getLightOffset(cluster), count = clusters.getLightCount(cluster);
+            for (int i = 0; i < count; i++) {
+                int light = clusters.getLightIndexes()[offset + i];
+                if (i > 0) assertTrue(clusters.getLightIndexes()[offset + i - 1] < light);
+                PointLight pointLight = pointLights.get(light);
+                assertTrue(clusters.intersects(cluster, pointLight.getViewPosition(), getRange(pointLight), null, 0, 0));
+            }
+            total += count;
+        }
+        assertEquals(clusters.getLightIndexCount(), total);
+        assertTrue(total > 0);
+    }
+
+    @Test
+    void spotLightsFollowPointLights() {
+        // A point light and a spot light at the same place right in front of the view, pointing away from it.
+        pointLights.add(new PointLight().setIntensity(1).setKlinear(0.5f).setPosition(10, 20, 20));
+        spotLights.add(new SpotLight().setKlinear(0.5f).setPosition(new Vector3f(10, 20, 20))
+                .setDirection(new Vector3f(0, 0, -1)).setOuterCutoffAngle(0.5f));
+        spotLights.get(0).setIntensity(1);
+        assign();
+
+        int cluster = clusters.getClusterIndex(8, 4, clusters.getSlice(10));
+        assertEquals(2, clusters.getLightCount(cluster));
+        int offset = clusters.getLightOffset(cluster);
+        assertEquals(0, clusters.getLightIndexes()[offset]);
+        assertEquals(1, clusters.getLightIndexes()[offset + 1]);
+        // The cone points away from the near clusters.
+        assertEquals(1, clusters.getLightCount(clusters.getClusterIndex(8, 4, clusters.getSlice(4))));
+    }
+
+    @Test
+    void lightsOutOfViewAreNotAssigned() {
+        pointLights.add(new PointLight().setIntensity(0.01f).setKlinear(1).setPosition(10, 20, 60));
+        pointLights.add(new PointLight().setIntensity(0).setKlinear(1).setPosition(10, 20, 0));
+        assign();
+        assertEquals(0, clusters.getLightIndexCount());
+    }
+
+    @Test
+    void rangeReachesCutoffIntensity() {
+        float range = LightClusters.getRange(2, 1, 0.3f, 0.02f);
+        assertEquals(LightClusters.CUTOFF_INTENSITY, 2 / (1 + 0.3f * range + 0.02f * range * range), 1e-5f);
+        assertEquals(LightClusters.CUTOFF_INTENSITY, 2 / (1 + 0.3f * LightClusters.getRange(2, 1, 0.3f, 0)), 1e-5f);
+        assertEquals(Float.POSITIVE_INFINITY, LightClusters.getRange(2, 1, 0, 0));
+        assertEquals(0, LightClusters.getRange(0, 1, 0.3f, 0.02f));
+    }
+
+    @Test
+    void slicesCoverDepthRange() {
+        assertEquals(0, clusters.getSlice(NEAR));
+        assertEquals(clusters.getSlices() - 1, clusters.getSlice(FAR));
+        for (int slice = 0; slice < clusters.getSlices(); slice++) {
+            float depth = (clusters.getSliceDepth(slice) + clusters.getSliceDepth(slice + 1)) * 0.5f;
+            assertEquals(slice, clusters.getSlice(depth));
+        }
+    }
+
+    private void assign() {
+        pointLights.forEach(light -> light.setup(viewMatrix));
+        spotLights.forEach(light -> light.setup(viewMatrix));
+        clusters.assign(pointLights, spotLights);
+    }
+
+    private Vector3f randomWorldPosition() {
+        return new Vector3f(random.nextFloat() * 160 - 70, random.nextFloat() * 100 - 30, random.nextFloat() * 160 - 130);
+    }
+
+    /**
+     * Picks a random point in the view frustum, up to a depth of 100.
+     *
+     * @return index of the cluster containing the point
+     */
+    private int randomViewPoint(Vector3f dest) {
+        float ndcX = random.nextFloat() * 2 - 1, ndcY = random.nextFloat() * 2 - 1;
+        float depth = NEAR + random.nextFloat() * 100;
+        float tanHalfFovY = (float) Math.tan(FOV_Y * 0.5);
+        dest.set(ndcX * tanHalfFovY * ASPECT * depth, ndcY * tanHalfFovY * depth, -depth);
+        int tileX = (int) ((ndcX + 1) * 0.5f * clusters.getTilesX()), tileY = (int) ((ndcY + 1) * 0.5f * clusters.getTilesY());
+        return clusters.getClusterIndex(tileX, tileY, clusters.getSlice(depth));
+    }
+
+    private boolean contains(int cluster, int light) {
+        int offset = clusters.getLightOffset(cluster);
+        for (int i = 0; i < clusters.getLightCount(cluster); i++) {
+            if (clusters.getLightIndexes()[offset + i] == light) return true;
+        }
+        return false;
+    }
+
+    private static float getRange(PointLight light) {
+        return LightClusters.getRange(light.getIntensity(), light.getKconstant(), light.getKlinear(), light.getKquadratic());
+    }
+
+    private static float getRange(SpotLight light) {
+        return LightClusters.getRange(light.getIntensity(), light.getKconstant(), light.getKlinear(), light.getKquadratic());
+    }
+
+    private static void benchmarkAssign() {
+        LightClustersTest test = new LightClustersTest();
+        test.setUp();
+        for (int i = 0; i < 4000; i++) {
+            test.pointLights.add(new PointLight().setIntensity(1).setKlinear(0.35f).setKquadratic(0.44f)
+                    .setPosition(test.randomWorldPosition()));
+        }
+        for (int i = 0; i < 1000; i++) {
+            test.spotLights.add(new SpotLight().setKlinear(0.35f).setKquadratic(0.44f).setPosition(test.randomWorldPosition())
+                    .setDirection(new Vector3f(0, -1, 0)).setOuterCutoffAngle(0.6f));
+            test.spotLights.get(i).setIntensity(1);
+        }
+        test.pointLights.forEach(light -> light.setup(test.viewMatrix));
+        test.spotLights.forEach(light -> light.setup(test.viewMatrix));
+        LightClusters clusters = test.clusters;
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                clusters.assign(test.pointLights, test.spotLights);
+            }
+            System.out.println("Assigned 5000 lights to " + clusters.getClusterCount() + " clusters in "
+                    + (System.nanoTime() - start) / 100000L + " us, " + clusters.getLightIndexCount() + " indexes");
+        }
+    }
+}
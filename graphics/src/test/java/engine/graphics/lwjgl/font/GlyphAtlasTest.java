@@ -0,0 +1,234 @@
+package engine.graphics.lwjgl.font;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.stb.STBTTFontinfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.lwjgl.stb.STBTruetype.*;
+import static org.lwjgl.system.MemoryUtil.memPutByte;
+
+class GlyphAtlasTest {
+
+    private final IntList evicted = new IntArrayList();
+
+    /**
+     * Glyphs of 1 to 16 texels wide and high, filled with the low byte of their code point. Code point 0 has no glyph
+     * and spaces have no bitmap.
+     */
+    private static final GlyphAtlas.Rasterizer RASTERIZER = new GlyphAtlas.Rasterizer() {
+        @Override
+        public boolean measure(int codePoint, GlyphAtlas.Glyph glyph) {
+            if (codePoint == 0) return false;
+            int size = codePoint == ' ' ? 0 : 1 + codePoint % 16;
+            glyph.setMetrics(size, 1 + codePoint / 16 % 16, 1, -size, size + 1);
+            return true;
+        }
+
+        @Override
+        public void rasterize(int codePoint, long address, int width, int height, int stride) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    memPutByte(address + y * stride + x, (byte) codePoint);
+                }
+            }
+        }
+    };
+
+    private GlyphAtlas createAtlas(int pageSize, int maxPages) {
+        return new GlyphAtlas(pageSize, maxPages, RASTERIZER, evicted::add);
+    }
+
+    @Test
+    void glyphsAreRasterizedWithoutOverlap() {
+        GlyphAtlas atlas = createAtlas(256, 4);
+        List<GlyphAtlas.Glyph> glyphs = new ArrayList<>();
+        for (int codePoint = 1; codePoint < 200; codePoint++) {
+            if (codePoint != ' ') glyphs.add(atlas.get(codePoint));
+        }
+        assertEquals(1, atlas.getPageCount());
+        for (GlyphAtlas.Glyph glyph : glyphs) {
+            assertSame(glyph, atlas.get(glyph.getCodePoint()));
+            assertGlyphRasterized(atlas, glyph);
+        }
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    void glyphsWithoutBitmapAreNotPacked() {
+        GlyphAtlas atlas = createAtlas(64, 1);
+        assertNull(atlas.get(0));
+        GlyphAtlas.Glyph space = atlas.get(' ');
+        assertEquals(-1, space.getPage());
+        assertEquals(' ' % 16 + 1, space.getAdvance());
+        assertEquals(0, atlas.getPageCount());
+    }
+
+    @Test
+    void pagesAreAddedWhenFull() {
+        GlyphAtlas atlas = createAtlas(128, 4);
+        List<GlyphAtlas.Glyph> glyphs = new ArrayList<>();
+        for (int codePoint = 1; codePoint < 256; codePoint++) {
+            if (codePoint != ' ') glyphs.add(atlas.get(codePoint));
+        }
+        assertTrue(atlas.getPageCount() > 1);
+        assertTrue(atlas.getPageCount() <= 4);
+        glyphs.forEach(glyph -> assertGlyphRasterized(atlas, glyph));
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    void leastRecentlyUsedGlyphsAreEvicted() {
+        GlyphAtlas atlas = createAtlas(32, 1);
+        // Glyphs of 16x2 texels, 18x4 with the padding, one per shelf and eight per page.
+        for (int codePoint = 0x11F; codePoint <= 0x11F + 256 * 8; codePoint += 256) {
+            atlas.get(codePoint);
+            atlas.flush((page, bitmap, minY, maxY) -> {
+            });
+        }
+        assertEquals(IntArrayList.wrap(new int[]{0x11F}), evicted);
+
+        // Using the oldest remaining glyph makes the next one the least recently used.
+        atlas.get(0x21F);
+        atlas.flush((page, bitmap, minY, maxY) -> {
+        });
+        GlyphAtlas.Glyph glyph = atlas.get(0x11F);
+        assertEquals(IntArrayList.wrap(new int[]{0x11F, 0x31F}), evicted);
+        assertEquals(1, atlas.getPageCount());
+        assertEquals(8, atlas.getGlyphCount());
+        assertGlyphRasterized(atlas, glyph);
+    }
+
+    @Test
+    void evictedSpaceIsReused() {
+        GlyphAtlas atlas = createAtlas(128, 1);
+        List<GlyphAtlas.Glyph> glyphs = new ArrayList<>();
+        for (int codePoint = 1; codePoint < 4096; codePoint++) {
+            if (codePoint % 256 == ' ') continue;
+            glyphs.add(atlas.get(codePoint));
+            if (codePoint % 8 == 0) {
+                atlas.flush((page, bitmap, minY, maxY) -> {
+                });
+            }
+        }
+        assertEquals(1, atlas.getPageCount());
+        assertFalse(evicted.isEmpty());
+        // The glyphs still cached are intact.
+        for (GlyphAtlas.Glyph glyph : glyphs) {
+            if (!evicted.contains(glyph.getCodePoint()) && atlas.get(glyph.getCodePoint()) == glyph) {
+                assertGlyphRasterized(atlas, glyph);
+            }
+        }
+    }
+
+    @Test
+    void glyphsOfTheCurrentBatchAreNotEvicted() {
+        GlyphAtlas atlas = createAtlas(32, 1);
+        List<GlyphAtlas.Glyph> glyphs = new ArrayList<>();
+        for (int codePoint = 0x11F; codePoint < 0x11F + 256 * 10; codePoint += 256) {
+            glyphs.add(atlas.get(codePoint));
+        }
+        // Exceeds the budget rather than evicting glyphs of the text being laid out.
+        assertTrue(evicted.isEmpty());
+        assertEquals(2, atlas.getPageCount());
+        glyphs.forEach(glyph -> assertGlyphRasterized(atlas, glyph));
+    }
+
+    @Test
+    void flushReportsChangedRows() {
+        GlyphAtlas atlas = createAtlas(64, 2);
+        List<int[]> uploads = new ArrayList<>();
+        GlyphAtlas.UploadVisitor visitor = (page, bitmap, minY, maxY) -> uploads.add(new int[]{page, minY, maxY});
+
+        GlyphAtlas.Glyph glyph = atlas.get(0x35);
+        atlas.flush(visitor);
+        assertEquals(1, uploads.size());
+        assertArrayEquals(new int[]{0, glyph.getY() - GlyphAtlas.PADDING, glyph.getY() + glyph.getHeight() + GlyphAtlas.PADDING}, uploads.get(0));
+
+        // Cached glyphs don't change the bitmap.
+        uploads.clear();
+        atlas.get(0x35);
+        atlas.flush(visitor);
+        assertTrue(uploads.isEmpty());
+    }
+
+    private static void assertGlyphRasterized(GlyphAtlas atlas, GlyphAtlas.Glyph glyph) {
+        ByteBuffer bitmap = atlas.getBitmap(glyph.getPage());
+        int size = atlas.getPageSize();
+        int minX = glyph.getX() - GlyphAtlas.PADDING, maxX = glyph.getX() + glyph.getWidth() + GlyphAtlas.PADDING;
+        int minY = glyph.getY() - GlyphAtlas.PADDING, maxY = glyph.getY() + glyph.getHeight() + GlyphAtlas.PADDING;
+        assertTrue(minX >= 0 && minY >= 0 && maxX <= size && maxY <= size);
+        for (int y = minY; y < maxY; y++) {
+            for (int x = minX; x < maxX; x++) {
+                boolean inside = x >= glyph.getX() && x < maxX - GlyphAtlas.PADDING && y >= glyph.getY() && y < maxY - GlyphAtlas.PADDING;
+                assertEquals(inside ? (byte) glyph.getCodePoint() : 0, bitmap.get(y * size + x),
+                        "Texel " + x + ", " + y + " of glyph " + glyph.getCodePoint());
+            }
+        }
+    }
+
+    /**
+     * Times the glyphs of a system font rasterized on demand, then cached, then rasterized until the pages are full.
+     */
+    private static void benchmarkRasterize() throws IOException {
+        Path file = Path.of(System.getProperty("font", "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf"));
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(file)) {
+            data = ByteBuffer.allocateDirect((int) Files.size(file));
+            channel.read(data);
+            data.flip();
+        }
+        STBTTFontinfo info = STBTTFontinfo.create();
+        if (!stbtt_InitFont(info, data)) throw new IllegalStateException("Cannot load " + file);
+        float scale = stbtt_ScaleForPixelHeight(info, 16);
+        GlyphAtlas.Rasterizer rasterizer = new GlyphAtlas.Rasterizer() {
+            private final int[] x0 = new int[1], y0 = new int[1], x1 = new int[1], y1 = new int[1];
+
+            @Override
+            public boolean measure(int codePoint, GlyphAtlas.Glyph glyph) {
+                if (stbtt_FindGlyphIndex(info, codePoint) == 0) return false;
+                stbtt_GetCodepointBitmapBox(info, codePoint, scale, scale, x0, y0, x1, y1);
+                glyph.setMetrics(x1[0] - x0[0], y1[0] - y0[0], x0[0], y0[0], 0);
+                return true;
+            }
+
+            @Override
+            public void rasterize(int codePoint, long address, int width, int height, int stride) {
+                nstbtt_MakeCodepointBitmap(info.address(), address, width, height, stride, scale, scale, codePoint);
+            }
+        };
+        String text = "The quick brown fox jumps over the lazy dog. Съешь же ещё этих мягких французских булок. ";
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            GlyphAtlas atlas = new GlyphAtlas(512, 4, rasterizer, null);
+            int[] uploaded = new int[1];
+            text.codePoints().forEach(atlas::get);
+            atlas.flush((page, bitmap, minY, maxY) -> uploaded[0] += (maxY - minY) * 512);
+            long firstText = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                text.codePoints().forEach(atlas::get);
+                atlas.flush((page, bitmap, minY, maxY) -> {
+                });
+            }
+            long cached = System.nanoTime();
+            for (int codePoint = 0x20; codePoint < 0x2FFF; codePoint++) {
+                atlas.get(codePoint);
+                if (codePoint % 64 == 0) atlas.flush((page, bitmap, minY, maxY) -> {
+                });
+            }
+            long all = System.nanoTime();
+            System.out.println("First text: " + (firstText - start) / 1000 + " us, " + uploaded[0] / 1024 + " KiB uploaded"
+                    + ", cached text: " + (cached - firstText) / 1000 + " ns per text"
+                    + ", glyphs up to U+2FFF: " + (all - cached) / 1000000 + " ms, " + atlas.getGlyphCount() + " glyphs cached in " + atlas.getPageCount() + " pages");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package engine.graphics.math;
+
+import org.joml.AABBf;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DynamicAABBTreeTest {
+
+    private final Random random = new Random(7);
+    private final DynamicAABBTree<AABBf> tree = new DynamicAABBTree<>(1f);
+    private final Map<AABBf, Integer> proxies = new IdentityHashMap<>();
+
+    @Test
+    void queryMatchesBruteForce() {
+        for (int i = 0; i < 2000; i++) {
+            insert(randomBox());
+        }
+        assertEquals(2000, tree.size());
+        assertTrue(tree.getHeight() <= 2 * 11, "Unbalanced tree of height " + tree.getHeight());
+        for (int i = 0; i < 50; i++) {
+            assertQuery(randomFrustum());
+        }
+    }
+
+    @Test
+    void queryMatchesBruteForceAfterMovesAndRemoves() {
+        for (int i = 0; i < 1000; i++) {
+            insert(randomBox());
+        }
+        for (int round = 0; round < 20; round++) {
+            List<AABBf> boxes = new ArrayList<>(proxies.keySet());
+            for (AABBf box : boxes) {
+                int action = random.nextInt(10);
+                if (action == 0) {
+                    tree.remove(proxies.remove(box));
+                } else if (action < 5) {
+                    float dx = random.nextFloat() * 4 - 2, dy = random.nextFloat() * 4 - 2, dz = random.nextFloat() * 4 - 2;
+                    box.translate(dx, dy, dz);
+                    tree.update(proxies.get(box), box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+                }
+            }
+            for (int i = 0; i < 100; i++) {
+                insert(randomBox());
+            }
+            assertEquals(proxies.size(), tree.size());
+            assertQuery(randomFrustum());
+        }
+    }
+
+    @Test
+    void smallMovesDontChangeTree() {
+        AABBf box = new AABBf(0, 0, 0, 1, 1, 1);
+        insert(box);
+        insert(new AABBf(10, 0, 0, 11, 1, 1));
+        int proxy = proxies.get(box);
+        assertFalse(tree.update(proxy, 0.5f, 0.5f, 0.5f, 1.5f, 1.5f, 1.5f));
+        assertTrue(tree.update(proxy, 5, 5, 5, 6, 6, 6));
+        assertSame(box, tree.getValue(proxy));
+    }
+
+    @Test
+    void clearRemovesAllValues() {
+        for (int i = 0; i < 100; i++) {
+            insert(randomBox());
+        }
+        tree.clear();
+        proxies.clear();
+        assertTrue(tree.isEmpty());
+        assertEquals(-1, tree.getHeight());
+        tree.query(randomFrustum(), (value, inside) -> fail("Visited " + value));
+
+        insert(randomBox());
+        assertEquals(1, tree.size());
+    }
+
+    private void insert(AABBf box) {
+        proxies.put(box, tree.insert(box, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ));
+    }
+
+    private AABBf randomBox() {
+        float x = random.nextFloat() * 512 - 256, y = random.nextFloat() * 128 - 64, z = random.nextFloat() * 512 - 256;
+        float size = 0.5f + random.nextFloat() * 32;
+        return new AABBf(x, y, z, x + size, y + size * random.nextFloat(), z + size);
+    }
+
+    private FrustumIntersection randomFrustum() {
+        float yaw = random.nextFloat() * (float) Math.PI * 2;
+        Matrix4f matrix = new Matrix4f()
+                .perspective((float) Math.toRadians(70), 16f / 9, 0.1f, 64 + random.nextFloat() * 256)
+                .rotateY(yaw)
+                .translate(random.nextFloat() * 256 - 128, random.nextFloat() * 32 - 16, random.nextFloat() * 256 - 128);
+        return new FrustumIntersection(matrix);
+    }
+
+    private void assertQuery(FrustumIntersection frustum) {
+        Set<AABBf> expected = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (AABBf box : proxies.keySet()) {
+            if (frustum.testAab(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ)) {
+                expected.add(box);
+            }
+        }
+        Set<AABBf> actual = Collections.newSetFromMap(new IdentityHashMap<>());
+        tree.query(frustum, (box, inside) -> {
+            boolean visible = frustum.testAab(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+            if (inside) assertTrue(visible, "Box inside the frustum fails the test");
+            if (visible) assertTrue(actual.add(box), "Box visited twice");
+        });
+        assertEquals(expected, actual);
+    }
+
+    private static void benchmarkQuery() {
+        List<BoundingVolume> volumes = new ArrayList<>();
+        DynamicAABBTree<BoundingVolume> tree = new DynamicAABBTree<>(1f);
+        // Chunks of a world with a view distance of 16 chunks.
+        for (int chunkX = -16; chunkX <= 16; chunkX++) {
+            for (int chunkY = -8; chunkY < 8; chunkY++) {
+                for (int chunkZ = -16; chunkZ <= 16; chunkZ++) {
+                    AABBf box = new AABBf(chunkX * 32, chunkY * 32, chunkZ * 32, chunkX * 32 + 32, chunkY * 32 + 32, chunkZ * 32 + 32);
+                    BoundingVolume volume = new BoundingVolume(box);
+                    volumes.add(volume);
+                    tree.insert(volume, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+                }
+            }
+        }
+        FrustumIntersection frustum = new FrustumIntersection(new Matrix4f()
+                .perspective((float) Math.toRadians(70), 16f / 9, 0.1f, 256).rotateY(1f));
+        int[] visible = new int[1];
+        for (int round = 0; round < 5; round++) {
+            visible[0] = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                volumes.stream()
+                        .filter(volume -> volume.test(frustum))
+                        .forEach(volume -> visible[0]++);
+            }
+            long bruteForce = System.nanoTime() - start;
+            int bruteForceVisible = visible[0] / 1000;
+
+            visible[0] = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                tree.query(frustum, (volume, inside) -> {
+                    if (inside || volume.test(frustum)) {
+                        visible[0]++;
+                    }
+                });
+            }
+            long query = System.nanoTime() - start;
+            System.out.println("Brute force: " + bruteForce / 1000000L + " us (" + bruteForceVisible + " visible), tree: "
+                    + query / 1000000L + " us (" + visible[0] / 1000 + " visible)");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package engine.graphics.texture;
+
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaxRectsPackerTest {
+
+    private final Random random = new Random(9);
+
+    @Test
+    void regionsDontOverlap() {
+        MaxRectsPacker packer = new MaxRectsPacker(64);
+        List<int[]> regions = new ArrayList<>();
+        Vector2i position = new Vector2i();
+        for (int i = 0; i < 1000; i++) {
+            int width = 1 + random.nextInt(40), height = 1 + random.nextInt(40);
+            packer.pack(width, height, position);
+            regions.add(new int[]{position.x, position.y, width, height});
+        }
+        int size = packer.getSize();
+        long area = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            int[] region = regions.get(i);
+            assertTrue(region[0] >= 0 && region[1] >= 0 && region[0] + region[2] <= size && region[1] + region[3] <= size,
+                    "Region out of the atlas");
+            for (int j = 0; j < i; j++) {
+                assertFalse(overlaps(region, regions.get(j)), "Regions " + i + " and " + j + " overlap");
+            }
+            area += region[2] * region[3];
+        }
+        assertEquals((double) area / size / size, packer.getOccupancy(), 1e-6);
+    }
+
+    @Test
+    void growingKeepsPackedRegions() {
+        MaxRectsPacker packer = new MaxRectsPacker(16);
+        Vector2i position = new Vector2i();
+        packer.pack(16, 10, position);
+        assertEquals(new Vector2i(0, 0), position);
+        packer.pack(10, 10, position);
+        assertEquals(32, packer.getSize());
+        // The free row below the first rectangle is extended to the right, so the rectangle fits below it.
+        packer.pack(30, 6, position);
+        assertEquals(new Vector2i(0, 10), position);
+        assertEquals(32, packer.getSize());
+        packer.pack(100, 1, position);
+        assertEquals(128, packer.getSize());
+    }
+
+    @Test
+    void bestShortSideFitIsChosen() {
+        MaxRectsPacker packer = new MaxRectsPacker(64);
+        Vector2i position = new Vector2i();
+        packer.pack(40, 40, position);
+        // The free rectangles are 24x64 at the right and 64x24 at the bottom, each one is the tightest fit for one side.
+        packer.pack(22, 10, position);
+        assertEquals(new Vector2i(40, 0), position);
+        packer.pack(10, 22, position);
+        assertEquals(new Vector2i(0, 40), position);
+    }
+
+    @Test
+    void quadTreeRegionsDontOverlap() {
+        QuadTreePacker packer = new QuadTreePacker(64);
+        List<int[]> regions = new ArrayList<>();
+        Vector2i position = new Vector2i();
+        for (int i = 0; i < 500; i++) {
+            int size = 1 << random.nextInt(5);
+            packer.pack(size, size, position);
+            regions.add(new int[]{position.x, position.y, size, size});
+        }
+        for (int i = 0; i < regions.size(); i++) {
+            for (int j = 0; j < i; j++) {
+                assertFalse(overlaps(regions.get(i), regions.get(j)), "Regions " + i + " and " + j + " overlap");
+            }
+        }
+    }
+
+    private static boolean overlaps(int[] a, int[] b) {
+        return a[0] < b[0] + b[2] && b[0] < a[0] + a[2] && a[1] < b[1] + b[3] && b[1] < a[1] + a[3];
+    }
+
+    /**
+     * Compares the occupancy and the packing time of both packers, for rectangles sorted like the atlas builder does.
+     */
+    private static void benchmarkPack() {
+        Random random = new Random(1);
+        List<int[]> sizes = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            // Mostly 16x16 block textures, with odd sized and non-square ones like fonts and GUI textures.
+            if (random.nextInt(3) == 0) {
+                sizes.add(new int[]{4 + random.nextInt(60), 4 + random.nextInt(60)});
+            } else {
+                sizes.add(new int[]{16, 16});
+            }
+        }
+        sizes.sort((a, b) -> {
+            int result = Integer.compare(Math.max(b[0], b[1]), Math.max(a[0], a[1]));
+            return result != 0 ? result : Integer.compare(Math.min(b[0], b[1]), Math.min(a[0], a[1]));
+        });
+        Vector2i position = new Vector2i();
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            QuadTreePacker quadTree = new QuadTreePacker(512);
+            for (int[] size : sizes) quadTree.pack(size[0], size[1], position);
+            long quadTreeTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            MaxRectsPacker maxRects = new MaxRectsPacker(512);
+            for (int[] size : sizes) maxRects.pack(size[0], size[1], position);
+            long maxRectsTime = System.nanoTime() - start;
+
+            System.out.printf("Quadtree: %d us, size %d, occupancy %.2f; MaxRects: %d us, size %d, occupancy %.2f, %d free rectangles%n",
+                    quadTreeTime / 1000, quadTree.getSize(), quadTree.getOccupancy(),
+                    maxRectsTime / 1000, maxRects.getSize(), maxRects.getOccupancy(), maxRects.getFreeCount());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package engine.graphics.texture;
+
+import engine.graphics.image.BufferedImage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MipmapGeneratorTest {
+
+    @Test
+    void averageIsGammaCorrect() {
+        // Half black and half white is half of the linear intensity, 188 in sRGB rather than 128.
+        assertEquals(0xBCBCBCFF, MipmapGenerator.average(0x000000FF, 0xFFFFFFFF, 0x000000FF, 0xFFFFFFFF));
+        assertEquals(0x808080FF, MipmapGenerator.average(0x808080FF, 0x808080FF, 0x808080FF, 0x808080FF));
+    }
+
+    @Test
+    void averageIsWeightedByAlpha() {
+        // Transparent texels don't change the color, only the alpha.
+        assertEquals(0xFF000080, MipmapGenerator.average(0xFF0000FF, 0x00FF0000, 0xFF0000FF, 0x0000FF00));
+        assertEquals(0x00FF0020, MipmapGenerator.average(0x00FF0080, 0x00000000, 0x00000000, 0x00000000));
+        // Fully transparent texels keep their average color.
+        assertEquals(0xBC000000, MipmapGenerator.average(0xFF000000, 0x00000000, 0xFF000000, 0x00000000));
+    }
+
+    @Test
+    void srgbRoundTrips() {
+        for (int i = 0; i < 256; i++) {
+            float srgb = i / 255f;
+            float linear = srgb <= 0.04045f ? srgb / 12.92f : (float) Math.pow((srgb + 0.055) / 1.055, 2.4);
+            assertEquals(i, MipmapGenerator.toSrgb(linear));
+        }
+        assertEquals(0, MipmapGenerator.toSrgb(-1));
+        assertEquals(255, MipmapGenerator.toSrgb(2));
+    }
+
+    @Test
+    void chainHalvesSizes() {
+        BufferedImage image = new BufferedImage(16, 8, 0x336699FF);
+        BufferedImage[] levels = MipmapGenerator.generate(image, 5);
+        assertSame(image, levels[0]);
+        int[][] sizes = {{16, 8}, {8, 4}, {4, 2}, {2, 1}, {1, 1}};
+        for (int level = 0; level < levels.length; level++) {
+            assertEquals(sizes[level][0], levels[level].getWidth());
+            assertEquals(sizes[level][1], levels[level].getHeight());
+            assertEquals(0x336699FF, levels[level].getPixel(0, 0));
+        }
+    }
+
+    @Test
+    void downsampleAveragesQuads() {
+        BufferedImage image = new BufferedImage(4, 2);
+        image.setPixel(0, 0, 0x000000FF);
+        image.setPixel(1, 0, 0xFFFFFFFF);
+        image.setPixel(0, 1, 0x000000FF);
+        image.setPixel(1, 1, 0xFFFFFFFF);
+        image.setPixel(2, 0, 2, 2, 0x123456FF);
+        BufferedImage result = MipmapGenerator.downsample(image);
+        assertEquals(0xBCBCBCFF, result.getPixel(0, 0));
+        assertEquals(0x123456FF, result.getPixel(1, 0));
+    }
+
+    private static void benchmarkGenerate() {
+        Random random = new Random(1);
+        BufferedImage image = new BufferedImage(2048);
+        for (int y = 0; y < 2048; y++) {
+            for (int x = 0; x < 2048; x++) {
+                image.setPixel(x, y, random.nextInt());
+            }
+        }
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            MipmapGenerator.generate(image, 5);
+            System.out.println("Generated 4 levels of a 2048 atlas in " + (System.nanoTime() - start) / 1000000L + " ms");
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package engine.graphics.texture;
+
+import engine.graphics.image.BufferedImage;
+import engine.graphics.image.ReadOnlyImage;
+import engine.graphics.lwjgl.STBImageLoader;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextureAtlasBuilderTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    void imagesAreCopiedToTheirRegions() {
+        assertImagesCopied(new TextureAtlasBuilder(64));
+    }
+
+    @Test
+    void maxRectsImagesAreCopiedToTheirRegions() {
+        assertImagesCopied(new TextureAtlasBuilder(new MaxRectsPacker(64)));
+    }
+
+    private void assertImagesCopied(TextureAtlasBuilder builder) {
+        List<BufferedImage> images = createImages(300);
+        List<TextureAtlasBuilder.TexCoord> uvs = images.stream().map(builder::add).collect(Collectors.toList());
+        builder.finish();
+
+        BufferedImage result = builder.getResult();
+        int size = builder.getSize();
+        assertTrue(size > 64);
+        assertEquals(size, result.getWidth());
+        for (int i = 0; i < images.size(); i++) {
+            BufferedImage image = images.get(i);
+            TextureAtlasBuilder.TexCoord uv = uvs.get(i);
+            int x = Math.round(uv.getMinU() * size), y = Math.round(uv.getMinV() * size);
+            assertTrue(uv.getMaxU() * size >= x + image.getWidth() - 0.01f);
+            assertTrue(uv.getMaxV() * size >= y + image.getHeight() - 0.01f);
+            // Each image has its own color, so overlapping images would overwrite each other.
+            for (int pixelY = 0; pixelY < image.getHeight(); pixelY++) {
+                for (int pixelX = 0; pixelX < image.getWidth(); pixelX++) {
+                    assertEquals(image.getPixel(pixelX, pixelY), result.getPixel(x + pixelX, y + pixelY));
+                }
+            }
+        }
+        assertTrue(builder.getOccupancy() > 0 && builder.getOccupancy() <= 1);
+    }
+
+    @Test
+    void layoutOnlyDependsOnAddedImages() {
+        List<BufferedImage> images = createImages(200);
+        TextureAtlasBuilder first = new TextureAtlasBuilder(), second = new TextureAtlasBuilder();
+        List<TextureAtlasBuilder.TexCoord> firstUvs = images.stream().map(first::add).collect(Collectors.toList());
+        List<TextureAtlasBuilder.TexCoord> secondUvs = images.stream().map(second::add).collect(Collectors.toList());
+        first.finish();
+        second.finish();
+
+        assertEquals(first.getSize(), second.getSize());
+        for (int i = 0; i < images.size(); i++) {
+            assertEquals(firstUvs.get(i).getMinU(), secondUvs.get(i).getMinU());
+            assertEquals(firstUvs.get(i).getMinV(), secondUvs.get(i).getMinV());
+        }
+        assertEquals(first.getResult().getPixelBuffer(), second.getResult().getPixelBuffer());
+    }
+
+    @Test
+    void imagesOfTheAtlasSizeDontOverlap() {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(16);
+        TextureAtlasBuilder.TexCoord first = builder.add(new BufferedImage(16, 16, 1));
+        TextureAtlasBuilder.TexCoord second = builder.add(new BufferedImage(16, 16, 2));
+        builder.finish();
+
+        assertEquals(32, builder.getSize());
+        assertNotEquals(first.getMinU() + first.getMinV() * 2, second.getMinU() + second.getMinV() * 2);
+    }
+
+    @Test
+    void paddingRepeatsEdges() {
+        BufferedImage image = new BufferedImage(3, 2);
+        for (int i = 0; i < 6; i++) {
+            image.setPixel(i % 3, i / 3, (i + 1) << 8 | 0xFF);
+        }
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(new MaxRectsPacker(16));
+        builder.setPadding(2);
+        builder.setMaxMipmapLevels(2);
+        TextureAtlasBuilder.TexCoord uv = builder.add(image);
+        builder.finish();
+
+        BufferedImage result = builder.getResult();
+        int x = Math.round(uv.getMinU() * 16), y = Math.round(uv.getMinV() * 16);
+        assertEquals(2, x);
+        assertEquals(2, y);
+        assertEquals(5, Math.round(uv.getMaxU() * 16));
+        assertEquals(4, Math.round(uv.getMaxV() * 16));
+        // Region of 8x6 texels, 7x6 with the padding and aligned to the 2 texels of the second level.
+        int[][] expected = {
+                {1, 1, 1, 2, 3, 3, 3, 3},
+                {1, 1, 1, 2, 3, 3, 3, 3},
+                {1, 1, 1, 2, 3, 3, 3, 3},
+                {4, 4, 4, 5, 6, 6, 6, 6},
+                {4, 4, 4, 5, 6, 6, 6, 6},
+                {4, 4, 4, 5, 6, 6, 6, 6}};
+        for (int row = 0; row < expected.length; row++) {
+            for (int column = 0; column < expected[row].length; column++) {
+                assertEquals(expected[row][column] << 8 | 0xFF, result.getPixel(column, row), "Texel " + column + ", " + row);
+            }
+        }
+        assertEquals(0, result.getPixel(8, 0));
+        assertEquals(0, result.getPixel(0, 6));
+    }
+
+    @Test
+    void mipmapLevelsAreLimitedByPadding() {
+        TextureAtlasBuilder builder = new TextureAtlasBuilder();
+        builder.setMaxMipmapLevels(8);
+        assertEquals(1, builder.getMipmapLevels());
+        builder.setPadding(1);
+        assertEquals(1, builder.getMipmapLevels());
+        builder.setPadding(4);
+        assertEquals(3, builder.getMipmapLevels());
+        builder.setPadding(7);
+        assertEquals(3, builder.getMipmapLevels());
+        builder.setMaxMipmapLevels(2);
+        assertEquals(2, builder.getMipmapLevels());
+    }
+
+    @Test
+    void mipmapsDontBleedBetweenImages() {
+        int[] colors = {0xFF0000FF, 0x00FF00FF, 0x0000FFFF, 0xFFFFFFFF};
+        TextureAtlasBuilder builder = new TextureAtlasBuilder(new MaxRectsPacker(32));
+        builder.setPadding(4);
+        builder.setMaxMipmapLevels(3);
+        List<TextureAtlasBuilder.TexCoord> uvs = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            uvs.add(builder.add(new BufferedImage(5 + i % 4 * 4, 16 - i % 3 * 5, colors[i % colors.length])));
+        }
+        builder.finish();
+
+        assertEquals(3, builder.getMipmapLevels());
+        for (int level = 0; level < builder.getMipmapLevels(); level++) {
+            BufferedImage mipmap = builder.getMipmap(level);
+            assertEquals(builder.getSize() >> level, mipmap.getWidth());
+            for (int i = 0; i < uvs.size(); i++) {
+                TextureAtlasBuilder.TexCoord uv = uvs.get(i);
+                // The texels covered by the image at this level, and one more on each side for linear filtering.
+                int minX = (int) Math.floor(uv.getMinU() * mipmap.getWidth()) - 1, maxX = (int) Math.ceil(uv.getMaxU() * mipmap.getWidth()) + 1;
+                int minY = (int) Math.floor(uv.getMinV() * mipmap.getHeight()) - 1, maxY = (int) Math.ceil(uv.getMaxV() * mipmap.getHeight()) + 1;
+                for (int y = minY; y < maxY; y++) {
+                    for (int x = minX; x < maxX; x++) {
+                        assertEquals(colors[i % colors.length], mipmap.getPixel(x, y), "Texel " + x + ", " + y + " of level " + level);
+                    }
+                }
+            }
+        }
+    }
+
+    private List<BufferedImage> createImages(int count) {
+        List<BufferedImage> images = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int width = 1 << random.nextInt(6), height = random.nextBoolean() ? width : 1 + random.nextInt(width);
+            images.add(new BufferedImage(width, height, i + 1));
+        }
+        return images;
+    }
+
+    private static ByteBuffer encodePng(int width, int height, Random random) {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(width, height, java.awt.image.BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", output);
+            byte[] bytes = output.toByteArray();
+            return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Times the atlas reload without the GL upload: decoding of PNG files, packing and copying into the atlas.
+     */
+    private static void benchmarkReload() {
+        Random random = new Random(1);
+        List<ByteBuffer> files = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            int size = 16 << random.nextInt(3);
+            files.add(encodePng(size, size, random));
+        }
+        STBImageLoader loader = new STBImageLoader();
+        for (int round = 0; round < 5; round++) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                long start = System.nanoTime();
+                var stream = parallel ? files.parallelStream() : files.stream();
+                List<ReadOnlyImage> images = stream.map(file -> {
+                    try {
+                        return (ReadOnlyImage) loader.loadWritableImage(file.duplicate());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).collect(Collectors.toList());
+                long decoded = System.nanoTime();
+                TextureAtlasBuilder builder = new TextureAtlasBuilder();
+                images.forEach(builder::add);
+                builder.finish();
+                long end = System.nanoTime();
+                System.out.println((parallel ? "Parallel" : "Serial") + " decode: " + (decoded - start) / 1000000L
+                        + " ms, pack and copy: " + (end - decoded) / 1000000L + " ms, atlas size " + builder.getSize());
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package engine.graphics.vertex;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexDataBufPoolTest {
+
+    @Test
+    void smallestFittingBufferIsReused() throws InterruptedException {
+        VertexDataBufPool pool = new HeapBufferPool(4096, Integer.MAX_VALUE, Long.MAX_VALUE);
+        VertexDataBuf large = pool.get(1 << 20);
+        VertexDataBuf small = pool.get(4096);
+        pool.free(large);
+        pool.free(small);
+
+        assertSame(small, pool.get(4096));
+        assertSame(large, pool.get(4096));
+        assertEquals(2, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals((1 << 20) + 4096, pool.getPeakBytes());
+    }
+
+    @Test
+    void exhaustedBudgetWaitsForFreedBuffer() throws Exception {
+        VertexDataBufPool pool = new HeapBufferPool(4096, Integer.MAX_VALUE, 8192);
+        VertexDataBuf first = pool.get();
+        pool.get();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<VertexDataBuf> waiting = executor.submit(() -> pool.get());
+            assertThrows(TimeoutException.class, () -> waiting.get(100, TimeUnit.MILLISECONDS));
+            pool.free(first);
+            assertSame(first, waiting.get(5, TimeUnit.SECONDS));
+            assertEquals(8192, pool.getPeakBytes());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentGetAndFree() throws Exception {
+        int threadCount = 8, iterations = 20000, poolCapacity = 12;
+        VertexDataBufPool pool = new HeapBufferPool(4096, poolCapacity, 1 << 20);
+        Set<VertexDataBuf> inUse = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        // Like the chunk bakers, half of the buffers are freed by another thread than the one getting them.
+        BlockingQueue<VertexDataBuf> handOff = new LinkedBlockingQueue<>();
+        AtomicInteger gets = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount + 1);
+        try {
+            Future<?> freeing = executor.submit(() -> {
+                for (int i = 0; i < threadCount * iterations / 2; i++) {
+                    VertexDataBuf buffer = handOff.take();
+                    assertTrue(inUse.remove(buffer));
+                    pool.free(buffer);
+                }
+                return null;
+            });
+            CompletableFuture<?>[] getting = new CompletableFuture<?>[threadCount];
+            for (int thread = 0; thread < threadCount; thread++) {
+                getting[thread] = CompletableFuture.runAsync(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    try {
+                        for (int i = 0; i < iterations; i++) {
+                            VertexDataBuf buffer = pool.get(1024 << random.nextInt(6));
+                            gets.incrementAndGet();
+                            assertTrue(inUse.add(buffer), "Buffer handed out twice");
+                            buffer.begin(VertexFormat.POSITION);
+                            buffer.pos(i, i, i);
+                            buffer.finish();
+                            if ((i & 1) == 0) {
+                                assertTrue(inUse.remove(buffer));
+                                pool.free(buffer);
+                            } else {
+                                handOff.add(buffer);
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor);
+            }
+            CompletableFuture.allOf(getting).get(60, TimeUnit.SECONDS);
+            freeing.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(inUse.isEmpty());
+        assertEquals(gets.get(), pool.getHits() + pool.getMisses());
+        assertTrue(pool.getBufferCount() <= poolCapacity);
+        assertTrue(pool.getPeakBytes() <= 1 << 20);
+    }
+
+    /**
+     * Times a buffer get and free on one thread, and on 8 threads sharing the pool.
+     */
+    private static void benchmarkGetAndFree() throws Exception {
+        int iterations = 1000000;
+        VertexDataBufPool pool = new HeapBufferPool(4096, 64, Long.MAX_VALUE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 10; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    pool.free(pool.get(1024 << (i & 3)));
+                }
+                long singleThread = (System.nanoTime() - start) / iterations;
+
+                start = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < iterations; i++) {
+                            // Two buffers at a time, so that the free lists are used beside the thread caches.
+                            VertexDataBuf first = pool.get(1024 << (i & 3));
+                            VertexDataBuf second = pool.get(1024 << (i & 3));
+                            pool.free(first);
+                            pool.free(second);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                long multiThread = (System.nanoTime() - start) / (2L * iterations);
+                System.out.println("1 thread " + singleThread + " ns, 8 threads " + multiThread + " ns per get and free");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class HeapBufferPool extends VertexDataBufPool {
+
+        private HeapBufferPool(int bufferInitialCapacity, int poolCapacity, long memoryBudget) {
+            super(bufferInitialCapacity, poolCapacity, memoryBudget);
+        }
+
+        @Override
+        protected VertexDataBuf createBuffer(int initialCapacity) {
+            return new VertexDataBuf(initialCapacity) {
+                @Override
+                protected ByteBuffer createBuffer(int capacity) {
+                    return ByteBuffer.allocate(capacity);
+                }
+
+                @Override
+                protected void freeBuffer(ByteBuffer buffer) {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package engine.graphics.vertex;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VertexPackingTest {
+
+    @Test
+    void packedVertexIsEncodedExactly() {
+        VertexDataBuf buffer = heapBuffer();
+        buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_PACKED);
+        buffer.setTranslation(31, 0, 0);
+        buffer.pos(0.5f, 0.25f, -0.75f).rgba(0.2f, 0.4f, 0.6f, 1f).tex(0.125f, 1f).normal(0, -1, 0).endVertex();
+        buffer.finish();
+
+        ByteBuffer data = buffer.getByteBuffer();
+        assertEquals(1, buffer.getVertexCount());
+        assertEquals(20, data.limit());
+        assertEquals(31.5f * 256, data.getShort(0));
+        assertEquals(0.25f * 256, data.getShort(2));
+        assertEquals(-0.75f * 256, data.getShort(4));
+        assertEquals(VertexPacking.POSITION_SCALE, data.getShort(6));
+        assertEquals(51, data.get(8) & 0xFF);
+        assertEquals(102, data.get(9) & 0xFF);
+        assertEquals(153, data.get(10) & 0xFF);
+        assertEquals(255, data.get(11) & 0xFF);
+        assertEquals(8192, data.getShort(12) & 0xFFFF);
+        assertEquals(65535, data.getShort(14) & 0xFFFF);
+        assertEquals(0, data.get(16));
+        assertEquals(-127, data.get(17));
+        assertEquals(0, data.get(18));
+        assertEquals(0, data.get(19));
+
+        assertEquals(31.5f, VertexPacking.unpackPosition(data.getShort(0)));
+        assertEquals(-0.75f, VertexPacking.unpackPosition(data.getShort(4)));
+        assertEquals(0.2f, VertexPacking.unpackUnorm8(data.get(8)));
+        assertEquals(1f, VertexPacking.unpackUnorm16(data.getShort(14)));
+        assertEquals(-1f, VertexPacking.unpackSnorm8(data.get(17)));
+    }
+
+    @Test
+    void decodedValuesEncodeToTheSameBits() {
+        for (int i = Short.MIN_VALUE; i <= Short.MAX_VALUE; i++) {
+            assertEquals((short) i, VertexPacking.packPosition(VertexPacking.unpackPosition((short) i)));
+            assertEquals((short) i, VertexPacking.packUnorm16(VertexPacking.unpackUnorm16((short) i)));
+        }
+        for (int i = Byte.MIN_VALUE; i <= Byte.MAX_VALUE; i++) {
+            assertEquals((byte) i, VertexPacking.packUnorm8(VertexPacking.unpackUnorm8((byte) i)));
+            // -128 and -127 both decode to -1.
+            assertEquals((byte) Math.max(i, -127), VertexPacking.packSnorm8(VertexPacking.unpackSnorm8((byte) i)));
+        }
+    }
+
+    @Test
+    void packedTerrainBytesPerChunk() {
+        // Surface of a chunk, 32 x 32 top faces of 2 triangles each, without merging.
+        int vertexCount = 32 * 32 * 6;
+        assertEquals(294912, vertexCount * VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL.getBytes());
+        assertEquals(122880, vertexCount * VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD_NORMAL_PACKED.getBytes());
+    }
+
+    private static VertexDataBuf heapBuffer() {
+        return new VertexDataBuf() {
+            @Override
+            protected ByteBuffer createBuffer(int capacity) {
+                return ByteBuffer.allocate(capacity);
+            }
+
+            @Override
+            protected void freeBuffer(ByteBuffer buffer) {
+            }
+        };
+    }
+}
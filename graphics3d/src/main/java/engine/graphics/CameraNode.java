@@ -20,8 +20,8 @@ public class CameraNode extends Node3D {
     }
 
     @Override
-    protected void refreshTransform() {
-        super.refreshTransform();
+    protected void invalidateTransform() {
+        super.invalidateTransform();
         getWorldTransform().transform(lookAt.set(FRONT_VECTOR), lookAt);
         camera.lookAt(getWorldTranslation(), lookAt);
     }
@@ -3,6 +3,7 @@ package engine.graphics;
 import engine.graphics.material.Material;
 import engine.graphics.math.BoundingVolume;
 import engine.graphics.mesh.Mesh;
+import engine.graphics.queue.GeometryList;
 import engine.graphics.queue.RenderQueue;
 import engine.graphics.queue.RenderType;
 import engine.graphics.texture.Texture;
@@ -11,11 +12,12 @@ import engine.graphics.texture.Texture2D;
 public class Geometry extends Node3D {
 
     private boolean visible = true;
+    private boolean occluded;
 
     private RenderType renderType;
 
     private Mesh mesh;
-    private Texture texture = Texture2D.white();
+    private Texture texture;
     private Material material;
 
     private BoundingVolume boundingVolume = new BoundingVolume();
@@ -26,6 +28,7 @@ public class Geometry extends Node3D {
 
     public Geometry(RenderType renderType) {
         this.renderType = renderType;
+        boundingVolume.setChangeListener(this::markBoundsDirty);
         scene().addChangeListener((observable, oldValue, newValue) -> {
             if (visible) {
                 if (oldValue != null) oldValue.getRenderQueue().remove(this, this.renderType);
@@ -45,6 +48,18 @@ public class Geometry extends Node3D {
         else scene.ifPresent(scene -> scene.getRenderQueue().remove(this, renderType));
     }
 
+    public boolean isOccluded() {
+        return occluded;
+    }
+
+    /**
+     * Hides the geometry from the viewport passes without removing it from the render queue, so that it can be
+     * toggled every frame, see {@link GeometryList#forEachVisible}. An occluded geometry still casts shadows.
+     */
+    public void setOccluded(boolean occluded) {
+        this.occluded = occluded;
+    }
+
     public RenderType getRenderType() {
         return renderType;
     }
@@ -69,6 +84,9 @@ public class Geometry extends Node3D {
     }
 
     public Texture getTexture() {
+        if (texture == null) {
+            texture = Texture2D.white();
+        }
         return texture;
     }
 
@@ -84,7 +102,20 @@ public class Geometry extends Node3D {
         this.material = material;
     }
 
+    /**
+     * @return bounding volume in world space, used to cull the geometry
+     */
     public BoundingVolume getBoundingVolume() {
         return boundingVolume;
     }
+
+    @Override
+    protected void invalidateTransform() {
+        super.invalidateTransform();
+        markBoundsDirty();
+    }
+
+    private void markBoundsDirty() {
+        if (visible) scene.ifPresent(scene -> scene.getRenderQueue().markDirty(this, renderType));
+    }
 }
@@ -21,13 +21,18 @@ public class Node3D {
 
     private Transform transform = new Transform();
     private Transform worldTransform = new Transform();
+    /**
+     * True if the world transform is out of date. The descendants of a dirty node are dirty too, so the ancestors of a
+     * clean node are clean.
+     */
+    private boolean worldTransformDirty;
 
     private Controller controller;
 
     private Map<Object, Object> properties;
 
     public Node3D() {
-        parent.addChangeListener((observable, oldValue, newValue) -> refreshTransform());
+        parent.addChangeListener((observable, oldValue, newValue) -> invalidateTransform());
     }
 
     public final ObservableObjectValue<Scene3D> scene() {
@@ -134,72 +139,95 @@ public class Node3D {
 
     public void setTransform(Transform transform) {
         this.transform.set(transform);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setTranslation(Vector3fc translation) {
         transform.setTranslation(translation);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setTranslation(float x, float y, float z) {
         transform.setTranslation(x, y, z);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setRotation(Vector3fc rotation) {
         transform.setRotation(rotation);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setRotation(float angleX, float angleY, float angleZ) {
         transform.setRotation(angleX, angleY, angleZ);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setRotation(Quaternionfc rotation) {
         transform.setRotation(rotation);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setRotation(float x, float y, float z, float w) {
         transform.setRotation(x, y, z, w);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setScale(Vector3fc scale) {
         transform.setScale(scale);
-        refreshTransform();
+        invalidateTransform();
     }
 
     public void setScale(float x, float y, float z) {
         transform.setScale(x, y, z);
-        refreshTransform();
+        invalidateTransform();
     }
 
+    /**
+     * Gets the world transform, computed first from the world transforms of the ancestors if the transform of the node
+     * or of an ancestor has changed.
+     */
     public Transform getWorldTransform() {
+        if (worldTransformDirty) {
+            updateWorldTransform();
+        }
         return worldTransform;
     }
 
     public Vector3fc getWorldTranslation() {
-        return worldTransform.getTranslation();
+        return getWorldTransform().getTranslation();
     }
 
     public Quaternionfc getWorldRotation() {
-        return worldTransform.getRotation();
+        return getWorldTransform().getRotation();
     }
 
     public Vector3fc getWorldScale() {
-        return worldTransform.getScale();
+        return getWorldTransform().getScale();
+    }
+
+    /**
+     * Called when the transform of the node or of an ancestor has changed. Marks the world transforms of the node and
+     * its descendants dirty, they are computed again when they are requested.
+     */
+    protected void invalidateTransform() {
+        if (worldTransformDirty) {
+            return;
+        }
+        worldTransformDirty = true;
+        if (children != null) {
+            for (Node3D child : children) {
+                child.invalidateTransform();
+            }
+        }
     }
 
-    protected void refreshTransform() {
+    private void updateWorldTransform() {
         worldTransform.set(transform);
         Node3D parent = getParent();
         if (parent != null) {
-            worldTransform.applyParent(parent.worldTransform);
+            worldTransform.applyParent(parent.getWorldTransform());
         }
-        getUnmodifiableChildren().forEach(Node3D::refreshTransform);
+        worldTransformDirty = false;
     }
 
     public Controller getController() {
@@ -21,8 +21,8 @@ public class SpotLightNode extends Node3D {
     }
 
     @Override
-    protected void refreshTransform() {
-        super.refreshTransform();
+    protected void invalidateTransform() {
+        super.invalidateTransform();
 //        this.light.getDirection().set(0, 0, -1).rotate(getWorldRotation());
     }
 }
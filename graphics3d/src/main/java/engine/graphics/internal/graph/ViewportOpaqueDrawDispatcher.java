@@ -1,15 +1,18 @@
 package engine.graphics.internal.graph;
 
+import engine.graphics.Geometry;
 import engine.graphics.Scene3D;
 import engine.graphics.graph.DrawDispatcher;
 import engine.graphics.graph.Drawer;
 import engine.graphics.graph.FrameContext;
 import engine.graphics.graph.Renderer;
 import engine.graphics.light.LightManager;
+import engine.graphics.queue.GeometrySorter;
 import engine.graphics.queue.RenderType;
 import engine.graphics.shader.ShaderResource;
 import engine.graphics.shader.UniformBlock;
 import engine.graphics.shader.UniformTexture;
+import engine.graphics.texture.Texture;
 import engine.graphics.viewport.Viewport;
 import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
@@ -18,6 +21,7 @@ public class ViewportOpaqueDrawDispatcher implements DrawDispatcher {
     private final Viewport viewport;
 
     private final Matrix4f tempMatrix4f = new Matrix4f();
+    private final GeometrySorter sorter = new GeometrySorter(GeometrySorter.Order.FRONT_TO_BACK);
 
     private UniformBlock uniformMatrices;
     private UniformBlock uniformLight;
@@ -43,16 +47,22 @@ public class ViewportOpaqueDrawDispatcher implements DrawDispatcher {
         LightManager lightManager = scene.getLightManager();
         lightManager.setup(viewport.getCamera());
         uniformLight.set(lightManager);
-        scene.getRenderQueue().getGeometryList(RenderType.OPAQUE).stream()
-                .filter(geometry -> geometry != null && geometry.getBoundingVolume().test(frustum))
-                .forEach(geometry -> {
-                    uniformMatrices.set(new Matrices( // TODO: optimize it
-                            viewport.getProjectionMatrix(),
-                            viewport.getViewMatrix(),
-                            geometry.getWorldTransform().getTransformMatrix(tempMatrix4f)));
-                    uniformTexture.set(geometry.getTexture());
-                    resource.refresh();
-                    renderer.drawMesh(geometry.getMesh());
-                });
+        uniformMatrices.set(new Matrices(viewport.getProjectionMatrix(), viewport.getViewMatrix(), tempMatrix4f));
+        sorter.begin(viewport.getCamera().getPosition());
+        scene.getRenderQueue().getGeometryList(RenderType.OPAQUE).forEachVisible(frustum, sorter::add);
+        sorter.sort();
+        sorter.forEach(new GeometrySorter.BatchVisitor() {
+            @Override
+            public void setTexture(Texture texture) {
+                uniformTexture.set(texture);
+            }
+
+            @Override
+            public void draw(Geometry geometry) {
+                geometry.getWorldTransform().getTransformMatrix(tempMatrix4f);
+                resource.refresh();
+                renderer.drawMesh(geometry.getMesh());
+            }
+        });
     }
 }
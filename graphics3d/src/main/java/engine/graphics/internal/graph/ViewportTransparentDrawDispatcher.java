@@ -1,5 +1,6 @@
 package engine.graphics.internal.graph;
 
+import engine.graphics.Geometry;
 import engine.graphics.Scene3D;
 import engine.graphics.gl.buffer.GLVertexBuffer;
 import engine.graphics.gl.texture.GLTextureBuffer;
@@ -8,11 +9,13 @@ import engine.graphics.graph.Drawer;
 import engine.graphics.graph.FrameContext;
 import engine.graphics.graph.Renderer;
 import engine.graphics.light.LightManager;
+import engine.graphics.queue.GeometrySorter;
 import engine.graphics.queue.RenderType;
 import engine.graphics.shader.ShaderResource;
 import engine.graphics.shader.UniformBlock;
 import engine.graphics.shader.UniformImage;
 import engine.graphics.shader.UniformTexture;
+import engine.graphics.texture.Texture;
 import engine.graphics.texture.Texture2D;
 import engine.graphics.viewport.Viewport;
 import org.joml.FrustumIntersection;
@@ -20,12 +23,11 @@ import org.joml.Matrix4f;
 import org.lwjgl.opengl.GL33;
 import org.lwjgl.opengl.GL42;
 
-import java.util.stream.Stream;
-
 public class ViewportTransparentDrawDispatcher implements DrawDispatcher {
     private final Viewport viewport;
 
     private final Matrix4f tempMatrix4f = new Matrix4f();
+    private final GeometrySorter sorter = new GeometrySorter(GeometrySorter.Order.BACK_TO_FRONT);
 
     private UniformBlock uniformMatrices;
     private UniformBlock uniformLight;
@@ -72,18 +74,23 @@ public class ViewportTransparentDrawDispatcher implements DrawDispatcher {
         if (atomicCounter != null) {
             GL33.glBindBufferBase(GL42.GL_ATOMIC_COUNTER_BUFFER, 0, atomicCounter.getId());
         }
-        Stream.concat(
-                scene.getRenderQueue().getGeometryList(RenderType.TRANSPARENT).stream(),
-                scene.getRenderQueue().getGeometryList(RenderType.TRANSLUCENT).stream())
-                .filter(geometry -> geometry != null && geometry.getBoundingVolume().test(frustum))
-                .forEach(geometry -> {
-                    uniformMatrices.set(new Matrices( // TODO: optimize it
-                            viewport.getProjectionMatrix(),
-                            viewport.getViewMatrix(),
-                            geometry.getWorldTransform().getTransformMatrix(tempMatrix4f)));
-                    uniformTexture.set(geometry.getTexture());
-                    resource.refresh();
-                    renderer.drawMesh(geometry.getMesh());
-                });
+        uniformMatrices.set(new Matrices(viewport.getProjectionMatrix(), viewport.getViewMatrix(), tempMatrix4f));
+        sorter.begin(viewport.getCamera().getPosition());
+        scene.getRenderQueue().getGeometryList(RenderType.TRANSPARENT).forEachVisible(frustum, sorter::add);
+        scene.getRenderQueue().getGeometryList(RenderType.TRANSLUCENT).forEachVisible(frustum, sorter::add);
+        sorter.sort();
+        sorter.forEach(new GeometrySorter.BatchVisitor() {
+            @Override
+            public void setTexture(Texture texture) {
+                uniformTexture.set(texture);
+            }
+
+            @Override
+            public void draw(Geometry geometry) {
+                geometry.getWorldTransform().getTransformMatrix(tempMatrix4f);
+                resource.refresh();
+                renderer.drawMesh(geometry.getMesh());
+            }
+        });
     }
 }
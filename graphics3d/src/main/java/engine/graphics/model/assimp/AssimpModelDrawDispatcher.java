@@ -82,33 +82,31 @@ public class AssimpModelDrawDispatcher implements DrawDispatcher {
         if (atomicCounter != null) {
             GL33.glBindBufferBase(GL42.GL_ATOMIC_COUNTER_BUFFER, 0, atomicCounter.getId());
         }
-        scene.getRenderQueue().getGeometryList(AssimpMesh.ASSIMP_MODEL).stream()
-                .filter(geometry -> geometry != null && geometry.getBoundingVolume().test(frustum))
-                .forEach(geometry -> {
-                    uniformMatrices.set(new Matrices( // TODO: optimize it
-                            viewport.getProjectionMatrix(),
-                            viewport.getViewMatrix(),
-                            geometry.getWorldTransform().getTransformMatrix(new Matrix4f())));
-                    if (geometry instanceof AssimpMesh) {
-                        uniformBones.set(new AssimpAnimation.StructBones(((AssimpMesh) geometry).getMeshParent().getCurrentAnimation().getCurrentFrame().getJointMatrices()));
-                    }
-                    var material = geometry.getMaterial();
-                    uniformMaterial.set(material);
-                    var u = material.getDiffuseMap();
-                    if (u != null) {
-                        uniformDiffuseUV.set(u);
-                    }
-                    if ((u = material.getSpecularMap()) != null) {
-                        uniformSpecularUV.set(u);
-                    }
-                    if ((u = material.getNormalMap()) != null) {
-                        uniformNormalUV.set(u);
-                    }
-                    if ((u = material.getAlphaMap()) != null) {
-                        uniformAlphaUV.set(u);
-                    }
-                    resource.refresh();
-                    renderer.drawMesh(geometry.getMesh());
-                });
+        scene.getRenderQueue().getGeometryList(AssimpMesh.ASSIMP_MODEL).forEachVisible(frustum, geometry -> {
+            uniformMatrices.set(new Matrices( // TODO: optimize it
+                    viewport.getProjectionMatrix(),
+                    viewport.getViewMatrix(),
+                    geometry.getWorldTransform().getTransformMatrix(new Matrix4f())));
+            if (geometry instanceof AssimpMesh) {
+                uniformBones.set(new AssimpAnimation.StructBones(((AssimpMesh) geometry).getMeshParent().getCurrentAnimation().getCurrentFrame().getJointMatrices()));
+            }
+            var material = geometry.getMaterial();
+            uniformMaterial.set(material);
+            var u = material.getDiffuseMap();
+            if (u != null) {
+                uniformDiffuseUV.set(u);
+            }
+            if ((u = material.getSpecularMap()) != null) {
+                uniformSpecularUV.set(u);
+            }
+            if ((u = material.getNormalMap()) != null) {
+                uniformNormalUV.set(u);
+            }
+            if ((u = material.getAlphaMap()) != null) {
+                uniformAlphaUV.set(u);
+            }
+            resource.refresh();
+            renderer.drawMesh(geometry.getMesh());
+        });
     }
 }
@@ -1,9 +1,19 @@
 package engine.graphics.queue;
 
 import engine.graphics.Geometry;
+import engine.graphics.math.BoundingVolume;
+import engine.graphics.math.DynamicAABBTree;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSet;
+import org.joml.AABBf;
+import org.joml.FrustumIntersection;
+import org.joml.Spheref;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static org.apache.commons.lang3.Validate.noNullElements;
@@ -11,8 +21,29 @@ import static org.apache.commons.lang3.Validate.notNull;
 
 public class GeometryList implements Iterable<Geometry> {
 
+    /**
+     * Distance by which the bounds of geometries are enlarged in the culling tree, so that small moves don't change it.
+     */
+    private static final float BOUNDS_MARGIN = 1f;
+
     private List<Geometry> geometries = new ArrayList<>();
 
+    /**
+     * Culling tree over the world space bounds of the geometries, refitted lazily from {@link #markDirty(Geometry)}.
+     */
+    private final DynamicAABBTree<Geometry> boundsTree = new DynamicAABBTree<>(BOUNDS_MARGIN);
+    /**
+     * Proxy of each geometry in the culling tree, or {@link DynamicAABBTree#NULL} if it has no bounds.
+     */
+    private final Reference2IntMap<Geometry> proxies = new Reference2IntOpenHashMap<>();
+    private final List<Geometry> unbounded = new ArrayList<>();
+    private final ReferenceSet<Geometry> dirty = new ReferenceOpenHashSet<>();
+    private final float[] bounds = new float[6];
+
+    public GeometryList() {
+        proxies.defaultReturnValue(DynamicAABBTree.NULL);
+    }
+
     public int size() {
         return geometries.size();
     }
@@ -23,26 +54,61 @@ public class GeometryList implements Iterable<Geometry> {
 
     public boolean add(@Nonnull Geometry geometry) {
         notNull(geometry);
+        addBounds(geometry);
         return geometries.add(geometry);
     }
 
     public boolean remove(Object o) {
-        return geometries.remove(o);
+        if (!geometries.remove(o)) return false;
+        removeBounds((Geometry) o);
+        return true;
     }
 
     public boolean addAll(@Nonnull Collection<? extends Geometry> c) {
         noNullElements(c);
+        c.forEach(this::addBounds);
         return geometries.addAll(c);
     }
 
     public void clear() {
         geometries.clear();
+        boundsTree.clear();
+        proxies.clear();
+        unbounded.clear();
+        dirty.clear();
     }
 
     public void sort(Comparator<? super Geometry> c) {
         geometries.sort(c);
     }
 
+    /**
+     * Marks the bounds of the geometry as changed, the culling tree is refitted before the next query.
+     */
+    public void markDirty(Geometry geometry) {
+        if (proxies.containsKey(geometry)) {
+            dirty.add(geometry);
+        }
+    }
+
+    /**
+     * Performs the action for each geometry whose bounding volume passes {@link BoundingVolume#test(FrustumIntersection)},
+     * like filtering all geometries would, but skips the subtrees of the culling tree outside the frustum and doesn't
+     * test the geometries of subtrees inside it. Geometries without bounds always pass, and occluded geometries never
+     * do, see {@link Geometry#setOccluded(boolean)}.
+     */
+    public void forEachVisible(FrustumIntersection frustum, Consumer<? super Geometry> action) {
+        refitBounds();
+        boundsTree.query(frustum, (geometry, inside) -> {
+            if (!geometry.isOccluded() && (inside || geometry.getBoundingVolume().test(frustum))) {
+                action.accept(geometry);
+            }
+        });
+        for (Geometry geometry : unbounded) {
+            if (!geometry.isOccluded()) action.accept(geometry);
+        }
+    }
+
     @Override
     public Spliterator<Geometry> spliterator() {
         return geometries.spliterator();
@@ -56,4 +122,80 @@ public class GeometryList implements Iterable<Geometry> {
     public Iterator<Geometry> iterator() {
         return geometries.iterator();
     }
+
+    private void addBounds(Geometry geometry) {
+        if (proxies.containsKey(geometry)) return;
+        int proxy = insertBounds(geometry);
+        proxies.put(geometry, proxy);
+        if (proxy == DynamicAABBTree.NULL) unbounded.add(geometry);
+    }
+
+    private void removeBounds(Geometry geometry) {
+        if (geometries.contains(geometry)) return;
+        int proxy = proxies.removeInt(geometry);
+        if (proxy != DynamicAABBTree.NULL) boundsTree.remove(proxy);
+        else unbounded.remove(geometry);
+        dirty.remove(geometry);
+    }
+
+    private void refitBounds() {
+        if (dirty.isEmpty()) return;
+        float[] bounds = this.bounds;
+        for (Geometry geometry : dirty) {
+            int proxy = proxies.getInt(geometry);
+            if (!getBounds(geometry, bounds)) {
+                if (proxy == DynamicAABBTree.NULL) continue;
+                boundsTree.remove(proxy);
+                proxies.put(geometry, DynamicAABBTree.NULL);
+                unbounded.add(geometry);
+            } else if (proxy == DynamicAABBTree.NULL) {
+                proxies.put(geometry, boundsTree.insert(geometry, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]));
+                unbounded.remove(geometry);
+            } else {
+                boundsTree.update(proxy, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+            }
+        }
+        dirty.clear();
+    }
+
+    /**
+     * @return proxy of the geometry, or {@link DynamicAABBTree#NULL} if it has no bounds
+     */
+    private int insertBounds(Geometry geometry) {
+        float[] bounds = this.bounds;
+        if (!getBounds(geometry, bounds)) return DynamicAABBTree.NULL;
+        return boundsTree.insert(geometry, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]);
+    }
+
+    /**
+     * Gets the world space box around the bounding volume of the geometry.
+     *
+     * @return false if the geometry has no bounds
+     */
+    private static boolean getBounds(Geometry geometry, float[] dest) {
+        BoundingVolume volume = geometry.getBoundingVolume();
+        if (volume.getType() == BoundingVolume.Type.Box) {
+            AABBf box = volume.getBox();
+            if (box == null) return false;
+            dest[0] = box.minX;
+            dest[1] = box.minY;
+            dest[2] = box.minZ;
+            dest[3] = box.maxX;
+            dest[4] = box.maxY;
+            dest[5] = box.maxZ;
+            return true;
+        }
+        if (volume.getType() == BoundingVolume.Type.Sphere) {
+            Spheref sphere = volume.getSphere();
+            if (sphere == null) return false;
+            dest[0] = sphere.x - sphere.r;
+            dest[1] = sphere.y - sphere.r;
+            dest[2] = sphere.z - sphere.r;
+            dest[3] = sphere.x + sphere.r;
+            dest[4] = sphere.y + sphere.r;
+            dest[5] = sphere.z + sphere.r;
+            return true;
+        }
+        return false;
+    }
 }
@@ -0,0 +1,239 @@
+package engine.graphics.queue;
+
+import engine.graphics.Geometry;
+import engine.graphics.material.Material;
+import engine.graphics.math.BoundingVolume;
+import engine.graphics.mesh.Mesh;
+import engine.graphics.texture.Texture;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import org.joml.AABBf;
+import org.joml.Spheref;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+
+/**
+ * Sorts geometries by a 64 bit key of their render state and their distance to the viewer, and visits them in batches
+ * of identical state.
+ * <p>
+ * From the highest bits, front to back keys are made of the material (12 bits), the texture (12 bits), the depth (24
+ * bits) and the mesh (16 bits), so that geometries sharing a material and a texture are drawn together from front to
+ * back. Back to front keys start with the inverted depth instead, since blending needs the order more than batching.
+ * <p>
+ * Materials, textures and meshes are numbered in the order they are added, the numbers are only valid until the next
+ * {@link #begin(Vector3fc)}. Keys are sorted as unsigned numbers by a radix sort.
+ */
+public final class GeometrySorter {
+
+    public enum Order {
+        FRONT_TO_BACK, BACK_TO_FRONT
+    }
+
+    static final int MATERIAL_BITS = 12;
+    static final int TEXTURE_BITS = 12;
+    static final int DEPTH_BITS = 24;
+    static final int MESH_BITS = 16;
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    private final Order order;
+
+    private final Reference2IntMap<Object> materialIds = new Reference2IntOpenHashMap<>();
+    private final Reference2IntMap<Object> textureIds = new Reference2IntOpenHashMap<>();
+    private final Reference2IntMap<Object> meshIds = new Reference2IntOpenHashMap<>();
+    private final Vector3f viewPosition = new Vector3f();
+
+    private Geometry[] geometries = new Geometry[64];
+    private long[] keys = new long[64];
+    private Geometry[] tempGeometries = new Geometry[64];
+    private long[] tempKeys = new long[64];
+    private final int[] counts = new int[1 << RADIX_BITS];
+    private int size;
+
+    /**
+     * Receives the geometries in sorted order, the state setters are only called when the state changes.
+     */
+    public interface BatchVisitor {
+        default void setMaterial(Material material) {
+        }
+
+        default void setTexture(Texture texture) {
+        }
+
+        default void setMesh(Mesh mesh) {
+        }
+
+        void draw(Geometry geometry);
+    }
+
+    public GeometrySorter(Order order) {
+        this.order = order;
+        materialIds.defaultReturnValue(-1);
+        textureIds.defaultReturnValue(-1);
+        meshIds.defaultReturnValue(-1);
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Removes the geometries of the previous frame.
+     *
+     * @param viewPosition position the depth of geometries is measured from
+     */
+    public void begin(Vector3fc viewPosition) {
+        this.viewPosition.set(viewPosition);
+        Arrays.fill(geometries, 0, size, null);
+        Arrays.fill(tempGeometries, 0, size, null);
+        size = 0;
+        materialIds.clear();
+        textureIds.clear();
+        meshIds.clear();
+    }
+
+    public void add(Geometry geometry) {
+        if (size == geometries.length) {
+            int capacity = size * 2;
+            geometries = Arrays.copyOf(geometries, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            tempGeometries = new Geometry[capacity];
+            tempKeys = new long[capacity];
+        }
+        geometries[size] = geometry;
+        keys[size] = getKey(geometry);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Geometry get(int index) {
+        return geometries[index];
+    }
+
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Sorts the geometries by their key, keeping the order in which they were added for equal keys.
+     */
+    public void sort() {
+        long[] keys = this.keys, tempKeys = this.tempKeys;
+        Geometry[] geometries = this.geometries, tempGeometries = this.tempGeometries;
+        int[] counts = this.counts;
+        int size = this.size;
+        if (size < 2) return;
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (keys[i] >>> shift) & RADIX_MASK]++;
+            }
+            // Skip the digits shared by all keys, like the material and texture of most frames.
+            if (counts[(int) (keys[0] >>> shift) & RADIX_MASK] == size) continue;
+            for (int digit = 0, offset = 0; digit < counts.length; digit++) {
+                int count = counts[digit];
+                counts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                int index = counts[(int) (keys[i] >>> shift) & RADIX_MASK]++;
+                tempKeys[index] = keys[i];
+                tempGeometries[index] = geometries[i];
+            }
+            long[] swapKeys = keys;
+            keys = tempKeys;
+            tempKeys = swapKeys;
+            Geometry[] swapGeometries = geometries;
+            geometries = tempGeometries;
+            tempGeometries = swapGeometries;
+        }
+        this.keys = keys;
+        this.tempKeys = tempKeys;
+        this.geometries = geometries;
+        this.tempGeometries = tempGeometries;
+    }
+
+    /**
+     * Visits the geometries in their current order, setting the material, the texture and the mesh when they differ
+     * from the previous geometry.
+     */
+    public void forEach(BatchVisitor visitor) {
+        Material material = null;
+        Texture texture = null;
+        Mesh mesh = null;
+        for (int i = 0; i < size; i++) {
+            Geometry geometry = geometries[i];
+            if (i == 0 || geometry.getMaterial() != material) {
+                visitor.setMaterial(material = geometry.getMaterial());
+            }
+            if (i == 0 || geometry.getTexture() != texture) {
+                visitor.setTexture(texture = geometry.getTexture());
+            }
+            if (i == 0 || geometry.getMesh() != mesh) {
+                visitor.setMesh(mesh = geometry.getMesh());
+            }
+            visitor.draw(geometry);
+        }
+    }
+
+    private long getKey(Geometry geometry) {
+        long material = getId(materialIds, geometry.getMaterial(), MATERIAL_BITS);
+        long texture = getId(textureIds, geometry.getTexture(), TEXTURE_BITS);
+        long mesh = getId(meshIds, geometry.getMesh(), MESH_BITS);
+        long depth = getDepth(getSqDistance(geometry));
+        if (order == Order.FRONT_TO_BACK) {
+            return material << TEXTURE_BITS + DEPTH_BITS + MESH_BITS
+                    | texture << DEPTH_BITS + MESH_BITS
+                    | depth << MESH_BITS
+                    | mesh;
+        } else {
+            long invertedDepth = ~depth & (1L << DEPTH_BITS) - 1;
+            return invertedDepth << MATERIAL_BITS + TEXTURE_BITS + MESH_BITS
+                    | material << TEXTURE_BITS + MESH_BITS
+                    | texture << MESH_BITS
+                    | mesh;
+        }
+    }
+
+    /**
+     * Numbers the state from 1 in the order it is added, 0 is kept for no state. Numbers past the bits wrap around,
+     * which only costs extra state changes.
+     */
+    private static int getId(Reference2IntMap<Object> ids, Object state, int bits) {
+        if (state == null) return 0;
+        int id = ids.getInt(state);
+        if (id == -1) {
+            id = ids.size() + 1;
+            ids.put(state, id);
+        }
+        return id & (1 << bits) - 1;
+    }
+
+    /**
+     * Quantizes the distance by the highest bits of its float representation, which keep the order of non negative
+     * floats and the precision relative to the distance.
+     */
+    static int getDepth(float sqDistance) {
+        if (!(sqDistance > 0)) return 0;
+        return Float.floatToIntBits(sqDistance) >>> Float.SIZE - 1 - DEPTH_BITS;
+    }
+
+    private float getSqDistance(Geometry geometry) {
+        BoundingVolume volume = geometry.getBoundingVolume();
+        if (volume.getType() == BoundingVolume.Type.Box && volume.getBox() != null) {
+            AABBf box = volume.getBox();
+            return viewPosition.distanceSquared((box.minX + box.maxX) * 0.5f, (box.minY + box.maxY) * 0.5f, (box.minZ + box.maxZ) * 0.5f);
+        }
+        if (volume.getType() == BoundingVolume.Type.Sphere && volume.getSphere() != null) {
+            Spheref sphere = volume.getSphere();
+            return viewPosition.distanceSquared(sphere.x, sphere.y, sphere.z);
+        }
+        return viewPosition.distanceSquared(geometry.getWorldTranslation());
+    }
+}
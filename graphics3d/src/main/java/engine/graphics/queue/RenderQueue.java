@@ -26,6 +26,11 @@ public class RenderQueue {
         getGeometryList(type).remove(geometry);
     }
 
+    public void markDirty(Geometry geometry, RenderType type) {
+        if (type == null) return;
+        getGeometryList(type).markDirty(geometry);
+    }
+
     public void clear() {
         queue.clear();
     }
@@ -48,6 +48,8 @@ layout (location = 0) in vec4 v_Color;
 layout (location = 1) in vec2 v_TexCoord;
 layout (location = 2) in vec3 mv_Position;
 layout (location = 3) in vec3 mv_Normal;
+// Meshes without this attribute get the default (0, 0, 0, 1), which doesn't repeat.
+layout (location = 4) flat in vec4 v_TexRegion;
 
 out vec4 fragColor;
 
@@ -125,7 +127,13 @@ vec4 computeSpotLight(SpotLight light, vec3 position, vec3 normal)
 }
 
 void main() {
-    texColor = v_Color * texture(u_Texture, v_TexCoord);
+    if (v_TexRegion.z > 0) {
+        // Repeat the texture region over a merged quad, with gradients of the unwrapped coordinate to avoid seams.
+        vec2 texCoord = v_TexRegion.xy + fract(v_TexCoord) * v_TexRegion.zw;
+        texColor = v_Color * textureGrad(u_Texture, texCoord, dFdx(v_TexCoord) * v_TexRegion.zw, dFdy(v_TexCoord) * v_TexRegion.zw);
+    } else {
+        texColor = v_Color * texture(u_Texture, v_TexCoord);
+    }
 
     vec4 lightColor = vec4(0.0, 0.0, 0.0, 0.0);
 
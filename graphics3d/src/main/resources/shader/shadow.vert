@@ -5,8 +5,8 @@ uniform Matrices {
     mat4 viewModel;
 } matrices;
 
-layout (location = 0) in vec3 a_Position;
+layout (location = 0) in vec4 a_Position;
 
 void main() {
-    gl_Position = matrices.proj * matrices.viewModel * vec4(a_Position, 1.0);
+    gl_Position = matrices.proj * matrices.viewModel * vec4(a_Position.xyz / a_Position.w, 1.0);
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package engine.graphics;
+
+import engine.graphics.math.Transform;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Node3DTest {
+
+    private static final float EPSILON = 1e-3f;
+
+    private final Random random = new Random(3);
+
+    @Test
+    void worldTransformsMatchEagerPropagation() {
+        List<Node3D> nodes = new ArrayList<>();
+        Node3D root = new Node3D();
+        nodes.add(root);
+        for (int i = 0; i < 500; i++) {
+            Node3D node = new Node3D();
+            nodes.get(random.nextInt(nodes.size())).addChild(node);
+            nodes.add(node);
+        }
+        for (int frame = 0; frame < 20; frame++) {
+            for (int i = 0; i < 50; i++) {
+                setRandomTransform(nodes.get(random.nextInt(nodes.size())));
+            }
+            // Query a part of the nodes between the changes, like the drawers of several viewports would.
+            for (int i = 0; i < 20; i++) {
+                Node3D node = nodes.get(random.nextInt(nodes.size()));
+                assertTransformEquals(getExpectedWorldTransform(node), node.getWorldTransform());
+            }
+        }
+        for (Node3D node : nodes) {
+            assertTransformEquals(getExpectedWorldTransform(node), node.getWorldTransform());
+        }
+    }
+
+    @Test
+    void reparentedNodeTakesNewParentTransform() {
+        Node3D parent1 = new Node3D(), parent2 = new Node3D(), child = new Node3D(), grandChild = new Node3D();
+        parent1.setTranslation(1, 2, 3);
+        parent2.setTranslation(-4, 0, 0);
+        parent2.setScale(2, 2, 2);
+        child.setTranslation(1, 0, 0);
+        child.addChild(grandChild);
+        parent1.addChild(child);
+        assertTransformEquals(getExpectedWorldTransform(grandChild), grandChild.getWorldTransform());
+
+        parent1.removeChild(child);
+        parent2.addChild(child);
+        assertTransformEquals(getExpectedWorldTransform(grandChild), grandChild.getWorldTransform());
+        assertEquals(-2, grandChild.getWorldTranslation().x(), EPSILON);
+
+        parent2.setTranslation(0, 5, 0);
+        assertEquals(5, grandChild.getWorldTranslation().y(), EPSILON);
+    }
+
+    private void setRandomTransform(Node3D node) {
+        switch (random.nextInt(3)) {
+            case 0:
+                node.setTranslation(random.nextFloat() * 10 - 5, random.nextFloat() * 10 - 5, random.nextFloat() * 10 - 5);
+                break;
+            case 1:
+                node.setRotation(random.nextFloat() * 3, random.nextFloat() * 3, random.nextFloat() * 3);
+                break;
+            default:
+                float scale = 0.5f + random.nextFloat();
+                node.setScale(scale, scale, scale);
+                break;
+        }
+    }
+
+    private static Transform getExpectedWorldTransform(Node3D node) {
+        Transform worldTransform = new Transform().set(node.getTransform());
+        if (node.getParent() != null) {
+            worldTransform.applyParent(getExpectedWorldTransform(node.getParent()));
+        }
+        return worldTransform;
+    }
+
+    private static void assertTransformEquals(Transform expected, Transform actual) {
+        assertEquals(expected.getTranslation().x, actual.getTranslation().x, EPSILON);
+        assertEquals(expected.getTranslation().y, actual.getTranslation().y, EPSILON);
+        assertEquals(expected.getTranslation().z, actual.getTranslation().z, EPSILON);
+        assertEquals(expected.getRotation().x, actual.getRotation().x, EPSILON);
+        assertEquals(expected.getRotation().y, actual.getRotation().y, EPSILON);
+        assertEquals(expected.getRotation().z, actual.getRotation().z, EPSILON);
+        assertEquals(expected.getRotation().w, actual.getRotation().w, EPSILON);
+        assertEquals(expected.getScale().x, actual.getScale().x, EPSILON);
+        assertEquals(expected.getScale().y, actual.getScale().y, EPSILON);
+        assertEquals(expected.getScale().z, actual.getScale().z, EPSILON);
+    }
+
+    private static void benchmarkTransformPropagation() {
+        // A chain of 1000 nodes moved from the root to the leaf, and 1000 nodes with 10 children each moved with their parent.
+        List<Node3D> deep = new ArrayList<>();
+        deep.add(new Node3D());
+        for (int i = 1; i < 1000; i++) {
+            Node3D node = new Node3D();
+            deep.get(i - 1).addChild(node);
+            deep.add(node);
+        }
+        List<Node3D> wide = new ArrayList<>();
+        Node3D root = new Node3D();
+        wide.add(root);
+        for (int i = 0; i < 1000; i++) {
+            Node3D node = new Node3D();
+            root.addChild(node);
+            wide.add(node);
+            for (int j = 0; j < 10; j++) {
+                Node3D child = new Node3D();
+                node.addChild(child);
+                wide.add(child);
+            }
+        }
+        for (int round = 0; round < 5; round++) {
+            benchmarkFrame("Deep", deep, deep);
+            benchmarkFrame("Wide", wide, wide.subList(0, 1001));
+        }
+    }
+
+    /**
+     * Moves the nodes one after another and then gets all world transforms, like a frame of the renderer.
+     */
+    private static void benchmarkFrame(String name, List<Node3D> nodes, List<Node3D> movedNodes) {
+        int frames = 100;
+        long eagerMultiplications = 0;
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            for (Node3D node : movedNodes) {
+                node.getTransform().setTranslation(frame, 0, 0);
+                eagerMultiplications += refreshEagerly(node, node.getParent() == null ? null : node.getParent().getWorldTransform());
+            }
+        }
+        long eager = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            for (Node3D node : movedNodes) {
+                node.setTranslation(frame, 0, 0);
+            }
+            for (Node3D node : nodes) {
+                node.getWorldTransform();
+            }
+        }
+        long lazy = System.nanoTime() - start;
+        System.out.println(name + ": eager " + eager / frames / 1000L + " us (" + eagerMultiplications / frames
+                + " transforms), lazy " + lazy / frames / 1000L + " us (at most " + nodes.size() + " transforms)");
+    }
+
+    /**
+     * Computes the world transforms of the subtree like the recursive propagation on every change did.
+     *
+     * @return number of world transforms computed
+     */
+    private static int refreshEagerly(Node3D node, Transform parentWorldTransform) {
+        Transform worldTransform = new Transform().set(node.getTransform());
+        if (parentWorldTransform != null) {
+            worldTransform.applyParent(parentWorldTransform);
+        }
+        int count = 1;
+        for (Node3D child : node.getUnmodifiableChildren()) {
+            count += refreshEagerly(child, worldTransform);
+        }
+        return count;
+    }
+}
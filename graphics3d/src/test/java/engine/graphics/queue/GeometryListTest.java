@@ -0,0 +1,50 @@
+package engine.graphics.queue;
+
+import engine.graphics.Geometry;
+import org.joml.AABBf;
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GeometryListTest {
+
+    @Test
+    void occludedGeometriesStayListedButAreNotVisible() {
+        var list = new GeometryList();
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            var geometry = new Geometry();
+            if (i % 2 == 0) geometry.getBoundingVolume().setBox(new AABBf(i, 0, 0, i + 1, 1, 1));
+            geometries.add(geometry);
+            list.add(geometry);
+        }
+        var frustum = new FrustumIntersection(new Matrix4f().ortho(-100, 100, -100, 100, -100, 100));
+        assertEquals(Set.copyOf(geometries), collectVisible(list, frustum));
+
+        // Bounded and unbounded geometries alike.
+        geometries.get(2).setOccluded(true);
+        geometries.get(3).setOccluded(true);
+        assertEquals(10, list.size());
+        List<Geometry> expected = new ArrayList<>(geometries);
+        expected.remove(3);
+        expected.remove(2);
+        assertEquals(Set.copyOf(expected), collectVisible(list, frustum));
+
+        geometries.get(2).setOccluded(false);
+        geometries.get(3).setOccluded(false);
+        assertEquals(Set.copyOf(geometries), collectVisible(list, frustum));
+    }
+
+    private static Set<Geometry> collectVisible(GeometryList list, FrustumIntersection frustum) {
+        Set<Geometry> visible = new HashSet<>();
+        list.forEachVisible(frustum, visible::add);
+        return visible;
+    }
+}
@@ -0,0 +1,250 @@
+package engine.graphics.queue;
+
+import engine.graphics.Geometry;
+import engine.graphics.mesh.Mesh;
+import engine.graphics.texture.ColorFormat;
+import engine.graphics.texture.Texture;
+import engine.graphics.util.DrawMode;
+import org.joml.AABBf;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeometrySorterTest {
+
+    private static final Vector3f VIEW_POSITION = new Vector3f(0, 0, 0);
+
+    private final Random random = new Random(5);
+    private final Texture[] textures = {new TestTexture(), new TestTexture(), new TestTexture()};
+
+    @Test
+    void frontToBackBatchesTexturesAndSortsByDepth() {
+        List<Geometry> geometries = createGeometries(300);
+        GeometrySorter sorter = new GeometrySorter(GeometrySorter.Order.FRONT_TO_BACK);
+        sorter.begin(VIEW_POSITION);
+        geometries.forEach(sorter::add);
+        int unsortedChanges = countTextureChanges(sorter);
+        sorter.sort();
+
+        assertEquals(textures.length, countTextureChanges(sorter));
+        assertTrue(unsortedChanges > 100);
+        for (int i = 1; i < sorter.size(); i++) {
+            Geometry previous = sorter.get(i - 1), geometry = sorter.get(i);
+            assertTrue(Long.compareUnsigned(sorter.getKey(i - 1), sorter.getKey(i)) <= 0);
+            if (previous.getTexture() == geometry.getTexture()) {
+                assertTrue(getDepth(previous) <= getDepth(geometry));
+            }
+        }
+    }
+
+    @Test
+    void backToFrontSortsByDepthFirst() {
+        List<Geometry> geometries = createGeometries(300);
+        GeometrySorter sorter = new GeometrySorter(GeometrySorter.Order.BACK_TO_FRONT);
+        sorter.begin(VIEW_POSITION);
+        geometries.forEach(sorter::add);
+        sorter.sort();
+
+        assertEquals(geometries.size(), sorter.size());
+        for (int i = 1; i < sorter.size(); i++) {
+            assertTrue(getDepth(sorter.get(i - 1)) >= getDepth(sorter.get(i)));
+        }
+    }
+
+    @Test
+    void sameMeshAndTextureAreCollapsed() {
+        Mesh mesh = new TestMesh();
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            // The same depth, with alternating textures.
+            geometries.add(createGeometry(textures[i % 2], mesh, 8, 0, 0));
+        }
+        GeometrySorter sorter = new GeometrySorter(GeometrySorter.Order.FRONT_TO_BACK);
+        sorter.begin(VIEW_POSITION);
+        geometries.forEach(sorter::add);
+        sorter.sort();
+
+        int[] changes = new int[3];
+        List<Geometry> drawn = new ArrayList<>();
+        sorter.forEach(new GeometrySorter.BatchVisitor() {
+            @Override
+            public void setTexture(Texture texture) {
+                changes[0]++;
+            }
+
+            @Override
+            public void setMesh(Mesh mesh) {
+                changes[1]++;
+            }
+
+            @Override
+            public void draw(Geometry geometry) {
+                changes[2]++;
+                drawn.add(geometry);
+            }
+        });
+        assertArrayEquals(new int[]{2, 1, 10}, changes);
+        // Equal keys keep the order in which they were added.
+        List<Geometry> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i += 2) expected.add(geometries.get(i));
+        for (int i = 1; i < 10; i += 2) expected.add(geometries.get(i));
+        assertEquals(expected, drawn);
+    }
+
+    @Test
+    void sorterIsReusedAcrossFrames() {
+        GeometrySorter sorter = new GeometrySorter(GeometrySorter.Order.FRONT_TO_BACK);
+        for (int frame = 0; frame < 3; frame++) {
+            List<Geometry> geometries = createGeometries(50 + frame * 100);
+            sorter.begin(VIEW_POSITION);
+            geometries.forEach(sorter::add);
+            sorter.sort();
+            assertEquals(geometries.size(), sorter.size());
+            assertEquals(new HashSet<>(geometries), collect(sorter));
+            assertEquals(textures.length, countTextureChanges(sorter));
+        }
+    }
+
+    @Test
+    void depthKeepsOrderOfDistances() {
+        float previous = 0;
+        for (int i = 0; i < 10000; i++) {
+            float distance = previous + random.nextFloat() * 10;
+            assertTrue(GeometrySorter.getDepth(previous) <= GeometrySorter.getDepth(distance));
+            assertTrue(GeometrySorter.getDepth(distance) < 1 << GeometrySorter.DEPTH_BITS);
+            previous = distance;
+        }
+        assertEquals(0, GeometrySorter.getDepth(0));
+        assertTrue(GeometrySorter.getDepth(Float.POSITIVE_INFINITY) < 1 << GeometrySorter.DEPTH_BITS);
+    }
+
+    private List<Geometry> createGeometries(int count) {
+        List<Geometry> geometries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            geometries.add(createGeometry(textures[random.nextInt(textures.length)], new TestMesh(),
+                    random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100, random.nextFloat() * 200 - 100));
+        }
+        return geometries;
+    }
+
+    private static Geometry createGeometry(Texture texture, Mesh mesh, float x, float y, float z) {
+        Geometry geometry = new Geometry();
+        geometry.setTexture(texture);
+        geometry.setMesh(mesh);
+        geometry.getBoundingVolume().setBox(new AABBf(x - 1, y - 1, z - 1, x + 1, y + 1, z + 1));
+        return geometry;
+    }
+
+    private static float getSqDistance(Geometry geometry) {
+        AABBf box = geometry.getBoundingVolume().getBox();
+        return VIEW_POSITION.distanceSquared((box.minX + box.maxX) * 0.5f, (box.minY + box.maxY) * 0.5f, (box.minZ + box.maxZ) * 0.5f);
+    }
+
+    private static int getDepth(Geometry geometry) {
+        return GeometrySorter.getDepth(getSqDistance(geometry));
+    }
+
+    private static int countTextureChanges(GeometrySorter sorter) {
+        int[] changes = new int[1];
+        sorter.forEach(new GeometrySorter.BatchVisitor() {
+            @Override
+            public void setTexture(Texture texture) {
+                changes[0]++;
+            }
+
+            @Override
+            public void draw(Geometry geometry) {
+            }
+        });
+        return changes[0];
+    }
+
+    private static Set<Geometry> collect(GeometrySorter sorter) {
+        Set<Geometry> geometries = new HashSet<>();
+        sorter.forEach(geometries::add);
+        return geometries;
+    }
+
+    private static void benchmarkSort() {
+        GeometrySorterTest test = new GeometrySorterTest();
+        List<Geometry> geometries = test.createGeometries(20000);
+        GeometrySorter sorter = new GeometrySorter(GeometrySorter.Order.FRONT_TO_BACK);
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                sorter.begin(VIEW_POSITION);
+                geometries.forEach(sorter::add);
+                sorter.sort();
+            }
+            long radix = System.nanoTime() - start;
+
+            Comparator<Geometry> comparator = Comparator
+                    .<Geometry>comparingInt(geometry -> System.identityHashCode(geometry.getTexture()))
+                    .thenComparingDouble(GeometrySorterTest::getSqDistance);
+            List<Geometry> list = new ArrayList<>(geometries);
+            start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                list.clear();
+                list.addAll(geometries);
+                list.sort(comparator);
+            }
+            long comparison = System.nanoTime() - start;
+            System.out.println("Radix sort: " + radix / 100000L + " us, comparison sort: " + comparison / 100000L + " us");
+        }
+    }
+
+    private static class TestTexture implements Texture {
+        @Override
+        public int getId() {
+            return 0;
+        }
+
+        @Override
+        public ColorFormat getFormat() {
+            return ColorFormat.RGBA8;
+        }
+
+        @Override
+        public boolean isMultiSample() {
+            return false;
+        }
+
+        @Override
+        public int getSamples() {
+            return 0;
+        }
+
+        @Override
+        public void dispose() {
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return false;
+        }
+    }
+
+    private static class TestMesh implements Mesh {
+        @Override
+        public DrawMode getDrawMode() {
+            return DrawMode.TRIANGLES;
+        }
+
+        @Override
+        public int getVertexCount() {
+            return 0;
+        }
+
+        @Override
+        public void dispose() {
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return false;
+        }
+    }
+}
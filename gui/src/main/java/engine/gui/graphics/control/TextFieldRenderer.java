@@ -58,7 +58,7 @@ public final class TextFieldRenderer extends RegionRenderer<TextField> {
         float caretWidth = helper.computeTextWidth(textField.getTextInRange(0, textField.caret().get()), font);
         float offset = textField.getLineScrollOffset();
         Color selectionColor = Color.BLUE;
-        if (textMeshDirty) bakeTextMesh();
+        if (textMeshDirty || textMesh != null && textMesh.isStale()) bakeTextMesh();
         if (textMesh != null) {
             if (textField.selectedText().isEmpty()) {
                 graphics.setColor(frontColor);
@@ -44,7 +44,7 @@ public final class TextRenderer implements NodeRenderer<Text> {
 
     @Override
     public void render(Text text, Graphics graphics) {
-        if (dirty) bakeTextMesh();
+        if (dirty || isStale()) bakeTextMesh();
         if (meshes == null) return;
 
         graphics.setColor(text.getColor());
@@ -68,6 +68,14 @@ public final class TextRenderer implements NodeRenderer<Text> {
         }
     }
 
+    private boolean isStale() {
+        if (meshes == null) return false;
+        for (LineMesh mesh : meshes) {
+            if (mesh.mesh.isStale()) return true;
+        }
+        return false;
+    }
+
     private static class LineMesh {
         private TextMesh mesh;
         private float width;
@@ -188,13 +188,19 @@ public final class GraphicsImpl implements Graphics {
     @Override
     public void drawText(TextMesh mesh, int beginIndex, int endIndex, float x, float y) {
         setRenderText(true);
-        uniformTexture.set(mesh.getTexture());
-        resource.refresh();
-        buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD);
-        buffer.setTranslation(x, y, 0);
-        mesh.put(buffer, color, beginIndex, endIndex);
-        buffer.finish();
-        renderer.drawStreamed(DrawMode.TRIANGLES, buffer);
+        // One draw per run of characters sharing a glyph texture.
+        for (int runBegin = beginIndex, runEnd; runBegin < endIndex; runBegin = runEnd) {
+            Texture2D texture = mesh.getTexture(runBegin);
+            runEnd = runBegin + 1;
+            while (runEnd < endIndex && mesh.getTexture(runEnd) == texture) runEnd++;
+            uniformTexture.set(texture);
+            resource.refresh();
+            buffer.begin(VertexFormat.POSITION_COLOR_ALPHA_TEX_COORD);
+            buffer.setTranslation(x, y, 0);
+            mesh.put(buffer, color, runBegin, runEnd);
+            buffer.finish();
+            renderer.drawStreamed(DrawMode.TRIANGLES, buffer);
+        }
         setRenderText(false);
         uniformTexture.set(whiteTexture);
         resource.refresh();